@@ -1,6 +1,8 @@
 plugins {
     id("java")
     application
+    id("me.champeau.jmh") version "0.7.2"
+    id("org.graalvm.buildtools.native") version "0.10.3"
 }
 
 group = "org.checkout"
@@ -10,9 +12,28 @@ repositories {
     mavenCentral()
 }
 
+val loadTest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadTest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadTest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
     implementation("io.javalin:javalin-bundle:6.3.0")
-    implementation("org.slf4j:slf4j-simple:2.0.16")
+    // Unix domain socket connector for a sidecar proxy on the same host
+    implementation("org.eclipse.jetty:jetty-unixdomain-server:11.0.24")
+    // Logging: SLF4J API backed by Log4j 2 asynchronous loggers on an LMAX Disruptor ring buffer
+    implementation("org.apache.logging.log4j:log4j-slf4j2-impl:2.24.1")
+    implementation("org.apache.logging.log4j:log4j-core:2.24.1")
+    implementation("org.apache.logging.log4j:log4j-layout-template-json:2.24.1")
+    implementation("com.lmax:disruptor:4.0.0")
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+    // Bounded W-TinyLFU read cache in front of disk-backed payment stores
+    implementation("com.github.ben-manes.caffeine:caffeine:3.1.8")
+    // Embedded SQL store for payments
+    implementation("com.h2database:h2:2.3.232")
     testImplementation("org.assertj:assertj-core:3.26.3")
 
     // Test
@@ -48,8 +69,138 @@ tasks.test {
     useJUnitPlatform()
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // -PjmhIncludes=<regex> runs only the matching benchmarks
+    findProperty("jmhIncludes")?.let { includes.set(listOf(it.toString())) }
+}
+
+val jmhBaselineFile = layout.projectDirectory.file("src/jmh/baseline.json")
+
+tasks.register<JavaExec>("jmhCompare") {
+    group = "benchmark"
+    description = "Compares the latest JMH results against the stored baseline and fails on regressions."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.checkout.benchmarks.BaselineComparison")
+    args(
+        jmh.resultsFile.get().asFile.path,
+        jmhBaselineFile.asFile.path,
+        (findProperty("jmhTolerance") ?: "0.10").toString()
+    )
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs the open-loop load test against an in-process bank and fails when the SLO is breached."
+    classpath = loadTest.runtimeClasspath
+    mainClass.set("org.checkout.loadtest.LoadTest")
+    // Forward -Dload.*, -Dslo.*, -Dsearch.* and -Dbank.* overrides to the load test JVM
+    systemProperties(System.getProperties().filterKeys {
+        it.toString().startsWith("load.") || it.toString().startsWith("slo.") ||
+            it.toString().startsWith("search.") || it.toString().startsWith("bank.")
+    }.mapKeys { it.key.toString() })
+}
+
+tasks.register<Copy>("jmhSaveBaseline") {
+    group = "benchmark"
+    description = "Stores the latest JMH results as the baseline for jmhCompare."
+    from(jmh.resultsFile)
+    into(jmhBaselineFile.asFile.parentFile)
+    rename { jmhBaselineFile.asFile.name }
+}
+
 java {
     toolchain {
         languageVersion.set(JavaLanguageVersion.of(21))
     }
-}
\ No newline at end of file
+}
+
+graalvmNative {
+    binaries {
+        named("main") {
+            imageName.set("payment-gateway")
+            mainClass.set(application.mainClass)
+        }
+    }
+}
+
+// Fast-startup variants. Every variant is started with -Dstartup.exit-after-start=true, which makes the application
+// log its startup time and shut down again.
+val appJar = tasks.jar.flatMap { it.archiveFile }
+val cdsArchiveFile = layout.buildDirectory.file("cds/payment-gateway.jsa")
+val nativeBinary = layout.buildDirectory.file("native/nativeCompile/payment-gateway")
+val toolchainLauncher = javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) }
+
+tasks.register<JavaExec>("cdsArchive") {
+    group = "distribution"
+    description = "Creates an AppCDS archive from a training run of the application jar."
+    dependsOn(tasks.jar)
+    inputs.file(appJar)
+    outputs.file(cdsArchiveFile)
+    javaLauncher.set(toolchainLauncher)
+    classpath(appJar)
+    mainClass.set(application.mainClass)
+    systemProperty("startup.exit-after-start", "true")
+    doFirst {
+        cdsArchiveFile.get().asFile.parentFile.mkdirs()
+        jvmArgs("-XX:ArchiveClassesAtExit=${cdsArchiveFile.get().asFile.absolutePath}")
+    }
+}
+
+tasks.register<JavaExec>("runWithCds") {
+    group = "application"
+    description = "Runs the application jar with the AppCDS archive."
+    dependsOn("cdsArchive")
+    javaLauncher.set(toolchainLauncher)
+    classpath(appJar)
+    mainClass.set(application.mainClass)
+    doFirst {
+        jvmArgs("-XX:SharedArchiveFile=${cdsArchiveFile.get().asFile.absolutePath}", "-Xshare:auto")
+    }
+}
+
+tasks.register("measureStartup") {
+    group = "verification"
+    description = "Measures startup time of the plain JVM, AppCDS and (if built) native-image variants."
+    dependsOn("cdsArchive")
+    doLast {
+        val runs = (findProperty("startupRuns") ?: "5").toString().toInt()
+        val java = toolchainLauncher.get().executablePath.asFile.absolutePath
+        val classpath = appJar.get().asFile.absolutePath
+        val mainClassName = application.mainClass.get()
+        val exitAfterStart = "-Dstartup.exit-after-start=true"
+
+        val variants = linkedMapOf(
+            "jvm" to listOf(java, exitAfterStart, "-cp", classpath, mainClassName),
+            "jvm+appcds" to listOf(java, exitAfterStart, "-XX:SharedArchiveFile=${cdsArchiveFile.get().asFile.absolutePath}",
+                "-cp", classpath, mainClassName)
+        )
+        if (nativeBinary.get().asFile.exists()) {
+            variants["native"] = listOf(nativeBinary.get().asFile.absolutePath, exitAfterStart)
+        } else {
+            logger.lifecycle("Skipping native variant, run nativeCompile first to include it")
+        }
+
+        val startedIn = Regex("Payment gateway started in (\\d+) ms")
+        variants.forEach { (name, command) ->
+            val reported = mutableListOf<Long>()
+            val wallClock = mutableListOf<Long>()
+            repeat(runs) {
+                val start = System.nanoTime()
+                val process = ProcessBuilder(command).redirectErrorStream(true).start()
+                val output = process.inputStream.bufferedReader().readText()
+                process.waitFor()
+                wallClock += (System.nanoTime() - start) / 1_000_000
+                startedIn.find(output)?.let { reported += it.groupValues[1].toLong() }
+                    ?: throw GradleException("$name did not report its startup time:\n$output")
+            }
+            logger.lifecycle(
+                "%-12s startup median %5d ms (min %5d ms), process wall-clock median %5d ms over %d runs".format(
+                    name, reported.sorted()[runs / 2], reported.min(), wallClock.sorted()[runs / 2], runs
+                )
+            )
+        }
+    }
+}
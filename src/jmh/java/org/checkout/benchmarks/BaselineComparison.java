@@ -0,0 +1,86 @@
+package org.checkout.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result file against a stored baseline and exits non-zero when any benchmark regressed by
+ * more than the tolerance. Throughput scores regress when they drop; time-based scores regress when they rise.
+ *
+ * <p>Usage: {@code BaselineComparison <results.json> <baseline.json> [tolerance]}
+ */
+public final class BaselineComparison {
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <results.json> <baseline.json> [tolerance]");
+            System.exit(2);
+        }
+
+        Path resultsFile = Path.of(args[0]);
+        Path baselineFile = Path.of(args[1]);
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        if (!Files.exists(baselineFile)) {
+            System.out.println("No baseline found at " + baselineFile + ", run jmhSaveBaseline to store one");
+            return;
+        }
+
+        Map<String, Score> results = readScores(resultsFile);
+        Map<String, Score> baseline = readScores(baselineFile);
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", current.value(), "new");
+                continue;
+            }
+
+            double change = (current.value() - previous.value()) / previous.value();
+            boolean regressed = current.higherIsBetter() ? change < -tolerance : change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), previous.value(), current.value(),
+                    change * 100, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> readScores(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode benchmark : root) {
+            StringBuilder key = new StringBuilder(benchmark.get("benchmark").asText());
+            JsonNode params = benchmark.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param ->
+                        key.append(':').append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            String mode = benchmark.get("mode").asText();
+            key.append(" (").append(mode).append(')');
+
+            JsonNode primaryMetric = benchmark.get("primaryMetric");
+            scores.put(key.toString(), new Score(primaryMetric.get("score").asDouble(), "thrpt".equals(mode)));
+        }
+        return scores;
+    }
+
+    private record Score(double value, boolean higherIsBetter) {}
+}
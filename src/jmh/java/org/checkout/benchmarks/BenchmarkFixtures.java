@@ -0,0 +1,50 @@
+package org.checkout.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.time.Year;
+
+/**
+ * Shared inputs for the benchmarks, kept in one place so every benchmark measures the same payment shape.
+ */
+final class BenchmarkFixtures {
+
+    static final String CARD_NUMBER = "4242424242424242";
+    static final int EXPIRY_MONTH = 12;
+    static final int EXPIRY_YEAR = Year.now().getValue() + 2;
+    static final String CURRENCY = "GBP";
+    static final int AMOUNT = 1000;
+    static final String CVV = "123";
+
+    private BenchmarkFixtures() {
+    }
+
+    static Payment payment() {
+        return Payment.create(CARD_NUMBER, EXPIRY_MONTH, EXPIRY_YEAR, CURRENCY, AMOUNT, CVV).getValue();
+    }
+
+    static PostPaymentResponseDto response(String id) {
+        return new PostPaymentResponseDto(id, "APPROVED", "4242", EXPIRY_MONTH, EXPIRY_YEAR, CURRENCY, AMOUNT);
+    }
+
+    static String[] ids(String prefix, int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = prefix + i;
+        }
+        return ids;
+    }
+
+    /**
+     * Mirrors the mapper configured in {@code BankSimulatorClient}.
+     */
+    static ObjectMapper bankObjectMapper() {
+        return new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    }
+}
@@ -0,0 +1,76 @@
+package org.checkout.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.checkout.PaymentIdGenerator;
+import org.checkout.clients.BankSimulatorClient.BankPaymentRequest;
+import org.checkout.models.Money;
+import org.checkout.models.Payment;
+import org.checkout.models.ValidationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of building and validating the payment models and of preparing the bank request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+
+    private final PaymentIdGenerator idGenerator = new PaymentIdGenerator();
+    private final ObjectMapper objectMapper = BenchmarkFixtures.bankObjectMapper();
+
+    private Payment payment;
+    private BankPaymentRequest bankPaymentRequest;
+
+    @Setup
+    public void setUp() {
+        payment = BenchmarkFixtures.payment();
+        bankPaymentRequest = BankPaymentRequest.fromPayment(payment);
+    }
+
+    @Benchmark
+    public ValidationResult<Payment> paymentCreate() {
+        return Payment.create(
+                BenchmarkFixtures.CARD_NUMBER,
+                BenchmarkFixtures.EXPIRY_MONTH,
+                BenchmarkFixtures.EXPIRY_YEAR,
+                BenchmarkFixtures.CURRENCY,
+                BenchmarkFixtures.AMOUNT,
+                BenchmarkFixtures.CVV
+        );
+    }
+
+    @Benchmark
+    public ValidationResult<Money> moneyOf() {
+        return Money.of(BenchmarkFixtures.AMOUNT, BenchmarkFixtures.CURRENCY);
+    }
+
+    @Benchmark
+    public String paymentIdGenerate() {
+        return idGenerator.generate();
+    }
+
+    @Benchmark
+    public BankPaymentRequest bankPaymentRequestFromPayment() {
+        return BankPaymentRequest.fromPayment(payment);
+    }
+
+    @Benchmark
+    public String bankPaymentRequestSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(bankPaymentRequest);
+    }
+
+    @Benchmark
+    public String bankPaymentRequestFromPaymentAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(BankPaymentRequest.fromPayment(payment));
+    }
+}
@@ -0,0 +1,64 @@
+package org.checkout.benchmarks;
+
+import org.checkout.clients.BankClient;
+import org.checkout.clients.BankSimulatorClient.BankPaymentResponse;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.checkout.services.PaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end cost of {@link PaymentService#processPayment} with the bank replaced by an in-process stub, so the
+ * numbers reflect the gateway's own overhead rather than network latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentServiceBenchmark {
+
+    private static final int ID_SPACE = 1 << 16;
+    private static final int ID_MASK = ID_SPACE - 1;
+
+    private PaymentService paymentService;
+    private Payment payment;
+
+    @Setup
+    public void setUp() {
+        // Payment ids cycle over a fixed range so the repository does not grow for the length of the run
+        String[] ids = BenchmarkFixtures.ids("cko_", ID_SPACE);
+        AtomicInteger nextId = new AtomicInteger();
+        BankPaymentResponse approved = new BankPaymentResponse(true, "AUTH123");
+        BankClient stubBank = request -> approved;
+
+        paymentService = new PaymentService(
+                new PaymentsRepository(),
+                stubBank,
+                new IdempotentKeyStoreRepository(),
+                () -> ids[nextId.getAndIncrement() & ID_MASK]
+        );
+        payment = BenchmarkFixtures.payment();
+    }
+
+    @Benchmark
+    public PostPaymentResponseDto processPayment() {
+        return paymentService.processPayment(payment, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PostPaymentResponseDto processPaymentContended() {
+        return paymentService.processPayment(payment, null);
+    }
+}
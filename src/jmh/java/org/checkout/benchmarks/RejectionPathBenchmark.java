@@ -0,0 +1,107 @@
+package org.checkout.benchmarks;
+
+import org.checkout.PaymentGatewayApplication;
+import org.checkout.PaymentIdGenerator;
+import org.checkout.clients.BankClient;
+import org.checkout.clients.BankSimulatorClient.BankPaymentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of requests the gateway answers without calling the bank: payments that fail validation ({@code 400})
+ * and retries that reuse an idempotency key (a replayed {@code 200}; {@code 409} on revisions before replays). Requests
+ * go through a real HTTP server on loopback, so the numbers include Jetty, Javalin and the response mapping, which is
+ * where the cost of rejecting with exceptions used to show up.
+ *
+ * <p>The benchmark only uses the application's public constructor, so it can be run on an older revision to get the
+ * baseline for {@code jmhCompare}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class RejectionPathBenchmark {
+
+    private static final String DUPLICATE_KEY = "benchmark-duplicate";
+
+    private PaymentGatewayApplication application;
+    private HttpClient httpClient;
+    private HttpRequest invalidPayment;
+    private HttpRequest duplicatePayment;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        BankPaymentResponse approved = new BankPaymentResponse(true, "AUTH123");
+        BankClient stubBank = request -> approved;
+        application = new PaymentGatewayApplication(stubBank, new PaymentIdGenerator());
+        application.javalinApp().start("127.0.0.1", 0);
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI payments = URI.create("http://127.0.0.1:" + application.javalinApp().port() + "/api/payments");
+        invalidPayment = post(payments, String.format("""
+                {
+                    "card_number": "56",
+                    "expiry_month": 12,
+                    "expiry_year": %d,
+                    "currency": "JPY",
+                    "amount": 1000,
+                    "cvv": "1234"
+                }""", BenchmarkFixtures.EXPIRY_YEAR), null);
+        duplicatePayment = post(payments, String.format("""
+                {
+                    "card_number": "%s",
+                    "expiry_month": %d,
+                    "expiry_year": %d,
+                    "currency": "%s",
+                    "amount": %d,
+                    "cvv": "%s"
+                }""", BenchmarkFixtures.CARD_NUMBER, BenchmarkFixtures.EXPIRY_MONTH, BenchmarkFixtures.EXPIRY_YEAR,
+                BenchmarkFixtures.CURRENCY, BenchmarkFixtures.AMOUNT, BenchmarkFixtures.CVV), DUPLICATE_KEY);
+
+        // The first request with the key is processed; every request after it is a retry of the same payment
+        int status = httpClient.send(duplicatePayment, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Seeding the idempotency key failed with status " + status);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.javalinApp().stop();
+    }
+
+    @Benchmark
+    public int invalidPayment() throws IOException, InterruptedException {
+        return httpClient.send(invalidPayment, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int duplicateIdempotencyKey() throws IOException, InterruptedException {
+        return httpClient.send(duplicatePayment, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static HttpRequest post(URI uri, String body, String idempotencyKey) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (idempotencyKey != null) {
+            builder.header("Cko-Idempotency-Key", idempotencyKey);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,85 @@
+package org.checkout.benchmarks;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotencyRecord;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed read/write load on the in-memory stores, shaped like production traffic where reads outnumber writes.
+ * Writes cycle over a fixed key space so the stores stay at a steady size for the whole run.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryContentionBenchmark {
+
+    private static final int KEY_SPACE = 1 << 16;
+    private static final int KEY_MASK = KEY_SPACE - 1;
+
+    private PaymentsRepository paymentsRepository;
+    private IdempotentKeyStoreRepository idempotentKeyStore;
+    private String[] keys;
+    private PostPaymentResponseDto[] payments;
+    private IdempotencyRecord[] idempotencyRecords;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        paymentsRepository = new PaymentsRepository();
+        idempotentKeyStore = new IdempotentKeyStoreRepository();
+        keys = BenchmarkFixtures.ids("cko_", KEY_SPACE);
+        payments = new PostPaymentResponseDto[KEY_SPACE];
+        idempotencyRecords = new IdempotencyRecord[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; i++) {
+            payments[i] = BenchmarkFixtures.response(keys[i]);
+            idempotencyRecords[i] = new IdempotencyRecord(i, payments[i]);
+            // Pre-fill half of the key space so reads see a realistic mix of hits and misses
+            if ((i & 1) == 0) {
+                paymentsRepository.add(payments[i]);
+                idempotentKeyStore.add(keys[i], idempotencyRecords[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("payments")
+    @GroupThreads(3)
+    public Object paymentsGet() {
+        return paymentsRepository.get(keys[ThreadLocalRandom.current().nextInt() & KEY_MASK]);
+    }
+
+    @Benchmark
+    @Group("payments")
+    @GroupThreads(1)
+    public void paymentsAdd() {
+        paymentsRepository.add(payments[ThreadLocalRandom.current().nextInt() & KEY_MASK]);
+    }
+
+    @Benchmark
+    @Group("idempotencyKeys")
+    @GroupThreads(3)
+    public Object idempotencyKeysGet() {
+        return idempotentKeyStore.get(keys[ThreadLocalRandom.current().nextInt() & KEY_MASK]);
+    }
+
+    @Benchmark
+    @Group("idempotencyKeys")
+    @GroupThreads(1)
+    public void idempotencyKeysAdd() {
+        int index = ThreadLocalRandom.current().nextInt() & KEY_MASK;
+        idempotentKeyStore.add(keys[index], idempotencyRecords[index]);
+    }
+}
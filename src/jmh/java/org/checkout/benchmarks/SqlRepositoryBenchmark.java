@@ -0,0 +1,90 @@
+package org.checkout.benchmarks;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IPaymentsRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.checkout.sql.SqlPaymentsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the embedded H2 repository with the in-memory one. Writes measure the write-behind path, which runs at the
+ * database's batch insert rate once the queue is full; reads are primary key lookups of payments already written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SqlRepositoryBenchmark {
+
+    private static final int KEY_SPACE = 1 << 16;
+    private static final int KEY_MASK = KEY_SPACE - 1;
+
+    @Param({"memory", "h2"})
+    public String store;
+
+    private IPaymentsRepository repository;
+    private Path directory;
+    private String[] keys;
+    private PostPaymentResponseDto[] payments;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (store.equals("h2")) {
+            directory = Files.createTempDirectory("sql-benchmark");
+            repository = new SqlPaymentsRepository("jdbc:h2:" + directory.resolve("payments"), 8, 256, 8192);
+        } else {
+            repository = new PaymentsRepository();
+        }
+
+        keys = BenchmarkFixtures.ids("cko_", KEY_SPACE);
+        payments = new PostPaymentResponseDto[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; i++) {
+            payments[i] = BenchmarkFixtures.response(keys[i]);
+            repository.add(payments[i]);
+        }
+        // Reads should hit the database rather than the queue of payments still to be written
+        if (repository instanceof SqlPaymentsRepository sql) {
+            while (sql.pendingCount() > 0) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (repository instanceof SqlPaymentsRepository sql) {
+            sql.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object get() {
+        return repository.get(keys[ThreadLocalRandom.current().nextInt() & KEY_MASK]);
+    }
+
+    @Benchmark
+    public void add() {
+        repository.add(payments[ThreadLocalRandom.current().nextInt() & KEY_MASK]);
+    }
+}
@@ -0,0 +1,148 @@
+package org.checkout.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.checkout.PaymentGatewayApplication;
+import org.checkout.PaymentIdGenerator;
+import org.checkout.clients.BankClient;
+import org.checkout.clients.BankSimulatorClient.BankPaymentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one request from a proxy on the same host, sent over a Unix domain socket ({@code unix}) against the
+ * same request over loopback TCP ({@code tcp}). Both transports go through one kept-alive connection and the same
+ * minimal HTTP/1.1 client, so the difference between them is the transport alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnixSocketBenchmark {
+
+    @Param({"tcp", "unix"})
+    public String transport;
+
+    private PaymentGatewayApplication application;
+    private Path socketDirectory;
+    private SocketChannel channel;
+    private ByteBuffer getPayment;
+    private final ByteBuffer response = ByteBuffer.allocate(64 * 1024);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        BankPaymentResponse approved = new BankPaymentResponse(true, "AUTH123");
+        BankClient stubBank = request -> approved;
+        application = new PaymentGatewayApplication(stubBank, new PaymentIdGenerator());
+        application.javalinApp().start("127.0.0.1", 0);
+        socketDirectory = Files.createTempDirectory("payment-gateway");
+        Path socketPath = socketDirectory.resolve("gateway.sock");
+        application.listenOnUnixSocket(socketPath);
+
+        if (transport.equals("unix")) {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } else {
+            channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", application.javalinApp().port()));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        // Stores the payment the benchmark reads
+        HttpRequest createPayment = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + application.javalinApp().port() + "/api/payments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format("""
+                        {"card_number":"%s","expiry_month":%d,"expiry_year":%d,"currency":"%s","amount":%d,"cvv":"%s"}""",
+                        BenchmarkFixtures.CARD_NUMBER, BenchmarkFixtures.EXPIRY_MONTH, BenchmarkFixtures.EXPIRY_YEAR,
+                        BenchmarkFixtures.CURRENCY, BenchmarkFixtures.AMOUNT, BenchmarkFixtures.CVV)))
+                .build();
+        try (HttpClient httpClient = HttpClient.newHttpClient()) {
+            String created = httpClient.send(createPayment, HttpResponse.BodyHandlers.ofString()).body();
+            String id = new ObjectMapper().readTree(created).get("id").asText();
+            getPayment = ByteBuffer.wrap(("GET /api/payments/" + id + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        application.javalinApp().stop();
+        Files.deleteIfExists(socketDirectory.resolve("gateway.sock"));
+        Files.deleteIfExists(socketDirectory);
+    }
+
+    @Benchmark
+    public int getPayment() throws IOException {
+        return exchange(getPayment);
+    }
+
+    // Sends the request and reads until the whole response is in, going by Content-Length or the last chunk
+    private int exchange(ByteBuffer request) throws IOException {
+        request.rewind();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        response.clear();
+        int headersEnd = -1;
+        int expectedLength = -1;
+        boolean chunked = false;
+        while (true) {
+            if (channel.read(response) < 0) {
+                throw new EOFException("Connection closed mid-response");
+            }
+            if (headersEnd < 0) {
+                headersEnd = indexOf(response, "\r\n\r\n", 0);
+                if (headersEnd < 0) {
+                    continue;
+                }
+                headersEnd += 4;
+                String headers = new String(response.array(), 0, headersEnd, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+                chunked = headers.contains("transfer-encoding: chunked");
+                int contentLength = headers.indexOf("content-length:");
+                expectedLength = contentLength < 0 ? headersEnd
+                        : headersEnd + Integer.parseInt(headers.substring(contentLength + 15, headers.indexOf('\r', contentLength)).trim());
+            }
+            boolean complete = chunked
+                    ? indexOf(response, "0\r\n\r\n", Math.max(headersEnd, response.position() - 5)) >= 0
+                    : response.position() >= expectedLength;
+            if (complete) {
+                return response.position();
+            }
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, String marker, int from) {
+        byte[] bytes = marker.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = from; i <= buffer.position() - bytes.length; i++) {
+            int matched = 0;
+            while (matched < bytes.length && buffer.get(i + matched) == bytes[matched]) {
+                matched++;
+            }
+            if (matched == bytes.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,49 @@
+package org.checkout.loadtest;
+
+import io.javalin.Javalin;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the bank simulator that authorises every payment after a fixed latency. The delay is applied
+ * asynchronously so the stand-in itself never becomes the bottleneck under load.
+ */
+class InProcessBank implements AutoCloseable {
+
+    private static final String AUTHORIZED = """
+            {"authorized": true, "authorization_code": "LOADTEST"}""";
+
+    private final ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bank-stand-in-delay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Javalin server;
+
+    InProcessBank(Duration latency) {
+        this.server = Javalin.create();
+        server.post("/payments", ctx -> {
+            CompletableFuture<Void> response = new CompletableFuture<>();
+            delays.schedule(() -> response.complete(null), latency.toNanos(), TimeUnit.NANOSECONDS);
+            ctx.future(() -> response.thenRun(() -> {
+                ctx.contentType("application/json");
+                ctx.result(AUTHORIZED);
+            }));
+        });
+        server.start(0);
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    @Override
+    public void close() {
+        server.stop();
+        delays.shutdownNow();
+    }
+}
@@ -0,0 +1,66 @@
+package org.checkout.loadtest;
+
+import org.checkout.PaymentGatewayApplication;
+
+import java.util.List;
+
+/**
+ * Starts the gateway against an in-process bank stand-in, drives open-loop traffic at it and checks the result
+ * against the SLO thresholds in {@code slo.properties}. Exits with status 1 when the SLO is breached at the target
+ * rate. When {@code search.max-rate} is set, the rate is also stepped up to find the maximum sustainable throughput.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) {
+        LoadTestConfig config = LoadTestConfig.load();
+
+        try (InProcessBank bank = new InProcessBank(config.bankLatency())) {
+            PaymentGatewayApplication application = new PaymentGatewayApplication(bank.baseUrl());
+            application.javalinApp().start(0);
+            try {
+                String gatewayUrl = "http://localhost:" + application.javalinApp().port();
+                OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(gatewayUrl, config.postRatio(), config.requestTimeout());
+
+                System.out.printf("Warming up at %d req/s for %ds%n", config.targetRate(), config.warmUpDuration().toSeconds());
+                generator.run(config.targetRate(), config.warmUpDuration());
+
+                System.out.printf("Measuring at %d req/s for %ds%n", config.targetRate(), config.runDuration().toSeconds());
+                LoadTestResult result = generator.run(config.targetRate(), config.runDuration());
+                result.print(System.out);
+                result.printDistribution(System.out);
+                List<String> violations = result.sloViolations(config.slo());
+
+                if (config.searchEnabled()) {
+                    findMaxSustainableRate(generator, config);
+                }
+
+                if (!violations.isEmpty()) {
+                    System.err.println("SLO breached at " + config.targetRate() + " req/s: " + String.join("; ", violations));
+                    System.exit(1);
+                }
+                System.out.println("SLO met at " + config.targetRate() + " req/s");
+            } finally {
+                application.javalinApp().stop();
+            }
+        }
+    }
+
+    private static void findMaxSustainableRate(OpenLoopLoadGenerator generator, LoadTestConfig config) {
+        int sustainable = 0;
+        int start = config.searchStartRate() > 0 ? config.searchStartRate() : config.searchStepRate();
+        for (int rate = start; rate <= config.searchMaxRate(); rate += config.searchStepRate()) {
+            LoadTestResult step = generator.run(rate, config.searchStepDuration());
+            step.print(System.out);
+            List<String> violations = step.sloViolations(config.slo());
+            if (!violations.isEmpty()) {
+                System.out.println("  SLO breached: " + String.join("; ", violations));
+                break;
+            }
+            sustainable = rate;
+        }
+        System.out.println("Maximum sustainable throughput: " + sustainable + " req/s");
+    }
+}
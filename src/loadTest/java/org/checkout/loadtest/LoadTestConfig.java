@@ -0,0 +1,62 @@
+package org.checkout.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Load test settings and SLO thresholds, read from {@code slo.properties} on the classpath. Any entry can be
+ * overridden with a system property of the same name, e.g. {@code -Dload.rate=500}.
+ */
+record LoadTestConfig(
+        int targetRate,
+        Duration warmUpDuration,
+        Duration runDuration,
+        double postRatio,
+        Duration bankLatency,
+        Duration requestTimeout,
+        int searchStartRate,
+        int searchStepRate,
+        int searchMaxRate,
+        Duration searchStepDuration,
+        SloThresholds slo
+) {
+
+    static LoadTestConfig load() {
+        Properties properties = new Properties();
+        try (InputStream input = LoadTestConfig.class.getClassLoader().getResourceAsStream("slo.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read slo.properties", e);
+        }
+        properties.putAll(System.getProperties());
+
+        return new LoadTestConfig(
+                Integer.parseInt(properties.getProperty("load.rate", "200")),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("load.warm-up-seconds", "10"))),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("load.duration-seconds", "30"))),
+                Double.parseDouble(properties.getProperty("load.post-ratio", "0.3")),
+                Duration.ofMillis(Long.parseLong(properties.getProperty("bank.latency-ms", "20"))),
+                Duration.ofMillis(Long.parseLong(properties.getProperty("load.request-timeout-ms", "5000"))),
+                Integer.parseInt(properties.getProperty("search.start-rate", "0")),
+                Integer.parseInt(properties.getProperty("search.step-rate", "100")),
+                Integer.parseInt(properties.getProperty("search.max-rate", "0")),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("search.step-duration-seconds", "15"))),
+                new SloThresholds(
+                        Double.parseDouble(properties.getProperty("slo.p50-ms", "25")),
+                        Double.parseDouble(properties.getProperty("slo.p99-ms", "100")),
+                        Double.parseDouble(properties.getProperty("slo.p999-ms", "250")),
+                        Double.parseDouble(properties.getProperty("slo.max-error-rate", "0.001"))
+                )
+        );
+    }
+
+    boolean searchEnabled() {
+        return searchMaxRate > 0;
+    }
+
+    record SloThresholds(double p50Millis, double p99Millis, double p999Millis, double maxErrorRate) {}
+}
@@ -0,0 +1,76 @@
+package org.checkout.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.checkout.loadtest.LoadTestConfig.SloThresholds;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of one constant-rate run. Histograms hold latencies in microseconds, measured from intended start times.
+ */
+record LoadTestResult(
+        int targetRate,
+        double achievedRate,
+        long sent,
+        long completed,
+        long errors,
+        Histogram postLatencies,
+        Histogram getLatencies
+) {
+
+    Histogram allLatencies() {
+        Histogram all = new Histogram(postLatencies.getHighestTrackableValue(), 3);
+        all.add(postLatencies);
+        all.add(getLatencies);
+        return all;
+    }
+
+    double errorRate() {
+        // Requests that never completed count as errors
+        return sent == 0 ? 0 : (double) (errors + sent - completed) / sent;
+    }
+
+    List<String> sloViolations(SloThresholds slo) {
+        Histogram all = allLatencies();
+        List<String> violations = new ArrayList<>();
+        check(violations, "p50", millisAt(all, 50), slo.p50Millis());
+        check(violations, "p99", millisAt(all, 99), slo.p99Millis());
+        check(violations, "p99.9", millisAt(all, 99.9), slo.p999Millis());
+        if (errorRate() > slo.maxErrorRate()) {
+            violations.add(String.format("error rate %.4f exceeds %.4f", errorRate(), slo.maxErrorRate()));
+        }
+        return violations;
+    }
+
+    void print(PrintStream out) {
+        out.printf("Target rate %d req/s, achieved %.1f req/s, %d sent, %d completed, %d errors (%.3f%%)%n",
+                targetRate, achievedRate, sent, completed, errors, errorRate() * 100);
+        printLine(out, "POST", postLatencies);
+        printLine(out, "GET", getLatencies);
+        printLine(out, "ALL", allLatencies());
+    }
+
+    void printDistribution(PrintStream out) {
+        out.println("Latency distribution (ms), all requests:");
+        allLatencies().outputPercentileDistribution(out, 1000.0);
+    }
+
+    private static void printLine(PrintStream out, String label, Histogram histogram) {
+        out.printf("  %-4s count=%-8d p50=%8.2fms p90=%8.2fms p99=%8.2fms p99.9=%8.2fms max=%8.2fms%n",
+                label, histogram.getTotalCount(),
+                millisAt(histogram, 50), millisAt(histogram, 90), millisAt(histogram, 99),
+                millisAt(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+    }
+
+    private static double millisAt(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static void check(List<String> violations, String label, double actualMillis, double limitMillis) {
+        if (actualMillis > limitMillis) {
+            violations.add(String.format("%s %.2fms exceeds %.2fms", label, actualMillis, limitMillis));
+        }
+    }
+}
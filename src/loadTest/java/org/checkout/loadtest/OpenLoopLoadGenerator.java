@@ -0,0 +1,150 @@
+package org.checkout.loadtest;
+
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Year;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives a constant arrival rate of POST and GET requests at the gateway.
+ *
+ * <p>Requests are scheduled at fixed intended start times and sent without waiting for earlier responses, so a slow
+ * server cannot throttle the load it receives. Latency is measured from the intended start time rather than the
+ * actual send time, which corrects for coordinated omission: if the sender falls behind, the queueing delay shows up
+ * in the percentiles instead of being silently skipped.
+ */
+class OpenLoopLoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Pattern PAYMENT_ID = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    private static final int KNOWN_IDS = 4096;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final double postRatio;
+    private final Duration requestTimeout;
+    private final String paymentJson;
+
+    // Ids of payments created during the run, overwritten round-robin, which GETs pick from
+    private final AtomicReferenceArray<String> knownIds = new AtomicReferenceArray<>(KNOWN_IDS);
+    private final AtomicInteger knownIdCount = new AtomicInteger();
+
+    OpenLoopLoadGenerator(String baseUrl, double postRatio, Duration requestTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.baseUrl = baseUrl;
+        this.postRatio = postRatio;
+        this.requestTimeout = requestTimeout;
+        this.paymentJson = String.format("""
+                {
+                    "card_number": "4242424242424242",
+                    "expiry_month": 12,
+                    "expiry_year": %d,
+                    "currency": "GBP",
+                    "amount": 1000,
+                    "cvv": "123"
+                }""", Year.now().getValue() + 2);
+    }
+
+    LoadTestResult run(int ratePerSecond, Duration duration) {
+        Recorder postLatencies = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        Recorder getLatencies = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        LongAdder errors = new LongAdder();
+        LongAdder completed = new LongAdder();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long totalRequests = duration.toSeconds() * ratePerSecond;
+        long start = System.nanoTime();
+        long lastIntendedStart = start;
+
+        for (long i = 0; i < totalRequests; i++) {
+            long intendedStart = start + i * intervalNanos;
+            lastIntendedStart = intendedStart;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String knownId = ThreadLocalRandom.current().nextDouble() < postRatio ? null : pickKnownId();
+            boolean post = knownId == null;
+            HttpRequest request = post ? postRequest() : getRequest(knownId);
+            Recorder latencies = post ? postLatencies : getLatencies;
+
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        long micros = (System.nanoTime() - intendedStart) / 1_000;
+                        latencies.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+                        completed.increment();
+                        if (failure != null || response.statusCode() >= 400) {
+                            errors.increment();
+                        } else if (post) {
+                            rememberPaymentId(response.body());
+                        }
+                    });
+        }
+
+        awaitCompletion(completed, totalRequests, lastIntendedStart);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        return new LoadTestResult(
+                ratePerSecond,
+                completed.sum() / elapsedSeconds,
+                totalRequests,
+                completed.sum(),
+                errors.sum(),
+                postLatencies.getIntervalHistogram(),
+                getLatencies.getIntervalHistogram()
+        );
+    }
+
+    private void awaitCompletion(LongAdder completed, long expected, long lastIntendedStart) {
+        long deadline = lastIntendedStart + requestTimeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (completed.sum() < expected && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private HttpRequest postRequest() {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/payments"))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Cko-Idempotency-Key", UUID.randomUUID().toString())
+                .POST(HttpRequest.BodyPublishers.ofString(paymentJson))
+                .build();
+    }
+
+    private String pickKnownId() {
+        int bound = Math.min(knownIdCount.get(), KNOWN_IDS);
+        return bound == 0 ? null : knownIds.get(ThreadLocalRandom.current().nextInt(bound));
+    }
+
+    private HttpRequest getRequest(String id) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/payments/" + id))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+    }
+
+    private void rememberPaymentId(String body) {
+        Matcher matcher = PAYMENT_ID.matcher(body);
+        if (matcher.find()) {
+            int slot = knownIdCount.getAndIncrement();
+            knownIds.set(Math.floorMod(slot, KNOWN_IDS), matcher.group(1));
+        }
+    }
+}
@@ -3,35 +3,114 @@ package org.checkout;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
 import io.javalin.http.HttpStatus;
 import io.javalin.json.JavalinJackson;
 import io.javalin.validation.ValidationException;
+import org.checkout.archive.PaymentArchive;
+import org.checkout.archive.TieredPaymentsRepository;
 import org.checkout.clients.BankClient;
 import org.checkout.clients.BankSimulatorClient;
+import org.checkout.cluster.ClusterNode;
+import org.checkout.cluster.PartitionedPaymentsRepository;
+import org.checkout.controllers.EventLogController;
+import org.checkout.controllers.HealthController;
+import org.checkout.controllers.MetricsController;
 import org.checkout.controllers.PaymentGatewayController;
+import org.checkout.controllers.PaymentUpdatesController;
+import org.checkout.controllers.RecordingController;
+import org.checkout.controllers.ReplicationController;
+import org.checkout.controllers.StatisticsController;
+import org.checkout.controllers.TokenController;
+import org.checkout.controllers.WebhookController;
+import org.checkout.events.PaymentEventSink;
+import org.checkout.events.PaymentUpdateBroadcaster;
+import org.checkout.events.SegmentedEventLog;
+import org.checkout.executors.RouteExecutor;
 import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.exceptions.CardVaultFullException;
+import org.checkout.exceptions.ClusterCommunicationException;
+import org.checkout.exceptions.ExecutorSaturatedException;
 import org.checkout.exceptions.IdempotencyKeyException;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.exceptions.ReadOnlyReplicaException;
+import org.checkout.exceptions.RecordingStateException;
+import org.checkout.exceptions.ReplicationLagException;
+import org.checkout.exceptions.RiskRejectedException;
+import org.checkout.jfr.FlightRecordingManager;
+import org.checkout.logging.RateLimitedLogger;
+import org.checkout.metrics.PaymentMetrics;
 import org.checkout.models.ValidationResult;
+import org.checkout.redis.RedisIdempotentKeyStore;
+import org.checkout.replication.FollowerPaymentsRepository;
+import org.checkout.replication.LeaderPaymentsRepository;
+import org.checkout.replication.ReplicatedPaymentsRepository;
+import org.checkout.repository.CachingPaymentsRepository;
 import org.checkout.repository.IPaymentsRepository;
 import org.checkout.repository.IdempotentKeyStore;
 import org.checkout.repository.IdempotentKeyStoreRepository;
 import org.checkout.repository.PaymentsRepository;
+import org.checkout.risk.CardFingerprinter;
+import org.checkout.risk.RiskCheck;
+import org.checkout.risk.VelocityChecker;
 import org.checkout.services.IPaymentService;
 import org.checkout.services.PaymentService;
+import org.checkout.services.StagedPaymentService;
+import org.checkout.snapshot.StateSnapshotter;
+import org.checkout.sql.SqlPaymentsRepository;
+import org.checkout.stats.PaymentStatistics;
+import org.checkout.stats.StatisticsRecordingRepository;
+import org.checkout.vault.CardVault;
+import org.checkout.warmup.JitWarmUp;
+import org.checkout.webhooks.WebhookDispatcher;
+import org.checkout.webhooks.WebhookRegistry;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 public class PaymentGatewayApplication {
     private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayApplication.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger);
     private static final Properties properties = loadProperties();
+    // The warm-up instance only serves the warm-up's own requests, so its pools and card vault are kept small
+    private static final int WARM_UP_MAX_THREADS = 4;
+    private static final int WARM_UP_VAULT_CAPACITY = 1024;
 
     private final PaymentGatewayController paymentGatewayController;
+    private final MetricsController metricsController;
+    private final RecordingController recordingController;
+    private final HealthController healthController;
+    private final ReplicationController replicationController;
+    private final EventLogController eventLogController;
+    private final PaymentUpdatesController paymentUpdatesController;
+    private final WebhookController webhookController;
+    private final TokenController tokenController;
+    private final StatisticsController statisticsController;
+    private final RouteExecutor readExecutor;
+    private final RouteExecutor writeExecutor;
+    private final StagedPaymentService paymentPipeline;
     private final Javalin app;
+    private final boolean warmUp;
+
+    private volatile boolean ready;
 
     private static Properties loadProperties() {
         Properties props = new Properties();
@@ -46,7 +125,19 @@ public class PaymentGatewayApplication {
     }
 
     public PaymentGatewayApplication() {
-        this(properties.getProperty("bank.simulator.url", "http://localhost:8080"));
+        this(createStateSnapshotter());
+    }
+
+    private PaymentGatewayApplication(StateSnapshotter snapshotter) {
+        this(
+                new BankSimulatorClient(properties.getProperty("bank.simulator.url", "http://localhost:8080")),
+                new PaymentIdGenerator(),
+                snapshotter != null ? snapshotter.payments() : createPaymentsRepository(),
+                createEventLog(),
+                createWebhookDispatcher(),
+                createRiskCheck(),
+                snapshotter != null ? snapshotter.idempotencyKeys() : createIdempotencyKeyStore()
+        );
     }
 
     public PaymentGatewayApplication(String bankSimulatorBaseUrl) {
@@ -54,25 +145,474 @@ public class PaymentGatewayApplication {
     }
 
     public PaymentGatewayApplication(String bankSimulatorBaseUrl, IdGenerator idGenerator) {
-        IdempotentKeyStore idempotencyKeys = new IdempotentKeyStoreRepository();
-        IPaymentsRepository paymentsRepository = new PaymentsRepository();
-        BankClient bankSimulatorClient = new BankSimulatorClient(bankSimulatorBaseUrl);
-        IPaymentService paymentService = new PaymentService(paymentsRepository, bankSimulatorClient, idempotencyKeys, idGenerator);
-        this.paymentGatewayController = new PaymentGatewayController(paymentService);
+        this(new BankSimulatorClient(bankSimulatorBaseUrl), idGenerator);
+    }
+
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator) {
+        this(bankSimulatorClient, idGenerator, new PaymentsRepository());
+    }
+
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository) {
+        this(bankSimulatorClient, idGenerator, paymentsRepository, null);
+    }
+
+    /**
+     * @param eventLog log that every payment state change is appended to and served from {@code /api/events}, or
+     *                 {@code null} to run without one
+     */
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository, SegmentedEventLog eventLog) {
+        this(bankSimulatorClient, idGenerator, paymentsRepository, eventLog, null);
+    }
+
+    /**
+     * @param webhookDispatcher dispatcher that delivers payment outcomes to registered webhooks, or {@code null} to run
+     *                          without webhooks
+     */
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository, SegmentedEventLog eventLog, WebhookDispatcher webhookDispatcher) {
+        this(bankSimulatorClient, idGenerator, paymentsRepository, eventLog, webhookDispatcher, RiskCheck.allowAll());
+    }
+
+    /**
+     * @param riskCheck check that can reject a payment before the bank call, {@link RiskCheck#allowAll()} to run without
+     */
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository, SegmentedEventLog eventLog, WebhookDispatcher webhookDispatcher, RiskCheck riskCheck) {
+        this(bankSimulatorClient, idGenerator, paymentsRepository, eventLog, webhookDispatcher, riskCheck, new IdempotentKeyStoreRepository());
+    }
+
+    /**
+     * @param idempotencyKeys store of the idempotency keys of processed payments
+     */
+    public PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository, SegmentedEventLog eventLog, WebhookDispatcher webhookDispatcher, RiskCheck riskCheck, IdempotentKeyStore idempotencyKeys) {
+        this(bankSimulatorClient, idGenerator, paymentsRepository, eventLog, webhookDispatcher, riskCheck, idempotencyKeys, false);
+    }
+
+    private PaymentGatewayApplication(BankClient bankSimulatorClient, IdGenerator idGenerator, IPaymentsRepository paymentsRepository, SegmentedEventLog eventLog, WebhookDispatcher webhookDispatcher, RiskCheck riskCheck, IdempotentKeyStore idempotencyKeys, boolean warmUp) {
+        this.warmUp = warmUp;
+        PaymentMetrics paymentMetrics = new PaymentMetrics();
+        paymentMetrics.registerGauge("payments_repository_size", "Number of payments held in the repository", paymentsRepository::size);
+        if (paymentsRepository instanceof TieredPaymentsRepository tiered) {
+            paymentMetrics.registerGauge("payments_hot_size", "Number of payments held in memory", tiered::hotSize);
+            paymentMetrics.registerGauge("payments_archived", "Number of payments in the archive", tiered.archive()::size);
+            paymentMetrics.registerGauge("payment_archive_segments", "Number of archive segment files", tiered.archive()::segmentCount);
+        }
+        if (paymentsRepository instanceof SqlPaymentsRepository sql) {
+            paymentMetrics.registerGauge("payments_sql_pending_writes", "Payments not yet committed to the database", sql::pendingCount);
+            paymentMetrics.registerGauge("payments_sql_batches_written", "Batches of payments written to the database", sql::batchesWritten);
+        }
+        IPaymentsRepository servedRepository = paymentsRepository;
+        if (Boolean.parseBoolean(properties.getProperty("cache.enabled", "false"))) {
+            CachingPaymentsRepository cachingRepository = new CachingPaymentsRepository(paymentsRepository,
+                    Long.parseLong(properties.getProperty("cache.maximum-payments", "100000")));
+            cachingRepository.registerMetrics(paymentMetrics);
+            servedRepository = cachingRepository;
+        }
+        // Scrapes must not depend on a remote store, so a Redis store only reports what this node holds
+        if (idempotencyKeys instanceof RedisIdempotentKeyStore redis) {
+            paymentMetrics.registerGauge("idempotency_near_cache_size", "Idempotency keys held in the local near-cache", redis::nearCacheSize);
+        } else {
+            paymentMetrics.registerGauge("idempotency_keys_size", "Number of idempotency keys held in the store", idempotencyKeys::size);
+        }
+
+        PaymentUpdateBroadcaster updateBroadcaster = new PaymentUpdateBroadcaster(
+                Integer.parseInt(properties.getProperty("updates.queue-capacity", "64")));
+        paymentMetrics.registerGauge("payment_update_subscribers", "Open payment update streams", updateBroadcaster::subscriberCount);
+        // The log comes first, so a client never sees an update that the log could still lose
+        PaymentEventSink eventSink = (eventLog != null ? eventLog : PaymentEventSink.discarding()).andThen(updateBroadcaster);
+        if (webhookDispatcher != null) {
+            paymentMetrics.registerGauge("webhook_pending_notifications", "Notifications waiting for their first delivery attempt", webhookDispatcher::pendingCount);
+            paymentMetrics.registerGauge("webhook_retry_batches", "Webhook batches in the durable retry queue", webhookDispatcher::retryingCount);
+            paymentMetrics.registerGauge("webhook_delivered_notifications", "Notifications delivered since startup", webhookDispatcher::deliveredCount);
+            paymentMetrics.registerGauge("webhook_dead_lettered_notifications", "Notifications given up on since startup", webhookDispatcher::deadLetteredCount);
+            eventSink = eventSink.andThen(webhookDispatcher);
+        }
+        if (riskCheck instanceof VelocityChecker velocityChecker) {
+            paymentMetrics.registerGauge("risk_velocity_rejections", "Payments rejected by velocity checks since startup", velocityChecker::rejectionCount);
+        }
+        PaymentStatistics paymentStatistics = new PaymentStatistics();
+        this.statisticsController = new StatisticsController(paymentStatistics);
+        CardFingerprinter fingerprinter = warmUp ? CardFingerprinter.withRandomSecret() : createIdempotencyFingerprinter();
+        PaymentService directPaymentService = new PaymentService(new StatisticsRecordingRepository(servedRepository, paymentStatistics), bankSimulatorClient, idempotencyKeys, idGenerator, paymentMetrics, eventSink, riskCheck, fingerprinter);
+        this.paymentPipeline = createPaymentPipeline(directPaymentService);
+        IPaymentService paymentService = directPaymentService;
+        if (paymentPipeline != null) {
+            paymentPipeline.registerMetrics(paymentMetrics);
+            paymentService = paymentPipeline;
+        }
+        CardVault cardVault = createCardVault();
+        paymentMetrics.registerGauge("card_vault_size", "Cards held in the card vault", cardVault::size);
+        this.paymentGatewayController = new PaymentGatewayController(paymentService, paymentMetrics, cardVault);
+        this.tokenController = new TokenController(cardVault);
+        this.metricsController = new MetricsController(paymentMetrics);
+        // The admin routes are unauthenticated, so they are only mounted where the port is not reachable by clients
+        this.recordingController = !warmUp && Boolean.parseBoolean(properties.getProperty("admin.enabled", "false"))
+                ? new RecordingController(new FlightRecordingManager(
+                        Path.of(properties.getProperty("jfr.recording.directory", "recordings")),
+                        Duration.ofSeconds(Long.parseLong(properties.getProperty("jfr.recording.max-duration-seconds", "300"))),
+                        Long.parseLong(properties.getProperty("jfr.recording.max-size-bytes", "104857600"))))
+                : null;
+        this.healthController = new HealthController(() -> ready);
+        this.paymentUpdatesController = new PaymentUpdatesController(updateBroadcaster, paymentService,
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("updates.keep-alive-seconds", "15"))));
+        this.eventLogController = eventLog != null ? new EventLogController(eventLog) : null;
+        this.webhookController = webhookDispatcher != null ? new WebhookController(webhookDispatcher) : null;
+
+        // Payment writes block on the bank, so they get their own bounded pool and cannot take the threads reads need
+        this.readExecutor = new RouteExecutor("reads",
+                poolThreads("executors.reads.threads", "4"),
+                Integer.parseInt(properties.getProperty("executors.reads.queue-capacity", "1024")));
+        this.writeExecutor = new RouteExecutor("writes",
+                poolThreads("executors.writes.threads", "64"),
+                Integer.parseInt(properties.getProperty("executors.writes.queue-capacity", "256")));
+        readExecutor.registerMetrics(paymentMetrics);
+        writeExecutor.registerMetrics(paymentMetrics);
+
+        if (paymentsRepository instanceof ReplicatedPaymentsRepository replicated) {
+            paymentMetrics.registerGauge("replication_position", "Latest replication log position written or applied", replicated::position);
+            paymentMetrics.registerGauge("replication_lag_milliseconds", "Time since the newest applied leader write or heartbeat", replicated::lagMillis);
+            this.replicationController = new ReplicationController(replicated, Duration.ofMillis(
+                    Long.parseLong(properties.getProperty("replication.read-your-writes-timeout-ms", "500"))));
+        } else {
+            this.replicationController = null;
+        }
 
         this.app = configureJavalin();
     }
 
+    private static IPaymentsRepository createPaymentsRepository() {
+        boolean clustered = Boolean.parseBoolean(properties.getProperty("cluster.enabled", "false"));
+        String replicationRole = properties.getProperty("replication.role", "none");
+        if (clustered && !replicationRole.equals("none")) {
+            throw new IllegalStateException("cluster.enabled and replication.role cannot be combined");
+        }
+
+        return switch (replicationRole) {
+            case "none" -> clustered ? createClusterRepository() : createStandaloneRepository();
+            case "leader" -> createLeaderRepository();
+            case "follower" -> createFollowerRepository();
+            default -> throw new IllegalStateException("replication.role must be none, leader or follower but was " + replicationRole);
+        };
+    }
+
+    /**
+     * Restores the in-memory stores from the latest snapshots and starts taking new ones, or returns {@code null}
+     * unless {@code snapshot.enabled} is set. Snapshots cover the standalone in-memory repository only.
+     */
+    private static StateSnapshotter createStateSnapshotter() {
+        if (!Boolean.parseBoolean(properties.getProperty("snapshot.enabled", "false"))) {
+            return null;
+        }
+        if (Boolean.parseBoolean(properties.getProperty("cluster.enabled", "false"))
+                || !properties.getProperty("replication.role", "none").equals("none")
+                || Boolean.parseBoolean(properties.getProperty("archive.enabled", "false"))
+                || Boolean.parseBoolean(properties.getProperty("sql.enabled", "false"))
+                || !properties.getProperty("idempotency.store", "memory").equals("memory")) {
+            throw new IllegalStateException("snapshot.enabled cannot be combined with cluster.enabled, replication.role, archive.enabled, sql.enabled or idempotency.store=redis");
+        }
+
+        try {
+            long start = System.nanoTime();
+            StateSnapshotter snapshotter = StateSnapshotter.restore(Path.of(properties.getProperty("snapshot.directory", "snapshots")));
+            logger.info("Restored {} payments and {} idempotency keys from snapshot in {} ms",
+                    snapshotter.payments().size(), snapshotter.idempotencyKeys().size(),
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+            snapshotter.start(Duration.ofSeconds(Long.parseLong(properties.getProperty("snapshot.interval-seconds", "60"))));
+            Runtime.getRuntime().addShutdownHook(new Thread(snapshotter::close, "state-snapshotter-close"));
+            return snapshotter;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to restore the snapshot", e);
+        }
+    }
+
+    private static IdempotentKeyStore createIdempotencyKeyStore() {
+        String store = properties.getProperty("idempotency.store", "memory");
+        return switch (store) {
+            case "memory" -> new IdempotentKeyStoreRepository();
+            case "redis" -> {
+                RedisIdempotentKeyStore redis = new RedisIdempotentKeyStore(
+                        properties.getProperty("idempotency.redis.host", "localhost"),
+                        Integer.parseInt(properties.getProperty("idempotency.redis.port", "6379")),
+                        Duration.ofHours(Long.parseLong(properties.getProperty("idempotency.ttl-hours", "24"))),
+                        Integer.parseInt(properties.getProperty("idempotency.near-cache-size", "10000")),
+                        Duration.ofMillis(Long.parseLong(properties.getProperty("idempotency.redis.timeout-ms", "500")))
+                );
+                Runtime.getRuntime().addShutdownHook(new Thread(redis::close, "redis-idempotency-close"));
+                yield redis;
+            }
+            default -> throw new IllegalStateException("idempotency.store must be memory or redis but was " + store);
+        };
+    }
+
+    private static IPaymentsRepository createStandaloneRepository() {
+        boolean sql = Boolean.parseBoolean(properties.getProperty("sql.enabled", "false"));
+        boolean archive = Boolean.parseBoolean(properties.getProperty("archive.enabled", "false"));
+        if (sql && archive) {
+            throw new IllegalStateException("sql.enabled and archive.enabled cannot be combined");
+        }
+        if (sql) {
+            return createSqlRepository();
+        }
+        if (!archive) {
+            return new PaymentsRepository();
+        }
+
+        try {
+            TieredPaymentsRepository repository = new TieredPaymentsRepository(
+                    new PaymentArchive(
+                            Path.of(properties.getProperty("archive.directory", "archive")),
+                            Integer.parseInt(properties.getProperty("archive.block-payments", "64"))),
+                    Duration.ofMinutes(Long.parseLong(properties.getProperty("archive.hot-retention-minutes", "1440"))),
+                    Integer.parseInt(properties.getProperty("archive.segment-payments", "100000")),
+                    Duration.ofSeconds(Long.parseLong(properties.getProperty("archive.check-interval-seconds", "60")))
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "payment-archiver-close"));
+            return repository;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the payment archive", e);
+        }
+    }
+
+    private static IPaymentsRepository createSqlRepository() {
+        try {
+            SqlPaymentsRepository repository = new SqlPaymentsRepository(
+                    properties.getProperty("sql.url", "jdbc:h2:./data/payments"),
+                    Integer.parseInt(properties.getProperty("sql.max-connections", "8")),
+                    Integer.parseInt(properties.getProperty("sql.batch-size", "256")),
+                    Integer.parseInt(properties.getProperty("sql.queue-capacity", "8192")),
+                    Long.parseLong(properties.getProperty("sql.queue-timeout-ms", "1000"))
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "sql-payments-close"));
+            return repository;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open the payments database", e);
+        }
+    }
+
+    private static IPaymentsRepository createClusterRepository() {
+        try {
+            PartitionedPaymentsRepository repository = new PartitionedPaymentsRepository(
+                    properties.getProperty("cluster.host", "localhost"),
+                    Integer.parseInt(properties.getProperty("cluster.port", "9070")),
+                    Integer.parseInt(properties.getProperty("cluster.virtual-nodes", "128"))
+            );
+            List<ClusterNode> seeds = Arrays.stream(properties.getProperty("cluster.seeds", "").split(","))
+                    .filter(seed -> !seed.isBlank())
+                    .map(ClusterNode::parse)
+                    .toList();
+            repository.join(seeds);
+            Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "cluster-leave"));
+            return repository;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start the cluster listener", e);
+        }
+    }
+
+    private static IPaymentsRepository createLeaderRepository() {
+        try {
+            LeaderPaymentsRepository leader = new LeaderPaymentsRepository(
+                    properties.getProperty("replication.host", "0.0.0.0"),
+                    Integer.parseInt(properties.getProperty("replication.port", "9170")),
+                    replicationHeartbeatInterval(),
+                    Integer.parseInt(properties.getProperty("replication.log-capacity", "100000"))
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(leader::close, "replication-close"));
+            return leader;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start the replication listener", e);
+        }
+    }
+
+    private static IPaymentsRepository createFollowerRepository() {
+        FollowerPaymentsRepository follower = new FollowerPaymentsRepository(
+                ClusterNode.parse(properties.getProperty("replication.leader", "localhost:9170")),
+                replicationHeartbeatInterval(),
+                Duration.ofMillis(Long.parseLong(properties.getProperty("replication.reconnect-delay-ms", "1000")))
+        );
+        Runtime.getRuntime().addShutdownHook(new Thread(follower::close, "replication-close"));
+        return follower;
+    }
+
+    private static SegmentedEventLog createEventLog() {
+        if (!Boolean.parseBoolean(properties.getProperty("events.enabled", "false"))) {
+            return null;
+        }
+
+        try {
+            SegmentedEventLog eventLog = new SegmentedEventLog(
+                    Path.of(properties.getProperty("events.directory", "events")),
+                    Long.parseLong(properties.getProperty("events.segment-bytes", "67108864")),
+                    Duration.ofHours(Long.parseLong(properties.getProperty("events.retention-hours", "168"))),
+                    Long.parseLong(properties.getProperty("events.retention-bytes", "0"))
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(eventLog::close, "event-log-close"));
+            return eventLog;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the event log", e);
+        }
+    }
+
+    private static WebhookDispatcher createWebhookDispatcher() {
+        if (!Boolean.parseBoolean(properties.getProperty("webhooks.enabled", "false"))) {
+            return null;
+        }
+
+        try {
+            WebhookDispatcher dispatcher = new WebhookDispatcher(
+                    new WebhookRegistry(),
+                    Path.of(properties.getProperty("webhooks.retry-directory", "webhooks")),
+                    new WebhookDispatcher.Settings(
+                            Duration.ofMillis(Long.parseLong(properties.getProperty("webhooks.batch-linger-ms", "200"))),
+                            Integer.parseInt(properties.getProperty("webhooks.max-batch-size", "100")),
+                            Integer.parseInt(properties.getProperty("webhooks.max-concurrency-per-host", "4")),
+                            Integer.parseInt(properties.getProperty("webhooks.max-pending", "10000")),
+                            Integer.parseInt(properties.getProperty("webhooks.max-attempts", "10")),
+                            Duration.ofMillis(Long.parseLong(properties.getProperty("webhooks.initial-backoff-ms", "1000"))),
+                            Duration.ofMillis(Long.parseLong(properties.getProperty("webhooks.max-backoff-ms", "300000"))),
+                            Duration.ofMillis(Long.parseLong(properties.getProperty("webhooks.request-timeout-ms", "10000"))),
+                            Boolean.parseBoolean(properties.getProperty("webhooks.allow-private-endpoints", "false")),
+                            egressProxy(properties.getProperty("webhooks.egress-proxy", ""))
+                    )
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(dispatcher::close, "webhook-dispatcher-close"));
+            return dispatcher;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the webhook retry queue", e);
+        }
+    }
+
+    private static InetSocketAddress egressProxy(String address) {
+        if (address.isBlank()) {
+            return null;
+        }
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0 || separator == address.length() - 1) {
+            throw new IllegalArgumentException("Webhook egress proxy must be host:port but was " + address);
+        }
+        // Left unresolved, so the proxy's name is looked up when a delivery connects rather than once at startup
+        return InetSocketAddress.createUnresolved(address.substring(0, separator).trim(),
+                Integer.parseInt(address.substring(separator + 1).trim()));
+    }
+
+    private StagedPaymentService createPaymentPipeline(PaymentService paymentService) {
+        if (!Boolean.parseBoolean(properties.getProperty("pipeline.enabled", "false"))) {
+            return null;
+        }
+
+        return new StagedPaymentService(paymentService,
+                new StagedPaymentService.StageSettings(
+                        poolThreads("pipeline.screening.threads", "2"),
+                        Integer.parseInt(properties.getProperty("pipeline.screening.queue-capacity", "4096"))),
+                new StagedPaymentService.StageSettings(
+                        poolThreads("pipeline.bank.threads", "64"),
+                        Integer.parseInt(properties.getProperty("pipeline.bank.queue-capacity", "1024"))),
+                new StagedPaymentService.StageSettings(
+                        poolThreads("pipeline.storage.threads", "2"),
+                        Integer.parseInt(properties.getProperty("pipeline.storage.queue-capacity", "4096"))));
+    }
+
+    private CardVault createCardVault() {
+        int capacity = warmUp ? WARM_UP_VAULT_CAPACITY : Integer.parseInt(properties.getProperty("vault.capacity", "1000000"));
+        String key = properties.getProperty("vault.key", "");
+        return key.isEmpty() ? CardVault.withRandomKey(capacity) : new CardVault(Base64.getDecoder().decode(key), capacity);
+    }
+
+    /**
+     * Keys idempotency fingerprints with {@code idempotency.fingerprint-secret}. A random key only works while the keys
+     * live and die with the process, so it is refused when they are shared through Redis or restored from snapshots.
+     */
+    private static CardFingerprinter createIdempotencyFingerprinter() {
+        String secret = properties.getProperty("idempotency.fingerprint-secret", "");
+        if (!secret.isEmpty()) {
+            return CardFingerprinter.withSecret(secret);
+        }
+        if (Boolean.parseBoolean(properties.getProperty("snapshot.enabled", "false"))
+                || !properties.getProperty("idempotency.store", "memory").equals("memory")) {
+            throw new IllegalStateException("idempotency.fingerprint-secret must be set with snapshot.enabled or idempotency.store=redis");
+        }
+        return CardFingerprinter.withRandomSecret();
+    }
+
+    private static RiskCheck createRiskCheck() {
+        if (!Boolean.parseBoolean(properties.getProperty("risk.enabled", "false"))) {
+            return RiskCheck.allowAll();
+        }
+
+        String secret = properties.getProperty("risk.fingerprint-secret", "");
+        return new VelocityChecker(
+                secret.isEmpty() ? CardFingerprinter.withRandomSecret() : CardFingerprinter.withSecret(secret),
+                List.of(
+                        new VelocityChecker.Limit("per_minute", Duration.ofMinutes(1), 6,
+                                Long.parseLong(properties.getProperty("risk.max-attempts-per-minute", "10")),
+                                Long.parseLong(properties.getProperty("risk.max-amount-per-minute", "0"))),
+                        new VelocityChecker.Limit("per_hour", Duration.ofHours(1), 12,
+                                Long.parseLong(properties.getProperty("risk.max-attempts-per-hour", "60")),
+                                Long.parseLong(properties.getProperty("risk.max-amount-per-hour", "0")))
+                ),
+                Integer.parseInt(properties.getProperty("risk.sketch-depth", "4")),
+                Integer.parseInt(properties.getProperty("risk.sketch-width", "16384"))
+        );
+    }
+
+    private int poolThreads(String key, String defaultValue) {
+        int threads = Integer.parseInt(properties.getProperty(key, defaultValue));
+        return warmUp ? Math.min(threads, WARM_UP_MAX_THREADS) : threads;
+    }
+
+    private static Duration replicationHeartbeatInterval() {
+        return Duration.ofMillis(Long.parseLong(properties.getProperty("replication.heartbeat-interval-ms", "100")));
+    }
+
+    /**
+     * Creates the private instance the JIT warm-up drives: the same routes, controllers and services as the real
+     * application, against {@code bankClient} and in-memory stores only, with small pools and a small card vault.
+     */
+    public static PaymentGatewayApplication forWarmUp(BankClient bankClient) {
+        return new PaymentGatewayApplication(bankClient, new PaymentIdGenerator(), new PaymentsRepository(), null, null,
+                RiskCheck.allowAll(), new IdempotentKeyStoreRepository(), true);
+    }
+
     public Javalin javalinApp() {
         return app;
     }
 
+    /**
+     * Marks the application as ready to receive traffic, which flips {@code /ready} from 503 to 200.
+     */
+    public void markReady() {
+        this.ready = true;
+    }
+
+    /**
+     * Also serves the API on a Unix domain socket at {@code socketPath}, for a proxy on the same host. Must be called
+     * once the application has started; the socket shares the TCP port's HTTP configuration and stops with it.
+     */
+    public void listenOnUnixSocket(Path socketPath) {
+        Server server = app.jettyServer().server();
+        HttpConfiguration httpConfiguration = server.getConnectors()[0].getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration();
+        UnixDomainServerConnector connector = new UnixDomainServerConnector(server, new HttpConnectionFactory(httpConfiguration));
+        connector.setUnixDomainPath(socketPath);
+        try {
+            // A socket file left behind by a process that did not shut down cleanly would fail the bind
+            Files.deleteIfExists(socketPath);
+            server.addConnector(connector);
+            connector.start();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to listen on Unix domain socket " + socketPath, e);
+        }
+    }
+
     private Javalin configureJavalin() {
         Javalin app = Javalin.create(config -> {
             config.jsonMapper(new JavalinJackson().updateMapper(mapper -> {
                 mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
                 mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
             }));
+            config.events.serverStopped(() -> {
+                readExecutor.close();
+                writeExecutor.close();
+                if (paymentPipeline != null) {
+                    paymentPipeline.close();
+                }
+            });
         });
 
         configureRoutes(app);
@@ -82,13 +622,53 @@ public class PaymentGatewayApplication {
     }
 
     private void configureRoutes(Javalin app) {
-        app.post("/api/payments", paymentGatewayController::postPayment);
-        app.get("/api/payments/{id}", paymentGatewayController::getPaymentById);
+        if (replicationController != null) {
+            app.before("/api/payments", replicationController::ensureWritable);
+            app.after("/api/payments", replicationController::addPosition);
+            app.get("/replication/status", replicationController::getStatus);
+        }
+        // With the pipeline, request threads only parse and enqueue the payment, so they need no pool of their own
+        app.post("/api/payments", paymentPipeline != null
+                ? paymentGatewayController::postPayment
+                : writeExecutor.isolate(paymentGatewayController::postPayment));
+        Handler getPayment = paymentGatewayController::getPaymentById;
+        if (replicationController != null) {
+            // Waiting for the replica to catch up happens on the read pool too, so it never holds a Jetty thread
+            Handler read = getPayment;
+            getPayment = ctx -> {
+                replicationController.awaitReadAfter(ctx);
+                read.handle(ctx);
+            };
+        }
+        app.get("/api/payments/{id}", readExecutor.isolate(getPayment));
+        app.post("/api/tokens", tokenController::createToken);
+        app.get("/api/stats", statisticsController::getStatistics);
+        app.sse("/api/payments/{id}/updates", paymentUpdatesController::streamPayment);
+        // Cko-Caller-Id is asserted by the client, not authenticated, so anyone could follow another caller's payments
+        if (Boolean.parseBoolean(properties.getProperty("updates.caller-stream.enabled", "false"))) {
+            app.sse("/api/payment-updates", paymentUpdatesController::streamCaller);
+        }
+        if (eventLogController != null) {
+            app.get("/api/events", eventLogController::getEvents);
+        }
+        if (webhookController != null) {
+            app.put("/api/webhooks", webhookController::registerWebhook);
+            app.get("/api/webhooks", webhookController::getWebhook);
+            app.delete("/api/webhooks", webhookController::deleteWebhook);
+        }
+        app.get("/health", healthController::health);
+        app.get("/ready", healthController::ready);
+        app.get("/metrics", metricsController::getMetrics);
+        if (recordingController != null) {
+            app.get("/admin/recordings", recordingController::getRecording);
+            app.post("/admin/recordings/start", recordingController::startRecording);
+            app.post("/admin/recordings/stop", recordingController::stopRecording);
+        }
     }
 
     private void configureExceptionHandling(Javalin app) {
         app.exception(ValidationResult.ValidationException.class, (e, ctx) -> {
-            logger.error("Validation error: {}", e.getErrors());
+            rateLimitedLogger.atInfo("payment_rejected").addKeyValue("errors", e.getErrors()).log("Payment failed validation");
             ctx.status(HttpStatus.BAD_REQUEST);
             ctx.json(Map.of(
                     "message", "Payment rejected due to validation errors",
@@ -97,27 +677,101 @@ public class PaymentGatewayApplication {
         });
 
         app.exception(ValidationException.class, (e, ctx) -> {
-            logger.error("Validation error: {}", e.getMessage());
+            rateLimitedLogger.atInfo("request_rejected").addKeyValue("errors", e.getMessage()).log("Request failed validation");
             ctx.status(HttpStatus.BAD_REQUEST);
         });
 
         app.exception(BankPaymentFailedException.class, (e, ctx) -> {
-            logger.error("Unexpected error occurred", e);
+            rateLimitedLogger.atError("bank_payment_failed").addKeyValue("error", e.getMessage()).log("Payment failed at the bank");
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR);
             ctx.json(Map.of("error", e.getMessage()));
         });
 
         app.exception(IdempotencyKeyException.class, (e, ctx) -> {
-            logger.error("Unexpected error occurred", e);
-            ctx.status(HttpStatus.CONFLICT);
+            rateLimitedLogger.atInfo("idempotency_conflict").addKeyValue("idempotency_key", e.getIdempotencyKey()).log(e.getMessage());
+            ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
             ctx.json(Map.of("error", e.getMessage(), "idempotency_key", e.getIdempotencyKey()));
         });
+
+        app.exception(CardVaultFullException.class, (e, ctx) -> {
+            rateLimitedLogger.atError("card_vault_full").log(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.json(Map.of("error", e.getMessage()));
+        });
+
+        app.exception(RiskRejectedException.class, (e, ctx) -> {
+            rateLimitedLogger.atInfo("risk_rejected").addKeyValue("rule", e.getRule()).log(e.getMessage());
+            ctx.status(HttpStatus.TOO_MANY_REQUESTS);
+            ctx.json(Map.of("error", e.getMessage(), "rule", e.getRule()));
+        });
+
+        app.exception(ClusterCommunicationException.class, (e, ctx) -> {
+            rateLimitedLogger.atError("cluster_communication_failed").setCause(e).log("Cluster communication error");
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.json(Map.of("error", "The payment store is temporarily unavailable"));
+        });
+
+        app.exception(PaymentStoreUnavailableException.class, (e, ctx) -> {
+            rateLimitedLogger.atError("payment_store_unavailable").setCause(e).log("Payment store error");
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.json(Map.of("error", "The payment store is temporarily unavailable"));
+        });
+
+        app.exception(ReadOnlyReplicaException.class, (e, ctx) -> {
+            logger.warn("Write rejected: {}", e.getMessage());
+            ctx.status(HttpStatus.MISDIRECTED_REQUEST);
+            ctx.json(Map.of("error", e.getMessage(), "leader", e.getLeader()));
+        });
+
+        app.exception(ReplicationLagException.class, (e, ctx) -> {
+            rateLimitedLogger.atWarn("read_after_timeout").log(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.header("Retry-After", "1");
+            ctx.json(Map.of("error", e.getMessage()));
+        });
+
+        app.exception(ExecutorSaturatedException.class, (e, ctx) -> {
+            rateLimitedLogger.atWarn("pool_saturated").log(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.header("Retry-After", "1");
+            ctx.json(Map.of("error", e.getMessage()));
+        });
+
+        app.exception(RecordingStateException.class, (e, ctx) -> {
+            logger.warn("Recording request rejected: {}", e.getMessage());
+            ctx.status(HttpStatus.CONFLICT);
+            ctx.json(Map.of("error", e.getMessage()));
+        });
     }
 
     public static void main(String[] args) {
         PaymentGatewayApplication application = new PaymentGatewayApplication();
         int port = Integer.parseInt(properties.getProperty("server.port", "7070"));
         application.javalinApp().start(port);
+        String unixSocketPath = properties.getProperty("server.unix-socket-path", "");
+        if (!unixSocketPath.isBlank()) {
+            application.listenOnUnixSocket(Path.of(unixSocketPath));
+            logger.info("Listening on Unix domain socket {}", unixSocketPath);
+        }
+        logger.info("Payment gateway started in {} ms", ManagementFactory.getRuntimeMXBean().getUptime());
+
+        // Used by training runs (AppCDS) and startup measurements, which only need the application to come up
+        if (Boolean.getBoolean("startup.exit-after-start")) {
+            application.javalinApp().stop();
+            return;
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty("warmup.enabled", "true"))) {
+            new JitWarmUp(
+                    Duration.ofSeconds(Long.parseLong(properties.getProperty("warmup.max-duration-seconds", "60"))),
+                    Integer.parseInt(properties.getProperty("warmup.threads", "4")),
+                    Integer.parseInt(properties.getProperty("warmup.requests-per-round", "2000")),
+                    Integer.parseInt(properties.getProperty("warmup.settle-rounds", "3")),
+                    Long.parseLong(properties.getProperty("warmup.settle-threshold-ms", "10"))
+            ).run();
+        }
+        application.markReady();
+        logger.info("Payment gateway ready after {} ms", ManagementFactory.getRuntimeMXBean().getUptime());
     }
 }
 
@@ -1,12 +1,23 @@
 package org.checkout;
 
+import java.util.HexFormat;
 import java.util.UUID;
 
+/**
+ * Generates ids of the form {@code cko_} followed by 32 hex digits: the creation time in milliseconds (12 digits),
+ * then 80 random bits. Ids of payments created close together sort close together, which lets the payment archive
+ * find the segment holding an id from its id range alone.
+ */
 public class PaymentIdGenerator implements IdGenerator {
     private static final String PAYMENT_PREFIX = "cko_";
+    private static final HexFormat HEX = HexFormat.of();
 
     @Override
     public String generate() {
-        return PAYMENT_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        UUID random = UUID.randomUUID();
+        return PAYMENT_PREFIX
+                + HEX.toHexDigits(System.currentTimeMillis()).substring(4)
+                + HEX.toHexDigits((short) random.getMostSignificantBits())
+                + HEX.toHexDigits(random.getLeastSignificantBits());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,244 @@
+package org.checkout.archive;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.PaymentCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable archive file of payments sorted by id, cut into blocks that are compressed one by one.
+ *
+ * <p>Layout: the compressed blocks, then a sparse index holding each block's position, compressed and raw length and
+ * first id (plus the segment's last id), then a fixed footer of {@code indexOffset, paymentCount, magic}. The file is
+ * memory-mapped, so the index is searched in place and nothing but the id range is kept on the heap. A lookup binary
+ * searches the index for the one block that can hold the id and inflates only that block.
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x434b4152;
+    private static final int FOOTER_BYTES = 16;
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int paymentCount;
+    private final int blockCount;
+    private final int offsetsAt;
+    private final int compressedLengthsAt;
+    private final int rawLengthsAt;
+    private final int idPositionsAt;
+    private final int idsAt;
+    private final String firstId;
+    private final String lastId;
+
+    private ArchiveSegment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        int size = buffer.capacity();
+        if (size < FOOTER_BYTES || buffer.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a complete archive segment: " + file);
+        }
+        long indexOffset = buffer.getLong(size - FOOTER_BYTES);
+        this.paymentCount = buffer.getInt(size - 8);
+
+        int position = (int) indexOffset;
+        this.blockCount = buffer.getInt(position);
+        this.offsetsAt = position + 4;
+        this.compressedLengthsAt = offsetsAt + blockCount * 8;
+        this.rawLengthsAt = compressedLengthsAt + blockCount * 4;
+        this.idPositionsAt = rawLengthsAt + blockCount * 4;
+        this.idsAt = idPositionsAt + (blockCount + 2) * 4;
+        this.firstId = blockId(0);
+        this.lastId = blockId(blockCount);
+    }
+
+    /**
+     * Writes {@code payments}, which must be sorted by id, to {@code file} and opens it. The segment is written to a
+     * temporary file and moved into place once complete, so a crash never leaves a partial segment behind.
+     */
+    static ArchiveSegment write(Path file, List<PostPaymentResponseDto> payments, int blockPayments) throws IOException {
+        if (payments.isEmpty()) {
+            throw new IllegalArgumentException("An archive segment needs at least one payment");
+        }
+        int blockCount = (payments.size() + blockPayments - 1) / blockPayments;
+        long[] offsets = new long[blockCount];
+        int[] compressedLengths = new int[blockCount];
+        int[] rawLengths = new int[blockCount];
+        ByteArrayOutputStream ids = new ByteArrayOutputStream(blockCount * 40);
+        int[] idPositions = new int[blockCount + 2];
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Deflater deflater = new Deflater();
+        try (OutputStream fileOut = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(blockPayments * 64);
+            DataOutputStream rawOut = new DataOutputStream(raw);
+            byte[] compressed = new byte[0];
+            long position = 0;
+            for (int block = 0; block < blockCount; block++) {
+                List<PostPaymentResponseDto> blockContents = payments.subList(block * blockPayments,
+                        Math.min(payments.size(), (block + 1) * blockPayments));
+                raw.reset();
+                for (PostPaymentResponseDto payment : blockContents) {
+                    PaymentCodec.write(rawOut, payment);
+                }
+                byte[] rawBytes = raw.toByteArray();
+
+                deflater.reset();
+                deflater.setInput(rawBytes);
+                deflater.finish();
+                if (compressed.length < rawBytes.length + 64) {
+                    compressed = new byte[rawBytes.length + 64];
+                }
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                out.write(compressed, 0, length);
+
+                offsets[block] = position;
+                compressedLengths[block] = length;
+                rawLengths[block] = rawBytes.length;
+                idPositions[block] = ids.size();
+                ids.writeBytes(blockContents.get(0).id().getBytes(StandardCharsets.UTF_8));
+                position += length;
+            }
+            idPositions[blockCount] = ids.size();
+            ids.writeBytes(payments.get(payments.size() - 1).id().getBytes(StandardCharsets.UTF_8));
+            idPositions[blockCount + 1] = ids.size();
+
+            long indexOffset = position;
+            out.writeInt(blockCount);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            for (int length : compressedLengths) {
+                out.writeInt(length);
+            }
+            for (int length : rawLengths) {
+                out.writeInt(length);
+            }
+            for (int idPosition : idPositions) {
+                out.writeInt(idPosition);
+            }
+            ids.writeTo(out);
+
+            out.writeLong(indexOffset);
+            out.writeInt(payments.size());
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ArchiveSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    boolean mayContain(String id) {
+        return id.compareTo(firstId) >= 0 && id.compareTo(lastId) <= 0;
+    }
+
+    Optional<PostPaymentResponseDto> get(String id) throws IOException {
+        if (!mayContain(id)) {
+            return Optional.empty();
+        }
+
+        // The last block whose first id is not after the id is the only one that can hold it
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockId(middle).compareTo(id) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(low)));
+        while (in.available() > 0) {
+            PostPaymentResponseDto payment = PaymentCodec.read(in);
+            int comparison = payment.id().compareTo(id);
+            if (comparison == 0) {
+                return Optional.of(payment);
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    int paymentCount() {
+        return paymentCount;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private byte[] inflate(int block) throws IOException {
+        int offset = (int) buffer.getLong(offsetsAt + block * 8);
+        int compressedLength = buffer.getInt(compressedLengthsAt + block * 4);
+        byte[] raw = new byte[buffer.getInt(rawLengthsAt + block * 4)];
+
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(buffer.slice(offset, compressedLength));
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IOException("Archive block " + block + " of " + file + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Archive block " + block + " of " + file + " is corrupt", e);
+        }
+        return raw;
+    }
+
+    private String blockId(int block) {
+        int start = buffer.getInt(idPositionsAt + block * 4);
+        int end = buffer.getInt(idPositionsAt + (block + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(idsAt + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
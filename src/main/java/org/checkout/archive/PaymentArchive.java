@@ -0,0 +1,110 @@
+package org.checkout.archive;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cold storage for payments: a directory of immutable, compressed {@link ArchiveSegment}s named by sequence number.
+ * Segments are only ever added; nothing is deleted, so the archive keeps every payment for as long as the files are
+ * kept.
+ *
+ * <p>A lookup only opens segments whose id range covers the id. Payment ids start with their creation time, so
+ * segments written one after another cover narrow, barely overlapping ranges and a lookup usually touches a single
+ * segment and inflates a single block. The heap holds a handful of objects per segment, however many payments the
+ * archive holds.
+ */
+public class PaymentArchive {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentArchive.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int blockPayments;
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong paymentCount = new AtomicLong();
+    private long nextSequence;
+
+    /**
+     * @param directory     where segment files live; created if missing, and existing segments are opened
+     * @param blockPayments payments per compressed block; a lookup inflates one block
+     */
+    public PaymentArchive(Path directory, int blockPayments) throws IOException {
+        this.directory = directory;
+        this.blockPayments = blockPayments;
+
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.sorted(Comparator.comparing(Path::toString)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                // Left behind by a crash while the segment was being written; its payments never left the hot store
+                Files.delete(file);
+            } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                ArchiveSegment segment = ArchiveSegment.open(file);
+                segments.add(segment);
+                paymentCount.addAndGet(segment.paymentCount());
+                nextSequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1;
+            }
+        }
+        logger.info("Opened payment archive in {} with {} segments and {} payments", directory, segments.size(), paymentCount.get());
+    }
+
+    /**
+     * Writes {@code payments} to a new segment. Once this returns, they can be read back from the archive.
+     */
+    public synchronized void append(List<PostPaymentResponseDto> payments) throws IOException {
+        if (payments.isEmpty()) {
+            return;
+        }
+        List<PostPaymentResponseDto> sorted = new ArrayList<>(payments);
+        sorted.sort(Comparator.comparing(PostPaymentResponseDto::id));
+        Path file = directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        ArchiveSegment segment = ArchiveSegment.write(file, sorted, blockPayments);
+        nextSequence++;
+        segments.add(segment);
+        paymentCount.addAndGet(segment.paymentCount());
+    }
+
+    public Optional<PostPaymentResponseDto> get(String id) {
+        // Newest first: recent payments are the likeliest to be asked for
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ArchiveSegment segment = segments.get(i);
+            if (!segment.mayContain(id)) {
+                continue;
+            }
+            try {
+                Optional<PostPaymentResponseDto> payment = segment.get(id);
+                if (payment.isPresent()) {
+                    return payment;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read archive segment " + segment.file(), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public long size() {
+        return paymentCount.get();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+}
@@ -0,0 +1,140 @@
+package org.checkout.archive;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IPaymentsRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps recent payments in an in-memory {@link PaymentsRepository} and moves them to a {@link PaymentArchive} once
+ * they are older than the hot retention period. Reads check memory first and fall back to the archive, so archived
+ * payments stay readable by id.
+ *
+ * <p>Payments are archived in full segments of {@code segmentPayments}, oldest first, once that many have aged out;
+ * fewer stay in memory until the next check, which keeps the segment count down over years of history. A payment
+ * is only removed from memory after the segment holding it is on disk, so a read finds it in one tier or the other.
+ */
+public class TieredPaymentsRepository implements IPaymentsRepository, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TieredPaymentsRepository.class);
+
+    private final PaymentsRepository hot = new PaymentsRepository();
+    private final Queue<Arrival> arrivals = new ConcurrentLinkedQueue<>();
+    private final PaymentArchive archive;
+    private final Duration hotRetention;
+    private final int segmentPayments;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param hotRetention    how long a payment stays in memory after it is stored
+     * @param segmentPayments payments written to each archive segment
+     * @param checkInterval   how often aged payments are looked for
+     */
+    public TieredPaymentsRepository(PaymentArchive archive, Duration hotRetention, int segmentPayments, Duration checkInterval) {
+        this(archive, hotRetention, segmentPayments, Clock.systemUTC());
+        scheduler.scheduleWithFixedDelay(this::archiveAgedSafely, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    TieredPaymentsRepository(PaymentArchive archive, Duration hotRetention, int segmentPayments, Clock clock) {
+        this.archive = archive;
+        this.hotRetention = hotRetention;
+        this.segmentPayments = segmentPayments;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto postPaymentResponseDto) {
+        hot.add(postPaymentResponseDto);
+        arrivals.add(new Arrival(postPaymentResponseDto.id(), clock.millis()));
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        Optional<PostPaymentResponseDto> payment = hot.get(id);
+        return payment.isPresent() ? payment : archive.get(id);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, hot.size() + archive.size());
+    }
+
+    public int hotSize() {
+        return hot.size();
+    }
+
+    public PaymentArchive archive() {
+        return archive;
+    }
+
+    /**
+     * Archives full segments of payments older than the hot retention period and returns how many were archived.
+     * Only one thread may call this at a time.
+     */
+    int archiveAged() throws IOException {
+        long cutoff = clock.millis() - hotRetention.toMillis();
+        int archived = 0;
+        while (true) {
+            List<Arrival> aged = new ArrayList<>(segmentPayments);
+            Iterator<Arrival> oldest = arrivals.iterator();
+            while (aged.size() < segmentPayments && oldest.hasNext()) {
+                Arrival arrival = oldest.next();
+                if (arrival.storedAtMillis() > cutoff) {
+                    break;
+                }
+                aged.add(arrival);
+            }
+            if (aged.size() < segmentPayments) {
+                return archived;
+            }
+
+            List<PostPaymentResponseDto> payments = new ArrayList<>(aged.size());
+            for (Arrival arrival : aged) {
+                hot.get(arrival.id()).ifPresent(payments::add);
+            }
+            archive.append(payments);
+            for (int i = 0; i < aged.size(); i++) {
+                hot.remove(arrivals.poll().id());
+            }
+            archived += payments.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void archiveAgedSafely() {
+        try {
+            int archived = archiveAged();
+            if (archived > 0) {
+                logger.info("Archived {} payments, {} archive segments", archived, archive.segmentCount());
+            }
+        } catch (IOException | RuntimeException e) {
+            // The payments stay in memory and the next check tries again
+            logger.error("Failed to archive aged payments", e);
+        }
+    }
+
+    private record Arrival(String id, long storedAtMillis) {}
+}
@@ -7,6 +7,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.jfr.BankCallEvent;
+import org.checkout.logging.RateLimitedLogger;
 import org.checkout.models.Payment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +23,7 @@ import java.net.SocketException;
 public class BankSimulatorClient implements BankClient {
 
     private static final Logger logger = LoggerFactory.getLogger(BankSimulatorClient.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger);
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
 
     private final OkHttpClient httpClient;
@@ -38,26 +41,63 @@ public class BankSimulatorClient implements BankClient {
     }
 
     public BankPaymentResponse makePayment(BankPaymentRequest request) throws BankPaymentFailedException {
+        BankCallEvent event = new BankCallEvent();
+        event.begin();
+        try {
+            BankPaymentResponse response = sendPayment(request, event);
+            event.authorized = response.authorized();
+            return response;
+        } catch (BankPaymentFailedException e) {
+            if (event.errorType == null) {
+                event.errorType = e.getClass().getSimpleName();
+            }
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.maskedCardNumber = request.maskedCardNumber();
+                event.currency = request.currency();
+                event.amount = request.amount() == null ? 0 : request.amount();
+                event.commit();
+            }
+        }
+    }
+
+    private BankPaymentResponse sendPayment(BankPaymentRequest request, BankCallEvent event) throws BankPaymentFailedException {
         Request httpRequest = buildHttpRequest(request);
         
         try (Response response = httpClient.newCall(httpRequest).execute()) {
+            event.statusCode = response.code();
             if (!response.isSuccessful()) {
-                logger.error("Bank rejected the payment request {} with status code: {} and response {}", request, response.code(), response.body().string());
-                throw new BankPaymentFailedException("Bank rejected the payment request. This could be due to invalid payment details");
+                // The body is not read: during a decline storm it is pure overhead, and the status says enough
+                rateLimitedLogger.atWarn("bank_rejected")
+                        .addKeyValue("status", response.code())
+                        .addKeyValue("card", request.maskedCardNumber())
+                        .addKeyValue("currency", request.currency())
+                        .addKeyValue("amount", request.amount())
+                        .log("Bank rejected the payment request");
+                // A 4xx means the bank refused the request; a 5xx may come after it has already charged
+                if (response.code() >= 500) {
+                    throw new BankPaymentFailedException("The bank failed while processing the payment request. The outcome of this payment is unknown");
+                }
+                throw new BankPaymentFailedException("Bank rejected the payment request. This could be due to invalid payment details", false);
             }
             
             return parseResponse(response);
         } catch (ConnectException e) {
+            event.errorType = e.getClass().getSimpleName();
             // Failed to establish initial connection
-            logger.error("Unable to establish connection with bank", e);
-            throw new BankPaymentFailedException("Unable to establish connection with bank. The payment was not processed");
+            rateLimitedLogger.atError("bank_connect_failed").setCause(e).log("Unable to establish connection with bank");
+            throw new BankPaymentFailedException("Unable to establish connection with bank. The payment was not processed", false);
         } catch (SocketException e) {
+            event.errorType = e.getClass().getSimpleName();
             // Connection was established but lost during transmission
-            logger.error("Connection lost while communicating with bank", e);
+            rateLimitedLogger.atError("bank_connection_lost").setCause(e).log("Connection lost while communicating with bank");
             throw new BankPaymentFailedException("The outcome of this payment is unknown due to a communication error with the bank");
         } catch (IOException e) {
+            event.errorType = e.getClass().getSimpleName();
             // Other IO related errors
-            logger.error("Bank communication error", e);
+            rateLimitedLogger.atError("bank_io_error").setCause(e).log("Bank communication error");
             throw new BankPaymentFailedException("The outcome of this payment is unknown due to a communication error with the bank");
         }
     }
@@ -68,7 +108,7 @@ public class BankSimulatorClient implements BankClient {
             jsonRequest = objectMapper.writeValueAsString(request);
         } catch (IOException e) {
             logger.error("Failed to serialize bank payment request", e);
-            throw new BankPaymentFailedException("Failed to prepare bank payment request. The payment was not processed");
+            throw new BankPaymentFailedException("Failed to prepare bank payment request. The payment was not processed", false);
         }
 
         try {
@@ -78,13 +118,13 @@ public class BankSimulatorClient implements BankClient {
                     .build();
         } catch (IllegalArgumentException e) {
             logger.error("Failed to create bank HTTP request", e);
-            throw new BankPaymentFailedException("Failed to prepare bank payment request. The payment was not processed");
+            throw new BankPaymentFailedException("Failed to prepare bank payment request. The payment was not processed", false);
         }
     }
 
     private BankPaymentResponse parseResponse(Response response) throws IOException, BankPaymentFailedException {
         if (response.body() == null) {
-            logger.error("Bank returned empty response");
+            rateLimitedLogger.atError("bank_empty_response").log("Bank returned empty response");
             throw new BankPaymentFailedException("The bank returned an empty response. The outcome of this payment is unknown");
         }
 
@@ -92,7 +132,10 @@ public class BankSimulatorClient implements BankClient {
         try {
             return objectMapper.readValue(responseBody, BankPaymentResponse.class);
         } catch (IOException e) {
-            logger.error("Failed to parse bank response: {}", responseBody, e);
+            rateLimitedLogger.atError("bank_invalid_response")
+                    .addKeyValue("body", responseBody)
+                    .setCause(e)
+                    .log("Failed to parse bank response");
             throw new BankPaymentFailedException("The bank returned an invalid response. The outcome of this payment is unknown");
         }
     }
@@ -107,14 +150,14 @@ public class BankSimulatorClient implements BankClient {
     @Override
     public String toString() {
         return "BankPaymentRequest[" +
-                "cardNumber=" + maskCardNumber(cardNumber) +
+                "cardNumber=" + maskedCardNumber() +
                 ", expiryDate=" + expiryDate +
                 ", currency=" + currency +
                 ", amount=" + amount +
                 ", cvv=***]";
     }
 
-    private String maskCardNumber(String cardNumber) {
+    public String maskedCardNumber() {
         if (cardNumber == null || cardNumber.length() < 4) {
             return "****";
         }
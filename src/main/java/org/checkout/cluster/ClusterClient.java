@@ -0,0 +1,171 @@
+package org.checkout.cluster;
+
+import org.checkout.exceptions.ClusterCommunicationException;
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Client for one peer node. Connections are persistent and pooled, so a request costs one round trip on an already
+ * open socket. A connection that fails mid-request is discarded rather than returned to the pool.
+ */
+class ClusterClient implements AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+    private static final int READ_TIMEOUT_MILLIS = 5_000;
+
+    private final ClusterNode peer;
+    private final BlockingQueue<Connection> idle;
+
+    ClusterClient(ClusterNode peer, int maxIdleConnections) {
+        this.peer = peer;
+        this.idle = new ArrayBlockingQueue<>(maxIdleConnections);
+    }
+
+    void put(PostPaymentResponseDto payment) {
+        execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.PUT);
+            ClusterProtocol.writePayment(connection.out, payment);
+            connection.out.flush();
+            expectAck(connection);
+            return null;
+        });
+    }
+
+    Optional<PostPaymentResponseDto> get(String id) {
+        return execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.GET);
+            connection.out.writeUTF(id);
+            connection.out.flush();
+            byte status = connection.in.readByte();
+            return status == ClusterProtocol.FOUND
+                    ? Optional.of(ClusterProtocol.readPayment(connection.in))
+                    : Optional.empty();
+        });
+    }
+
+    void transfer(Collection<PostPaymentResponseDto> payments) {
+        execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.TRANSFER);
+            connection.out.writeInt(payments.size());
+            for (PostPaymentResponseDto payment : payments) {
+                ClusterProtocol.writePayment(connection.out, payment);
+            }
+            connection.out.flush();
+            expectAck(connection);
+            return null;
+        });
+    }
+
+    List<ClusterNode> join(ClusterNode node) {
+        return execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.JOIN);
+            ClusterProtocol.writeNode(connection.out, node);
+            connection.out.flush();
+            int count = connection.in.readInt();
+            List<ClusterNode> members = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                members.add(ClusterProtocol.readNode(connection.in));
+            }
+            return members;
+        });
+    }
+
+    void leave(ClusterNode node) {
+        execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.LEAVE);
+            ClusterProtocol.writeNode(connection.out, node);
+            connection.out.flush();
+            expectAck(connection);
+            return null;
+        });
+    }
+
+    void handedOver(ClusterNode node, Collection<ClusterNode> members) {
+        execute(connection -> {
+            connection.out.writeByte(ClusterProtocol.HANDED_OVER);
+            ClusterProtocol.writeNode(connection.out, node);
+            connection.out.writeInt(members.size());
+            for (ClusterNode member : members) {
+                ClusterProtocol.writeNode(connection.out, member);
+            }
+            connection.out.flush();
+            expectAck(connection);
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private <T> T execute(Exchange<T> exchange) {
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = Connection.open(peer);
+            }
+            T result = exchange.apply(connection);
+            if (!idle.offer(connection)) {
+                connection.close();
+            }
+            return result;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            throw new ClusterCommunicationException("Unable to reach cluster node " + peer, e);
+        }
+    }
+
+    private static void expectAck(Connection connection) throws IOException {
+        byte reply = connection.in.readByte();
+        if (reply != ClusterProtocol.ACK) {
+            throw new IOException("Unexpected reply " + reply);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Exchange<T> {
+        T apply(Connection connection) throws IOException;
+    }
+
+    private record Connection(Socket socket, DataInputStream in, DataOutputStream out) {
+
+        static Connection open(ClusterNode peer) throws IOException {
+            Socket socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.connect(new InetSocketAddress(peer.host(), peer.port()), CONNECT_TIMEOUT_MILLIS);
+            return new Connection(
+                    socket,
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))
+            );
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with a broken connection
+            }
+        }
+    }
+}
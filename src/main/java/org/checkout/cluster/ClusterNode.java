@@ -0,0 +1,29 @@
+package org.checkout.cluster;
+
+/**
+ * Address of a gateway node's internal cluster port.
+ */
+public record ClusterNode(String host, int port) implements Comparable<ClusterNode> {
+
+    public static ClusterNode parse(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0 || separator == address.length() - 1) {
+            throw new IllegalArgumentException("Cluster node address must be host:port but was " + address);
+        }
+        return new ClusterNode(address.substring(0, separator).trim(), Integer.parseInt(address.substring(separator + 1).trim()));
+    }
+
+    public String id() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public int compareTo(ClusterNode other) {
+        return id().compareTo(other.id());
+    }
+
+    @Override
+    public String toString() {
+        return id();
+    }
+}
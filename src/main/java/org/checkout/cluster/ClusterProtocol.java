@@ -0,0 +1,57 @@
+package org.checkout.cluster;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.PaymentCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary protocol spoken between cluster nodes over persistent TCP connections. Every request is a one-byte opcode
+ * followed by its payload, and every request gets exactly one reply.
+ *
+ * <pre>
+ * PUT      payment                  -> ACK
+ * GET      id                       -> FOUND payment | NOT_FOUND
+ * TRANSFER count, payment*          -> ACK
+ * JOIN     node                     -> count, node*   (the receiver's view of the membership)
+ * LEAVE    node                     -> ACK
+ * HANDED_OVER node, count, node*    -> ACK   (the sender has handed over everything it no longer owns under that membership)
+ * </pre>
+ *
+ * Payments are encoded with {@link PaymentCodec}.
+ */
+final class ClusterProtocol {
+
+    static final byte PUT = 1;
+    static final byte GET = 2;
+    static final byte TRANSFER = 3;
+    static final byte JOIN = 4;
+    static final byte LEAVE = 5;
+    static final byte HANDED_OVER = 6;
+
+    static final byte ACK = 0;
+    static final byte FOUND = 1;
+    static final byte NOT_FOUND = 2;
+
+    private ClusterProtocol() {
+    }
+
+    static void writePayment(DataOutputStream out, PostPaymentResponseDto payment) throws IOException {
+        PaymentCodec.write(out, payment);
+    }
+
+    static PostPaymentResponseDto readPayment(DataInputStream in) throws IOException {
+        return PaymentCodec.read(in);
+    }
+
+    static void writeNode(DataOutputStream out, ClusterNode node) throws IOException {
+        out.writeUTF(node.host());
+        out.writeInt(node.port());
+    }
+
+    static ClusterNode readNode(DataInputStream in) throws IOException {
+        return new ClusterNode(in.readUTF(), in.readInt());
+    }
+}
@@ -0,0 +1,145 @@
+package org.checkout.cluster;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts connections from peer nodes and serves {@link ClusterProtocol} requests. Each connection is handled on
+ * its own virtual thread, so idle peer connections cost almost nothing.
+ */
+class ClusterServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterServer.class);
+
+    /**
+     * Operations the server delegates to the local node.
+     */
+    interface Handler {
+        void storeLocally(PostPaymentResponseDto payment);
+        Optional<PostPaymentResponseDto> getLocally(String id);
+        Collection<ClusterNode> onJoin(ClusterNode node);
+        void onLeave(ClusterNode node);
+        void onHandedOver(ClusterNode node, Collection<ClusterNode> members);
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Handler handler;
+
+    ClusterServer(String host, int port, Handler handler) throws IOException {
+        this.handler = handler;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(host, port));
+        Thread acceptor = new Thread(this::acceptConnections, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close cluster server socket", e);
+        }
+        connections.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.submit(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Failed to accept cluster connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                handle(in.readByte(), in, out);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // Peer closed the connection
+        } catch (IOException e) {
+            logger.debug("Cluster connection closed", e);
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ClusterProtocol.PUT -> {
+                handler.storeLocally(ClusterProtocol.readPayment(in));
+                out.writeByte(ClusterProtocol.ACK);
+            }
+            case ClusterProtocol.GET -> {
+                Optional<PostPaymentResponseDto> payment = handler.getLocally(in.readUTF());
+                if (payment.isPresent()) {
+                    out.writeByte(ClusterProtocol.FOUND);
+                    ClusterProtocol.writePayment(out, payment.get());
+                } else {
+                    out.writeByte(ClusterProtocol.NOT_FOUND);
+                }
+            }
+            case ClusterProtocol.TRANSFER -> {
+                int count = in.readInt();
+                List<PostPaymentResponseDto> payments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    payments.add(ClusterProtocol.readPayment(in));
+                }
+                payments.forEach(handler::storeLocally);
+                out.writeByte(ClusterProtocol.ACK);
+            }
+            case ClusterProtocol.JOIN -> {
+                Collection<ClusterNode> members = handler.onJoin(ClusterProtocol.readNode(in));
+                out.writeInt(members.size());
+                for (ClusterNode member : members) {
+                    ClusterProtocol.writeNode(out, member);
+                }
+            }
+            case ClusterProtocol.LEAVE -> {
+                handler.onLeave(ClusterProtocol.readNode(in));
+                out.writeByte(ClusterProtocol.ACK);
+            }
+            case ClusterProtocol.HANDED_OVER -> {
+                ClusterNode node = ClusterProtocol.readNode(in);
+                int count = in.readInt();
+                List<ClusterNode> members = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    members.add(ClusterProtocol.readNode(in));
+                }
+                handler.onHandedOver(node, members);
+                out.writeByte(ClusterProtocol.ACK);
+            }
+            default -> throw new IOException("Unknown cluster opcode " + op);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.checkout.cluster;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring over payment ids. Each node is placed at a number of virtual points so keys spread
+ * evenly, and adding or removing a node only moves the keys between it and its neighbours. Membership changes return
+ * a new ring, which lets readers use the current ring without locking.
+ */
+public final class ConsistentHashRing {
+
+    private final int virtualNodes;
+    private final NavigableMap<Long, ClusterNode> points;
+    private final Set<ClusterNode> nodes;
+
+    public ConsistentHashRing(int virtualNodes) {
+        this(virtualNodes, new TreeMap<>(), new TreeSet<>());
+    }
+
+    private ConsistentHashRing(int virtualNodes, NavigableMap<Long, ClusterNode> points, Set<ClusterNode> nodes) {
+        this.virtualNodes = virtualNodes;
+        this.points = points;
+        this.nodes = nodes;
+    }
+
+    public ConsistentHashRing withNode(ClusterNode node) {
+        if (nodes.contains(node)) {
+            return this;
+        }
+        TreeMap<Long, ClusterNode> newPoints = new TreeMap<>(points);
+        for (int i = 0; i < virtualNodes; i++) {
+            newPoints.put(hash(node.id() + "#" + i), node);
+        }
+        Set<ClusterNode> newNodes = new TreeSet<>(nodes);
+        newNodes.add(node);
+        return new ConsistentHashRing(virtualNodes, newPoints, newNodes);
+    }
+
+    public ConsistentHashRing withoutNode(ClusterNode node) {
+        if (!nodes.contains(node)) {
+            return this;
+        }
+        TreeMap<Long, ClusterNode> newPoints = new TreeMap<>(points);
+        newPoints.values().removeIf(node::equals);
+        Set<ClusterNode> newNodes = new TreeSet<>(nodes);
+        newNodes.remove(node);
+        return new ConsistentHashRing(virtualNodes, newPoints, newNodes);
+    }
+
+    /**
+     * Returns the node that owns the key: the first virtual point clockwise from the key's hash.
+     * @throws IllegalStateException if the ring has no nodes
+     */
+    public ClusterNode ownerOf(String key) {
+        if (points.isEmpty()) {
+            throw new IllegalStateException("The cluster ring has no nodes");
+        }
+        Map.Entry<Long, ClusterNode> owner = points.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<ClusterNode> nodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public boolean contains(ClusterNode node) {
+        return nodes.contains(node);
+    }
+
+    // 64-bit FNV-1a followed by the MurmurHash3 finaliser, which spreads similar keys such as "node#1" and "node#2"
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
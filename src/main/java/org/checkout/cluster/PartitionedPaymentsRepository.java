@@ -0,0 +1,324 @@
+package org.checkout.cluster;
+
+import org.checkout.exceptions.ClusterCommunicationException;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IPaymentsRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Payment repository partitioned across the nodes of a cluster. Payment ids are placed on a
+ * {@link ConsistentHashRing}, and reads and writes for an id are routed to the node that owns it, either locally or
+ * over the {@link ClusterProtocol}. This lets any node answer {@code GET /api/payments/{id}} regardless of which node
+ * handled the POST.
+ *
+ * <p>When a node joins, existing members hand over the payments it now owns. When a node leaves, the others stop
+ * routing to it and it then hands all of its payments to their new owners. While a hand-over is in flight, a read
+ * that misses on the new owner falls back to the owner under the previous ring, including a node that has left but is
+ * still handing over. Every node tells the others once it has handed over everything it no longer owns, and the
+ * fallback stops once every member of the previous ring has done so for the current membership. A hand-over that
+ * fails is retried until it succeeds or the membership changes again.
+ *
+ * <p>Membership is only changed by explicit joins and leaves. Crashed nodes are not detected.
+ */
+public class PartitionedPaymentsRepository implements IPaymentsRepository, ClusterServer.Handler, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedPaymentsRepository.class);
+
+    private static final int TRANSFER_BATCH_SIZE = 512;
+    private static final int MAX_IDLE_CONNECTIONS_PER_PEER = 16;
+    private static final long TRANSFER_RETRY_DELAY_MILLIS = 1_000;
+
+    private final ClusterNode self;
+    private final PaymentsRepository localPayments = new PaymentsRepository();
+    private final Map<ClusterNode, ClusterClient> peers = new ConcurrentHashMap<>();
+    // Membership each node last reported to have finished its hand-over for
+    private final Map<ClusterNode, Set<ClusterNode>> handedOver = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ClusterServer server;
+
+    private volatile ConsistentHashRing ring;
+    private volatile ConsistentHashRing previousRing;
+
+    /**
+     * Starts the cluster listener. Pass port 0 to bind an ephemeral port. The node starts as a single-node cluster;
+     * call {@link #join(Collection)} to join existing members.
+     */
+    public PartitionedPaymentsRepository(String host, int port, int virtualNodes) throws IOException {
+        this.server = new ClusterServer(host, port, this);
+        this.self = new ClusterNode(host, server.port());
+        this.ring = new ConsistentHashRing(virtualNodes).withNode(self);
+    }
+
+    public ClusterNode self() {
+        return self;
+    }
+
+    public Collection<ClusterNode> members() {
+        return ring.nodes();
+    }
+
+    /**
+     * Joins the cluster through any of the given seeds. The seed replies with the membership, and every other member
+     * is then told about this node so it can hand over the payments this node now owns.
+     */
+    public void join(Collection<ClusterNode> seeds) {
+        for (ClusterNode seed : seeds) {
+            if (seed.equals(self)) {
+                continue;
+            }
+            List<ClusterNode> members = peer(seed).join(self);
+            changeRing(current -> {
+                ConsistentHashRing joined = current;
+                for (ClusterNode member : members) {
+                    joined = joined.withNode(member);
+                }
+                return joined;
+            });
+            for (ClusterNode member : members) {
+                if (!member.equals(self) && !member.equals(seed)) {
+                    peer(member).join(self);
+                }
+            }
+            logger.info("Node {} joined cluster with members {}", self, ring.nodes());
+            return;
+        }
+    }
+
+    /**
+     * Leaves the cluster: members stop routing to this node, then every local payment is handed to its new owner.
+     */
+    public void leave() {
+        ConsistentHashRing remaining = ring.withoutNode(self);
+        if (!ring.contains(self) || remaining.nodes().isEmpty()) {
+            return;
+        }
+        for (ClusterNode member : remaining.nodes()) {
+            peer(member).leave(self);
+        }
+        changeRing(current -> current.withoutNode(self));
+        awaitRebalance();
+        logger.info("Node {} left the cluster", self);
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto payment) {
+        ClusterNode owner = ring.ownerOf(payment.id());
+        if (owner.equals(self)) {
+            localPayments.add(payment);
+        } else {
+            peer(owner).put(payment);
+        }
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        ClusterNode owner = ring.ownerOf(id);
+        Optional<PostPaymentResponseDto> payment = getFrom(owner, id);
+        ConsistentHashRing previous = previousRing;
+        if (payment.isEmpty() && previous != null) {
+            ClusterNode previousOwner = previous.ownerOf(id);
+            if (!previousOwner.equals(owner)) {
+                payment = getFromPreviousOwner(previousOwner, id);
+            }
+        }
+        return payment;
+    }
+
+    /**
+     * Number of payments held on this node.
+     */
+    @Override
+    public int size() {
+        return localPayments.size();
+    }
+
+    @Override
+    public void storeLocally(PostPaymentResponseDto payment) {
+        localPayments.add(payment);
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> getLocally(String id) {
+        return localPayments.get(id);
+    }
+
+    @Override
+    public Collection<ClusterNode> onJoin(ClusterNode node) {
+        changeRing(current -> current.withNode(node));
+        logger.info("Node {} joined, members are now {}", node, ring.nodes());
+        return ring.nodes();
+    }
+
+    @Override
+    public void onLeave(ClusterNode node) {
+        handedOver.remove(node);
+        changeRing(current -> current.withoutNode(node));
+        logger.info("Node {} left, members are now {}", node, ring.nodes());
+    }
+
+    @Override
+    public void onHandedOver(ClusterNode node, Collection<ClusterNode> members) {
+        handedOver.put(node, Set.copyOf(members));
+        clearPreviousRingIfHandedOver();
+    }
+
+    @Override
+    public void close() {
+        leave();
+        server.close();
+        rebalancer.shutdownNow();
+        peers.values().forEach(ClusterClient::close);
+    }
+
+    /**
+     * Whether reads that miss still fall back to the owner under the previous ring.
+     */
+    boolean handOverInFlight() {
+        return previousRing != null;
+    }
+
+    void awaitRebalance() {
+        try {
+            rebalancer.submit(() -> { }).get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Rebalance did not complete", e);
+        }
+    }
+
+    private synchronized void changeRing(UnaryOperator<ConsistentHashRing> change) {
+        ConsistentHashRing newRing = change.apply(ring);
+        if (newRing != ring) {
+            previousRing = ring;
+            ring = newRing;
+            rebalancer.submit(this::rebalance);
+            clearPreviousRingIfHandedOver();
+        }
+    }
+
+    private synchronized void clearPreviousRingIfHandedOver() {
+        ConsistentHashRing previous = previousRing;
+        if (previous == null) {
+            return;
+        }
+        Set<ClusterNode> members = ring.nodes();
+        for (ClusterNode node : previous.nodes()) {
+            // A node that has left is waited for too, since until then it still holds some of the payments
+            if (!members.equals(handedOver.get(node))) {
+                return;
+            }
+        }
+        previousRing = null;
+        for (ClusterNode node : previous.nodes()) {
+            if (!members.contains(node)) {
+                handedOver.remove(node);
+                ClusterClient client = peers.remove(node);
+                if (client != null) {
+                    client.close();
+                }
+            }
+        }
+        logger.info("Hand-over to members {} completed", members);
+    }
+
+    // Hands every local payment that this node no longer owns to its owner, in batches, removing it only once the
+    // owner has acknowledged it. Once everything is handed over, the other members are told so.
+    private void rebalance() {
+        ConsistentHashRing current = ring;
+        if (current.nodes().isEmpty()) {
+            return;
+        }
+        Map<ClusterNode, List<PostPaymentResponseDto>> moves = new HashMap<>();
+        for (PostPaymentResponseDto payment : localPayments.values()) {
+            ClusterNode owner = current.ownerOf(payment.id());
+            if (!owner.equals(self)) {
+                moves.computeIfAbsent(owner, node -> new ArrayList<>()).add(payment);
+            }
+        }
+
+        boolean complete = true;
+        for (Map.Entry<ClusterNode, List<PostPaymentResponseDto>> move : moves.entrySet()) {
+            complete &= handOver(move.getKey(), move.getValue());
+        }
+
+        if (!complete) {
+            // A later membership change has queued its own rebalance, which covers whatever is left
+            if (ring == current) {
+                rebalancer.schedule(this::rebalance, TRANSFER_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        announceHandOver(current.nodes());
+    }
+
+    private boolean handOver(ClusterNode owner, List<PostPaymentResponseDto> payments) {
+        for (int from = 0; from < payments.size(); from += TRANSFER_BATCH_SIZE) {
+            List<PostPaymentResponseDto> batch = payments.subList(from, Math.min(from + TRANSFER_BATCH_SIZE, payments.size()));
+            try {
+                peer(owner).transfer(batch);
+                batch.forEach(payment -> localPayments.remove(payment.id()));
+            } catch (RuntimeException e) {
+                logger.error("Failed to hand over {} payments to {}, retrying in {} ms",
+                        payments.size() - from, owner, TRANSFER_RETRY_DELAY_MILLIS, e);
+                return false;
+            }
+        }
+        logger.info("Handed over {} payments to {}", payments.size(), owner);
+        return true;
+    }
+
+    private void announceHandOver(Set<ClusterNode> members) {
+        handedOver.put(self, members);
+        for (ClusterNode member : members) {
+            if (!member.equals(self)) {
+                try {
+                    peer(member).handedOver(self, members);
+                } catch (ClusterCommunicationException e) {
+                    // The member keeps falling back to the previous ring, which costs it extra hops but no payments
+                    logger.warn("Failed to tell {} that the hand-over completed", member, e);
+                }
+            }
+        }
+        clearPreviousRingIfHandedOver();
+    }
+
+    private Optional<PostPaymentResponseDto> getFrom(ClusterNode node, String id) {
+        return node.equals(self) ? localPayments.get(id) : peer(node).get(id);
+    }
+
+    // A node that has left may have finished its hand-over and shut down before telling this node, in which case
+    // every payment it held is on its new owner already
+    private Optional<PostPaymentResponseDto> getFromPreviousOwner(ClusterNode node, String id) {
+        if (ring.contains(node) || node.equals(self)) {
+            return getFrom(node, id);
+        }
+        try {
+            return peer(node).get(id);
+        } catch (ClusterCommunicationException e) {
+            logger.debug("Node {} that left did not answer a read of {}", node, id, e);
+            return Optional.empty();
+        }
+    }
+
+    private ClusterClient peer(ClusterNode node) {
+        return peers.computeIfAbsent(node, peer -> new ClusterClient(peer, MAX_IDLE_CONNECTIONS_PER_PEER));
+    }
+}
@@ -0,0 +1,119 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import org.checkout.events.LogEntry;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.SegmentedEventLog;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class EventLogController {
+
+    public static final String START_OFFSET_HEADER = "Cko-Log-Start-Offset";
+    public static final String END_OFFSET_HEADER = "Cko-Log-End-Offset";
+
+    private static final int READ_BATCH = 1_000;
+    private static final int MAX_LIMIT = 100_000;
+    private static final long MAX_WAIT_MILLIS = 30_000;
+
+    private final SegmentedEventLog eventLog;
+
+    public EventLogController(SegmentedEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Streams events from {@code from_offset} as newline-delimited JSON, one event per line. If there is nothing to
+     * read yet, waits up to {@code wait_ms} for the next event, so a consumer can tail the log with back-to-back
+     * requests, continuing from the last offset it received plus one. The wait runs on a virtual thread of its own,
+     * so consumers waiting for events do not hold Jetty threads.
+     */
+    public void getEvents(Context ctx) throws IOException {
+        long fromOffset = ctx.queryParamAsClass("from_offset", Long.class)
+            .check(offset -> offset >= 0, "Offset must not be negative")
+            .getOrDefault(0L);
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+            .check(value -> value > 0 && value <= MAX_LIMIT, "Limit must be between 1 and " + MAX_LIMIT)
+            .getOrDefault(10_000);
+        long waitMillis = ctx.queryParamAsClass("wait_ms", Long.class)
+            .check(value -> value >= 0 && value <= MAX_WAIT_MILLIS, "Wait must be between 0 and " + MAX_WAIT_MILLIS + " ms")
+            .getOrDefault(0L);
+
+        if (waitMillis == 0) {
+            writeEvents(ctx, fromOffset, limit);
+            return;
+        }
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        Thread.ofVirtual().name("event-log-poll").start(() -> {
+            try {
+                eventLog.awaitAppend(fromOffset, Duration.ofMillis(waitMillis));
+                writeEvents(ctx, fromOffset, limit);
+                completion.complete(null);
+            } catch (Throwable e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        ctx.future(() -> completion);
+    }
+
+    private void writeEvents(Context ctx, long fromOffset, int limit) throws IOException {
+        ctx.contentType("application/x-ndjson");
+        ctx.header(START_OFFSET_HEADER, String.valueOf(eventLog.startOffset()));
+        ctx.header(END_OFFSET_HEADER, String.valueOf(eventLog.nextOffset()));
+
+        OutputStream out = new BufferedOutputStream(ctx.outputStream(), 64 * 1024);
+        StringBuilder line = new StringBuilder(160);
+        long offset = fromOffset;
+        int remaining = limit;
+        while (remaining > 0) {
+            List<LogEntry> entries = eventLog.read(offset, Math.min(READ_BATCH, remaining));
+            if (entries.isEmpty()) {
+                break;
+            }
+            for (LogEntry entry : entries) {
+                out.write(toJson(entry, line).getBytes(StandardCharsets.UTF_8));
+            }
+            offset = entries.getLast().offset() + 1;
+            remaining -= entries.size();
+        }
+        out.flush();
+    }
+
+    // Every field but the caller id is generated by the gateway (ids, enum names, currency codes, numbers), so only
+    // the caller id needs escaping
+    private static String toJson(LogEntry entry, StringBuilder line) {
+        PaymentEvent event = entry.event();
+        line.setLength(0);
+        line.append("{\"offset\":").append(entry.offset())
+            .append(",\"type\":\"").append(event.type().name())
+            .append("\",\"payment_id\":\"").append(event.paymentId())
+            .append("\",\"currency\":\"").append(event.currency())
+            .append("\",\"amount\":").append(event.amount())
+            .append(",\"timestamp\":").append(event.timestampMillis());
+        if (event.callerId() != null) {
+            appendString(line.append(",\"caller_id\":"), event.callerId());
+        }
+        return line.append("}\n").toString();
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
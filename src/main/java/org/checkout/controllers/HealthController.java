@@ -0,0 +1,35 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public class HealthController {
+
+    private final BooleanSupplier ready;
+
+    public HealthController(BooleanSupplier ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Liveness: the process is up and serving HTTP.
+     */
+    public void health(Context ctx) {
+        ctx.json(Map.of("status", "UP"));
+    }
+
+    /**
+     * Readiness: warm-up has finished and the instance can take production traffic.
+     */
+    public void ready(Context ctx) {
+        if (ready.getAsBoolean()) {
+            ctx.json(Map.of("status", "READY"));
+        } else {
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+            ctx.json(Map.of("status", "WARMING_UP"));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import org.checkout.metrics.PaymentMetrics;
+
+public class MetricsController {
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PaymentMetrics paymentMetrics;
+
+    public MetricsController(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    public void getMetrics(Context ctx) {
+        ctx.contentType(PROMETHEUS_CONTENT_TYPE);
+        ctx.result(paymentMetrics.scrape());
+    }
+}
@@ -2,35 +2,139 @@ package org.checkout.controllers;
 
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
+import io.javalin.validation.BodyValidator;
+import io.javalin.validation.ValidationError;
+import org.checkout.logging.RateLimitedLogger;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.metrics.PaymentMetrics.Stage;
 import org.checkout.services.IPaymentService;
-import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.services.PaymentResult;
 import org.checkout.models.Payment;
 import org.checkout.models.PostPaymentRequestDto;
-import org.checkout.models.PostPaymentResponseDto;
-import org.checkout.models.ValidationResult.ValidationException;
+import org.checkout.models.ValidationResult;
+import org.checkout.vault.CardVault;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class PaymentGatewayController implements IPaymentGatewayController {
 
+    public static final String CALLER_ID_HEADER = "Cko-Caller-Id";
+    // Set on the response to a retried request that was answered from the idempotency key store
+    public static final String REPLAYED_HEADER = "Cko-Idempotent-Replayed";
+
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(LoggerFactory.getLogger(PaymentGatewayController.class));
+
     private final IPaymentService paymentService;
+    private final PaymentMetrics paymentMetrics;
+    private final CardVault cardVault;
 
     public PaymentGatewayController(IPaymentService paymentService) {
+        this(paymentService, new PaymentMetrics());
+    }
+
+    public PaymentGatewayController(IPaymentService paymentService, PaymentMetrics paymentMetrics) {
+        this(paymentService, paymentMetrics, null);
+    }
+
+    /**
+     * @param cardVault vault that {@code card_token} payments are looked up in, or {@code null} to accept only cards
+     */
+    public PaymentGatewayController(IPaymentService paymentService, PaymentMetrics paymentMetrics, CardVault cardVault) {
         this.paymentService = paymentService;
+        this.paymentMetrics = paymentMetrics;
+        this.cardVault = cardVault;
     }
 
-    public void postPayment(Context ctx) throws BankPaymentFailedException, ValidationException {
-        PostPaymentRequestDto postPaymentRequestDto = ctx.bodyValidator(PostPaymentRequestDto.class)
-            .check(dto -> dto.cardNumber() != null, "Card number is required")
-            .check(dto -> dto.expiryMonth() != null, "Expiry month is required")
-            .check(dto -> dto.expiryYear() != null, "Expiry year is required")
+    // Every rejection is written straight to the response. Nothing on this path throws, so a flood of invalid
+    // requests never pays for stack traces or exception mapping.
+    public void postPayment(Context ctx) {
+        long parseStart = System.nanoTime();
+        BodyValidator<PostPaymentRequestDto> requestValidator = ctx.bodyValidator(PostPaymentRequestDto.class)
+            .check(dto -> dto.cardToken() != null || dto.cardNumber() != null, "Card number is required")
+            .check(dto -> dto.cardToken() != null || dto.expiryMonth() != null, "Expiry month is required")
+            .check(dto -> dto.cardToken() != null || dto.expiryYear() != null, "Expiry year is required")
             .check(dto -> dto.currency() != null, "Currency is required")
             .check(dto -> dto.amount() != null, "Amount is required")
-            .check(dto -> dto.cvv() != null, "CVV is required")
-            .get();
-        
-        Payment payment = Payment.fromPostPaymentRequest(postPaymentRequestDto).getValue();
+            .check(dto -> dto.cvv() != null, "CVV is required");
+        Map<String, List<ValidationError<PostPaymentRequestDto>>> requestErrors = requestValidator.errors();
+        paymentMetrics.recordStage(Stage.REQUEST_PARSE, parseStart);
+        if (!requestErrors.isEmpty()) {
+            rateLimitedLogger.atInfo("request_rejected")
+                    .addKeyValue("errors", requestErrors.values().stream().flatMap(List::stream).map(ValidationError::getMessage).toList())
+                    .log("Request failed validation");
+            ctx.status(HttpStatus.BAD_REQUEST);
+            return;
+        }
+
+        long validationStart = System.nanoTime();
+        PostPaymentRequestDto request = requestValidator.get();
+        ValidationResult<Payment> validatedPayment = request.cardToken() != null
+            ? fromCardToken(request)
+            : Payment.fromPostPaymentRequest(request);
+        paymentMetrics.recordStage(Stage.VALIDATION, validationStart);
+        if (validatedPayment instanceof ValidationResult.Failure<Payment> failure) {
+            rateLimitedLogger.atInfo("payment_rejected").addKeyValue("errors", failure.errors()).log("Payment failed validation");
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json(Map.of(
+                    "message", "Payment rejected due to validation errors",
+                    "errors", failure.errors()
+            ));
+            return;
+        }
+
         String idempotentKey = ctx.header("Cko-Idempotency-Key");
-        PostPaymentResponseDto response = paymentService.processPayment(payment, idempotentKey);
-        ctx.json(response);
+        String callerId = ctx.header(CALLER_ID_HEADER);
+        CompletableFuture<PaymentResult> result = paymentService.submitPaymentAsync(validatedPayment.getValue(), idempotentKey, callerId);
+        if (result.isDone() && !result.isCompletedExceptionally()) {
+            respond(ctx, result.join());
+        } else {
+            ctx.future(() -> result.thenAccept(completed -> respond(ctx, completed)));
+        }
+    }
+
+    private void respond(Context ctx, PaymentResult result) {
+        switch (result) {
+            case PaymentResult.Processed processed -> ctx.json(processed.response());
+            case PaymentResult.Replayed replayed -> {
+                ctx.header(REPLAYED_HEADER, "true");
+                ctx.json(replayed.response());
+            }
+            case PaymentResult.IdempotencyKeyMismatch mismatch -> {
+                rateLimitedLogger.atInfo("idempotency_conflict").addKeyValue("idempotency_key", mismatch.idempotencyKey()).log(mismatch.message());
+                ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
+                ctx.json(Map.of("error", mismatch.message(), "idempotency_key", mismatch.idempotencyKey()));
+            }
+            case PaymentResult.IdempotencyKeyInFlight inFlight -> {
+                rateLimitedLogger.atInfo("idempotency_in_flight").addKeyValue("idempotency_key", inFlight.idempotencyKey()).log(inFlight.message());
+                ctx.status(HttpStatus.CONFLICT);
+                ctx.header("Retry-After", "1");
+                ctx.json(Map.of("error", inFlight.message(), "idempotency_key", inFlight.idempotencyKey()));
+            }
+            case PaymentResult.RiskRejected rejected -> {
+                rateLimitedLogger.atInfo("risk_rejected").addKeyValue("rule", rejected.rule()).log(rejected.message());
+                ctx.status(HttpStatus.TOO_MANY_REQUESTS);
+                ctx.json(Map.of("error", rejected.message(), "rule", rejected.rule()));
+            }
+            case PaymentResult.BankFailure failure -> {
+                rateLimitedLogger.atError("bank_payment_failed").addKeyValue("error", failure.message()).log("Payment failed at the bank");
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR);
+                ctx.json(Map.of("error", failure.message()));
+            }
+        }
+    }
+
+    // Token payments skip card number parsing and validation: the card was validated when it was vaulted
+    private ValidationResult<Payment> fromCardToken(PostPaymentRequestDto request) {
+        if (cardVault == null) {
+            return ValidationResult.failure("Unknown card token");
+        }
+        return cardVault.detokenize(request.cardToken())
+            .map(card -> Payment.forVaultedCard(card.cardNumber(), card.expiryMonth(), card.expiryYear(),
+                request.currency(), request.amount(), request.cvv()))
+            .orElseGet(() -> ValidationResult.failure("Unknown card token"));
     }
 
     public void getPaymentById(Context ctx) {
@@ -40,4 +144,4 @@ public class PaymentGatewayController implements IPaymentGatewayController {
             () -> ctx.status(HttpStatus.NOT_FOUND)
         );
     }
-}
\ No newline at end of file
+}
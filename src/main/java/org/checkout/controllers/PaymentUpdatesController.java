@@ -0,0 +1,95 @@
+package org.checkout.controllers;
+
+import io.javalin.http.sse.SseClient;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.PaymentUpdateBroadcaster;
+import org.checkout.events.PaymentUpdateBroadcaster.Subscription;
+import org.checkout.services.IPaymentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Server-Sent Events streams of payment status changes. Each open stream is served by its own virtual thread that
+ * waits on the stream's subscription, so a slow or stalled client only ever holds up itself.
+ */
+public class PaymentUpdatesController {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentUpdatesController.class);
+
+    private final PaymentUpdateBroadcaster broadcaster;
+    private final IPaymentService paymentService;
+    private final Duration keepAliveInterval;
+
+    public PaymentUpdatesController(PaymentUpdateBroadcaster broadcaster, IPaymentService paymentService, Duration keepAliveInterval) {
+        this.broadcaster = broadcaster;
+        this.paymentService = paymentService;
+        this.keepAliveInterval = keepAliveInterval;
+    }
+
+    /**
+     * Streams the status of one payment and closes once it is final. A payment that is already stored is sent
+     * straight away.
+     */
+    public void streamPayment(SseClient client) {
+        String paymentId = client.ctx().pathParam("id");
+        // Subscribe before looking the payment up, so an update between the two is not missed
+        Subscription subscription = broadcaster.subscribeToPayment(paymentId);
+        client.keepAlive();
+        client.onClose(subscription::close);
+
+        paymentService.getPaymentById(paymentId).ifPresentOrElse(payment -> {
+            client.sendEvent("payment", new PaymentUpdate(payment.id(), payment.status(), payment.currency(), payment.amount()));
+            subscription.close();
+            client.close();
+        }, () -> Thread.ofVirtual().name("sse-payment-" + paymentId).start(() -> pump(client, subscription, true)));
+    }
+
+    /**
+     * Streams every status change of the payments sent with the caller's {@code Cko-Caller-Id} until the client
+     * disconnects.
+     */
+    public void streamCaller(SseClient client) {
+        String callerId = client.ctx().header(PaymentGatewayController.CALLER_ID_HEADER);
+        if (callerId == null || callerId.isBlank()) {
+            client.sendEvent("error", Map.of("error", PaymentGatewayController.CALLER_ID_HEADER + " header is required"));
+            client.close();
+            return;
+        }
+
+        Subscription subscription = broadcaster.subscribeToCaller(callerId);
+        client.keepAlive();
+        client.onClose(subscription::close);
+        Thread.ofVirtual().name("sse-caller-" + callerId).start(() -> pump(client, subscription, false));
+    }
+
+    private void pump(SseClient client, Subscription subscription, boolean closeOnFinal) {
+        try (subscription) {
+            while (!client.terminated()) {
+                PaymentEvent event = subscription.poll(keepAliveInterval);
+                if (subscription.overflowed()) {
+                    // Updates were dropped, so the client has to resynchronise from GET /api/payments/{id}
+                    client.sendEvent("overflow", Map.of("error", "Too many pending updates, reconnect to resume"));
+                    break;
+                }
+                if (event == null) {
+                    client.sendComment("keep-alive");
+                    continue;
+                }
+                client.sendEvent("payment", new PaymentUpdate(event.paymentId(), event.type().name(), event.currency(), event.amount()));
+                if (closeOnFinal && event.type().isFinal()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.debug("Payment update stream failed", e);
+        } finally {
+            client.close();
+        }
+    }
+
+    record PaymentUpdate(String paymentId, String status, String currency, long amount) {}
+}
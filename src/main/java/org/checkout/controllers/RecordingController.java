@@ -0,0 +1,36 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.checkout.jfr.FlightRecordingManager;
+
+import java.time.Duration;
+
+public class RecordingController {
+
+    private final FlightRecordingManager recordingManager;
+
+    public RecordingController(FlightRecordingManager recordingManager) {
+        this.recordingManager = recordingManager;
+    }
+
+    public void startRecording(Context ctx) {
+        long durationSeconds = ctx.queryParamAsClass("duration_seconds", Long.class)
+            .check(seconds -> seconds > 0, "Duration must be positive")
+            .getOrDefault(recordingManager.maxDuration().toSeconds());
+
+        ctx.status(HttpStatus.CREATED);
+        ctx.json(recordingManager.start(Duration.ofSeconds(durationSeconds)));
+    }
+
+    public void stopRecording(Context ctx) {
+        ctx.json(recordingManager.stop());
+    }
+
+    public void getRecording(Context ctx) {
+        recordingManager.current().ifPresentOrElse(
+            ctx::json,
+            () -> ctx.status(HttpStatus.NOT_FOUND)
+        );
+    }
+}
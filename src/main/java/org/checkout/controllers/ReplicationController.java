@@ -0,0 +1,52 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import org.checkout.exceptions.ReplicationLagException;
+import org.checkout.replication.ReplicatedPaymentsRepository;
+
+import java.time.Duration;
+
+public class ReplicationController {
+
+    public static final String POSITION_HEADER = "Cko-Replication-Position";
+    public static final String READ_AFTER_HEADER = "Cko-Read-After";
+
+    private final ReplicatedPaymentsRepository repository;
+    private final Duration readYourWritesTimeout;
+
+    public ReplicationController(ReplicatedPaymentsRepository repository, Duration readYourWritesTimeout) {
+        this.repository = repository;
+        this.readYourWritesTimeout = readYourWritesTimeout;
+    }
+
+    public void getStatus(Context ctx) {
+        ctx.json(repository.status());
+    }
+
+    /**
+     * Tells the client the replication position its write is covered by, so it can ask a follower to read it back.
+     */
+    public void addPosition(Context ctx) {
+        if (ctx.status().getCode() >= 300) {
+            return;
+        }
+        ctx.header(POSITION_HEADER, String.valueOf(repository.position()));
+    }
+
+    /**
+     * Read-your-writes: when the request carries a position, hold it until this node has applied that position.
+     */
+    public void awaitReadAfter(Context ctx) {
+        long position = ctx.headerAsClass(READ_AFTER_HEADER, Long.class)
+            .check(value -> value >= 0, "Position must not be negative")
+            .getOrDefault(0L);
+
+        if (!repository.awaitPosition(position, readYourWritesTimeout)) {
+            throw new ReplicationLagException(position, repository.position());
+        }
+    }
+
+    public void ensureWritable(Context ctx) {
+        repository.ensureWritable();
+    }
+}
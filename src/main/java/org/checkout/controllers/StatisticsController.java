@@ -0,0 +1,21 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import org.checkout.stats.PaymentStatistics;
+import org.checkout.stats.PaymentStatistics.Window;
+
+public class StatisticsController {
+
+    private final PaymentStatistics statistics;
+
+    public StatisticsController(PaymentStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public void getStatistics(Context ctx) {
+        String window = ctx.queryParamAsClass("window", String.class)
+            .check(value -> Window.fromLabel(value).isPresent(), "Window must be minute, hour or day")
+            .getOrDefault(Window.HOUR.label());
+        ctx.json(statistics.snapshot(Window.fromLabel(window).orElseThrow()));
+    }
+}
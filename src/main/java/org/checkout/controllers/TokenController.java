@@ -0,0 +1,50 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.checkout.models.CardTokenDto;
+import org.checkout.models.Payment;
+import org.checkout.models.TokenizeCardRequestDto;
+import org.checkout.vault.CardVault;
+
+import java.util.List;
+import java.util.Map;
+
+public class TokenController {
+
+    private final CardVault cardVault;
+
+    public TokenController(CardVault cardVault) {
+        this.cardVault = cardVault;
+    }
+
+    /**
+     * Validates a card once and vaults it. Payments can then send the returned token with a CVV instead of the card.
+     */
+    public void createToken(Context ctx) {
+        TokenizeCardRequestDto request = ctx.bodyValidator(TokenizeCardRequestDto.class)
+            .check(dto -> dto.cardNumber() != null, "Card number is required")
+            .check(dto -> dto.expiryMonth() != null, "Expiry month is required")
+            .check(dto -> dto.expiryYear() != null, "Expiry year is required")
+            .get();
+
+        List<String> errors = Payment.cardErrors(request.cardNumber(), request.expiryMonth(), request.expiryYear());
+        if (!errors.isEmpty()) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json(Map.of(
+                    "message", "Card rejected due to validation errors",
+                    "errors", errors
+            ));
+            return;
+        }
+
+        String token = cardVault.tokenize(request.cardNumber(), request.expiryMonth(), request.expiryYear());
+        ctx.status(HttpStatus.CREATED);
+        ctx.json(new CardTokenDto(
+                token,
+                request.cardNumber().substring(request.cardNumber().length() - 4),
+                request.expiryMonth(),
+                request.expiryYear()
+        ));
+    }
+}
@@ -0,0 +1,63 @@
+package org.checkout.controllers;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.checkout.models.WebhookRegistrationDto;
+import org.checkout.webhooks.WebhookDispatcher;
+import org.checkout.webhooks.WebhookRegistry;
+
+import java.net.URI;
+
+public class WebhookController {
+
+    private final WebhookDispatcher dispatcher;
+    private final WebhookRegistry registry;
+
+    public WebhookController(WebhookDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        this.registry = dispatcher.registry();
+    }
+
+    public void registerWebhook(Context ctx) {
+        String callerId = callerId(ctx);
+        WebhookRegistrationDto registration = ctx.bodyValidator(WebhookRegistrationDto.class)
+            .check(dto -> dto.url() != null, "URL is required")
+            .check(dto -> isHttpUrl(dto.url()), "URL must be an absolute http or https URL")
+            .check(dto -> !isHttpUrl(dto.url()) || dispatcher.accepts(URI.create(dto.url())), "URL must resolve to a public address")
+            .get();
+
+        registry.register(callerId, URI.create(registration.url()));
+        ctx.json(new WebhookRegistrationDto(registration.url()));
+    }
+
+    public void getWebhook(Context ctx) {
+        registry.endpointFor(callerId(ctx)).ifPresentOrElse(
+            endpoint -> ctx.json(new WebhookRegistrationDto(endpoint.toString())),
+            () -> ctx.status(HttpStatus.NOT_FOUND)
+        );
+    }
+
+    public void deleteWebhook(Context ctx) {
+        registry.unregister(callerId(ctx));
+        ctx.status(HttpStatus.NO_CONTENT);
+    }
+
+    private static String callerId(Context ctx) {
+        return ctx.headerAsClass(PaymentGatewayController.CALLER_ID_HEADER, String.class)
+            .check(id -> !id.isBlank(), "Caller id must not be blank")
+            .get();
+    }
+
+    private static boolean isHttpUrl(String url) {
+        if (url == null) {
+            return false;
+        }
+        try {
+            URI uri = URI.create(url);
+            return uri.isAbsolute() && uri.getHost() != null
+                && ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
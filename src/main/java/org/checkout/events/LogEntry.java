@@ -0,0 +1,6 @@
+package org.checkout.events;
+
+/**
+ * An event as stored in the {@link SegmentedEventLog}, together with its offset.
+ */
+public record LogEntry(long offset, PaymentEvent event) {}
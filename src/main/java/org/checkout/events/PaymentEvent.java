@@ -0,0 +1,27 @@
+package org.checkout.events;
+
+import org.checkout.models.Payment;
+
+/**
+ * A state change of a payment, as published by {@link org.checkout.services.PaymentService}. The caller id is null
+ * when the payment was sent without one.
+ */
+public record PaymentEvent(
+    PaymentEventType type,
+    String paymentId,
+    String currency,
+    long amount,
+    long timestampMillis,
+    String callerId
+) {
+    public static PaymentEvent of(PaymentEventType type, String paymentId, Payment payment, String callerId) {
+        return new PaymentEvent(
+                type,
+                paymentId,
+                payment.getCurrency().name(),
+                payment.getAmountInMinorUnits(),
+                System.currentTimeMillis(),
+                callerId
+        );
+    }
+}
@@ -0,0 +1,24 @@
+package org.checkout.events;
+
+/**
+ * Receives every payment state change. Implementations are called on the request thread and must not block on
+ * anything slower than a local write.
+ */
+public interface PaymentEventSink {
+
+    void publish(PaymentEvent event);
+
+    /**
+     * Returns a sink that publishes to this sink and then to {@code next}.
+     */
+    default PaymentEventSink andThen(PaymentEventSink next) {
+        return event -> {
+            publish(event);
+            next.publish(event);
+        };
+    }
+
+    static PaymentEventSink discarding() {
+        return event -> { };
+    }
+}
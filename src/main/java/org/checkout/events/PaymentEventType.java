@@ -0,0 +1,15 @@
+package org.checkout.events;
+
+public enum PaymentEventType {
+    CREATED,
+    APPROVED,
+    DECLINED,
+    FAILED;
+
+    /**
+     * Whether the payment can change again after this event.
+     */
+    public boolean isFinal() {
+        return this != CREATED;
+    }
+}
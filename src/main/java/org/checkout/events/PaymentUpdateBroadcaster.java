@@ -0,0 +1,110 @@
+package org.checkout.events;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans payment events out to live subscribers, either of one payment id or of every payment of one caller.
+ *
+ * <p>Subscribers are indexed by key, so publishing costs one map lookup per index when nobody is listening and an
+ * idle subscriber is just a small bounded queue. Publishing never blocks: an event that does not fit in a
+ * subscriber's queue marks that subscriber as overflowed instead, and it is up to the consumer to resynchronise.
+ */
+public class PaymentUpdateBroadcaster implements PaymentEventSink {
+
+    private final Map<String, Set<Subscription>> paymentSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> callerSubscriptions = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+
+    public PaymentUpdateBroadcaster(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Subscription subscribeToPayment(String paymentId) {
+        return subscribe(paymentSubscriptions, paymentId);
+    }
+
+    public Subscription subscribeToCaller(String callerId) {
+        return subscribe(callerSubscriptions, callerId);
+    }
+
+    @Override
+    public void publish(PaymentEvent event) {
+        deliver(paymentSubscriptions.get(event.paymentId()), event);
+        if (event.callerId() != null) {
+            deliver(callerSubscriptions.get(event.callerId()), event);
+        }
+    }
+
+    public long subscriberCount() {
+        return paymentSubscriptions.values().stream().mapToLong(Set::size).sum()
+                + callerSubscriptions.values().stream().mapToLong(Set::size).sum();
+    }
+
+    private Subscription subscribe(Map<String, Set<Subscription>> index, String key) {
+        Subscription subscription = new Subscription(index, key, new ArrayBlockingQueue<>(queueCapacity));
+        index.compute(key, (ignored, subscriptions) -> {
+            Set<Subscription> updated = subscriptions != null ? subscriptions : ConcurrentHashMap.newKeySet();
+            updated.add(subscription);
+            return updated;
+        });
+        return subscription;
+    }
+
+    private static void deliver(Set<Subscription> subscriptions, PaymentEvent event) {
+        if (subscriptions != null) {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    /**
+     * One subscriber's queue of pending events. Close it to unsubscribe.
+     */
+    public static final class Subscription implements AutoCloseable {
+        private final Map<String, Set<Subscription>> index;
+        private final String key;
+        private final BlockingQueue<PaymentEvent> pending;
+        private volatile boolean overflowed;
+
+        private Subscription(Map<String, Set<Subscription>> index, String key, BlockingQueue<PaymentEvent> pending) {
+            this.index = index;
+            this.key = key;
+            this.pending = pending;
+        }
+
+        /**
+         * Waits up to the timeout for the next event. Returns null if none arrived.
+         */
+        public PaymentEvent poll(Duration timeout) throws InterruptedException {
+            return pending.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Whether an event was dropped because the subscriber fell too far behind.
+         */
+        public boolean overflowed() {
+            return overflowed;
+        }
+
+        @Override
+        public void close() {
+            index.computeIfPresent(key, (ignored, subscriptions) -> {
+                subscriptions.remove(this);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+
+        private void offer(PaymentEvent event) {
+            if (!pending.offer(event)) {
+                overflowed = true;
+            }
+        }
+    }
+}
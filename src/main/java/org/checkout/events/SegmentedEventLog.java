@@ -0,0 +1,433 @@
+package org.checkout.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of payment events on local disk, split into segment files named after the offset of their first
+ * event. Consumers read it by offset, so any number of them can tail it independently without touching the payment
+ * store.
+ *
+ * <p>Each record is {@code length, crc32c, offset, timestamp, type, paymentId, currency, amount, callerId}. Every segment keeps
+ * a sparse in-memory index of one position per {@value #INDEX_INTERVAL} records, so a read seeks close to its offset
+ * and then scans forward in large sequential reads. Appends are serialised; reads use positional reads on the
+ * segment's channel and never take the append lock.
+ *
+ * <p>On startup, existing segments are scanned and a torn record at the end of the log is truncated. Writes go to the
+ * OS page cache without an fsync, so events survive a process crash but not a power loss. Whole segments are deleted
+ * once they are older than the retention period or the log is over its size limit; the active segment is never
+ * deleted.
+ */
+public class SegmentedEventLog implements PaymentEventSink, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedEventLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 4096;
+    private static final int INDEX_INTERVAL = 128;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Duration retention;
+    private final long retentionBytes;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32C writeChecksum = new CRC32C();
+    // A lock rather than a monitor, so a virtual thread waiting for an append does not pin its carrier thread
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final ScheduledExecutorService retentionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-log-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Segment active;
+    private volatile long nextOffset;
+
+    /**
+     * @param directory      where segment files live; created if missing
+     * @param segmentBytes   size at which the active segment is closed and a new one started
+     * @param retention      age after which a closed segment is deleted
+     * @param retentionBytes total size above which the oldest closed segments are deleted, or 0 for no limit
+     */
+    public SegmentedEventLog(Path directory, long segmentBytes, Duration retention, long retentionBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retention = retention;
+        this.retentionBytes = retentionBytes;
+
+        Files.createDirectories(directory);
+        recover();
+        if (segments.isEmpty()) {
+            roll(0);
+        }
+        this.active = segments.lastEntry().getValue();
+        this.nextOffset = active.endOffset;
+
+        retentionScheduler.scheduleWithFixedDelay(this::enforceRetention, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Appends the event and returns its offset.
+     */
+    public synchronized long append(PaymentEvent event) {
+        long offset = nextOffset;
+        try {
+            byte[] record = encode(offset, event);
+            if (active.size > 0 && active.size + record.length > segmentBytes) {
+                roll(offset);
+            }
+
+            long position = active.size;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                active.channel.write(buffer, position + buffer.position());
+            }
+            if ((offset - active.baseOffset) % INDEX_INTERVAL == 0) {
+                active.index(offset, position);
+            }
+            active.size = position + record.length;
+            active.lastTimestampMillis = event.timestampMillis();
+            active.endOffset = offset + 1;
+            nextOffset = offset + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the event log", e);
+        }
+
+        appendLock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+        return offset;
+    }
+
+    @Override
+    public void publish(PaymentEvent event) {
+        append(event);
+    }
+
+    /**
+     * Offset of the oldest event still retained.
+     */
+    public long startOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Offset the next appended event will get.
+     */
+    public long nextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Reads up to {@code max} events starting at {@code fromOffset}. Offsets that retention has already removed are
+     * skipped, so the first entry returned may be later than requested.
+     */
+    public List<LogEntry> read(long fromOffset, int max) throws IOException {
+        List<LogEntry> entries = new ArrayList<>(Math.min(max, 1024));
+        long offset = Math.max(fromOffset, startOffset());
+        while (entries.size() < max && offset < nextOffset) {
+            Map.Entry<Long, Segment> floor = segments.floorEntry(offset);
+            if (floor == null) {
+                offset = startOffset();
+                continue;
+            }
+            Segment segment = floor.getValue();
+            long target = offset;
+            long[] lastSeen = {-1};
+            try {
+                scan(segment, segment.positionOf(offset), segment.size, (entry, position) -> {
+                    lastSeen[0] = entry.offset();
+                    if (entry.offset() >= target) {
+                        entries.add(entry);
+                    }
+                    return entries.size() < max;
+                });
+            } catch (ClosedChannelException e) {
+                // Retention deleted the segment while it was being read
+                offset = Math.max(offset, startOffset());
+                continue;
+            }
+
+            if (lastSeen[0] >= offset) {
+                offset = lastSeen[0] + 1;
+            } else {
+                Long next = segments.higherKey(segment.baseOffset);
+                if (next == null) {
+                    break;
+                }
+                offset = next;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Waits until an event with an offset of at least {@code offset} has been appended. Returns {@code false} if
+     * none was appended within the timeout.
+     */
+    public boolean awaitAppend(long offset, Duration timeout) throws InterruptedException {
+        long remainingNanos = timeout.toNanos();
+        appendLock.lock();
+        try {
+            while (nextOffset <= offset) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = appended.awaitNanos(remainingNanos);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Deletes closed segments that are past the retention period or push the log over its size limit.
+     */
+    public synchronized void enforceRetention() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        long totalBytes = segments.values().stream().mapToLong(segment -> segment.size).sum();
+
+        Iterator<Segment> oldestFirst = segments.values().iterator();
+        while (oldestFirst.hasNext()) {
+            Segment segment = oldestFirst.next();
+            boolean expired = segment.lastTimestampMillis < cutoff;
+            boolean overLimit = retentionBytes > 0 && totalBytes > retentionBytes;
+            if (segment == active || !(expired || overLimit)) {
+                break;
+            }
+            oldestFirst.remove();
+            totalBytes -= segment.size;
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                logger.info("Deleted event log segment {} (offsets {} to {})", segment.path.getFileName(),
+                        segment.baseOffset, segment.endOffset - 1);
+            } catch (IOException e) {
+                logger.warn("Failed to delete event log segment {}", segment.path, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        retentionScheduler.shutdownNow();
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.force(false);
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close event log segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private void roll(long baseOffset) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        Segment segment = new Segment(baseOffset, path, FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segment.index(baseOffset, 0);
+        segment.lastTimestampMillis = System.currentTimeMillis();
+        segments.put(baseOffset, segment);
+        active = segment;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(baseOffset, path, FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segment.endOffset = baseOffset;
+            segment.lastTimestampMillis = Files.getLastModifiedTime(path).toMillis();
+
+            long fileSize = segment.channel.size();
+            long validEnd = scan(segment, 0, fileSize, (entry, position) -> {
+                if ((entry.offset() - baseOffset) % INDEX_INTERVAL == 0) {
+                    segment.index(entry.offset(), position);
+                }
+                segment.endOffset = entry.offset() + 1;
+                segment.lastTimestampMillis = entry.event().timestampMillis();
+                return true;
+            });
+            if (validEnd < fileSize) {
+                logger.warn("Truncating event log segment {} from {} to {} bytes after a torn write", name, fileSize, validEnd);
+                segment.channel.truncate(validEnd);
+            }
+            segment.size = validEnd;
+            segments.put(baseOffset, segment);
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Recovered event log at {} with offsets {} to {}", directory, segments.firstKey(),
+                    segments.lastEntry().getValue().endOffset - 1);
+        }
+    }
+
+    private byte[] encode(long offset, PaymentEvent event) throws IOException {
+        recordBytes.reset();
+        recordOut.writeLong(0);
+        recordOut.writeLong(offset);
+        recordOut.writeLong(event.timestampMillis());
+        recordOut.writeByte(event.type().ordinal());
+        recordOut.writeUTF(event.paymentId());
+        recordOut.writeUTF(event.currency());
+        recordOut.writeLong(event.amount());
+        recordOut.writeUTF(event.callerId() == null ? "" : event.callerId());
+        byte[] record = recordBytes.toByteArray();
+
+        int length = record.length - HEADER_BYTES;
+        if (length > MAX_RECORD_BYTES) {
+            throw new IOException("Event of " + length + " bytes exceeds the maximum record size");
+        }
+        writeChecksum.reset();
+        writeChecksum.update(record, HEADER_BYTES, length);
+        ByteBuffer.wrap(record).putInt(0, length).putInt(4, (int) writeChecksum.getValue());
+        return record;
+    }
+
+    /**
+     * Reads records from {@code from} up to {@code limit} bytes, handing each to the visitor with its position until it returns
+     * {@code false}. Returns the position after the last valid record, which is short of {@code limit} if a record
+     * is torn or corrupt.
+     */
+    private static long scan(Segment segment, long from, long limit, Visitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(HEADER_BYTES, Math.min(READ_BUFFER_BYTES, limit - from)));
+        CRC32C checksum = new CRC32C();
+        long position = from;
+        while (position < limit) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), limit - position));
+            while (buffer.hasRemaining()) {
+                if (segment.channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            boolean progressed = false;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int expectedChecksum = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    return position;
+                }
+                if (buffer.remaining() < length) {
+                    buffer.position(start);
+                    break;
+                }
+                checksum.reset();
+                checksum.update(buffer.array(), buffer.position(), length);
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    return position;
+                }
+
+                LogEntry entry = decode(buffer.array(), buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                long recordPosition = position;
+                position += HEADER_BYTES + length;
+                progressed = true;
+                if (!visitor.visit(entry, recordPosition)) {
+                    return position;
+                }
+            }
+            if (!progressed) {
+                return position;
+            }
+        }
+        return position;
+    }
+
+    private static LogEntry decode(byte[] bytes, int from, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, from, length));
+        long offset = in.readLong();
+        long timestamp = in.readLong();
+        PaymentEventType type = PaymentEventType.values()[in.readByte()];
+        String paymentId = in.readUTF();
+        String currency = in.readUTF();
+        long amount = in.readLong();
+        String callerId = in.readUTF();
+        return new LogEntry(offset, new PaymentEvent(type, paymentId, currency, amount, timestamp, callerId.isEmpty() ? null : callerId));
+    }
+
+    @FunctionalInterface
+    private interface Visitor {
+        boolean visit(LogEntry entry, long position) throws IOException;
+    }
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+
+        private volatile long size;
+        private volatile long endOffset;
+        private volatile long lastTimestampMillis;
+
+        private long[] indexOffsets = new long[16];
+        private long[] indexPositions = new long[16];
+        private int indexCount;
+
+        private Segment(long baseOffset, Path path, FileChannel channel) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.endOffset = baseOffset;
+        }
+
+        private synchronized void index(long offset, long position) {
+            if (indexCount == indexOffsets.length) {
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+            }
+            indexOffsets[indexCount] = offset;
+            indexPositions[indexCount] = position;
+            indexCount++;
+        }
+
+        // Position of the closest indexed record at or before the offset
+        private synchronized long positionOf(long offset) {
+            int found = Arrays.binarySearch(indexOffsets, 0, indexCount, offset);
+            int slot = found >= 0 ? found : -found - 2;
+            return slot < 0 ? 0 : indexPositions[slot];
+        }
+    }
+}
@@ -1,7 +1,26 @@
 package org.checkout.exceptions;
 
 public class BankPaymentFailedException extends RuntimeException {
+    private final boolean outcomeUnknown;
+
+    /**
+     * A failure after which the bank may have charged the payment.
+     */
     public BankPaymentFailedException(String message) {
-        super(message);
+        this(message, true);
+    }
+
+    /**
+     * @param outcomeUnknown {@code false} only if the bank definitely did not charge the payment, such as when it
+     *                       rejected the request or was never reached
+     */
+    public BankPaymentFailedException(String message, boolean outcomeUnknown) {
+        // Stackless: the bank client logs the underlying cause, which carries the useful stack trace
+        super(message, null, false, false);
+        this.outcomeUnknown = outcomeUnknown;
+    }
+
+    public boolean isOutcomeUnknown() {
+        return outcomeUnknown;
     }
-}
\ No newline at end of file
+}
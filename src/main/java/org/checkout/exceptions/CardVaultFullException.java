@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class CardVaultFullException extends RuntimeException {
+    public CardVaultFullException(int capacity) {
+        super("The card vault is full (" + capacity + " cards)");
+    }
+}
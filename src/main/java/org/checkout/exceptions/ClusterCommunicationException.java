@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class ClusterCommunicationException extends RuntimeException {
+    public ClusterCommunicationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class ExecutorSaturatedException extends RuntimeException {
+    public ExecutorSaturatedException(String pool) {
+        super("The " + pool + " pool is saturated, try again later");
+    }
+}
@@ -4,7 +4,8 @@ public class IdempotencyKeyException extends RuntimeException {
     private final String idempotencyKey;
 
     public IdempotencyKeyException(String message, String idempotencyKey) {
-        super(message);
+        // Stackless: the cause is always a repeated client request, never a bug worth a stack trace
+        super(message, null, false, false);
         this.idempotencyKey = idempotencyKey;
     }
 
@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class PaymentStoreUnavailableException extends RuntimeException {
+    public PaymentStoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package org.checkout.exceptions;
+
+public class ReadOnlyReplicaException extends RuntimeException {
+    private final String leader;
+
+    public ReadOnlyReplicaException(String leader) {
+        super("This node is a read replica, send payments to the leader at " + leader);
+        this.leader = leader;
+    }
+
+    public String getLeader() {
+        return leader;
+    }
+}
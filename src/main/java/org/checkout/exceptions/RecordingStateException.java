@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class RecordingStateException extends RuntimeException {
+    public RecordingStateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.checkout.exceptions;
+
+public class ReplicationLagException extends RuntimeException {
+    public ReplicationLagException(long requestedPosition, long appliedPosition) {
+        super("Replica has applied up to position " + appliedPosition + " but the request needs " + requestedPosition);
+    }
+}
@@ -0,0 +1,15 @@
+package org.checkout.exceptions;
+
+public class RiskRejectedException extends RuntimeException {
+    private final String rule;
+
+    public RiskRejectedException(String message, String rule) {
+        // Stackless: a rejection is an expected outcome, often for automated card testing
+        super(message, null, false, false);
+        this.rule = rule;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+}
@@ -0,0 +1,101 @@
+package org.checkout.executors;
+
+import io.javalin.http.Handler;
+import org.checkout.exceptions.ExecutorSaturatedException;
+import org.checkout.metrics.PaymentMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size thread pool with a bounded queue that a group of routes runs on, so slow routes cannot take the
+ * threads other routes need. Wrapped handlers are handed to the pool and the request is completed asynchronously,
+ * which returns the Jetty thread straight away. When every thread is busy and the queue is full the request is
+ * rejected with {@link ExecutorSaturatedException} instead of waiting.
+ */
+public class RouteExecutor implements AutoCloseable {
+
+    private final String name;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name          pool name, used for thread names and as the prefix of the pool's metrics
+     * @param threads       number of threads serving the pool's routes
+     * @param queueCapacity requests that may wait for a thread before new ones are rejected
+     */
+    public RouteExecutor(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Returns a handler that runs {@code handler} on this pool. Exceptions thrown by {@code handler} reach the
+     * application's exception handlers as usual.
+     */
+    public Handler isolate(Handler handler) {
+        return ctx -> {
+            CompletableFuture<Void> completion = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        handler.handle(ctx);
+                        completion.complete(null);
+                    } catch (Throwable e) {
+                        completion.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw new ExecutorSaturatedException(name);
+            }
+            ctx.future(() -> completion);
+        };
+    }
+
+    /**
+     * Registers the pool's saturation gauges, named {@code <name>_pool_*}.
+     */
+    public void registerMetrics(PaymentMetrics metrics) {
+        String prefix = name + "_pool_";
+        metrics.registerGauge(prefix + "threads", "Threads in the " + name + " pool", executor::getPoolSize);
+        metrics.registerGauge(prefix + "active_threads", "Threads of the " + name + " pool running a request", executor::getActiveCount);
+        metrics.registerGauge(prefix + "queued_requests", "Requests waiting for a thread of the " + name + " pool", () -> executor.getQueue().size());
+        metrics.registerGauge(prefix + "queue_capacity", "Requests the " + name + " pool queues before rejecting", () -> queueCapacity);
+        metrics.registerGauge(prefix + "completed_requests", "Requests the " + name + " pool has run", executor::getCompletedTaskCount);
+        metrics.registerGauge(prefix + "rejected_requests", "Requests rejected because the " + name + " pool was saturated", rejected::sum);
+    }
+
+    public int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    public int queuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,40 @@
+package org.checkout.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every HTTP call made to the bank. The event duration is the bank round trip.
+ */
+@Name("org.checkout.BankCall")
+@Label("Bank Call")
+@Category({"Checkout", "Bank"})
+@Description("A payment request sent to the bank")
+@StackTrace(false)
+public class BankCallEvent extends Event {
+
+    @Label("Masked Card Number")
+    public String maskedCardNumber;
+
+    @Label("Currency")
+    public String currency;
+
+    @Label("Amount")
+    @Description("Amount in minor currency units")
+    public long amount;
+
+    @Label("Status Code")
+    @Description("HTTP status code returned by the bank, or 0 if no response was received")
+    public int statusCode;
+
+    @Label("Authorized")
+    public boolean authorized;
+
+    @Label("Error Type")
+    @Description("Simple class name of the exception raised by the call, if any")
+    public String errorType;
+}
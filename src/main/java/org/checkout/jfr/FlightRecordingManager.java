@@ -0,0 +1,123 @@
+package org.checkout.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.checkout.exceptions.RecordingStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Starts and stops a single, bounded JFR recording at a time. Recordings use the JDK "profile" settings plus the
+ * gateway's own events, and are capped by both duration and size so a forgotten recording cannot fill the disk.
+ */
+public class FlightRecordingManager {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingManager.class);
+
+    private final Path recordingDirectory;
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+
+    private Recording recording;
+    private Path destination;
+
+    public FlightRecordingManager(Path recordingDirectory, Duration maxDuration, long maxSizeBytes) {
+        this.recordingDirectory = recordingDirectory;
+        this.maxDuration = maxDuration;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public Duration maxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * Starts a recording that stops by itself after {@code duration}, capped at the configured maximum.
+     * @throws RecordingStateException if a recording is already running
+     */
+    public synchronized RecordingStatus start(Duration duration) {
+        if (isRunning()) {
+            throw new RecordingStateException("A recording is already in progress");
+        }
+
+        Duration boundedDuration = duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        try {
+            Files.createDirectories(recordingDirectory);
+            if (recording != null) {
+                recording.close();
+            }
+            Recording newRecording = new Recording(Configuration.getConfiguration("profile"));
+            newRecording.setName("checkout-" + Instant.now().toEpochMilli());
+            newRecording.enable(PaymentProcessedEvent.class);
+            newRecording.enable(BankCallEvent.class);
+            newRecording.enable(RepositoryOperationEvent.class);
+            newRecording.setToDisk(true);
+            newRecording.setMaxSize(maxSizeBytes);
+            newRecording.setDuration(boundedDuration);
+            Path newDestination = recordingDirectory.resolve(newRecording.getName() + ".jfr").toAbsolutePath();
+            newRecording.setDestination(newDestination);
+            newRecording.start();
+
+            this.recording = newRecording;
+            this.destination = newDestination;
+            logger.info("Started flight recording {} for {} to {}", newRecording.getName(), boundedDuration, newDestination);
+            return status();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create flight recording", e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Unable to load the JFR profile configuration", e);
+        }
+    }
+
+    /**
+     * Stops the running recording and flushes it to its destination file.
+     * @throws RecordingStateException if no recording is running
+     */
+    public synchronized RecordingStatus stop() {
+        if (!isRunning()) {
+            throw new RecordingStateException("No recording is in progress");
+        }
+
+        recording.stop();
+        RecordingStatus stopped = status();
+        recording.close();
+        logger.info("Stopped flight recording, written to {}", destination);
+        return stopped;
+    }
+
+    public synchronized Optional<RecordingStatus> current() {
+        return recording == null ? Optional.empty() : Optional.of(status());
+    }
+
+    private boolean isRunning() {
+        return recording != null
+                && (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.DELAYED);
+    }
+
+    private RecordingStatus status() {
+        return new RecordingStatus(
+                recording.getName(),
+                recording.getState().name(),
+                destination.toString(),
+                recording.getDuration() == null ? 0 : recording.getDuration().toSeconds(),
+                recording.getMaxSize()
+        );
+    }
+
+    public record RecordingStatus(
+            String name,
+            String state,
+            String file,
+            long durationSeconds,
+            long maxSizeBytes
+    ) {}
+}
@@ -0,0 +1,46 @@
+package org.checkout.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted once per call to {@code PaymentService.processPayment}. The event duration covers the whole call,
+ * including the idempotency check, the bank call and the repository write.
+ */
+@Name("org.checkout.PaymentProcessed")
+@Label("Payment Processed")
+@Category({"Checkout", "Payments"})
+@Description("A payment submitted to the gateway and its outcome")
+@StackTrace(false)
+public class PaymentProcessedEvent extends Event {
+
+    @Label("Payment Id")
+    public String paymentId;
+
+    @Label("Masked Card Number")
+    public String maskedCardNumber;
+
+    @Label("Currency")
+    public String currency;
+
+    @Label("Amount")
+    @Description("Amount in minor currency units")
+    public long amount;
+
+    @Label("Outcome")
+    @Description("APPROVED, DECLINED, FAILED, REJECTED or REPLAYED")
+    public String outcome;
+
+    @Label("Error Type")
+    @Description("Simple class name of the exception that ended the payment, if any")
+    public String errorType;
+
+    @Label("Bank Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long bankLatency;
+}
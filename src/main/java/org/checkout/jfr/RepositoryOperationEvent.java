@@ -0,0 +1,50 @@
+package org.checkout.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for reads and writes against the payment repository and the idempotency key store.
+ */
+@Name("org.checkout.RepositoryOperation")
+@Label("Repository Operation")
+@Category({"Checkout", "Repository"})
+@Description("A read or write against an in-memory store")
+@StackTrace(false)
+public class RepositoryOperationEvent extends Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Key")
+    @Description("Payment id or idempotency key")
+    public String key;
+
+    @Label("Hit")
+    @Description("Whether a read found an entry")
+    public boolean hit;
+
+    public static RepositoryOperationEvent begin(String repository, String operation) {
+        RepositoryOperationEvent event = new RepositoryOperationEvent();
+        event.repository = repository;
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    public void finish(String key, boolean hit) {
+        end();
+        if (shouldCommit()) {
+            this.key = key;
+            this.hit = hit;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.checkout.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how often a message is logged, so a burst of identical failures (a decline storm, a client retrying a bad
+ * request) costs a handful of log lines instead of one per request. Each message key gets its own lock-free token
+ * bucket; lines over the limit are dropped and counted, and the next line that gets through carries the number of
+ * dropped lines as a {@code suppressed} key-value pair.
+ *
+ * <pre>{@code
+ * rateLimitedLogger.atWarn("bank_rejected")
+ *         .addKeyValue("status", response.code())
+ *         .log("Bank rejected the payment request");
+ * }</pre>
+ */
+public final class RateLimitedLogger {
+
+    public static final int DEFAULT_PERMITS_PER_SECOND = 10;
+    public static final int DEFAULT_BURST = 20;
+
+    private final Logger logger;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimitedLogger(Logger logger) {
+        this(logger, DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST);
+    }
+
+    /**
+     * @param permitsPerSecond sustained lines per second allowed for each message key
+     * @param burst            lines per message key that may be logged back to back before the rate applies
+     */
+    public RateLimitedLogger(Logger logger, int permitsPerSecond, int burst) {
+        this.logger = logger;
+        this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+    }
+
+    public LoggingEventBuilder atError(String key) {
+        return atLevel(Level.ERROR, key);
+    }
+
+    public LoggingEventBuilder atWarn(String key) {
+        return atLevel(Level.WARN, key);
+    }
+
+    public LoggingEventBuilder atInfo(String key) {
+        return atLevel(Level.INFO, key);
+    }
+
+    /**
+     * Returns a builder that logs under {@code key}, or a no-op builder if the key is over its limit or the level is
+     * disabled. The key also becomes the {@code event} key-value pair of the line.
+     */
+    public LoggingEventBuilder atLevel(Level level, String key) {
+        if (!logger.isEnabledForLevel(level)) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+
+        Bucket bucket = buckets.computeIfAbsent(key, ignored -> new Bucket());
+        if (!bucket.tryAcquire(System.nanoTime())) {
+            bucket.suppressed.increment();
+            return NOPLoggingEventBuilder.singleton();
+        }
+
+        LoggingEventBuilder builder = logger.atLevel(level).addKeyValue("event", key);
+        long suppressed = bucket.suppressed.sumThenReset();
+        return suppressed > 0 ? builder.addKeyValue("suppressed", suppressed) : builder;
+    }
+
+    public long suppressedCount(String key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.suppressed.sum();
+    }
+
+    // Generic cell rate algorithm: a single timestamp of when the bucket is next empty, advanced with CAS
+    private final class Bucket {
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime() - burstToleranceNanos);
+        private final LongAdder suppressed = new LongAdder();
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long next = Math.max(arrival, now) + emissionIntervalNanos;
+                if (next - now > burstToleranceNanos + emissionIntervalNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.checkout.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.checkout.logging.RateLimitedLogger;
+import org.checkout.models.Currency;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency histograms, outcome counters and gauges for the payment flow, rendered in the Prometheus text format.
+ * Recording is wait-free and allocation-free: stage latencies go into HdrHistogram {@link Recorder}s and outcomes
+ * into pre-allocated {@link LongAdder}s. All aggregation work happens on the scrape side.
+ */
+public class PaymentMetrics {
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(LoggerFactory.getLogger(PaymentMetrics.class));
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.SECONDS.toMicros(60);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public enum Stage {
+        REQUEST_PARSE("request_parse"),
+        VALIDATION("validation"),
+        IDEMPOTENCY_CHECK("idempotency_check"),
+        RISK_CHECK("risk_check"),
+        BANK_CALL("bank_call"),
+        REPOSITORY_WRITE("repository_write");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public enum Outcome {
+        APPROVED,
+        DECLINED,
+        FAILED
+    }
+
+    private final Recorder[] stageRecorders = new Recorder[Stage.values().length];
+    private final Histogram[] intervalHistograms = new Histogram[Stage.values().length];
+    private final Histogram[] cumulativeHistograms = new Histogram[Stage.values().length];
+    private final LongAdder[] outcomeCounters = new LongAdder[Outcome.values().length * Currency.values().length];
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    public PaymentMetrics() {
+        for (int i = 0; i < stageRecorders.length; i++) {
+            stageRecorders[i] = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+            cumulativeHistograms[i] = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        }
+        for (int i = 0; i < outcomeCounters.length; i++) {
+            outcomeCounters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos} (taken from {@link System#nanoTime()}) against a stage.
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1_000;
+        stageRecorders[stage.ordinal()].recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+    }
+
+    public void recordOutcome(Outcome outcome, Currency currency) {
+        outcomeCounters[outcome.ordinal() * Currency.values().length + currency.ordinal()].increment();
+    }
+
+    public long outcomeCount(Outcome outcome, Currency currency) {
+        return outcomeCounters[outcome.ordinal() * Currency.values().length + currency.ordinal()].sum();
+    }
+
+    /**
+     * Registers a gauge that is sampled on every scrape. Registering the same name again replaces the gauge.
+     */
+    public void registerGauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value, null));
+    }
+
+    /**
+     * Registers a gauge with a fractional value, such as a ratio, that is sampled on every scrape.
+     */
+    public void registerDoubleGauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge(help, null, value));
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP payment_stage_latency_seconds Latency of each payment processing stage\n");
+        out.append("# TYPE payment_stage_latency_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = drain(stage);
+            for (double quantile : QUANTILES) {
+                out.append("payment_stage_latency_seconds{stage=\"").append(stage.label())
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(toSeconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append("payment_stage_latency_seconds_sum{stage=\"").append(stage.label()).append("\"} ")
+                    .append(toSeconds(histogram.getMean() * histogram.getTotalCount())).append('\n');
+            out.append("payment_stage_latency_seconds_count{stage=\"").append(stage.label()).append("\"} ")
+                    .append(histogram.getTotalCount()).append('\n');
+            out.append("payment_stage_latency_seconds_max{stage=\"").append(stage.label()).append("\"} ")
+                    .append(toSeconds(histogram.getMaxValue())).append('\n');
+        }
+
+        out.append("# HELP payments_total Payments processed by outcome and currency\n");
+        out.append("# TYPE payments_total counter\n");
+        for (Outcome outcome : Outcome.values()) {
+            for (Currency currency : Currency.values()) {
+                out.append("payments_total{outcome=\"").append(outcome.name().toLowerCase())
+                        .append("\",currency=\"").append(currency.name()).append("\"} ")
+                        .append(outcomeCount(outcome, currency)).append('\n');
+            }
+        }
+
+        gauges.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    Gauge gauge = entry.getValue();
+                    // A gauge that cannot be read, such as one backed by a database that is down, is left out rather
+                    // than failing the whole scrape
+                    String value;
+                    try {
+                        value = gauge.value() != null
+                                ? Long.toString(gauge.value().getAsLong())
+                                : Double.toString(gauge.doubleValue().getAsDouble());
+                    } catch (RuntimeException e) {
+                        rateLimitedLogger.atWarn("gauge_unavailable")
+                                .addKeyValue("gauge", entry.getKey())
+                                .setCause(e)
+                                .log("Failed to sample gauge, leaving it out of the scrape");
+                        return;
+                    }
+                    out.append("# HELP ").append(entry.getKey()).append(' ').append(gauge.help()).append('\n');
+                    out.append("# TYPE ").append(entry.getKey()).append(" gauge\n");
+                    out.append(entry.getKey()).append(' ').append(value).append('\n');
+                });
+
+        return out.toString();
+    }
+
+    private Histogram drain(Stage stage) {
+        int index = stage.ordinal();
+        intervalHistograms[index] = stageRecorders[index].getIntervalHistogram(intervalHistograms[index]);
+        cumulativeHistograms[index].add(intervalHistograms[index]);
+        return cumulativeHistograms[index];
+    }
+
+    private static double toSeconds(double micros) {
+        return micros / 1_000_000.0;
+    }
+
+    // Exactly one of value and doubleValue is set
+    private record Gauge(String help, LongSupplier value, DoubleSupplier doubleValue) {}
+}
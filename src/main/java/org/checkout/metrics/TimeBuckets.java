@@ -0,0 +1,73 @@
+package org.checkout.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Which time bucket each slot of a fixed ring of buckets holds, for counters kept over a sliding window. Time is cut
+ * into epochs of {@code bucketMillis}; epoch {@code e} lives in slot {@code e mod buckets}, so a slot is reused once
+ * its bucket falls out of the window.
+ *
+ * <p>The first thread into a new epoch takes the slot over by marking it as being reset, clears what the slot counted
+ * a full window ago and only then publishes the new epoch. Readers never count a slot that is being reset, and threads
+ * adding to it wait for the reset to finish, so neither sees counters that are half cleared or still belong to the old
+ * bucket.
+ */
+public final class TimeBuckets {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long RESETTING = Long.MAX_VALUE;
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final AtomicLongArray epochs;
+
+    public TimeBuckets(int buckets, long bucketMillis) {
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.epochs = new AtomicLongArray(buckets);
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, EMPTY);
+        }
+    }
+
+    public long epoch(long nowMillis) {
+        return nowMillis / bucketMillis;
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * Returns the slot holding {@code epoch}. If the slot still holds an older epoch, it is first moved on to
+     * {@code epoch}, calling {@code reset} with the slot to clear its counters before the new epoch is published.
+     */
+    public int slotFor(long epoch, IntConsumer reset) {
+        int slot = (int) Math.floorMod(epoch, (long) buckets);
+        while (true) {
+            long seen = epochs.get(slot);
+            if (seen == RESETTING) {
+                // Another thread is clearing the slot; adding now could be wiped by the clear
+                Thread.onSpinWait();
+            } else if (seen >= epoch) {
+                return slot;
+            } else if (epochs.compareAndSet(slot, seen, RESETTING)) {
+                try {
+                    reset.accept(slot);
+                } finally {
+                    epochs.set(slot, epoch);
+                }
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Whether {@code slot} holds one of the {@code buckets} epochs of the window that ends with {@code epoch}.
+     */
+    public boolean inWindow(int slot, long epoch) {
+        long slotEpoch = epochs.get(slot);
+        return slotEpoch != RESETTING && slotEpoch <= epoch && slotEpoch > epoch - buckets;
+    }
+}
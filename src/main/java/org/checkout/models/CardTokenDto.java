@@ -0,0 +1,9 @@
+package org.checkout.models;
+
+public record CardTokenDto(
+        String cardToken,
+        String lastFourCardDigits,
+        int expiryMonth,
+        int expiryYear
+) {
+}
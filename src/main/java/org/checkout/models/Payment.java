@@ -65,6 +65,43 @@ public final class Payment {
         ));
     }
 
+    /**
+     * Builds a payment for a card that was validated when it was vaulted. The card number and expiry month and year
+     * are trusted as they are; only the expiry date, the amount and the CVV are checked.
+     */
+    public static ValidationResult<Payment> forVaultedCard(String cardNumber, int expiryMonth, int expiryYear,
+                                                           String currencyCode, Integer amountInMinorUnits, String cvv) {
+        ValidationResult<?> expiryDateValidation = isValidExpiryDate(expiryMonth, expiryYear);
+        ValidationResult<Money> moneyValidation = Money.of(amountInMinorUnits, currencyCode);
+        ValidationResult<String> cvvValidation = isValidCvv(cvv);
+
+        if (expiryDateValidation.isSuccess() && moneyValidation.isSuccess() && cvvValidation.isSuccess()) {
+            return ValidationResult.success(new Payment(cardNumber, expiryMonth, expiryYear,
+                    moneyValidation.getValue(), cvvValidation.getValue()));
+        }
+        return ValidationResult.failure(Stream.of(expiryDateValidation, moneyValidation, cvvValidation)
+                .filter(ValidationResult::isFailure)
+                .flatMap(result -> result.errors().stream())
+                .toList());
+    }
+
+    /**
+     * Validates the card details alone, as done before a card is vaulted.
+     *
+     * @return the validation errors, empty if the card is valid
+     */
+    public static List<String> cardErrors(String cardNumber, Integer expiryMonth, Integer expiryYear) {
+        return Stream.of(
+                isValidCardNumber(cardNumber),
+                isValidExpiryMonth(expiryMonth),
+                isValidExpiryYear(expiryYear),
+                isValidExpiryDate(expiryMonth, expiryYear)
+            )
+            .filter(ValidationResult::isFailure)
+            .flatMap(result -> result.errors().stream())
+            .toList();
+    }
+
     private static ValidationResult<String> isValidCardNumber(String cardNumber) {
         if (cardNumber == null) {
             return ValidationResult.failure("Card number is required");
@@ -0,0 +1,25 @@
+package org.checkout.models;
+
+import java.util.List;
+
+/**
+ * Payments stored over a window, overall and by currency. Approval rates are {@code null} when the window holds no
+ * payments. Amounts are in minor units and only summed within a currency.
+ */
+public record PaymentStatisticsDto(
+        String window,
+        long bucketSeconds,
+        long approvedCount,
+        long declinedCount,
+        Double approvalRate,
+        List<CurrencyStatistics> currencies
+) {
+    public record CurrencyStatistics(
+            String currency,
+            long approvedCount,
+            long approvedAmount,
+            long declinedCount,
+            long declinedAmount,
+            Double approvalRate
+    ) {}
+}
@@ -6,8 +6,13 @@ public record PostPaymentRequestDto(
         Integer expiryYear,
         String currency,
         Integer amount,
-        String cvv
+        String cvv,
+        String cardToken
 ) {
+    public PostPaymentRequestDto(String cardNumber, Integer expiryMonth, Integer expiryYear, String currency, Integer amount, String cvv) {
+        this(cardNumber, expiryMonth, expiryYear, currency, amount, cvv, null);
+    }
+
     public String getMaskedCardNumber() {
         return cardNumber == null ? null : 
             "*".repeat(cardNumber.length() - 4) + cardNumber.substring(cardNumber.length() - 4);
@@ -26,6 +31,7 @@ public record PostPaymentRequestDto(
             ", currency='" + currency + '\'' +
             ", amount=" + amount +
             ", cvv='" + getMaskedCvv() + '\'' +
+            ", cardToken=" + (cardToken == null ? null : "'" + cardToken + "'") +
             '}';
     }
 }
\ No newline at end of file
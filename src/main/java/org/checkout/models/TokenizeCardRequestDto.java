@@ -0,0 +1,21 @@
+package org.checkout.models;
+
+public record TokenizeCardRequestDto(
+        String cardNumber,
+        Integer expiryMonth,
+        Integer expiryYear
+) {
+    public String getMaskedCardNumber() {
+        return cardNumber == null || cardNumber.length() < 4 ? null :
+            "*".repeat(cardNumber.length() - 4) + cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    @Override
+    public String toString() {
+        return "TokenizeCardRequestDto{" +
+            "cardNumber='" + getMaskedCardNumber() + '\'' +
+            ", expiryMonth=" + expiryMonth +
+            ", expiryYear=" + expiryYear +
+            '}';
+    }
+}
@@ -64,7 +64,8 @@ public sealed interface ValidationResult<T> {
         private final List<String> errors;
 
         public ValidationException(String message, List<String> errors) {
-            super(message);
+            // Stackless: invalid input is expected, and filling in the stack trace dominates the cost of rejecting it
+            super(message, null, false, false);
             this.errors = errors;
         }
 
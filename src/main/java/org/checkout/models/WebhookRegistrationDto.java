@@ -0,0 +1,6 @@
+package org.checkout.models;
+
+public record WebhookRegistrationDto(
+        String url
+) {
+}
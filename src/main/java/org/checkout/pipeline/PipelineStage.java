@@ -0,0 +1,174 @@
+package org.checkout.pipeline;
+
+import org.checkout.metrics.PaymentMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * One stage of a staged (SEDA) pipeline: an inbound {@link RingBuffer} and a fixed set of threads that drain it in
+ * batches and run every element through the stage's handler. The handler passes elements on to the next stage
+ * itself, so stages only know about their successor.
+ *
+ * <p>Idle threads spin briefly, then park until a producer wakes them; a busy stage never parks. Queue depth, busy
+ * threads and throughput are exported per stage, so the stage whose queue keeps growing is the bottleneck.
+ */
+public class PipelineStage<T> implements AutoCloseable {
+
+    private static final int SPINS_BEFORE_PARKING = 200;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String name;
+    private final RingBuffer<T> queue;
+    private final Consumer<T> handler;
+    private final int batchSize;
+    private final List<Thread> threads;
+    private final Queue<Thread> parked = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger busyThreads = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param name          stage name, used for thread names and as the label of the stage's metrics
+     * @param threads       threads draining the stage's queue
+     * @param queueCapacity elements the stage holds before {@link #offer} fails, rounded up to a power of two
+     * @param batchSize     most elements a thread takes off the queue at once; use 1 for stages that block, so a
+     *                      blocked thread never holds elements other threads could be running
+     * @param handler       runs every element; must not throw
+     */
+    public PipelineStage(String name, int threads, int queueCapacity, int batchSize, Consumer<T> handler) {
+        this.name = name;
+        this.queue = new RingBuffer<>(queueCapacity);
+        this.handler = handler;
+        this.batchSize = batchSize;
+        this.threads = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::drain, "pipeline-" + name + "-" + (i + 1));
+            thread.setDaemon(true);
+            this.threads.add(thread);
+        }
+        this.threads.forEach(Thread::start);
+    }
+
+    /**
+     * Hands {@code element} to the stage without waiting.
+     *
+     * @return {@code false} if the stage's queue is full or the stage is closed
+     */
+    public boolean offer(T element) {
+        if (!running || !queue.offer(element)) {
+            return false;
+        }
+        wakeOne();
+        return true;
+    }
+
+    /**
+     * Hands {@code element} to the stage, waiting while its queue is full. Used between stages, so a slow stage
+     * backs up into the ones before it until the first stage starts turning work away.
+     */
+    public void put(T element) {
+        while (!queue.offer(element)) {
+            LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+        }
+        wakeOne();
+    }
+
+    /**
+     * Registers the stage's gauges, labelled with the stage name.
+     */
+    public void registerMetrics(PaymentMetrics metrics) {
+        String prefix = "pipeline_" + name + "_";
+        metrics.registerGauge(prefix + "queue_depth", "Payments waiting in the " + name + " stage queue", queue::size);
+        metrics.registerGauge(prefix + "queue_capacity", "Payments the " + name + " stage queues before rejecting or blocking", queue::capacity);
+        metrics.registerGauge(prefix + "threads", "Threads of the " + name + " stage", threads::size);
+        metrics.registerGauge(prefix + "busy_threads", "Threads of the " + name + " stage running payments", busyThreads::get);
+        metrics.registerGauge(prefix + "processed", "Payments the " + name + " stage has run", processed::sum);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long processedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * Stops taking new elements, runs the ones already queued and waits for the stage's threads to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        threads.forEach(LockSupport::unpark);
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        @SuppressWarnings("unchecked")
+        T[] batch = (T[]) new Object[batchSize];
+        int idleSpins = 0;
+        while (running || !queue.isEmpty()) {
+            int count = queue.drainTo(batch);
+            if (count == 0) {
+                idleSpins = idle(idleSpins);
+                continue;
+            }
+
+            idleSpins = 0;
+            busyThreads.incrementAndGet();
+            try {
+                for (int i = 0; i < count; i++) {
+                    T element = batch[i];
+                    batch[i] = null;
+                    handler.accept(element);
+                }
+            } finally {
+                busyThreads.decrementAndGet();
+                processed.add(count);
+            }
+        }
+    }
+
+    private int idle(int idleSpins) {
+        if (idleSpins < SPINS_BEFORE_PARKING) {
+            Thread.onSpinWait();
+            return idleSpins + 1;
+        }
+
+        Thread current = Thread.currentThread();
+        parked.add(current);
+        // Re-check after announcing ourselves, so an element offered in between is not left waiting for the timeout
+        if (queue.isEmpty() && running) {
+            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        parked.remove(current);
+        return 0;
+    }
+
+    private void wakeOne() {
+        Thread sleeper = parked.poll();
+        if (sleeper != null) {
+            LockSupport.unpark(sleeper);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.checkout.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free multi-producer multi-consumer queue on a power-of-two ring of slots.
+ *
+ * <p>Every slot carries a sequence number that says whose turn it is: a producer may fill slot {@code i} for position
+ * {@code p} once its sequence is {@code p}, and publishes it by setting the sequence to {@code p + 1}; a consumer
+ * frees it again by setting it to {@code p + capacity}. Producers and consumers each claim positions with a CAS on
+ * their own cursor, so neither side ever takes a lock. Consumers claim every published slot up to a batch size in one
+ * CAS, which is what keeps the hand-off cheap when a stage falls behind.
+ */
+public final class RingBuffer<T> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity slots in the ring, rounded up to a power of two of at least 2: with a single slot, a published
+     *                 element and a free slot would carry the same sequence
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds {@code element} to the tail of the ring.
+     *
+     * @return {@code false} if the ring is full
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (lag < 0) {
+                return false;
+            }
+            // Another producer claimed this position first, try the next one
+        }
+    }
+
+    /**
+     * Moves up to {@code batch.length} elements from the head of the ring into {@code batch}, in order.
+     *
+     * @return the number of elements moved, {@code 0} if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(T[] batch) {
+        while (true) {
+            long position = head.get();
+            int available = 0;
+            while (available < batch.length && sequences.get((int) (position + available) & mask) == position + available + 1) {
+                available++;
+            }
+            if (available == 0) {
+                if (head.get() == position) {
+                    return 0;
+                }
+                continue;
+            }
+            if (head.compareAndSet(position, position + available)) {
+                for (int i = 0; i < available; i++) {
+                    int index = (int) (position + i) & mask;
+                    batch[i] = (T) elements[index];
+                    elements[index] = null;
+                    sequences.set(index, position + i + elements.length);
+                }
+                return available;
+            }
+        }
+    }
+
+    /**
+     * Elements waiting in the ring. Only a snapshot while producers and consumers are active.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,178 @@
+package org.checkout.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotencyRecord;
+import org.checkout.repository.IdempotentKeyStore;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency keys held in a Redis-protocol server, so every gateway replica sees the keys stored by the others.
+ *
+ * <p>Keys are stored with an atomic {@code SET key record NX PX ttl}, so they expire on their own after {@code ttl}
+ * and a key that is already there keeps its original record and expiry. The record is the payment's fingerprint and
+ * response as one short {@code |}-separated string, so any replica can answer a retry. A payment on its way to the
+ * bank first reserves its key the same way with an {@code IN_FLIGHT} marker, so of concurrent requests on any
+ * replicas only one is sent. The marker is then overwritten with the record, with an {@code OUTCOME_UNKNOWN} marker
+ * if the bank may have charged the payment without the gateway learning the result, or deleted if the bank call
+ * definitely failed. Commands from all threads are pipelined over one connection (see {@link RespConnection}). Keys
+ * this node stored are also kept in a small local near-cache that expires them no later than the server does, so a
+ * retry that reaches the same node is answered without a round trip.
+ */
+public class RedisIdempotentKeyStore implements IdempotentKeyStore, AutoCloseable {
+
+    private static final String KEY_PREFIX = "cko:idempotency:";
+
+    private final String host;
+    private final int port;
+    private final String ttlMillis;
+    private final Duration commandTimeout;
+    private final Cache<String, IdempotencyRecord> nearCache;
+
+    private volatile RespConnection connection;
+
+    /**
+     * @param ttl            how long a key is kept after it is stored
+     * @param nearCacheSize  most keys held in the local near-cache
+     * @param commandTimeout how long to wait for a reply before the store counts as unavailable
+     */
+    public RedisIdempotentKeyStore(String host, int port, Duration ttl, int nearCacheSize, Duration commandTimeout) {
+        this.host = host;
+        this.port = port;
+        this.ttlMillis = Long.toString(ttl.toMillis());
+        this.commandTimeout = commandTimeout;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> get(String key) {
+        IdempotencyRecord cached = nearCache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        String encoded = (String) execute("GET", KEY_PREFIX + key);
+        return encoded != null ? Optional.of(decode(encoded)) : Optional.empty();
+    }
+
+    @Override
+    public void add(String key, IdempotencyRecord record) {
+        // Only a key this call created is cached; one set earlier elsewhere may expire sooner than the cache entry
+        if ("OK".equals(execute("SET", KEY_PREFIX + key, encode(record), "NX", "PX", ttlMillis))) {
+            nearCache.put(key, record);
+        }
+    }
+
+    @Override
+    public boolean reserve(String key, long fingerprint) {
+        return "OK".equals(execute("SET", KEY_PREFIX + key, encode(IdempotencyRecord.inFlight(fingerprint)), "NX", "PX", ttlMillis));
+    }
+
+    // A plain SET, since only the request holding the reservation completes or releases the key
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        execute("SET", KEY_PREFIX + key, encode(record), "PX", ttlMillis);
+        nearCache.put(key, record);
+    }
+
+    @Override
+    public void release(String key) {
+        execute("DEL", KEY_PREFIX + key);
+    }
+
+    /**
+     * Returns the number of keys in the server's database, which is expected to hold only idempotency keys. Costs a
+     * round trip; see {@link #nearCacheSize()} for a value that is cheap to sample.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, (Long) execute("DBSIZE"));
+    }
+
+    /**
+     * Returns about how many keys the local near-cache holds, without asking the server.
+     */
+    public long nearCacheSize() {
+        return nearCache.estimatedSize();
+    }
+
+    @Override
+    public void close() {
+        RespConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    static String encode(IdempotencyRecord record) {
+        if (record.state() != IdempotencyRecord.State.COMPLETED) {
+            return record.state().name() + '|' + Long.toHexString(record.fingerprint());
+        }
+        PostPaymentResponseDto response = record.response();
+        return Long.toHexString(record.fingerprint()) + '|' + response.id() + '|' + response.status() + '|'
+                + response.lastFourCardDigits() + '|' + response.expiryMonth() + '|' + response.expiryYear() + '|'
+                + response.currency() + '|' + response.amount();
+    }
+
+    static IdempotencyRecord decode(String encoded) {
+        String[] fields = encoded.split("\\|");
+        if (fields.length == 2) {
+            long fingerprint = Long.parseUnsignedLong(fields[1], 16);
+            return switch (fields[0]) {
+                case "IN_FLIGHT" -> IdempotencyRecord.inFlight(fingerprint);
+                case "OUTCOME_UNKNOWN" -> IdempotencyRecord.outcomeUnknown(fingerprint);
+                default -> throw new PaymentStoreUnavailableException("Unreadable idempotency record: " + encoded, null);
+            };
+        }
+        if (fields.length != 8) {
+            throw new PaymentStoreUnavailableException("Unreadable idempotency record: " + encoded, null);
+        }
+        return new IdempotencyRecord(Long.parseUnsignedLong(fields[0], 16), new PostPaymentResponseDto(fields[1], fields[2],
+                fields[3], Integer.parseInt(fields[4]), Integer.parseInt(fields[5]), fields[6], Long.parseLong(fields[7])));
+    }
+
+    private Object execute(String... command) {
+        CompletableFuture<Object> reply;
+        try {
+            reply = connection().send(command);
+        } catch (IOException e) {
+            throw new PaymentStoreUnavailableException("Unable to connect to the idempotency store at " + host + ":" + port, e);
+        }
+        try {
+            return reply.get(commandTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new PaymentStoreUnavailableException("Idempotency store command " + command[0] + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new PaymentStoreUnavailableException("Idempotency store command " + command[0] + " timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentStoreUnavailableException("Interrupted while waiting for the idempotency store", e);
+        }
+    }
+
+    // Replaces a failed connection on the next command
+    private RespConnection connection() throws IOException {
+        RespConnection current = connection;
+        if (current != null && !current.isBroken()) {
+            return current;
+        }
+        synchronized (this) {
+            if (connection == null || connection.isBroken()) {
+                connection = RespConnection.open(host, port);
+            }
+            return connection;
+        }
+    }
+}
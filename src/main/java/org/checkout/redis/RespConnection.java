@@ -0,0 +1,247 @@
+package org.checkout.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A pipelined connection to a server speaking the Redis serialization protocol (RESP).
+ *
+ * <p>Callers never wait for each other: {@link #send} queues the command and returns a future for its reply. A writer
+ * thread writes every queued command and flushes once per batch, and a reader thread completes the futures in the
+ * order the replies arrive, which is the order the commands were sent. Under load, many commands share one packet
+ * and one round trip. Once the connection fails, every outstanding and later command fails with the same
+ * {@link IOException}, and the owner opens a new connection.
+ */
+final class RespConnection implements AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final BlockingQueue<Command> outbox = new LinkedBlockingQueue<>();
+    private final Queue<CompletableFuture<Object>> awaitingReply = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final Thread reader;
+
+    private volatile IOException failure;
+
+    private RespConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+        this.writer = new Thread(this::writeLoop, "resp-writer");
+        this.reader = new Thread(this::readLoop, "resp-reader");
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    static RespConnection open(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        return new RespConnection(socket);
+    }
+
+    /**
+     * Sends a command. The reply is a {@link String} for simple strings and bulk strings, a {@link Long} for integers,
+     * a {@link List} for arrays and {@code null} for a null bulk string. An error reply completes the future
+     * exceptionally with a {@link RespErrorException}.
+     */
+    CompletableFuture<Object> send(String... arguments) {
+        CompletableFuture<Object> reply = new CompletableFuture<>();
+        IOException failed = failure;
+        if (failed != null) {
+            reply.completeExceptionally(failed);
+            return reply;
+        }
+        outbox.add(new Command(arguments, reply));
+        // The connection may have failed after the check and before the command was queued
+        if (failure != null) {
+            failAll(failure);
+        }
+        return reply;
+    }
+
+    boolean isBroken() {
+        return failure != null;
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection closed"));
+    }
+
+    private void writeLoop() {
+        List<Command> batch = new ArrayList<>();
+        try {
+            while (failure == null) {
+                batch.add(outbox.take());
+                outbox.drainTo(batch);
+                for (Command command : batch) {
+                    // Registered before writing, so the reply can never arrive ahead of its future
+                    awaitingReply.add(command.reply());
+                    write(command.arguments());
+                }
+                out.flush();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new IOException("Connection closed", e));
+        }
+        for (Command command : batch) {
+            command.reply().completeExceptionally(failure);
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (failure == null) {
+                Object reply;
+                try {
+                    reply = read();
+                } catch (RespErrorException e) {
+                    complete(e);
+                    continue;
+                }
+                complete(reply);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void complete(Object reply) throws IOException {
+        CompletableFuture<Object> future = awaitingReply.poll();
+        if (future == null) {
+            throw new IOException("Reply without a command");
+        }
+        if (reply instanceof RespErrorException error) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(reply);
+        }
+    }
+
+    private void write(String[] arguments) throws IOException {
+        out.write('*');
+        writeNumber(arguments.length);
+        for (String argument : arguments) {
+            byte[] bytes = argument.getBytes(StandardCharsets.UTF_8);
+            out.write('$');
+            writeNumber(bytes.length);
+            out.write(bytes);
+            out.write(CRLF);
+        }
+    }
+
+    private void writeNumber(long number) throws IOException {
+        out.write(Long.toString(number).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private Object read() throws IOException {
+        int type = in.read();
+        return switch (type) {
+            case '+' -> readLine();
+            case '-' -> throw new RespErrorException(readLine());
+            case ':' -> Long.parseLong(readLine());
+            case '$' -> {
+                int length = Integer.parseInt(readLine());
+                if (length < 0) {
+                    yield null;
+                }
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length < length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException("Connection closed mid-reply");
+                }
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+            case '*' -> {
+                int count = Integer.parseInt(readLine());
+                if (count < 0) {
+                    yield null;
+                }
+                List<Object> elements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    elements.add(read());
+                }
+                yield elements;
+            }
+            case -1 -> throw new EOFException("Connection closed by the server");
+            default -> throw new IOException("Unexpected reply type " + (char) type);
+        };
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException("Connection closed mid-reply");
+            }
+            line.append((char) b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Malformed reply line");
+        }
+        return line.toString();
+    }
+
+    private void fail(IOException cause) {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = cause;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        writer.interrupt();
+        failAll(cause);
+    }
+
+    private void failAll(IOException cause) {
+        CompletableFuture<Object> future;
+        while ((future = awaitingReply.poll()) != null) {
+            future.completeExceptionally(cause);
+        }
+        Command command;
+        while ((command = outbox.poll()) != null) {
+            command.reply().completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * An error reply from the server, such as a wrong command or type.
+     */
+    static final class RespErrorException extends IOException {
+        RespErrorException(String message) {
+            super(message);
+        }
+    }
+
+    private record Command(String[] arguments, CompletableFuture<Object> reply) {}
+}
@@ -0,0 +1,209 @@
+package org.checkout.replication;
+
+import org.checkout.cluster.ClusterNode;
+import org.checkout.exceptions.ReadOnlyReplicaException;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.PaymentCodec;
+import org.checkout.repository.PaymentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Follower side of replication: a read-only copy of the leader's payments. A background thread subscribes to the
+ * leader's replication stream, applies entries in order and reconnects from the last applied position if the
+ * connection drops, so no write is missed or applied twice.
+ *
+ * <p>Lag is the time since the leader wrote the newest entry or heartbeat this node has applied. It relies on the
+ * leader's and follower's clocks being reasonably in sync, and grows steadily while the leader is unreachable.
+ */
+public class FollowerPaymentsRepository implements ReplicatedPaymentsRepository, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(FollowerPaymentsRepository.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+
+    private final ClusterNode leader;
+    private final Duration reconnectDelay;
+    private final long readTimeoutMillis;
+    private final PaymentsRepository localPayments = new PaymentsRepository();
+    private final Object applied = new Object();
+    private final Thread replicator;
+
+    private volatile long position;
+    private volatile long leaderTimestampMillis = System.currentTimeMillis();
+    private volatile boolean connected;
+    private volatile boolean closed;
+    private volatile Socket socket;
+
+    /**
+     * @param leader            replication address of the leader
+     * @param heartbeatInterval the leader's heartbeat interval; a connection that stays silent for several intervals
+     *                          is treated as broken
+     * @param reconnectDelay    pause between attempts to reach the leader
+     */
+    public FollowerPaymentsRepository(ClusterNode leader, Duration heartbeatInterval, Duration reconnectDelay) {
+        this.leader = leader;
+        this.reconnectDelay = reconnectDelay;
+        this.readTimeoutMillis = Math.max(1_000, heartbeatInterval.toMillis() * 10);
+        this.replicator = new Thread(this::replicate, "replication-follower");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto payment) {
+        ensureWritable();
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        return localPayments.get(id);
+    }
+
+    @Override
+    public int size() {
+        return localPayments.size();
+    }
+
+    @Override
+    public void ensureWritable() {
+        throw new ReadOnlyReplicaException(leader.id());
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public boolean awaitPosition(long target, Duration timeout) {
+        if (position >= target) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (applied) {
+            while (position < target) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                try {
+                    applied.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long lagMillis() {
+        return Math.max(0, System.currentTimeMillis() - leaderTimestampMillis);
+    }
+
+    @Override
+    public ReplicationStatus status() {
+        return new ReplicationStatus.Replica("follower", leader.id(), connected, position, lagMillis());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        replicator.interrupt();
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void replicate() {
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout((int) readTimeoutMillis);
+                connection.connect(new InetSocketAddress(leader.host(), leader.port()), CONNECT_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+                out.writeByte(ReplicationProtocol.SUBSCRIBE);
+                out.writeLong(position);
+                out.flush();
+                connected = true;
+                logger.info("Replicating from leader {} starting after position {}", leader, position);
+                apply(in, out);
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("Lost connection to replication leader {}: {}", leader, e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+
+            if (!closed) {
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(DataInputStream in, DataOutputStream out) throws IOException {
+        while (!closed) {
+            byte frame = in.readByte();
+            if (frame == ReplicationProtocol.ENTRY) {
+                long entryPosition = in.readLong();
+                long timestamp = in.readLong();
+                PostPaymentResponseDto payment = PaymentCodec.read(in);
+                if (entryPosition != position + 1) {
+                    throw new IOException("Expected position " + (position + 1) + " but received " + entryPosition);
+                }
+                localPayments.add(payment);
+                position = entryPosition;
+                leaderTimestampMillis = timestamp;
+            } else if (frame == ReplicationProtocol.HEARTBEAT) {
+                in.readLong();
+                leaderTimestampMillis = in.readLong();
+            } else if (frame == ReplicationProtocol.SNAPSHOT) {
+                long snapshotPosition = in.readLong();
+                long timestamp = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    localPayments.add(PaymentCodec.read(in));
+                }
+                logger.info("Resynced {} payments from a leader snapshot at position {}", count, snapshotPosition);
+                position = snapshotPosition;
+                leaderTimestampMillis = timestamp;
+            } else {
+                throw new IOException("Unknown replication frame " + frame);
+            }
+
+            // Acknowledge and wake up waiting readers once per batch rather than once per entry
+            if (in.available() == 0) {
+                out.writeByte(ReplicationProtocol.ACK);
+                out.writeLong(position);
+                out.flush();
+                synchronized (applied) {
+                    applied.notifyAll();
+                }
+            }
+        }
+    }
+}
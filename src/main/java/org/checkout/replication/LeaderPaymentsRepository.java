@@ -0,0 +1,219 @@
+package org.checkout.replication;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.PaymentCodec;
+import org.checkout.repository.PaymentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Leader side of replication. Writes go to the local store and are appended to a {@link ReplicationLog}, which is
+ * streamed to every connected follower on its own virtual thread. Reads are served locally.
+ *
+ * <p>The log only holds the most recent writes. A follower that falls further behind, or subscribes from a position
+ * the log no longer reaches, resyncs from a snapshot of the local store.
+ */
+public class LeaderPaymentsRepository implements ReplicatedPaymentsRepository, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LeaderPaymentsRepository.class);
+
+    private static final int MAX_ENTRIES_PER_FLUSH = 256;
+
+    private final PaymentsRepository localPayments = new PaymentsRepository();
+    private final ReplicationLog log;
+    private final Set<FollowerConnection> followers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final ServerSocket serverSocket;
+    private final long heartbeatIntervalMillis;
+
+    /**
+     * Starts listening for followers. Pass port 0 to bind an ephemeral port.
+     *
+     * @param logCapacity most recent writes kept for followers to catch up from
+     */
+    public LeaderPaymentsRepository(String host, int port, Duration heartbeatInterval, int logCapacity) throws IOException {
+        this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+        this.log = new ReplicationLog(logCapacity);
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(host, port));
+        Thread acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto payment) {
+        localPayments.add(payment);
+        log.append(payment);
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        return localPayments.get(id);
+    }
+
+    @Override
+    public int size() {
+        return localPayments.size();
+    }
+
+    @Override
+    public void ensureWritable() {
+        // The leader takes every write
+    }
+
+    @Override
+    public long position() {
+        return log.head();
+    }
+
+    @Override
+    public boolean awaitPosition(long position, Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public long lagMillis() {
+        return 0;
+    }
+
+    @Override
+    public ReplicationStatus status() {
+        long head = log.head();
+        List<ReplicationStatus.Follower> followerStatuses = followers.stream()
+                .map(follower -> new ReplicationStatus.Follower(
+                        follower.address, follower.acknowledged, head - follower.acknowledged))
+                .sorted(Comparator.comparing(ReplicationStatus.Follower::address))
+                .toList();
+        return new ReplicationStatus.Leader("leader", head, followerStatuses);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close replication server socket", e);
+        }
+        connections.shutdownNow();
+    }
+
+    private void acceptFollowers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.submit(() -> stream(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Failed to accept follower connection", e);
+                }
+            }
+        }
+    }
+
+    private void stream(Socket socket) {
+        FollowerConnection follower = new FollowerConnection(socket.getRemoteSocketAddress().toString());
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            if (in.readByte() != ReplicationProtocol.SUBSCRIBE) {
+                throw new IOException("Expected a subscription from " + follower.address);
+            }
+            long sent = in.readLong();
+            if (sent > log.head()) {
+                // The follower holds writes this leader never made, for example after the leader lost its data
+                throw new IOException("Follower is at position " + sent + ", ahead of the leader at " + log.head());
+            }
+            follower.acknowledged = sent;
+            followers.add(follower);
+            connections.submit(() -> readAcknowledgements(in, follower));
+            logger.info("Follower {} subscribed from position {}", follower.address, sent);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ReplicationLog.Entry> entries = log.readAfter(sent, MAX_ENTRIES_PER_FLUSH, heartbeatIntervalMillis);
+                if (entries == null) {
+                    sent = sendSnapshot(out, follower);
+                    continue;
+                }
+                if (entries.isEmpty()) {
+                    out.writeByte(ReplicationProtocol.HEARTBEAT);
+                    out.writeLong(sent);
+                    out.writeLong(System.currentTimeMillis());
+                }
+                for (ReplicationLog.Entry entry : entries) {
+                    out.writeByte(ReplicationProtocol.ENTRY);
+                    out.writeLong(entry.position());
+                    out.writeLong(entry.timestampMillis());
+                    PaymentCodec.write(out, entry.payment());
+                    sent = entry.position();
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.info("Follower {} disconnected: {}", follower.address, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(follower);
+        }
+    }
+
+    // Every write up to the head is in the local store before it is appended, so a copy taken after reading the head
+    // holds all of them. It may also hold a few later writes, which the follower applies again harmlessly.
+    private long sendSnapshot(DataOutputStream out, FollowerConnection follower) throws IOException {
+        long position = log.head();
+        List<PostPaymentResponseDto> payments = new ArrayList<>(localPayments.values());
+        out.writeByte(ReplicationProtocol.SNAPSHOT);
+        out.writeLong(position);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(payments.size());
+        for (PostPaymentResponseDto payment : payments) {
+            PaymentCodec.write(out, payment);
+        }
+        out.flush();
+        logger.info("Follower {} is behind the replication log, sent a snapshot of {} payments at position {}",
+                follower.address, payments.size(), position);
+        return position;
+    }
+
+    private static void readAcknowledgements(DataInputStream in, FollowerConnection follower) {
+        try {
+            while (in.readByte() == ReplicationProtocol.ACK) {
+                follower.acknowledged = in.readLong();
+            }
+        } catch (IOException e) {
+            // The streaming side notices the broken connection on its next write
+        }
+    }
+
+    private static final class FollowerConnection {
+        private final String address;
+        private volatile long acknowledged;
+
+        private FollowerConnection(String address) {
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.checkout.replication;
+
+import org.checkout.exceptions.ReadOnlyReplicaException;
+import org.checkout.repository.IPaymentsRepository;
+
+import java.time.Duration;
+
+/**
+ * A payment repository that takes part in leader-follower replication. Every write on the leader is assigned the
+ * next position in the replication log; followers apply the log in order, so a follower that has applied position
+ * {@code n} holds every payment written up to and including {@code n}.
+ */
+public interface ReplicatedPaymentsRepository extends IPaymentsRepository {
+
+    /**
+     * Throws {@link ReadOnlyReplicaException} if this node does not take writes. Checked before a payment is sent to
+     * the bank, so a misrouted payment is never authorised without being stored.
+     */
+    void ensureWritable();
+
+    /**
+     * Latest position written (leader) or applied (follower).
+     */
+    long position();
+
+    /**
+     * Waits until this node has applied the given position. Returns {@code false} if it has not done so within the
+     * timeout.
+     */
+    boolean awaitPosition(long position, Duration timeout);
+
+    /**
+     * How far behind the leader this node is, in milliseconds. Always zero on the leader.
+     */
+    long lagMillis();
+
+    ReplicationStatus status();
+}
@@ -0,0 +1,74 @@
+package org.checkout.replication;
+
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered log of the writes made on the leader, holding the most recent {@code capacity} entries in a ring. Entries
+ * only hold references to payments that the repository keeps anyway, so the log costs one small object per retained
+ * write. A follower that is behind the oldest retained entry cannot catch up from the log and is sent a snapshot
+ * instead.
+ */
+final class ReplicationLog {
+
+    record Entry(long position, long timestampMillis, PostPaymentResponseDto payment) {}
+
+    private final Entry[] entries;
+    private long head;
+
+    /**
+     * @param capacity most entries held; older ones are overwritten
+     */
+    ReplicationLog(int capacity) {
+        this.entries = new Entry[capacity];
+    }
+
+    synchronized long append(PostPaymentResponseDto payment) {
+        long position = ++head;
+        entries[slot(position)] = new Entry(position, System.currentTimeMillis(), payment);
+        notifyAll();
+        return position;
+    }
+
+    synchronized long head() {
+        return head;
+    }
+
+    /**
+     * Position of the newest entry that is no longer held. Reading after any earlier position is impossible.
+     */
+    synchronized long start() {
+        return Math.max(0, head - entries.length);
+    }
+
+    /**
+     * Returns up to {@code max} entries after {@code position}, waiting up to {@code timeoutMillis} for one to be
+     * appended if there are none yet. Returns an empty list if the wait times out, and {@code null} if the entries
+     * right after {@code position} have already been overwritten.
+     */
+    synchronized List<Entry> readAfter(long position, int max, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (head <= position) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return List.of();
+            }
+            wait(remaining);
+        }
+        if (position < start()) {
+            return null;
+        }
+        long last = Math.min(head, position + max);
+        List<Entry> batch = new ArrayList<>((int) (last - position));
+        for (long next = position + 1; next <= last; next++) {
+            batch.add(entries[slot(next)]);
+        }
+        return batch;
+    }
+
+    private int slot(long position) {
+        return (int) ((position - 1) % entries.length);
+    }
+}
@@ -0,0 +1,31 @@
+package org.checkout.replication;
+
+/**
+ * Wire format of the replication stream. A follower opens a connection and subscribes from the last position it
+ * applied; the leader then streams every later entry, followed by heartbeats whenever it has nothing to send. If the
+ * follower is behind the oldest entry the leader still holds, the leader first sends a snapshot of every payment it
+ * holds and streams on from the snapshot's position. Followers acknowledge the position they have applied on the same
+ * connection.
+ *
+ * <pre>
+ * follower -> leader   SUBSCRIBE   position
+ * leader -> follower   ENTRY       position, timestamp, payment
+ * leader -> follower   HEARTBEAT   position, timestamp
+ * leader -> follower   SNAPSHOT    position, timestamp, count, payment*
+ * follower -> leader   ACK         position
+ * </pre>
+ *
+ * Positions are longs starting at 1, timestamps are the leader's wall clock in epoch milliseconds and payments are
+ * encoded with {@link org.checkout.repository.PaymentCodec}.
+ */
+final class ReplicationProtocol {
+
+    static final byte SUBSCRIBE = 1;
+    static final byte ENTRY = 2;
+    static final byte HEARTBEAT = 3;
+    static final byte ACK = 4;
+    static final byte SNAPSHOT = 5;
+
+    private ReplicationProtocol() {
+    }
+}
@@ -0,0 +1,18 @@
+package org.checkout.replication;
+
+import java.util.List;
+
+/**
+ * Replication state reported by {@code GET /replication/status}.
+ */
+public sealed interface ReplicationStatus {
+
+    record Leader(String role, long position, List<Follower> followers) implements ReplicationStatus {}
+
+    /**
+     * A follower as seen by the leader, with the lag in log entries it last acknowledged.
+     */
+    record Follower(String address, long acknowledgedPosition, long lagEntries) {}
+
+    record Replica(String role, String leader, boolean connected, long position, long lagMillis) implements ReplicationStatus {}
+}
@@ -0,0 +1,76 @@
+package org.checkout.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.util.Optional;
+
+/**
+ * A size-bounded read cache in front of a slower repository, such as one that reads archived payments from disk.
+ *
+ * <p>The cache is a Caffeine cache, whose W-TinyLFU policy only admits a payment in place of another once it has been
+ * read more often recently, so a burst of one-off reads of old payments cannot push the hot ids out. Concurrent misses
+ * for the same id wait for a single load from the wrapped repository. Stored payments never change, so entries are
+ * never stale and are only dropped to make room. Ids that are not found are not cached.
+ */
+public class CachingPaymentsRepository implements IPaymentsRepository {
+
+    private final IPaymentsRepository delegate;
+    private final Cache<String, PostPaymentResponseDto> cache;
+
+    /**
+     * @param maximumPayments most payments held in the cache
+     */
+    public CachingPaymentsRepository(IPaymentsRepository delegate, long maximumPayments) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumPayments)
+                .recordStats()
+                // Maintenance runs on the calling thread instead of the common pool, which the request pools already share
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Adds the payment to the wrapped repository and then to the cache, since new payments are the likeliest to be
+     * read next.
+     */
+    @Override
+    public void add(PostPaymentResponseDto postPaymentResponseDto) {
+        delegate.add(postPaymentResponseDto);
+        cache.put(postPaymentResponseDto.id(), postPaymentResponseDto);
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        return Optional.ofNullable(cache.get(id, key -> delegate.get(key).orElse(null)));
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean acceptsWrites() {
+        return delegate.acceptsWrites();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Registers the cache's size, hit, miss and eviction counts and hit ratio, named {@code payment_cache_*}.
+     */
+    public void registerMetrics(PaymentMetrics metrics) {
+        metrics.registerGauge("payment_cache_size", "Payments held in the read cache", cache::estimatedSize);
+        metrics.registerGauge("payment_cache_hits", "Payment reads answered from the cache", () -> cache.stats().hitCount());
+        metrics.registerGauge("payment_cache_misses", "Payment reads passed on to the repository", () -> cache.stats().missCount());
+        metrics.registerGauge("payment_cache_evictions", "Payments dropped from the cache to make room", () -> cache.stats().evictionCount());
+        metrics.registerDoubleGauge("payment_cache_hit_ratio", "Share of payment reads answered from the cache", () -> cache.stats().hitRate());
+    }
+}
@@ -6,4 +6,14 @@ import java.util.Optional;
 public interface IPaymentsRepository {
     void add(PostPaymentResponseDto postPaymentResponseDto);
     Optional<PostPaymentResponseDto> get(String id);
+    int size();
+
+    /**
+     * Whether a payment added now would be stored without delay. Checked before a payment is sent to the bank, so a
+     * store that is falling behind turns payments away while that is still safe: {@link #add} runs only after the bank
+     * has charged and should not fail for lack of room.
+     */
+    default boolean acceptsWrites() {
+        return true;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,48 @@
+package org.checkout.repository;
+
+import org.checkout.models.PostPaymentResponseDto;
+
+/**
+ * What an idempotency key is bound to: the
+ * {@link org.checkout.risk.CardFingerprinter#fingerprint(org.checkout.models.Payment) fingerprint} of the payment first
+ * sent with the key and, once that payment is completed, the response it got.
+ */
+public record IdempotencyRecord(long fingerprint, State state, PostPaymentResponseDto response) {
+
+    public enum State {
+        /**
+         * Reserved by a payment whose bank call has not finished, so there is no response yet.
+         */
+        IN_FLIGHT,
+        /**
+         * Bound to the response the payment got.
+         */
+        COMPLETED,
+        /**
+         * The payment was sent to the bank, but whether it was charged is unknown, so it must not be sent again.
+         */
+        OUTCOME_UNKNOWN
+    }
+
+    public IdempotencyRecord(long fingerprint, PostPaymentResponseDto response) {
+        this(fingerprint, State.COMPLETED, response);
+    }
+
+    /**
+     * The record of a key reserved by a payment whose bank call has not finished.
+     */
+    public static IdempotencyRecord inFlight(long fingerprint) {
+        return new IdempotencyRecord(fingerprint, State.IN_FLIGHT, null);
+    }
+
+    /**
+     * The record of a key whose payment may or may not have been charged by the bank.
+     */
+    public static IdempotencyRecord outcomeUnknown(long fingerprint) {
+        return new IdempotencyRecord(fingerprint, State.OUTCOME_UNKNOWN, null);
+    }
+
+    public boolean isInFlight() {
+        return state == State.IN_FLIGHT;
+    }
+}
@@ -1,20 +1,62 @@
 package org.checkout.repository;
 
+import java.util.Optional;
+
 /**
  * Interface defining operations for managing idempotency keys to prevent duplicate request processing.
  */
 public interface IdempotentKeyStore {
-    
+
+    /**
+     * Returns what the given idempotency key is bound to
+     * @param key The idempotency key to look up
+     * @return the record stored with the key, empty if the key has not been used
+     */
+    Optional<IdempotencyRecord> get(String key);
+
     /**
      * Checks if the given idempotency key exists in the store
      * @param key The idempotency key to check
      * @return true if the key exists, false otherwise
      */
-    boolean contains(String key);
+    default boolean contains(String key) {
+        return get(key).isPresent();
+    }
 
     /**
-     * Adds a new idempotency key to the store
+     * Binds a new idempotency key to the payment it was used for. A key that is already bound keeps its first record.
      * @param key The idempotency key to add
+     * @param record The fingerprint and response of the payment
+     */
+    void add(String key, IdempotencyRecord record);
+
+    /**
+     * Reserves an unused key for a payment about to be sent to the bank, so that a concurrent request with the same key
+     * is not sent as well. Until {@link #complete} or {@link #release}, the key reads as
+     * {@link IdempotencyRecord#inFlight in flight}.
+     * @param key The idempotency key to reserve
+     * @param fingerprint The fingerprint of the payment
+     * @return true if this call reserved the key, false if it was already reserved or bound
+     */
+    boolean reserve(String key, long fingerprint);
+
+    /**
+     * Replaces the reservation held on a key with the record of the payment once the bank has answered.
+     * @param key The idempotency key reserved by the caller
+     * @param record The fingerprint and response of the payment
+     */
+    void complete(String key, IdempotencyRecord record);
+
+    /**
+     * Drops the reservation held on a key after its payment failed, so the key can be used again. A key that is
+     * already bound keeps its record.
+     * @param key The idempotency key reserved by the caller
+     */
+    void release(String key);
+
+    /**
+     * Returns the number of idempotency keys currently held in the store
+     * @return the number of stored keys
      */
-    void add(String key);
-} 
\ No newline at end of file
+    int size();
+}
@@ -1,7 +1,12 @@
 package org.checkout.repository;
 
-import java.util.HashSet;
-import java.util.Set;
+import org.checkout.jfr.RepositoryOperationEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * In-memory implementation of IdempotentKeyStore.
@@ -13,13 +18,72 @@ import java.util.Set;
  */
 public class IdempotentKeyStoreRepository implements IdempotentKeyStore {
 
-    private final Set<String> idempotencyKeys = new HashSet<>();
+    // Each record is stamped with the snapshot epoch it was added in
+    private final ConcurrentHashMap<String, Stored> idempotencyKeys;
+    private volatile long epoch;
+
+    public IdempotentKeyStoreRepository() {
+        this(16);
+    }
+
+    /**
+     * @param expectedKeys keys the store is sized for up front, such as those about to be restored
+     */
+    public IdempotentKeyStoreRepository(int expectedKeys) {
+        this.idempotencyKeys = new ConcurrentHashMap<>(expectedKeys);
+    }
+
+    public Optional<IdempotencyRecord> get(String key) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("idempotency_keys", "get");
+        Stored stored = idempotencyKeys.get(key);
+        event.finish(key, stored != null);
+        return stored != null ? Optional.of(stored.record()) : Optional.empty();
+    }
+
+    public void add(String key, IdempotencyRecord record) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("idempotency_keys", "add");
+        idempotencyKeys.putIfAbsent(key, new Stored(record, epoch));
+        event.finish(key, false);
+    }
+
+    public boolean reserve(String key, long fingerprint) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("idempotency_keys", "reserve");
+        boolean reserved = idempotencyKeys.putIfAbsent(key, new Stored(IdempotencyRecord.inFlight(fingerprint), epoch)) == null;
+        event.finish(key, !reserved);
+        return reserved;
+    }
+
+    public void complete(String key, IdempotencyRecord record) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("idempotency_keys", "complete");
+        idempotencyKeys.compute(key, (k, current) -> current == null || current.record().isInFlight() ? new Stored(record, epoch) : current);
+        event.finish(key, false);
+    }
+
+    public void release(String key) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("idempotency_keys", "release");
+        idempotencyKeys.computeIfPresent(key, (k, current) -> current.record().isInFlight() ? null : current);
+        event.finish(key, false);
+    }
 
-    public boolean contains(String key) {
-        return idempotencyKeys.contains(key);
+    public int size() {
+        return idempotencyKeys.size();
     }
 
-    public void add(String key) {
-        idempotencyKeys.add(key);
+    /**
+     * Returns the keys and their records held at one point in time during the call, without blocking writers. See
+     * {@link PaymentsRepository#snapshot()}. Reserved keys are left out: their payments do not outlive the process.
+     */
+    public synchronized List<Map.Entry<String, IdempotencyRecord>> snapshot() {
+        long cut = epoch;
+        epoch = cut + 1;
+        List<Map.Entry<String, IdempotencyRecord>> copy = new ArrayList<>(idempotencyKeys.size());
+        for (Map.Entry<String, Stored> entry : idempotencyKeys.entrySet()) {
+            if (entry.getValue().epoch() <= cut && !entry.getValue().record().isInFlight()) {
+                copy.add(Map.entry(entry.getKey(), entry.getValue().record()));
+            }
+        }
+        return copy;
     }
+
+    private record Stored(IdempotencyRecord record, long epoch) {}
 }
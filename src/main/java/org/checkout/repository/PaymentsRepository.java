@@ -1,22 +1,103 @@
 package org.checkout.repository;
 
+import org.checkout.jfr.RepositoryOperationEvent;
 import org.checkout.models.PostPaymentResponseDto;
 
-import java.util.HashMap;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class PaymentsRepository implements IPaymentsRepository {
 
-    private final HashMap<String, PostPaymentResponseDto> payments = new HashMap<>();
+    private final ConcurrentHashMap<String, Stored> payments;
+
+    // Advanced by every snapshot; each payment remembers the epoch it was first stored in
+    private volatile long epoch;
+
+    public PaymentsRepository() {
+        this(16);
+    }
+
+    /**
+     * @param expectedPayments payments the repository is sized for up front, such as those about to be restored
+     */
+    public PaymentsRepository(int expectedPayments) {
+        this.payments = new ConcurrentHashMap<>(expectedPayments);
+    }
 
     public void add(PostPaymentResponseDto postPaymentResponseDto) {
-        payments.put(postPaymentResponseDto.id(), postPaymentResponseDto);
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("payments", "add");
+        payments.merge(postPaymentResponseDto.id(), new Stored(postPaymentResponseDto, epoch),
+                (existing, replacement) -> new Stored(replacement.payment(), existing.epoch()));
+        event.finish(postPaymentResponseDto.id(), false);
     }
 
     public Optional<PostPaymentResponseDto> get(String id) {
-        return Optional.ofNullable(payments.get(id));
+        RepositoryOperationEvent event = RepositoryOperationEvent.begin("payments", "get");
+        Stored stored = payments.get(id);
+        event.finish(id, stored != null);
+        return stored == null ? Optional.empty() : Optional.of(stored.payment());
+    }
+
+    public int size() {
+        return payments.size();
+    }
+
+    public void remove(String id) {
+        payments.remove(id);
+    }
+
+    /**
+     * Returns a live, weakly consistent view of the stored payments.
+     */
+    public Collection<PostPaymentResponseDto> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<PostPaymentResponseDto> iterator() {
+                Iterator<Stored> stored = payments.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return stored.hasNext();
+                    }
+
+                    @Override
+                    public PostPaymentResponseDto next() {
+                        return stored.next().payment();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return payments.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the payments stored at one point in time during the call, without blocking writers.
+     *
+     * <p>The snapshot starts a new epoch and then keeps only the payments stored in earlier ones. Any payment whose
+     * {@link #add} returned before the call is included, and a payment is never included without every payment
+     * added before it, so the copy matches a state the repository was really in.
+     */
+    public synchronized List<PostPaymentResponseDto> snapshot() {
+        long cut = epoch;
+        epoch = cut + 1;
+        List<PostPaymentResponseDto> copy = new ArrayList<>(payments.size());
+        for (Stored stored : payments.values()) {
+            if (stored.epoch() <= cut) {
+                copy.add(stored.payment());
+            }
+        }
+        return copy;
     }
 
-}
\ No newline at end of file
+    private record Stored(PostPaymentResponseDto payment, long epoch) {}
+}
@@ -0,0 +1,82 @@
+package org.checkout.risk;
+
+import org.checkout.models.Payment;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Turns a card number, or a whole payment, into a 64-bit fingerprint with HMAC-SHA256, so risk counters and
+ * idempotency keys can be matched per card without holding the PAN. Without the secret the fingerprint cannot be
+ * linked back to a card number.
+ */
+public class CardFingerprinter {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> macs;
+
+    public CardFingerprinter(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+        // Fail on startup rather than on the first payment
+        macs.get();
+    }
+
+    /**
+     * A fingerprinter with a random secret. Fingerprints then only stay stable for the life of the process, which is
+     * all in-memory counters need.
+     */
+    public static CardFingerprinter withRandomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return new CardFingerprinter(secret);
+    }
+
+    public static CardFingerprinter withSecret(String secret) {
+        return new CardFingerprinter(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long fingerprint(String cardNumber) {
+        Mac mac = macs.get();
+        update(mac, cardNumber);
+        return ByteBuffer.wrap(mac.doFinal()).getLong();
+    }
+
+    /**
+     * Fingerprint of the fields that make up a payment request: card number, expiry, currency and amount. Requests
+     * with the same idempotency key and fingerprint count as retries of the same payment. The CVV is left out, so it
+     * is never kept, not even hashed.
+     */
+    public long fingerprint(Payment payment) {
+        Mac mac = macs.get();
+        update(mac, payment.getCardNumber());
+        // Card numbers vary in length, so a separator keeps the fields that follow from shifting into them
+        mac.update((byte) 0);
+        mac.update(ByteBuffer.allocate(3 * Integer.BYTES)
+                .putInt(payment.getExpiryMonth())
+                .putInt(payment.getExpiryYear())
+                .putInt(payment.getAmountInMinorUnits())
+                .array());
+        update(mac, payment.getCurrency().name());
+        return ByteBuffer.wrap(mac.doFinal()).getLong();
+    }
+
+    private static void update(Mac mac, String digitsOrLetters) {
+        for (int i = 0; i < digitsOrLetters.length(); i++) {
+            mac.update((byte) digitsOrLetters.charAt(i));
+        }
+    }
+}
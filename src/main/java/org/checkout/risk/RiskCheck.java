@@ -0,0 +1,21 @@
+package org.checkout.risk;
+
+import org.checkout.models.Payment;
+
+import java.util.Optional;
+
+/**
+ * A check that runs on every payment after validation and before the bank call, and can stop the payment from
+ * reaching the bank.
+ */
+public interface RiskCheck {
+
+    /**
+     * @return the name of the rule the payment breaks, or empty if the payment may go to the bank
+     */
+    Optional<String> assess(Payment payment);
+
+    static RiskCheck allowAll() {
+        return payment -> Optional.empty();
+    }
+}
@@ -0,0 +1,99 @@
+package org.checkout.risk;
+
+import org.checkout.metrics.TimeBuckets;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch over a sliding time window. The window is split into a ring of buckets, each its own sketch of
+ * {@code depth} rows by {@code width} counters; a bucket is cleared and reused once it falls out of the window. Memory
+ * is fixed at {@code buckets * depth * width} longs however many distinct keys are counted.
+ *
+ * <p>Updates are lock-free atomic adds on independent counters, spread over {@code depth * width} cells, so
+ * concurrent payments for different cards rarely touch the same cache line. Like any count-min sketch the estimate
+ * never undercounts a key, but may overcount it by a small fraction of the window's total. The window moves in steps
+ * of one bucket; see {@link TimeBuckets} for how a bucket is cleared for reuse without losing concurrent adds.
+ */
+final class SlidingWindowSketch {
+
+    private final int depth;
+    private final int width;
+    private final int buckets;
+    private final AtomicLongArray[] cells;
+    private final TimeBuckets timeBuckets;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    SlidingWindowSketch(Duration window, int buckets, int depth, int width) {
+        if (buckets < 1 || depth < 1 || width < 1) {
+            throw new IllegalArgumentException("buckets, depth and width must be positive");
+        }
+        this.depth = depth;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.buckets = buckets;
+        this.cells = new AtomicLongArray[buckets];
+        for (int i = 0; i < buckets; i++) {
+            cells[i] = new AtomicLongArray(depth * this.width);
+        }
+        this.timeBuckets = new TimeBuckets(buckets, Math.max(1, window.toMillis() / buckets));
+    }
+
+    /**
+     * Adds {@code value} to {@code key} and returns the key's estimated total over the window, including this add.
+     */
+    long addAndEstimate(long key, long value, long nowMillis) {
+        long epoch = timeBuckets.epoch(nowMillis);
+        AtomicLongArray bucket = cells[timeBuckets.slotFor(epoch, this::clear)];
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(key, row);
+            bucket.getAndAdd(cell, value);
+            estimate = Math.min(estimate, windowSum(cell, epoch));
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the key's estimated total over the window.
+     */
+    long estimate(long key, long nowMillis) {
+        long epoch = timeBuckets.epoch(nowMillis);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, windowSum(cell(key, row), epoch));
+        }
+        return estimate;
+    }
+
+    int width() {
+        return width;
+    }
+
+    private long windowSum(int cell, long epoch) {
+        long sum = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (timeBuckets.inWindow(i, epoch)) {
+                sum += cells[i].get(cell);
+            }
+        }
+        return sum;
+    }
+
+    private void clear(int slot) {
+        AtomicLongArray bucket = cells[slot];
+        for (int i = 0; i < bucket.length(); i++) {
+            bucket.set(i, 0);
+        }
+    }
+
+    // Each row uses a differently seeded mix of the key, so two keys collide in every row only by chance
+    private int cell(long key, int row) {
+        long hash = key + (row + 1) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return row * width + (int) (hash & (width - 1));
+    }
+}
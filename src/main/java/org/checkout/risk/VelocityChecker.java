@@ -0,0 +1,78 @@
+package org.checkout.risk;
+
+import org.checkout.models.Payment;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects payments for a card that has been tried too often, or for too much, within a sliding window. Attempts and
+ * amounts are counted per card fingerprint in {@link SlidingWindowSketch}es, so memory stays fixed however many cards
+ * are seen. Amounts are counted per card and currency, since minor units of different currencies cannot be added up.
+ *
+ * <p>Every attempt is counted, including the ones this check rejects, so a card that keeps being retried stays
+ * blocked until it slows down.
+ */
+public class VelocityChecker implements RiskCheck {
+
+    /**
+     * @param name        rule name reported when a payment is rejected, e.g. {@code "per_minute"}
+     * @param buckets     time buckets the window is split into; the window slides in steps of {@code window / buckets}
+     * @param maxAttempts attempts allowed per card within the window, or 0 for no limit
+     * @param maxAmount   total amount in minor units allowed per card and currency within the window, or 0 for no limit
+     */
+    public record Limit(String name, Duration window, int buckets, long maxAttempts, long maxAmount) {}
+
+    private final CardFingerprinter fingerprinter;
+    private final Clock clock;
+    private final Window[] windows;
+    private final LongAdder rejections = new LongAdder();
+
+    public VelocityChecker(CardFingerprinter fingerprinter, List<Limit> limits, int sketchDepth, int sketchWidth) {
+        this(fingerprinter, limits, sketchDepth, sketchWidth, Clock.systemUTC());
+    }
+
+    VelocityChecker(CardFingerprinter fingerprinter, List<Limit> limits, int sketchDepth, int sketchWidth, Clock clock) {
+        this.fingerprinter = fingerprinter;
+        this.clock = clock;
+        this.windows = limits.stream()
+                .map(limit -> new Window(limit,
+                        limit.maxAttempts() > 0 ? new SlidingWindowSketch(limit.window(), limit.buckets(), sketchDepth, sketchWidth) : null,
+                        limit.maxAmount() > 0 ? new SlidingWindowSketch(limit.window(), limit.buckets(), sketchDepth, sketchWidth) : null))
+                .toArray(Window[]::new);
+    }
+
+    @Override
+    public Optional<String> assess(Payment payment) {
+        long card = fingerprinter.fingerprint(payment.getCardNumber());
+        long cardAndCurrency = card * 31 + payment.getCurrency().ordinal();
+        long amount = payment.getAmountInMinorUnits();
+        long now = clock.millis();
+
+        // Every window counts the attempt before any verdict, so a rejection by one window does not hide it from the rest
+        String brokenRule = null;
+        for (Window window : windows) {
+            if (window.attempts() != null && window.attempts().addAndEstimate(card, 1, now) > window.limit().maxAttempts()) {
+                brokenRule = brokenRule != null ? brokenRule : window.limit().name() + "_attempts";
+            }
+            if (window.amounts() != null && window.amounts().addAndEstimate(cardAndCurrency, amount, now) > window.limit().maxAmount()) {
+                brokenRule = brokenRule != null ? brokenRule : window.limit().name() + "_amount";
+            }
+        }
+
+        if (brokenRule == null) {
+            return Optional.empty();
+        }
+        rejections.increment();
+        return Optional.of(brokenRule);
+    }
+
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    private record Window(Limit limit, SlidingWindowSketch attempts, SlidingWindowSketch amounts) {}
+}
@@ -1,11 +1,48 @@
 package org.checkout.services;
 
+import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.exceptions.IdempotencyKeyException;
+import org.checkout.exceptions.RiskRejectedException;
 import org.checkout.models.Payment;
 import org.checkout.models.PostPaymentResponseDto;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface IPaymentService {
-    PostPaymentResponseDto processPayment(Payment payment, String idempotencyKey);
+    default PostPaymentResponseDto processPayment(Payment payment, String idempotencyKey) {
+        return processPayment(payment, idempotencyKey, null);
+    }
+
+    /**
+     * Like {@link #submitPayment}, but throws {@link IdempotencyKeyException}, {@link RiskRejectedException} or
+     * {@link BankPaymentFailedException} instead of returning a rejection.
+     */
+    default PostPaymentResponseDto processPayment(Payment payment, String idempotencyKey, String callerId) {
+        return switch (submitPayment(payment, idempotencyKey, callerId)) {
+            case PaymentResult.Processed processed -> processed.response();
+            case PaymentResult.Replayed replayed -> replayed.response();
+            case PaymentResult.IdempotencyKeyMismatch mismatch ->
+                    throw new IdempotencyKeyException(mismatch.message(), mismatch.idempotencyKey());
+            case PaymentResult.IdempotencyKeyInFlight inFlight ->
+                    throw new IdempotencyKeyException(inFlight.message(), inFlight.idempotencyKey());
+            case PaymentResult.RiskRejected rejected -> throw new RiskRejectedException(rejected.message(), rejected.rule());
+            case PaymentResult.BankFailure failure -> throw new BankPaymentFailedException(failure.message());
+        };
+    }
+
+    /**
+     * @param callerId identifies who sent the payment, so they can follow all of their payments; may be null
+     */
+    PaymentResult submitPayment(Payment payment, String idempotencyKey, String callerId);
+
+    /**
+     * Like {@link #submitPayment}, but returns as soon as the payment is accepted for processing. Services that
+     * process payments on the caller's thread return a completed future.
+     */
+    default CompletableFuture<PaymentResult> submitPaymentAsync(Payment payment, String idempotencyKey, String callerId) {
+        return CompletableFuture.completedFuture(submitPayment(payment, idempotencyKey, callerId));
+    }
+
     Optional<PostPaymentResponseDto> getPaymentById(String id);
 } 
\ No newline at end of file
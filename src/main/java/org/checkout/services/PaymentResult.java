@@ -0,0 +1,60 @@
+package org.checkout.services;
+
+import org.checkout.models.PostPaymentResponseDto;
+
+/**
+ * Outcome of submitting a payment. Rejections are ordinary values rather than exceptions, so a flood of bad
+ * requests costs no stack-trace capture and each case maps straight to a response.
+ */
+public sealed interface PaymentResult {
+
+    /**
+     * The bank authorised or declined the payment and it has been stored.
+     */
+    record Processed(PostPaymentResponseDto response) implements PaymentResult {}
+
+    /**
+     * A retry: the idempotency key was first used with the same payment details, and this is the response that payment
+     * got. Nothing was sent to the bank or stored.
+     */
+    record Replayed(PostPaymentResponseDto response) implements PaymentResult {}
+
+    /**
+     * The idempotency key was first used with different payment details; nothing was sent to the bank.
+     */
+    record IdempotencyKeyMismatch(String idempotencyKey) implements PaymentResult {
+        public static final String MESSAGE = "Idempotency key already used for a different payment";
+
+        public String message() {
+            return MESSAGE;
+        }
+    }
+
+    /**
+     * The idempotency key is reserved by a payment with the same details that is still at the bank; nothing was sent
+     * to the bank. Retrying later gets that payment's response.
+     */
+    record IdempotencyKeyInFlight(String idempotencyKey) implements PaymentResult {
+        public static final String MESSAGE = "A payment with this idempotency key is still being processed";
+
+        public String message() {
+            return MESSAGE;
+        }
+    }
+
+    /**
+     * A risk check stopped the payment before the bank call; nothing was sent to the bank or stored.
+     */
+    record RiskRejected(String rule) implements PaymentResult {
+        public static final String MESSAGE = "Payment rejected by risk checks";
+
+        public String message() {
+            return MESSAGE;
+        }
+    }
+
+    /**
+     * The bank call failed, so the outcome of the payment is unknown or it was not processed.
+     */
+    record BankFailure(String message) implements PaymentResult {}
+}
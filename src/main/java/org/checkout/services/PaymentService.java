@@ -3,63 +3,309 @@ package org.checkout.services;
 import org.checkout.IdGenerator;
 import org.checkout.clients.BankClient;
 import org.checkout.clients.BankSimulatorClient;
-import org.checkout.exceptions.IdempotencyKeyException;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.PaymentEventSink;
+import org.checkout.events.PaymentEventType;
+import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.jfr.PaymentProcessedEvent;
+import org.checkout.logging.RateLimitedLogger;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.metrics.PaymentMetrics.Outcome;
+import org.checkout.metrics.PaymentMetrics.Stage;
 import org.checkout.models.Payment;
 import org.checkout.models.PostPaymentResponseDto;
 import org.checkout.repository.IPaymentsRepository;
+import org.checkout.repository.IdempotencyRecord;
 import org.checkout.repository.IdempotentKeyStore;
+import org.checkout.risk.CardFingerprinter;
+import org.checkout.risk.RiskCheck;
+import org.slf4j.LoggerFactory;
 
 
 import java.util.Optional;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PaymentService implements IPaymentService {
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(LoggerFactory.getLogger(PaymentService.class));
+    static final String OUTCOME_UNKNOWN_MESSAGE =
+            "The payment first sent with this idempotency key has an unknown outcome, so it was not sent to the bank again";
 
     private final IdempotentKeyStore idempotencyKeys;
     private final IPaymentsRepository paymentsRepository;
     private final BankClient bankSimulatorClient;
     private final IdGenerator paymentIdGenerator;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentEventSink eventSink;
+    private final RiskCheck riskCheck;
+    private final CardFingerprinter fingerprinter;
+    private final LongAdder publishFailures = new LongAdder();
 
     public PaymentService(IPaymentsRepository paymentsRepository, BankClient bankSimulatorClient, IdempotentKeyStore idempotencyKeys, IdGenerator paymentIdGenerator) {
+        this(paymentsRepository, bankSimulatorClient, idempotencyKeys, paymentIdGenerator, new PaymentMetrics());
+    }
+
+    public PaymentService(IPaymentsRepository paymentsRepository, BankClient bankSimulatorClient, IdempotentKeyStore idempotencyKeys, IdGenerator paymentIdGenerator, PaymentMetrics paymentMetrics) {
+        this(paymentsRepository, bankSimulatorClient, idempotencyKeys, paymentIdGenerator, paymentMetrics, PaymentEventSink.discarding());
+    }
+
+    public PaymentService(IPaymentsRepository paymentsRepository, BankClient bankSimulatorClient, IdempotentKeyStore idempotencyKeys, IdGenerator paymentIdGenerator, PaymentMetrics paymentMetrics, PaymentEventSink eventSink) {
+        this(paymentsRepository, bankSimulatorClient, idempotencyKeys, paymentIdGenerator, paymentMetrics, eventSink, RiskCheck.allowAll());
+    }
+
+    /**
+     * @param riskCheck runs after the idempotency check and before the bank call; a payment it rejects is not stored
+     */
+    public PaymentService(IPaymentsRepository paymentsRepository, BankClient bankSimulatorClient, IdempotentKeyStore idempotencyKeys, IdGenerator paymentIdGenerator, PaymentMetrics paymentMetrics, PaymentEventSink eventSink, RiskCheck riskCheck) {
+        this(paymentsRepository, bankSimulatorClient, idempotencyKeys, paymentIdGenerator, paymentMetrics, eventSink, riskCheck, CardFingerprinter.withRandomSecret());
+    }
+
+    /**
+     * @param fingerprinter fingerprints payments sent with an idempotency key; every service sharing an idempotency
+     *                      store, or restoring its keys, must use the same secret
+     */
+    public PaymentService(IPaymentsRepository paymentsRepository, BankClient bankSimulatorClient, IdempotentKeyStore idempotencyKeys, IdGenerator paymentIdGenerator, PaymentMetrics paymentMetrics, PaymentEventSink eventSink, RiskCheck riskCheck, CardFingerprinter fingerprinter) {
+        this.riskCheck = riskCheck;
+        this.fingerprinter = fingerprinter;
         this.paymentsRepository = paymentsRepository;
         this.bankSimulatorClient = bankSimulatorClient;
         this.idempotencyKeys = idempotencyKeys;
         this.paymentIdGenerator = paymentIdGenerator;
+        this.paymentMetrics = paymentMetrics;
+        this.eventSink = eventSink;
+        paymentMetrics.registerGauge("payment_event_publish_failures", "Payment events that could not be published since startup", publishFailures::sum);
     }
 
-    public PostPaymentResponseDto processPayment(Payment payment, String idempotencyKey) {
-        return processWithIdempotencyKey(idempotencyKey, () -> {
-            String paymentId = paymentIdGenerator.generate();
-            BankSimulatorClient.BankPaymentResponse bankPaymentResponse = bankSimulatorClient.makePayment(
-                BankSimulatorClient.BankPaymentRequest.fromPayment(payment)
-            );
+    public PaymentResult submitPayment(Payment payment, String idempotencyKey, String callerId) {
+        PaymentTask task = begin(payment, idempotencyKey, callerId);
+        try {
+            screen(task);
+            if (!task.isDone()) {
+                callBank(task);
+            }
+            if (!task.isDone()) {
+                store(task);
+            }
+            return task.result;
+        } catch (RuntimeException e) {
+            fail(task, e);
+            throw e;
+        } finally {
+            finish(task);
+        }
+    }
 
-            String status = bankPaymentResponse.authorized() ? "APPROVED" : "DECLINED";
-            PostPaymentResponseDto response = PostPaymentResponseDto.fromPayment(payment, paymentId, status);
+    // The steps below run in order on the same task, either one after another on the caller's thread
+    // (submitPayment) or on the stage threads of a StagedPaymentService. A step that reaches a final result sets it
+    // on the task, and the remaining steps are skipped.
 
-            // Only add the payment to the repository if the payment was successfully processed by the bank
-            // otherwise the payment will not be stored
-            paymentsRepository.add(response);
-            return response;
-        });
+    PaymentTask begin(Payment payment, String idempotencyKey, String callerId) {
+        PaymentTask task = new PaymentTask(payment, idempotencyKey, callerId);
+        task.event.begin();
+        return task;
     }
 
-    // Only add the idempotency key if the operation was successful
-    private <T> T processWithIdempotencyKey(String idempotencyKey, Supplier<T> operation) {
-        Optional.ofNullable(idempotencyKey).ifPresent(key -> {
-            if (idempotencyKeys.contains(key)) {
-                throw new IdempotencyKeyException("Idempotency key already is use", key);
+    /**
+     * Idempotency and risk checks, then assigns the payment id. CPU only, apart from remote key stores.
+     *
+     * <p>A key that is already bound to a payment with the same fingerprint is a retry and gets that payment's
+     * response again, or a conflict while that payment is still at the bank; a key bound to a different payment is
+     * rejected. A new key is reserved before the payment goes on to the bank. A new payment is refused with
+     * {@link PaymentStoreUnavailableException} while the repository does not accept writes, since once the bank has
+     * charged the payment must be stored.
+     */
+    void screen(PaymentTask task) {
+        long checkStart = System.nanoTime();
+        IdempotencyRecord previous = null;
+        if (task.idempotencyKey != null) {
+            task.fingerprint = fingerprinter.fingerprint(task.payment);
+            previous = idempotencyKeys.get(task.idempotencyKey).orElse(null);
+        }
+        paymentMetrics.recordStage(Stage.IDEMPOTENCY_CHECK, checkStart);
+        if (previous != null) {
+            task.result = answerFrom(previous, task);
+            return;
+        }
+        if (!paymentsRepository.acceptsWrites()) {
+            throw new PaymentStoreUnavailableException("The payment store is not accepting writes", null);
+        }
+
+        long riskStart = System.nanoTime();
+        Optional<String> brokenRule = riskCheck.assess(task.payment);
+        paymentMetrics.recordStage(Stage.RISK_CHECK, riskStart);
+        if (brokenRule.isPresent()) {
+            task.result = new PaymentResult.RiskRejected(brokenRule.get());
+            return;
+        }
+
+        // Reserved only once the payment passed the risk checks, so a rejection leaves the key free. Of concurrent
+        // requests with the same key only one gets here; the others are answered from the key the winner reserved
+        if (task.idempotencyKey != null) {
+            if (!idempotencyKeys.reserve(task.idempotencyKey, task.fingerprint)) {
+                IdempotencyRecord winner = idempotencyKeys.get(task.idempotencyKey).orElse(null);
+                task.result = winner != null ? answerFrom(winner, task) : new PaymentResult.IdempotencyKeyInFlight(task.idempotencyKey);
+                return;
             }
-        });
+            task.keyReserved = true;
+        }
 
-        T result = operation.get();
+        task.paymentId = paymentIdGenerator.generate();
+        task.event.paymentId = task.paymentId;
+        publish(PaymentEvent.of(PaymentEventType.CREATED, task.paymentId, task.payment, task.callerId));
+    }
+
+    private static PaymentResult answerFrom(IdempotencyRecord previous, PaymentTask task) {
+        if (previous.fingerprint() != task.fingerprint) {
+            return new PaymentResult.IdempotencyKeyMismatch(task.idempotencyKey);
+        }
+        return switch (previous.state()) {
+            case IN_FLIGHT -> new PaymentResult.IdempotencyKeyInFlight(task.idempotencyKey);
+            case COMPLETED -> new PaymentResult.Replayed(previous.response());
+            case OUTCOME_UNKNOWN -> new PaymentResult.BankFailure(OUTCOME_UNKNOWN_MESSAGE);
+        };
+    }
 
-        Optional.ofNullable(idempotencyKey).ifPresent(idempotencyKeys::add);
-        
-        return result;
+    /**
+     * The bank round trip. Blocks for as long as the bank takes to answer. A payment the bank definitely did not charge
+     * releases its idempotency key, so it can be retried with the same key; one whose outcome is unknown binds the key
+     * to that, so a retry cannot charge it a second time.
+     */
+    void callBank(PaymentTask task) {
+        long bankStart = System.nanoTime();
+        task.sentToBank = true;
+        try {
+            task.bankResponse = bankSimulatorClient.makePayment(
+                BankSimulatorClient.BankPaymentRequest.fromPayment(task.payment)
+            );
+        } catch (BankPaymentFailedException e) {
+            paymentMetrics.recordOutcome(Outcome.FAILED, task.payment.getCurrency());
+            if (e.isOutcomeUnknown()) {
+                settleKey(task);
+            } else {
+                releaseKey(task);
+            }
+            publish(PaymentEvent.of(PaymentEventType.FAILED, task.paymentId, task.payment, task.callerId));
+            task.result = new PaymentResult.BankFailure(e.getMessage());
+        } finally {
+            task.event.bankLatency = System.nanoTime() - bankStart;
+            paymentMetrics.recordStage(Stage.BANK_CALL, bankStart);
+        }
+    }
+
+    /**
+     * Records the bank's answer and binds the reserved idempotency key to it.
+     */
+    void store(PaymentTask task) {
+        boolean authorized = task.bankResponse.authorized();
+        PostPaymentResponseDto response = PostPaymentResponseDto.fromPayment(task.payment, task.paymentId, authorized ? "APPROVED" : "DECLINED");
+        task.response = response;
+
+        // Only add the payment to the repository if the payment was successfully processed by the bank
+        // otherwise the payment will not be stored
+        long writeStart = System.nanoTime();
+        paymentsRepository.add(response);
+        paymentMetrics.recordStage(Stage.REPOSITORY_WRITE, writeStart);
+
+        paymentMetrics.recordOutcome(authorized ? Outcome.APPROVED : Outcome.DECLINED, task.payment.getCurrency());
+        // Only bind the idempotency key if the payment was processed
+        if (task.keyReserved) {
+            idempotencyKeys.complete(task.idempotencyKey, new IdempotencyRecord(task.fingerprint, response));
+            task.keyReserved = false;
+        }
+        task.result = new PaymentResult.Processed(response);
+        // The bank has charged by now, so the outcome is only published once the payment and its key are stored
+        publish(PaymentEvent.of(authorized ? PaymentEventType.APPROVED : PaymentEventType.DECLINED, task.paymentId, task.payment, task.callerId));
+    }
+
+    // A sink that fails, such as an event log on a full disk, must not fail a payment the bank has already handled
+    private void publish(PaymentEvent event) {
+        try {
+            eventSink.publish(event);
+        } catch (RuntimeException e) {
+            publishFailures.increment();
+            rateLimitedLogger.atError("payment_event_publish_failed")
+                    .addKeyValue("payment_id", event.paymentId())
+                    .addKeyValue("type", event.type())
+                    .setCause(e)
+                    .log("Failed to publish payment event");
+        }
+    }
+
+    private void releaseKey(PaymentTask task) {
+        if (task.keyReserved) {
+            task.keyReserved = false;
+            idempotencyKeys.release(task.idempotencyKey);
+        }
+    }
+
+    // Binds the reserved key for good once the bank may have charged, so a retry is answered rather than sent again
+    private void settleKey(PaymentTask task) {
+        if (task.keyReserved) {
+            task.keyReserved = false;
+            idempotencyKeys.complete(task.idempotencyKey, task.response != null
+                    ? new IdempotencyRecord(task.fingerprint, task.response)
+                    : IdempotencyRecord.outcomeUnknown(task.fingerprint));
+        }
+    }
+
+    /**
+     * Records a step that threw. A key reserved for a payment that never reached the bank is released. Once the bank
+     * may have charged, the key is bound to the bank's answer if there was one and to an unknown outcome otherwise,
+     * so a retry cannot charge again and does not find the key reserved forever.
+     */
+    void fail(PaymentTask task, RuntimeException e) {
+        try {
+            if (task.sentToBank) {
+                settleKey(task);
+            } else {
+                releaseKey(task);
+            }
+        } catch (RuntimeException keyFailure) {
+            e.addSuppressed(keyFailure);
+        }
+        task.event.outcome = "REJECTED";
+        task.event.errorType = e.getClass().getSimpleName();
+    }
+
+    /**
+     * Completes the task's flight recorder event and returns its result, {@code null} if a step failed.
+     */
+    PaymentResult finish(PaymentTask task) {
+        PaymentProcessedEvent event = task.event;
+        // Error types keep the names of the exceptions these results replaced, so recordings stay comparable
+        if (task.result != null) {
+            switch (task.result) {
+                case PaymentResult.Processed processed -> event.outcome = processed.response().status();
+                case PaymentResult.Replayed ignored -> event.outcome = "REPLAYED";
+                case PaymentResult.IdempotencyKeyMismatch ignored -> {
+                    event.outcome = "REJECTED";
+                    event.errorType = "IdempotencyKeyException";
+                }
+                case PaymentResult.IdempotencyKeyInFlight ignored -> {
+                    event.outcome = "REJECTED";
+                    event.errorType = "IdempotencyKeyInFlight";
+                }
+                case PaymentResult.RiskRejected rejected -> {
+                    event.outcome = "REJECTED";
+                    event.errorType = "RiskRejected";
+                }
+                case PaymentResult.BankFailure ignored -> {
+                    event.outcome = "FAILED";
+                    event.errorType = "BankPaymentFailedException";
+                }
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.maskedCardNumber = task.payment.getMaskedCardNumber();
+            event.currency = task.payment.getCurrency().name();
+            event.amount = task.payment.getAmountInMinorUnits();
+            event.commit();
+        }
+        return task.result;
     }
 
     public Optional<PostPaymentResponseDto>  getPaymentById(String id) {
         return paymentsRepository.get(id);
     }
-}
\ No newline at end of file
+}
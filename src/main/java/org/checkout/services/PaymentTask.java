@@ -0,0 +1,39 @@
+package org.checkout.services;
+
+import org.checkout.clients.BankSimulatorClient;
+import org.checkout.jfr.PaymentProcessedEvent;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One payment on its way through the steps of {@link PaymentService}: what was submitted, what each step found out
+ * and, once there is one, the result. {@link StagedPaymentService} hands it from stage to stage; the ring buffers
+ * between stages make each step's writes visible to the next.
+ */
+final class PaymentTask {
+    final Payment payment;
+    final String idempotencyKey;
+    final String callerId;
+    final PaymentProcessedEvent event = new PaymentProcessedEvent();
+
+    long fingerprint;
+    boolean keyReserved;
+    boolean sentToBank;
+    String paymentId;
+    BankSimulatorClient.BankPaymentResponse bankResponse;
+    PostPaymentResponseDto response;
+    PaymentResult result;
+    CompletableFuture<PaymentResult> completion;
+
+    PaymentTask(Payment payment, String idempotencyKey, String callerId) {
+        this.payment = payment;
+        this.idempotencyKey = idempotencyKey;
+        this.callerId = callerId;
+    }
+
+    boolean isDone() {
+        return result != null;
+    }
+}
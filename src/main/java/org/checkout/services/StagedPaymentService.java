@@ -0,0 +1,118 @@
+package org.checkout.services;
+
+import org.checkout.exceptions.ExecutorSaturatedException;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.pipeline.PipelineStage;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the steps of a {@link PaymentService} as a staged pipeline instead of one after another on the request thread.
+ * Each step gets its own {@link PipelineStage}, linked to the next by a bounded ring buffer:
+ *
+ * <ol>
+ *     <li>{@code screening}: idempotency and risk checks and payment id generation, on a few threads</li>
+ *     <li>{@code bank}: the bank call, on as many threads as there should be calls in flight</li>
+ *     <li>{@code storage}: the outcome event, repository write and idempotency key, on a few threads</li>
+ * </ol>
+ *
+ * <p>Request threads only enqueue the payment and get a future back. A payment rejected at a stage skips the rest.
+ * When a stage falls behind, its queue fills and the stage before it waits; once the screening queue is full, new
+ * payments are rejected with {@link ExecutorSaturatedException}.
+ */
+public class StagedPaymentService implements IPaymentService, AutoCloseable {
+
+    // CPU stages take whole batches at a time; the bank stage takes one payment per thread, because its threads block
+    private static final int CPU_STAGE_BATCH_SIZE = 64;
+    private static final int BANK_STAGE_BATCH_SIZE = 1;
+
+    private final PaymentService paymentService;
+    private final PipelineStage<PaymentTask> screening;
+    private final PipelineStage<PaymentTask> bank;
+    private final PipelineStage<PaymentTask> storage;
+
+    /**
+     * @param threads       threads draining the stage's queue
+     * @param queueCapacity payments queued for the stage, rounded up to a power of two
+     */
+    public record StageSettings(int threads, int queueCapacity) {}
+
+    public StagedPaymentService(PaymentService paymentService, StageSettings screening, StageSettings bank, StageSettings storage) {
+        this.paymentService = paymentService;
+        // Built back to front, so every stage exists before the one feeding it starts
+        this.storage = new PipelineStage<>("storage", storage.threads(), storage.queueCapacity(), CPU_STAGE_BATCH_SIZE,
+                task -> run(task, paymentService::store, null));
+        this.bank = new PipelineStage<>("bank", bank.threads(), bank.queueCapacity(), BANK_STAGE_BATCH_SIZE,
+                task -> run(task, paymentService::callBank, this.storage));
+        this.screening = new PipelineStage<>("screening", screening.threads(), screening.queueCapacity(), CPU_STAGE_BATCH_SIZE,
+                task -> run(task, paymentService::screen, this.bank));
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> submitPaymentAsync(Payment payment, String idempotencyKey, String callerId) {
+        PaymentTask task = paymentService.begin(payment, idempotencyKey, callerId);
+        task.completion = new CompletableFuture<>();
+        if (!screening.offer(task)) {
+            throw new ExecutorSaturatedException(screening.name());
+        }
+        return task.completion;
+    }
+
+    @Override
+    public PaymentResult submitPayment(Payment payment, String idempotencyKey, String callerId) {
+        try {
+            return submitPaymentAsync(payment, idempotencyKey, callerId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> getPaymentById(String id) {
+        return paymentService.getPaymentById(id);
+    }
+
+    /**
+     * Registers queue depth, busy thread and throughput gauges for every stage.
+     */
+    public void registerMetrics(PaymentMetrics metrics) {
+        screening.registerMetrics(metrics);
+        bank.registerMetrics(metrics);
+        storage.registerMetrics(metrics);
+    }
+
+    /**
+     * Stops accepting payments and finishes the ones already in the pipeline.
+     */
+    @Override
+    public void close() {
+        screening.close();
+        bank.close();
+        storage.close();
+    }
+
+    private void run(PaymentTask task, Consumer<PaymentTask> step, PipelineStage<PaymentTask> next) {
+        try {
+            step.accept(task);
+        } catch (RuntimeException e) {
+            paymentService.fail(task, e);
+            paymentService.finish(task);
+            task.completion.completeExceptionally(e);
+            return;
+        }
+
+        if (task.isDone() || next == null) {
+            task.completion.complete(paymentService.finish(task));
+        } else {
+            next.put(task);
+        }
+    }
+}
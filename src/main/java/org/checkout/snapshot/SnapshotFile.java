@@ -0,0 +1,132 @@
+package org.checkout.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A snapshot file: records in a compact binary encoding, cut into chunks so they can be loaded in parallel.
+ *
+ * <p>Layout: the chunks of records, then an index holding each chunk's position, then a fixed footer of
+ * {@code indexOffset, recordCount, magic}. The magic number says which kind of record the file holds. Files are
+ * written to a temporary file and moved into place once complete, so the previous snapshot stays intact until the
+ * next one is on disk. Reading memory-maps the file and decodes records straight from the mapping, without copying
+ * the file onto the heap first.
+ */
+final class SnapshotFile {
+
+    static final int PAYMENTS_MAGIC = 0x434b5350;
+    static final int IDEMPOTENCY_RECORDS_MAGIC = 0x434b5352;
+    static final int OUTCOME_UNKNOWN_RECORDS_MAGIC = 0x434b5355;
+
+    private static final int CHUNK_RECORDS = 16384;
+    private static final int FOOTER_BYTES = 16;
+
+    @FunctionalInterface
+    interface RecordWriter<T> {
+        void write(DataOutput out, T record) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface RecordReader<T> {
+        T read(ByteBuffer in) throws IOException;
+    }
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int indexOffset;
+    private final int recordCount;
+    private final int chunkCount;
+
+    private SnapshotFile(Path file, MappedByteBuffer buffer, int magic) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        int size = buffer.capacity();
+        if (size < FOOTER_BYTES || buffer.getInt(size - 4) != magic) {
+            throw new IOException("Not a complete snapshot: " + file);
+        }
+        this.indexOffset = (int) buffer.getLong(size - FOOTER_BYTES);
+        this.recordCount = buffer.getInt(size - 8);
+        this.chunkCount = buffer.getInt(indexOffset);
+    }
+
+    static <T> void write(Path file, int magic, List<T> records, RecordWriter<T> writer) throws IOException {
+        int chunkCount = (records.size() + CHUNK_RECORDS - 1) / CHUNK_RECORDS;
+        long[] offsets = new long[chunkCount];
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 256 * 1024))) {
+            for (int i = 0; i < records.size(); i++) {
+                if (i % CHUNK_RECORDS == 0) {
+                    offsets[i / CHUNK_RECORDS] = out.size();
+                }
+                writer.write(out, records.get(i));
+            }
+
+            long indexOffset = out.size();
+            out.writeInt(chunkCount);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(records.size());
+            out.writeInt(magic);
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static SnapshotFile open(Path file, int magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SnapshotFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), magic);
+        }
+    }
+
+    int recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Passes every record to {@code sink}. Chunks are decoded in parallel, so {@code sink} must be thread-safe.
+     */
+    <T> void read(RecordReader<T> reader, Consumer<T> sink) throws IOException {
+        try {
+            IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+                int start = chunkOffset(chunk);
+                int end = chunk + 1 < chunkCount ? chunkOffset(chunk + 1) : indexOffset;
+                int records = Math.min(CHUNK_RECORDS, recordCount - chunk * CHUNK_RECORDS);
+                ByteBuffer in = buffer.slice(start, end - start);
+                try {
+                    for (int i = 0; i < records; i++) {
+                        sink.accept(reader.read(in));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IOException("Snapshot " + file + " is corrupt", e.getCause());
+        }
+    }
+
+    private int chunkOffset(int chunk) {
+        return (int) buffer.getLong(indexOffset + 4 + chunk * 8);
+    }
+}
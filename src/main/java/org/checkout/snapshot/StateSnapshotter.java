@@ -0,0 +1,175 @@
+package org.checkout.snapshot;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotencyRecord;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.repository.PaymentCodec;
+import org.checkout.repository.PaymentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically writes point-in-time snapshots of the in-memory payment and idempotency key stores to disk and loads
+ * them back on startup, so a restart keeps the state as of the last snapshot.
+ *
+ * <p>Taking a snapshot copies references out of the stores without blocking writers (see
+ * {@link PaymentsRepository#snapshot()}) and then encodes them on the snapshot thread. The two stores are cut one
+ * after the other, so a payment stored between the two cuts can be restored without its idempotency key, the same as
+ * after a crash between the two writes. Each key is saved with the fingerprint and response it is bound to. Keys
+ * whose payment has an unknown outcome have no response and are saved with their fingerprint alone, in a file of
+ * their own, so snapshots written before such keys existed still load.
+ */
+public class StateSnapshotter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StateSnapshotter.class);
+
+    static final String PAYMENTS_FILE = "payments.snapshot";
+    static final String IDEMPOTENCY_KEYS_FILE = "idempotency-records.snapshot";
+    static final String OUTCOME_UNKNOWN_KEYS_FILE = "idempotency-unknown-outcomes.snapshot";
+    // Keys alone, as written before keys were bound to a payment fingerprint and response
+    static final String LEGACY_IDEMPOTENCY_KEYS_FILE = "idempotency-keys.snapshot";
+
+    private final Path directory;
+    private final PaymentsRepository payments;
+    private final IdempotentKeyStoreRepository idempotencyKeys;
+    private final ScheduledExecutorService scheduler;
+
+    public StateSnapshotter(Path directory, PaymentsRepository payments, IdempotentKeyStoreRepository idempotencyKeys) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.payments = payments;
+        this.idempotencyKeys = idempotencyKeys;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "state-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates stores holding the latest snapshots in {@code directory}, or empty ones if there are none yet, and a
+     * snapshotter for them. The stores are sized for the snapshots up front, so loading never resizes them, and a
+     * restored idempotency key shares its response with the restored payment rather than holding a second copy.
+     *
+     * <p>Fails if the directory still holds a key snapshot in the old format. Those keys have no fingerprint or
+     * response to answer a retry with, and starting without them would let a retry charge again.
+     */
+    public static StateSnapshotter restore(Path directory) throws IOException {
+        Path legacyKeysFile = directory.resolve(LEGACY_IDEMPOTENCY_KEYS_FILE);
+        if (Files.exists(legacyKeysFile)) {
+            throw new IOException(legacyKeysFile + " holds idempotency keys in an old format that cannot be restored;"
+                    + " move it away to start without those keys, once retries of the payments they guard are no longer expected");
+        }
+        SnapshotFile paymentsFile = open(directory.resolve(PAYMENTS_FILE), SnapshotFile.PAYMENTS_MAGIC);
+        SnapshotFile keysFile = open(directory.resolve(IDEMPOTENCY_KEYS_FILE), SnapshotFile.IDEMPOTENCY_RECORDS_MAGIC);
+        SnapshotFile unknownKeysFile = open(directory.resolve(OUTCOME_UNKNOWN_KEYS_FILE), SnapshotFile.OUTCOME_UNKNOWN_RECORDS_MAGIC);
+
+        PaymentsRepository payments = new PaymentsRepository(paymentsFile != null ? paymentsFile.recordCount() : 0);
+        IdempotentKeyStoreRepository idempotencyKeys = new IdempotentKeyStoreRepository(
+                (keysFile != null ? keysFile.recordCount() : 0) + (unknownKeysFile != null ? unknownKeysFile.recordCount() : 0));
+        if (paymentsFile != null) {
+            paymentsFile.read(PaymentCodec::read, payments::add);
+        }
+        if (keysFile != null) {
+            keysFile.read(StateSnapshotter::readIdempotencyRecord, entry -> {
+                IdempotencyRecord record = entry.getValue();
+                PostPaymentResponseDto response = payments.get(record.response().id()).orElse(record.response());
+                idempotencyKeys.add(entry.getKey(), new IdempotencyRecord(record.fingerprint(), response));
+            });
+        }
+        if (unknownKeysFile != null) {
+            unknownKeysFile.read(StateSnapshotter::readOutcomeUnknownRecord, entry -> idempotencyKeys.add(entry.getKey(), entry.getValue()));
+        }
+        return new StateSnapshotter(directory, payments, idempotencyKeys);
+    }
+
+    public PaymentsRepository payments() {
+        return payments;
+    }
+
+    public IdempotentKeyStoreRepository idempotencyKeys() {
+        return idempotencyKeys;
+    }
+
+    /**
+     * Writes a snapshot of both stores, replacing the previous one.
+     */
+    public synchronized SnapshotCounts snapshot() throws IOException {
+        List<PostPaymentResponseDto> paymentsCopy = payments.snapshot();
+        List<Map.Entry<String, IdempotencyRecord>> keysCopy = idempotencyKeys.snapshot();
+        Map<Boolean, List<Map.Entry<String, IdempotencyRecord>>> byOutcomeKnown = keysCopy.stream()
+                .collect(Collectors.partitioningBy(entry -> entry.getValue().state() == IdempotencyRecord.State.COMPLETED));
+        SnapshotFile.write(directory.resolve(PAYMENTS_FILE), SnapshotFile.PAYMENTS_MAGIC, paymentsCopy, PaymentCodec::write);
+        SnapshotFile.write(directory.resolve(IDEMPOTENCY_KEYS_FILE), SnapshotFile.IDEMPOTENCY_RECORDS_MAGIC,
+                byOutcomeKnown.get(true), StateSnapshotter::writeIdempotencyRecord);
+        SnapshotFile.write(directory.resolve(OUTCOME_UNKNOWN_KEYS_FILE), SnapshotFile.OUTCOME_UNKNOWN_RECORDS_MAGIC,
+                byOutcomeKnown.get(false), StateSnapshotter::writeOutcomeUnknownRecord);
+        return new SnapshotCounts(paymentsCopy.size(), keysCopy.size());
+    }
+
+    /**
+     * Starts taking a snapshot every {@code interval}.
+     */
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::snapshotSafely, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic snapshots and takes a final one, so a clean shutdown loses nothing.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        snapshotSafely();
+    }
+
+    private static void writeIdempotencyRecord(DataOutput out, Map.Entry<String, IdempotencyRecord> entry) throws IOException {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue().fingerprint());
+        PaymentCodec.write(out, entry.getValue().response());
+    }
+
+    private static Map.Entry<String, IdempotencyRecord> readIdempotencyRecord(ByteBuffer in) throws IOException {
+        String key = PaymentCodec.readUTF(in);
+        long fingerprint = in.getLong();
+        return Map.entry(key, new IdempotencyRecord(fingerprint, PaymentCodec.read(in)));
+    }
+
+    private static void writeOutcomeUnknownRecord(DataOutput out, Map.Entry<String, IdempotencyRecord> entry) throws IOException {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue().fingerprint());
+    }
+
+    private static Map.Entry<String, IdempotencyRecord> readOutcomeUnknownRecord(ByteBuffer in) throws IOException {
+        String key = PaymentCodec.readUTF(in);
+        return Map.entry(key, IdempotencyRecord.outcomeUnknown(in.getLong()));
+    }
+
+    private static SnapshotFile open(Path file, int magic) throws IOException {
+        return Files.exists(file) ? SnapshotFile.open(file, magic) : null;
+    }
+
+    private void snapshotSafely() {
+        try {
+            long start = System.nanoTime();
+            SnapshotCounts counts = snapshot();
+            logger.debug("Wrote snapshot of {} in {} ms", counts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            // The previous snapshot is still in place and the next one tries again
+            logger.error("Failed to write snapshot", e);
+        }
+    }
+
+    public record SnapshotCounts(int payments, int idempotencyKeys) {}
+}
@@ -0,0 +1,297 @@
+package org.checkout.sql;
+
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.logging.RateLimitedLogger;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IPaymentsRepository;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stores payments in an embedded H2 database, so they can be queried with SQL and survive restarts without an
+ * external database server.
+ *
+ * <p>Writes are write-behind: {@link #add} puts the payment in a bounded queue and returns, and a single writer thread
+ * inserts queued payments in batches of up to {@code batchSize} rows per prepared statement and transaction. Under
+ * load the queue fills while a batch commits, so batches grow with the write rate and the per-row cost of a commit
+ * shrinks. Once the queue is full, {@link #add} waits up to {@code queueTimeoutMillis} for the writer to catch up.
+ * A payment that still finds no room has already been charged by the bank, so it is not dropped: it goes to an
+ * unbounded overflow list that the writer empties first, and {@link #acceptsWrites()} turns new payments away until
+ * the overflow has been written. Payments waiting to be written are also held in memory, so they can be read back
+ * right away. Reads go to the database through a bounded connection pool.
+ */
+public class SqlPaymentsRepository implements IPaymentsRepository, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SqlPaymentsRepository.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger);
+
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+    private static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 1_000;
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS payments (
+                id VARCHAR(64) PRIMARY KEY,
+                status VARCHAR(16) NOT NULL,
+                last_four_card_digits CHAR(4) NOT NULL,
+                expiry_month TINYINT NOT NULL,
+                expiry_year SMALLINT NOT NULL,
+                currency CHAR(3) NOT NULL,
+                amount BIGINT NOT NULL
+            )""";
+    private static final String UPSERT = "MERGE INTO payments KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID = """
+            SELECT id, status, last_four_card_digits, expiry_month, expiry_year, currency, amount
+            FROM payments WHERE id = ?""";
+    private static final String COUNT = "SELECT COUNT(*) FROM payments";
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final long queueTimeoutMillis;
+    private final BlockingQueue<PostPaymentResponseDto> queue;
+    private final Queue<PostPaymentResponseDto> overflow = new ConcurrentLinkedQueue<>();
+    private final Map<String, PostPaymentResponseDto> pending = new ConcurrentHashMap<>();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param jdbcUrl        H2 database URL, such as {@code jdbc:h2:./data/payments}
+     * @param maxConnections most connections open at once, one of which the writer uses
+     * @param batchSize      most payments inserted per batch
+     * @param queueCapacity  most payments waiting to be written before {@link #add} waits
+     */
+    public SqlPaymentsRepository(String jdbcUrl, int maxConnections, int batchSize, int queueCapacity) throws SQLException {
+        this(jdbcUrl, maxConnections, batchSize, queueCapacity, DEFAULT_QUEUE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param queueTimeoutMillis longest {@link #add} waits for room in a full queue before overflowing
+     */
+    public SqlPaymentsRepository(String jdbcUrl, int maxConnections, int batchSize, int queueCapacity, long queueTimeoutMillis) throws SQLException {
+        this(createPool(jdbcUrl, maxConnections), batchSize, queueCapacity, queueTimeoutMillis);
+    }
+
+    public SqlPaymentsRepository(DataSource dataSource, int batchSize, int queueCapacity) throws SQLException {
+        this(dataSource, batchSize, queueCapacity, DEFAULT_QUEUE_TIMEOUT_MILLIS);
+    }
+
+    public SqlPaymentsRepository(DataSource dataSource, int batchSize, int queueCapacity, long queueTimeoutMillis) throws SQLException {
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            try (ResultSet row = statement.executeQuery(COUNT)) {
+                row.next();
+                written.add(row.getLong(1));
+            }
+        }
+
+        this.writer = new Thread(this::writeLoop, "sql-payments-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static JdbcConnectionPool createPool(String jdbcUrl, int maxConnections) {
+        JdbcConnectionPool pool = JdbcConnectionPool.create(jdbcUrl, "sa", "");
+        pool.setMaxConnections(maxConnections);
+        return pool;
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto postPaymentResponseDto) {
+        if (!running) {
+            throw new IllegalStateException("The SQL payments repository is closed");
+        }
+        pending.put(postPaymentResponseDto.id(), postPaymentResponseDto);
+        boolean queued;
+        try {
+            queued = queue.offer(postPaymentResponseDto, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            queued = false;
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            overflow.add(postPaymentResponseDto);
+            rateLimitedLogger.atWarn("sql_write_queue_overflow")
+                    .addKeyValue("payment_id", postPaymentResponseDto.id())
+                    .log("The payment write queue is full, holding the payment until the writer catches up");
+        }
+    }
+
+    /**
+     * Returns {@code false} while payments that found the write queue full are still waiting to be written.
+     */
+    @Override
+    public boolean acceptsWrites() {
+        return overflow.isEmpty();
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        PostPaymentResponseDto queued = pending.get(id);
+        if (queued != null) {
+            return Optional.of(queued);
+        }
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_BY_ID)) {
+            statement.setString(1, id);
+            try (ResultSet row = statement.executeQuery()) {
+                if (!row.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new PostPaymentResponseDto(
+                        row.getString(1),
+                        row.getString(2),
+                        row.getString(3),
+                        row.getInt(4),
+                        row.getInt(5),
+                        row.getString(6),
+                        row.getLong(7)
+                ));
+            }
+        } catch (SQLException e) {
+            throw new PaymentStoreUnavailableException("Unable to read payment " + id, e);
+        }
+    }
+
+    /**
+     * Returns the number of stored payments without asking the database: the rows counted at startup plus those
+     * written since. A payment can briefly be counted twice while its batch commits, and a payment id written twice
+     * is counted twice.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, written.sum() + pending.size());
+    }
+
+    /**
+     * Returns the number of payments not yet committed to the database, including the batch being written.
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public long batchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    /**
+     * Writes every queued payment and closes the database.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dataSource instanceof JdbcConnectionPool pool) {
+            pool.dispose();
+        }
+    }
+
+    private void writeLoop() {
+        List<PostPaymentResponseDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !overflow.isEmpty()) {
+            // Overflowed payments keep new ones out until they are written, so they go first
+            PostPaymentResponseDto overflowed;
+            while (batch.size() < batchSize && (overflowed = overflow.poll()) != null) {
+                batch.add(overflowed);
+            }
+            try {
+                if (batch.isEmpty()) {
+                    PostPaymentResponseDto first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+            } catch (InterruptedException e) {
+                // Only close stops the writer, once the queue is empty
+                continue;
+            }
+
+            writeWithRetry(batch);
+            for (PostPaymentResponseDto payment : batch) {
+                pending.remove(payment.id(), payment);
+            }
+            batch.clear();
+        }
+    }
+
+    // Keeps retrying a failed batch, so queued payments are not lost while the database is briefly unavailable. Only
+    // close stops the retries, so an interrupt is not restored: it would make every later sleep return at once
+    private void writeWithRetry(List<PostPaymentResponseDto> batch) {
+        while (true) {
+            try {
+                writeBatch(batch);
+                written.add(batch.size());
+                batchesWritten.increment();
+                return;
+            } catch (SQLException e) {
+                if (!running) {
+                    logger.error("Dropping {} payments that could not be written while closing", batch.size(), e);
+                    return;
+                }
+                logger.error("Failed to write {} payments, retrying", batch.size(), e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    // Checked against running on the next failed attempt
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<PostPaymentResponseDto> batch) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+                for (PostPaymentResponseDto payment : batch) {
+                    statement.setString(1, payment.id());
+                    statement.setString(2, payment.status());
+                    statement.setString(3, payment.lastFourCardDigits());
+                    statement.setInt(4, payment.expiryMonth());
+                    statement.setInt(5, payment.expiryYear());
+                    statement.setString(6, payment.currency());
+                    statement.setLong(7, payment.amount());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
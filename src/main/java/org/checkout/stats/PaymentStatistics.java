@@ -0,0 +1,116 @@
+package org.checkout.stats;
+
+import org.checkout.models.Currency;
+import org.checkout.models.PaymentStatisticsDto;
+import org.checkout.models.PostPaymentResponseDto;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Payment counts and volumes by currency and status over the last minute, hour and day, maintained as payments are
+ * stored rather than computed from the repository. Every stored payment adds to one bucket of each window, and a
+ * query sums the window's buckets, so neither side ever looks at individual payments.
+ */
+public class PaymentStatistics {
+
+    public enum Window {
+        MINUTE("minute", Duration.ofSeconds(1), 60),
+        HOUR("hour", Duration.ofMinutes(1), 60),
+        DAY("day", Duration.ofMinutes(10), 144);
+
+        private final String label;
+        private final Duration bucketWidth;
+        private final int buckets;
+
+        Window(String label, Duration bucketWidth, int buckets) {
+            this.label = label;
+            this.bucketWidth = bucketWidth;
+            this.buckets = buckets;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public static Optional<Window> fromLabel(String label) {
+            return Arrays.stream(values()).filter(window -> window.label.equals(label)).findFirst();
+        }
+    }
+
+    // Stored payments are either approved or declined; each status has a count and an amount cell per currency
+    private static final String[] STATUSES = {"APPROVED", "DECLINED"};
+    private static final int CELLS = Currency.values().length * STATUSES.length * 2;
+
+    private final RollupRing[] rings = new RollupRing[Window.values().length];
+    private final Clock clock;
+
+    public PaymentStatistics() {
+        this(Clock.systemUTC());
+    }
+
+    PaymentStatistics(Clock clock) {
+        this.clock = clock;
+        for (Window window : Window.values()) {
+            rings[window.ordinal()] = new RollupRing(window.bucketWidth, window.buckets, CELLS);
+        }
+    }
+
+    /**
+     * Counts a stored payment in every window. Payments in a currency or status that is not tracked are ignored.
+     */
+    public void record(PostPaymentResponseDto payment) {
+        int status = statusIndex(payment.status());
+        if (status < 0 || !Currency.isValid(payment.currency())) {
+            return;
+        }
+        int countCell = countCell(Currency.valueOf(payment.currency()), status);
+        long now = clock.millis();
+        for (RollupRing ring : rings) {
+            ring.add(countCell, countCell + 1, payment.amount(), now);
+        }
+    }
+
+    public PaymentStatisticsDto snapshot(Window window) {
+        RollupRing ring = rings[window.ordinal()];
+        long[] sums = ring.sums(clock.millis());
+
+        List<PaymentStatisticsDto.CurrencyStatistics> currencies = new ArrayList<>(Currency.values().length);
+        long approved = 0;
+        long declined = 0;
+        for (Currency currency : Currency.values()) {
+            int approvedCell = countCell(currency, 0);
+            int declinedCell = countCell(currency, 1);
+            currencies.add(new PaymentStatisticsDto.CurrencyStatistics(
+                    currency.name(),
+                    sums[approvedCell], sums[approvedCell + 1],
+                    sums[declinedCell], sums[declinedCell + 1],
+                    approvalRate(sums[approvedCell], sums[declinedCell])));
+            approved += sums[approvedCell];
+            declined += sums[declinedCell];
+        }
+        return new PaymentStatisticsDto(window.label(), ring.bucketWidth().toSeconds(), approved, declined,
+                approvalRate(approved, declined), currencies);
+    }
+
+    private static int countCell(Currency currency, int status) {
+        return (currency.ordinal() * STATUSES.length + status) * 2;
+    }
+
+    private static int statusIndex(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Double approvalRate(long approved, long declined) {
+        return approved + declined == 0 ? null : (double) approved / (approved + declined);
+    }
+}
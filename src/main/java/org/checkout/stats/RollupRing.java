@@ -0,0 +1,68 @@
+package org.checkout.stats;
+
+import org.checkout.metrics.TimeBuckets;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ring of time buckets, each holding a fixed row of {@link LongAdder} cells. Adds go to the bucket of the current
+ * time; a bucket is reset and reused once it falls out of the window. Reading the window sums the live buckets cell
+ * by cell, so it costs {@code buckets * cells} reads however many payments were counted.
+ *
+ * <p>Like the velocity sketches, the window moves in steps of one bucket, and buckets are reset for reuse through
+ * {@link TimeBuckets}.
+ */
+final class RollupRing {
+
+    private final int buckets;
+    private final LongAdder[][] cells;
+    private final TimeBuckets timeBuckets;
+
+    RollupRing(Duration bucketWidth, int buckets, int cellsPerBucket) {
+        this.buckets = buckets;
+        this.cells = new LongAdder[buckets][cellsPerBucket];
+        for (LongAdder[] bucket : cells) {
+            for (int i = 0; i < cellsPerBucket; i++) {
+                bucket[i] = new LongAdder();
+            }
+        }
+        this.timeBuckets = new TimeBuckets(buckets, bucketWidth.toMillis());
+    }
+
+    /**
+     * Adds one to {@code countCell} and {@code amount} to {@code amountCell} in the current bucket.
+     */
+    void add(int countCell, int amountCell, long amount, long nowMillis) {
+        LongAdder[] bucket = cells[timeBuckets.slotFor(timeBuckets.epoch(nowMillis), this::reset)];
+        bucket[countCell].increment();
+        bucket[amountCell].add(amount);
+    }
+
+    /**
+     * Returns every cell summed over the buckets still in the window.
+     */
+    long[] sums(long nowMillis) {
+        long epoch = timeBuckets.epoch(nowMillis);
+        long[] sums = new long[cells[0].length];
+        for (int slot = 0; slot < buckets; slot++) {
+            if (timeBuckets.inWindow(slot, epoch)) {
+                LongAdder[] bucket = cells[slot];
+                for (int cell = 0; cell < sums.length; cell++) {
+                    sums[cell] += bucket[cell].sum();
+                }
+            }
+        }
+        return sums;
+    }
+
+    Duration bucketWidth() {
+        return Duration.ofMillis(timeBuckets.bucketMillis());
+    }
+
+    private void reset(int slot) {
+        for (LongAdder cell : cells[slot]) {
+            cell.reset();
+        }
+    }
+}
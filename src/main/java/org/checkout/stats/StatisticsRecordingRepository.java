@@ -0,0 +1,41 @@
+package org.checkout.stats;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IPaymentsRepository;
+
+import java.util.Optional;
+
+/**
+ * Counts every payment added through it in {@link PaymentStatistics} before passing it on to the wrapped repository.
+ */
+public class StatisticsRecordingRepository implements IPaymentsRepository {
+
+    private final IPaymentsRepository delegate;
+    private final PaymentStatistics statistics;
+
+    public StatisticsRecordingRepository(IPaymentsRepository delegate, PaymentStatistics statistics) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void add(PostPaymentResponseDto postPaymentResponseDto) {
+        delegate.add(postPaymentResponseDto);
+        statistics.record(postPaymentResponseDto);
+    }
+
+    @Override
+    public Optional<PostPaymentResponseDto> get(String id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean acceptsWrites() {
+        return delegate.acceptsWrites();
+    }
+}
@@ -0,0 +1,249 @@
+package org.checkout.vault;
+
+import org.checkout.exceptions.CardVaultFullException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory vault that swaps validated card details for an opaque token.
+ *
+ * <p>Each card takes one fixed 40-byte slot in large chunks of {@code long}s, with no object per card. A slot holds a
+ * random 64-bit check value followed by the card encrypted with AES-GCM: the card number packed as BCD digits, the
+ * expiry month and the two-byte expiry year in 14 bytes, plus the 16-byte authentication tag. The token is the slot number and
+ * the check value, so a lookup goes straight to the slot without hashing, and a guessed token is rejected on the check
+ * value before anything is decrypted. The GCM nonce is the slot number and check value, so it is never reused.
+ *
+ * <p>Tokens only live as long as the process; the vault is not persisted.
+ */
+public class CardVault {
+
+    public static final String TOKEN_PREFIX = "tok_";
+
+    private static final int TOKEN_LENGTH = TOKEN_PREFIX.length() + 8 + 16;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CARDS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int LONGS_PER_CARD = 5;
+    private static final int MAX_DIGITS = 19;
+    private static final int PLAINTEXT_BYTES = 1 + (MAX_DIGITS + 1) / 2 + 3;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int CIPHERTEXT_BYTES = PLAINTEXT_BYTES + GCM_TAG_BITS / 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKey key;
+    private final int capacity;
+    private final AtomicReferenceArray<AtomicLongArray> chunks;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * @param key      AES key, 16, 24 or 32 bytes
+     * @param capacity most cards the vault will hold
+     */
+    public CardVault(byte[] key, int capacity) {
+        this.key = new SecretKeySpec(key.clone(), "AES");
+        this.capacity = capacity;
+        this.chunks = new AtomicReferenceArray<>((capacity + CARDS_PER_CHUNK - 1) >>> CHUNK_SHIFT);
+    }
+
+    public static CardVault withRandomKey(int capacity) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new CardVault(key, capacity);
+    }
+
+    /**
+     * Stores a card that has already been validated and returns its token.
+     *
+     * @throws CardVaultFullException if the vault holds {@code capacity} cards
+     */
+    public String tokenize(String cardNumber, int expiryMonth, int expiryYear) {
+        int slot = nextSlot.getAndIncrement();
+        if (slot >= capacity || slot < 0) {
+            nextSlot.set(capacity);
+            throw new CardVaultFullException(capacity);
+        }
+        long check = random.nextLong();
+        if (check == 0) {
+            // Zero marks an empty slot
+            check = 1;
+        }
+
+        Workspace workspace = workspaces.get();
+        byte[] plaintext = workspace.plaintext;
+        plaintext[0] = (byte) cardNumber.length();
+        for (int i = 0; i < (MAX_DIGITS + 1) / 2; i++) {
+            int high = 2 * i < cardNumber.length() ? cardNumber.charAt(2 * i) - '0' : 0;
+            int low = 2 * i + 1 < cardNumber.length() ? cardNumber.charAt(2 * i + 1) - '0' : 0;
+            plaintext[1 + i] = (byte) (high << 4 | low);
+        }
+        plaintext[PLAINTEXT_BYTES - 3] = (byte) expiryMonth;
+        plaintext[PLAINTEXT_BYTES - 2] = (byte) (expiryYear >>> 8);
+        plaintext[PLAINTEXT_BYTES - 1] = (byte) expiryYear;
+
+        byte[] ciphertext = workspace.ciphertext;
+        try {
+            Cipher cipher = workspace.cipher;
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, workspace.nonce(slot, check)));
+            cipher.doFinal(plaintext, 0, PLAINTEXT_BYTES, ciphertext, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to encrypt the card", e);
+        }
+
+        AtomicLongArray chunk = chunk(slot);
+        int base = (slot & (CARDS_PER_CHUNK - 1)) * LONGS_PER_CARD;
+        for (int i = 0; i < LONGS_PER_CARD - 1; i++) {
+            chunk.set(base + 1 + i, readLong(ciphertext, i * 8));
+        }
+        // Written last: a slot only counts as filled once its check value is visible
+        chunk.set(base, check);
+
+        char[] token = new char[TOKEN_LENGTH];
+        TOKEN_PREFIX.getChars(0, TOKEN_PREFIX.length(), token, 0);
+        writeHex(slot & 0xFFFFFFFFL, 8, token, TOKEN_PREFIX.length());
+        writeHex(check, 16, token, TOKEN_PREFIX.length() + 8);
+        return new String(token);
+    }
+
+    /**
+     * @return the card behind {@code token}, or empty if the token is malformed or unknown
+     */
+    public Optional<VaultedCard> detokenize(String token) {
+        if (token == null || token.length() != TOKEN_LENGTH || !token.startsWith(TOKEN_PREFIX)
+                || !isLowerHex(token, TOKEN_PREFIX.length())) {
+            return Optional.empty();
+        }
+        long slotValue = parseHex(token, TOKEN_PREFIX.length(), 8);
+        long check = parseHex(token, TOKEN_PREFIX.length() + 8, 16);
+        if (slotValue >= Math.min(nextSlot.get(), capacity) || check == 0) {
+            return Optional.empty();
+        }
+        int slot = (int) slotValue;
+        AtomicLongArray chunk = chunks.get(slot >>> CHUNK_SHIFT);
+        int base = (slot & (CARDS_PER_CHUNK - 1)) * LONGS_PER_CARD;
+        if (chunk == null || chunk.get(base) != check) {
+            return Optional.empty();
+        }
+
+        Workspace workspace = workspaces.get();
+        byte[] ciphertext = workspace.ciphertext;
+        for (int i = 0; i < LONGS_PER_CARD - 1; i++) {
+            writeLong(ciphertext, i * 8, chunk.get(base + 1 + i));
+        }
+        byte[] plaintext = workspace.plaintext;
+        try {
+            Cipher cipher = workspace.cipher;
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, workspace.nonce(slot, check)));
+            cipher.doFinal(ciphertext, 0, CIPHERTEXT_BYTES, plaintext, 0);
+        } catch (AEADBadTagException e) {
+            // A slot that does not decrypt under this vault's key is no card this vault stored
+            return Optional.empty();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to decrypt the card", e);
+        }
+
+        int length = plaintext[0];
+        char[] digits = workspace.digits;
+        for (int i = 0; i < length; i++) {
+            int packed = plaintext[1 + i / 2];
+            digits[i] = (char) ('0' + ((i & 1) == 0 ? packed >>> 4 & 0xF : packed & 0xF));
+        }
+        return Optional.of(new VaultedCard(new String(digits, 0, length),
+                plaintext[PLAINTEXT_BYTES - 3], (plaintext[PLAINTEXT_BYTES - 2] & 0xFF) << 8 | plaintext[PLAINTEXT_BYTES - 1] & 0xFF));
+    }
+
+    public int size() {
+        return Math.min(nextSlot.get(), capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private AtomicLongArray chunk(int slot) {
+        int index = slot >>> CHUNK_SHIFT;
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicLongArray(CARDS_PER_CHUNK * LONGS_PER_CARD));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (offset + i < bytes.length ? bytes[offset + i] & 0xFF : 0);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 8 && offset + i < bytes.length; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static void writeHex(long value, int digits, char[] out, int offset) {
+        for (int i = digits - 1; i >= 0; i--) {
+            out[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    // Checked up front, so malformed tokens are rejected without a NumberFormatException
+    private static boolean isLowerHex(String token, int from) {
+        for (int i = from; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String token, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            char c = token.charAt(i);
+            value = value << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+
+    // Per-thread cipher and scratch buffers, so tokenizing and detokenizing allocate almost nothing
+    private static final class Workspace {
+        private final Cipher cipher;
+        private final byte[] plaintext = new byte[PLAINTEXT_BYTES];
+        private final byte[] ciphertext = new byte[(LONGS_PER_CARD - 1) * 8];
+        private final byte[] nonce = new byte[12];
+        private final char[] digits = new char[MAX_DIGITS];
+
+        Workspace() {
+            try {
+                this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES-GCM is not available", e);
+            }
+        }
+
+        byte[] nonce(int slot, long check) {
+            writeLong(nonce, 4, check);
+            nonce[0] = (byte) (slot >>> 24);
+            nonce[1] = (byte) (slot >>> 16);
+            nonce[2] = (byte) (slot >>> 8);
+            nonce[3] = (byte) slot;
+            return nonce;
+        }
+    }
+}
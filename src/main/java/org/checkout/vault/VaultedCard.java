@@ -0,0 +1,16 @@
+package org.checkout.vault;
+
+/**
+ * Card details held in the {@link CardVault}. The CVV is never vaulted.
+ */
+public record VaultedCard(String cardNumber, int expiryMonth, int expiryYear) {
+
+    public String lastFourDigits() {
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    @Override
+    public String toString() {
+        return "VaultedCard[cardNumber=****" + lastFourDigits() + ", expiryMonth=" + expiryMonth + ", expiryYear=" + expiryYear + "]";
+    }
+}
@@ -0,0 +1,211 @@
+package org.checkout.warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.checkout.PaymentGatewayApplication;
+import org.checkout.clients.BankClient;
+import org.checkout.clients.BankSimulatorClient.BankPaymentResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Drives synthetic traffic through a private instance of the gateway until JIT compilation settles, so the first
+ * production requests run compiled code instead of the interpreter.
+ *
+ * <p>The warm-up instance shares every class with the real application (Jetty, Javalin, Jackson, controller,
+ * service and repositories) but has its own in-memory stores, small pools and card vault, and a stub
+ * {@link BankClient}, so it never reaches the real bank and leaves no trace in the real repositories. It listens on
+ * an ephemeral loopback port that is closed once warm-up finishes.
+ */
+public class JitWarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(JitWarmUp.class);
+
+    private static final int KNOWN_IDS = 1024;
+
+    private final Duration maxDuration;
+    private final int threads;
+    private final int requestsPerRound;
+    private final int settleRounds;
+    private final long settleThresholdMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReferenceArray<String> knownIds = new AtomicReferenceArray<>(KNOWN_IDS);
+    private final AtomicInteger knownIdCount = new AtomicInteger();
+    private final String validPayment;
+
+    /**
+     * @param maxDuration           upper bound on the warm-up, even if compilation has not settled
+     * @param threads               number of concurrent request threads
+     * @param requestsPerRound      requests sent between two compilation time samples
+     * @param settleRounds          consecutive quiet rounds required before compilation counts as settled
+     * @param settleThresholdMillis JIT compilation time below which a round counts as quiet
+     */
+    public JitWarmUp(Duration maxDuration, int threads, int requestsPerRound, int settleRounds, long settleThresholdMillis) {
+        this.maxDuration = maxDuration;
+        this.threads = threads;
+        this.requestsPerRound = requestsPerRound;
+        this.settleRounds = settleRounds;
+        this.settleThresholdMillis = settleThresholdMillis;
+
+        this.validPayment = String.format("""
+                {
+                    "card_number": "4242424242424242",
+                    "expiry_month": 12,
+                    "expiry_year": %d,
+                    "currency": "GBP",
+                    "amount": 1000,
+                    "cvv": "123"
+                }""", Year.now().getValue() + 2);
+    }
+
+    public WarmUpResult run() {
+        PaymentGatewayApplication warmUpApplication = PaymentGatewayApplication.forWarmUp(stubBank());
+        warmUpApplication.javalinApp().start("127.0.0.1", 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jit-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String baseUrl = "http://127.0.0.1:" + warmUpApplication.javalinApp().port();
+
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        boolean canTrackCompilation = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        long lastCompilationTime = canTrackCompilation ? compilation.getTotalCompilationTime() : 0;
+        int quietRounds = 0;
+        int rounds = 0;
+        boolean settled = false;
+
+        try {
+            while (System.nanoTime() < deadline) {
+                runRound(executor, httpClient, baseUrl);
+                rounds++;
+
+                if (canTrackCompilation) {
+                    long compilationTime = compilation.getTotalCompilationTime();
+                    quietRounds = compilationTime - lastCompilationTime < settleThresholdMillis ? quietRounds + 1 : 0;
+                    lastCompilationTime = compilationTime;
+                } else {
+                    // Without compilation time monitoring, fall back to a fixed number of rounds
+                    quietRounds = rounds >= settleRounds * 5 ? settleRounds : 0;
+                }
+
+                if (quietRounds >= settleRounds) {
+                    settled = true;
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            warmUpApplication.javalinApp().stop();
+        }
+
+        WarmUpResult result = new WarmUpResult(rounds, (long) rounds * requestsPerRound,
+                Duration.ofNanos(System.nanoTime() - start), settled);
+        logger.info("JIT warm-up finished: {}", result);
+        return result;
+    }
+
+    private void runRound(ExecutorService executor, HttpClient httpClient, String baseUrl) {
+        int requestsPerThread = Math.max(1, requestsPerRound / threads);
+        List<Future<?>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                for (int r = 0; r < requestsPerThread; r++) {
+                    sendRequest(httpClient, baseUrl);
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.debug("Warm-up worker failed", e);
+            }
+        }
+    }
+
+    // Roughly the production mix of payments and lookups. Error paths are left out so the warm-up does not fill the
+    // logs with rejections.
+    private void sendRequest(HttpClient httpClient, String baseUrl) {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        try {
+            if (roll < 50) {
+                HttpResponse<String> response = httpClient.send(
+                        post(baseUrl, validPayment, UUID.randomUUID().toString()), HttpResponse.BodyHandlers.ofString());
+                rememberPaymentId(response);
+            } else if (roll < 95) {
+                httpClient.send(get(baseUrl, knownId()), HttpResponse.BodyHandlers.ofString());
+            } else {
+                httpClient.send(get(baseUrl, "cko_missing"), HttpResponse.BodyHandlers.discarding());
+            }
+        } catch (IOException e) {
+            logger.debug("Warm-up request failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rememberPaymentId(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() == 200) {
+            JsonNode payment = objectMapper.readTree(response.body());
+            int slot = knownIdCount.getAndIncrement();
+            knownIds.set(Math.floorMod(slot, KNOWN_IDS), payment.get("id").asText());
+        }
+    }
+
+    private String knownId() {
+        int bound = Math.min(knownIdCount.get(), KNOWN_IDS);
+        String id = bound == 0 ? null : knownIds.get(ThreadLocalRandom.current().nextInt(bound));
+        return id == null ? "cko_missing" : id;
+    }
+
+    private static HttpRequest post(String baseUrl, String body, String idempotencyKey) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/payments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (idempotencyKey != null) {
+            builder.header("Cko-Idempotency-Key", idempotencyKey);
+        }
+        return builder.build();
+    }
+
+    private static HttpRequest get(String baseUrl, String id) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/payments/" + id)).GET().build();
+    }
+
+    // Approves most payments and declines the rest, so both branches of the service get compiled
+    private static BankClient stubBank() {
+        BankPaymentResponse approved = new BankPaymentResponse(true, "WARMUP");
+        BankPaymentResponse declined = new BankPaymentResponse(false, null);
+        return request -> ThreadLocalRandom.current().nextInt(100) < 80 ? approved : declined;
+    }
+
+    public record WarmUpResult(int rounds, long requests, Duration elapsed, boolean settled) {}
+}
@@ -0,0 +1,26 @@
+package org.checkout.webhooks;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the delay before retry {@code n} is drawn uniformly from
+ * {@code [0, min(max, initial * 2^n))}, which spreads retries from many failed deliveries instead of sending them
+ * back in lockstep.
+ */
+final class JitteredBackoff {
+
+    private final long initialMillis;
+    private final long maxMillis;
+
+    JitteredBackoff(Duration initial, Duration max) {
+        this.initialMillis = initial.toMillis();
+        this.maxMillis = max.toMillis();
+    }
+
+    long delayMillis(int attempt) {
+        // Past 2^30 the ceiling is always the maximum, and stopping there keeps the multiplication from overflowing
+        long ceiling = attempt >= 30 ? maxMillis : Math.min(maxMillis, initialMillis * (1L << attempt));
+        return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling));
+    }
+}
@@ -0,0 +1,25 @@
+package org.checkout.webhooks;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Notifications for one endpoint that are delivered in a single request. The id stays the same across retries, so
+ * receivers can discard a batch they have already processed.
+ */
+public record WebhookBatch(
+    String id,
+    URI endpoint,
+    int attempt,
+    long nextAttemptAtMillis,
+    List<WebhookNotification> notifications
+) {
+    static WebhookBatch first(URI endpoint, List<WebhookNotification> notifications) {
+        return new WebhookBatch(UUID.randomUUID().toString(), endpoint, 0, System.currentTimeMillis(), List.copyOf(notifications));
+    }
+
+    WebhookBatch retryAt(long nextAttemptAtMillis) {
+        return new WebhookBatch(id, endpoint, attempt + 1, nextAttemptAtMillis, notifications);
+    }
+}
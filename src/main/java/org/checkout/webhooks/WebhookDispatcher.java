@@ -0,0 +1,299 @@
+package org.checkout.webhooks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.PaymentEventSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers payment outcomes to merchants' webhook endpoints.
+ *
+ * <p>{@link #publish} only appends the notification to its endpoint's in-memory queue, so {@code PaymentService}
+ * never waits on a merchant. Every {@code batchLinger}, queued notifications are cut into batches of at most
+ * {@code maxBatchSize} per endpoint and each batch is sent as one POST on its own virtual thread. All deliveries share
+ * one HTTP/2 client, and a per-host semaphore caps how many requests are in flight to any one merchant host.
+ *
+ * <p>A failed batch is written to the {@link WebhookRetryStore} and retried with jittered exponential backoff until it
+ * succeeds or runs out of attempts. Batches are only durable once they have failed once: notifications still
+ * waiting for their first attempt are lost if the process dies.
+ *
+ * <p>Unless {@code allowPrivateEndpoints} is set, endpoints whose host resolves to a loopback, link-local, private or
+ * wildcard address are refused, both when they are registered and before every delivery, so the gateway cannot be
+ * made to post into its own network. This check is best-effort: the HTTP client resolves the host again when it
+ * connects, so a host whose DNS answer changes in between (DNS rebinding) can still reach a private address. Where that
+ * matters, deliveries should go through an {@code egressProxy} that enforces the policy on the address it connects to.
+ */
+public class WebhookDispatcher implements PaymentEventSink, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    public static final String BATCH_ID_HEADER = "Cko-Webhook-Batch-Id";
+
+    private final WebhookRegistry registry;
+    private final WebhookRetryStore retryStore;
+    private final Settings settings;
+    private final JitteredBackoff backoff;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+
+    private final Map<URI, Queue<WebhookNotification>> pending = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger retryingCount = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final ExecutorService deliveries = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "webhook-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param batchLinger           how long notifications wait to be batched with others for the same endpoint
+     * @param maxBatchSize          most notifications sent in one request
+     * @param maxConcurrencyPerHost most requests in flight to one host
+     * @param maxPending            notifications queued for a first attempt before new ones go straight to the retry
+     *                              store
+     * @param maxAttempts           attempts before a batch is dead-lettered
+     * @param allowPrivateEndpoints deliver to endpoints on loopback, link-local and private addresses, for local
+     *                              development only
+     * @param egressProxy           HTTP proxy every delivery is sent through, or {@code null} to connect directly
+     */
+    public record Settings(
+        Duration batchLinger,
+        int maxBatchSize,
+        int maxConcurrencyPerHost,
+        int maxPending,
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        Duration requestTimeout,
+        boolean allowPrivateEndpoints,
+        InetSocketAddress egressProxy
+    ) {}
+
+    public WebhookDispatcher(WebhookRegistry registry, Path retryDirectory, Settings settings) throws IOException {
+        this.registry = registry;
+        this.retryStore = new WebhookRetryStore(retryDirectory);
+        this.settings = settings;
+        this.backoff = new JitteredBackoff(settings.initialBackoff(), settings.maxBackoff());
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(settings.requestTimeout())
+                .executor(deliveries);
+        if (settings.egressProxy() != null) {
+            httpClientBuilder.proxy(ProxySelector.of(settings.egressProxy()));
+        }
+        this.httpClient = httpClientBuilder.build();
+
+        for (WebhookBatch batch : retryStore.loadAll()) {
+            retryingCount.incrementAndGet();
+            scheduleRetry(batch);
+        }
+        long lingerMillis = settings.batchLinger().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(PaymentEvent event) {
+        if (!event.type().isFinal() || event.callerId() == null) {
+            return;
+        }
+        registry.endpointFor(event.callerId()).ifPresent(endpoint -> {
+            WebhookNotification notification = WebhookNotification.from(event);
+            if (pendingCount.incrementAndGet() > settings.maxPending()) {
+                // Over the in-memory limit: hand the notification to the durable store rather than drop it
+                pendingCount.decrementAndGet();
+                WebhookBatch batch = WebhookBatch.first(endpoint, List.of(notification));
+                persist(batch);
+                scheduleRetry(batch);
+                return;
+            }
+            pending.computeIfAbsent(endpoint, ignored -> new ConcurrentLinkedQueue<>()).add(notification);
+        });
+    }
+
+    public WebhookRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Whether notifications may be sent to {@code endpoint}. Resolves the endpoint's host, separately from the
+     * connection a delivery then opens, so the answer is only as good as the host's DNS is stable.
+     */
+    public boolean accepts(URI endpoint) {
+        if (settings.allowPrivateEndpoints()) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(endpoint.getHost())) {
+                if (!isPublic(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    public int retryingCount() {
+        return retryingCount.get();
+    }
+
+    public long deliveredCount() {
+        return delivered.sum();
+    }
+
+    public long deadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        deliveries.shutdownNow();
+        httpClient.shutdownNow();
+    }
+
+    void flush() {
+        pending.forEach((endpoint, queue) -> {
+            List<WebhookNotification> notifications = new ArrayList<>(settings.maxBatchSize());
+            WebhookNotification notification;
+            while ((notification = queue.poll()) != null) {
+                pendingCount.decrementAndGet();
+                notifications.add(notification);
+                if (notifications.size() == settings.maxBatchSize()) {
+                    submit(WebhookBatch.first(endpoint, notifications));
+                    notifications = new ArrayList<>(settings.maxBatchSize());
+                }
+            }
+            if (!notifications.isEmpty()) {
+                submit(WebhookBatch.first(endpoint, notifications));
+            }
+        });
+    }
+
+    private void submit(WebhookBatch batch) {
+        deliveries.submit(() -> deliver(batch));
+    }
+
+    private void deliver(WebhookBatch batch) {
+        // Checked again on every attempt, as the host may have been re-pointed since it was registered
+        if (!accepts(batch.endpoint())) {
+            onFailure(batch, "endpoint does not resolve to a public address");
+            return;
+        }
+        Semaphore permits = hostPermits.computeIfAbsent(hostOf(batch.endpoint()),
+                ignored -> new Semaphore(settings.maxConcurrencyPerHost()));
+        boolean succeeded = false;
+        String failure;
+        try {
+            permits.acquire();
+            try {
+                HttpResponse<Void> response = httpClient.send(request(batch), HttpResponse.BodyHandlers.discarding());
+                succeeded = response.statusCode() / 100 == 2;
+                failure = "status " + response.statusCode();
+            } finally {
+                permits.release();
+            }
+        } catch (IOException e) {
+            failure = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (succeeded) {
+            delivered.add(batch.notifications().size());
+            if (retryStore.remove(batch)) {
+                retryingCount.decrementAndGet();
+            }
+        } else {
+            onFailure(batch, failure);
+        }
+    }
+
+    private void onFailure(WebhookBatch batch, String failure) {
+        if (batch.attempt() + 1 >= settings.maxAttempts()) {
+            logger.error("Giving up on webhook batch {} to {} after {} attempts, last failure: {}",
+                    batch.id(), batch.endpoint(), batch.attempt() + 1, failure);
+            deadLettered.add(batch.notifications().size());
+            if (retryStore.deadLetter(batch)) {
+                retryingCount.decrementAndGet();
+            }
+            return;
+        }
+
+        WebhookBatch retry = batch.retryAt(System.currentTimeMillis() + backoff.delayMillis(batch.attempt()));
+        logger.warn("Webhook batch {} to {} failed ({}), retry {} at {}",
+                batch.id(), batch.endpoint(), failure, retry.attempt(), retry.nextAttemptAtMillis());
+        persist(retry);
+        scheduleRetry(retry);
+    }
+
+    private void persist(WebhookBatch batch) {
+        if (retryStore.save(batch)) {
+            retryingCount.incrementAndGet();
+        }
+    }
+
+    private void scheduleRetry(WebhookBatch batch) {
+        long delay = Math.max(0, batch.nextAttemptAtMillis() - System.currentTimeMillis());
+        scheduler.schedule(() -> submit(batch), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpRequest request(WebhookBatch batch) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("notifications", batch.notifications()));
+        return HttpRequest.newBuilder(batch.endpoint())
+                .timeout(settings.requestTimeout())
+                .header("Content-Type", "application/json")
+                .header(BATCH_ID_HEADER, batch.id())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        return !(address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()
+                // IPv6 unique local addresses, fc00::/7, which isSiteLocalAddress does not cover
+                || address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc);
+    }
+
+    private static String hostOf(URI endpoint) {
+        return endpoint.getHost() + ":" + endpoint.getPort();
+    }
+}
@@ -0,0 +1,18 @@
+package org.checkout.webhooks;
+
+import org.checkout.events.PaymentEvent;
+
+/**
+ * One payment outcome as delivered to a merchant's webhook endpoint.
+ */
+public record WebhookNotification(
+    String paymentId,
+    String status,
+    String currency,
+    long amount,
+    long timestamp
+) {
+    static WebhookNotification from(PaymentEvent event) {
+        return new WebhookNotification(event.paymentId(), event.type().name(), event.currency(), event.amount(), event.timestampMillis());
+    }
+}
@@ -0,0 +1,26 @@
+package org.checkout.webhooks;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Webhook endpoint registered by each caller, keyed by the caller's {@code Cko-Caller-Id}.
+ */
+public class WebhookRegistry {
+
+    private final Map<String, URI> endpoints = new ConcurrentHashMap<>();
+
+    public void register(String callerId, URI endpoint) {
+        endpoints.put(callerId, endpoint);
+    }
+
+    public void unregister(String callerId) {
+        endpoints.remove(callerId);
+    }
+
+    public Optional<URI> endpointFor(String callerId) {
+        return Optional.ofNullable(endpoints.get(callerId));
+    }
+}
@@ -0,0 +1,98 @@
+package org.checkout.webhooks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Durable queue of batches waiting for a retry, kept as one small JSON file per batch. A batch is written before its
+ * retry is scheduled and deleted once delivered, so retries survive a restart. Batches that run out of attempts are
+ * moved to a {@code dead} directory for inspection.
+ */
+class WebhookRetryStore {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookRetryStore.class);
+
+    private static final String SUFFIX = ".json";
+
+    private final Path directory;
+    private final Path deadLetterDirectory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    WebhookRetryStore(Path directory) throws IOException {
+        this.directory = directory;
+        this.deadLetterDirectory = directory.resolve("dead");
+        Files.createDirectories(deadLetterDirectory);
+    }
+
+    /**
+     * Writes or replaces the batch. Returns {@code true} if the batch was not in the store yet.
+     */
+    boolean save(WebhookBatch batch) {
+        Path file = fileFor(directory, batch);
+        Path temporary = directory.resolve(batch.id() + ".tmp");
+        try {
+            boolean added = !Files.exists(file);
+            objectMapper.writeValue(temporary.toFile(), batch);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return added;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist webhook batch " + batch.id(), e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the batch was in the store.
+     */
+    boolean remove(WebhookBatch batch) {
+        try {
+            return Files.deleteIfExists(fileFor(directory, batch));
+        } catch (IOException e) {
+            logger.warn("Failed to remove delivered webhook batch {}", batch.id(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Moves the batch to the dead-letter directory. Returns {@code true} if the batch was in the store.
+     */
+    boolean deadLetter(WebhookBatch batch) {
+        Path source = fileFor(directory, batch);
+        try {
+            if (Files.exists(source)) {
+                Files.move(source, fileFor(deadLetterDirectory, batch), StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            }
+            objectMapper.writeValue(fileFor(deadLetterDirectory, batch).toFile(), batch);
+        } catch (IOException e) {
+            logger.warn("Failed to dead-letter webhook batch {}", batch.id(), e);
+        }
+        return false;
+    }
+
+    List<WebhookBatch> loadAll() throws IOException {
+        List<WebhookBatch> batches = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                try {
+                    batches.add(objectMapper.readValue(file.toFile(), WebhookBatch.class));
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable webhook batch {}", file, e);
+                }
+            }
+        }
+        return batches;
+    }
+
+    private static Path fileFor(Path directory, WebhookBatch batch) {
+        return directory.resolve(batch.id() + SUFFIX);
+    }
+}
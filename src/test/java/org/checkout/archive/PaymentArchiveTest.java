@@ -0,0 +1,76 @@
+package org.checkout.archive;
+
+import org.checkout.PaymentIdGenerator;
+import org.checkout.models.PostPaymentResponseDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private final PaymentIdGenerator idGenerator = new PaymentIdGenerator();
+
+    @Test
+    void shouldReadBackEveryArchivedPayment() throws Exception {
+        PaymentArchive archive = new PaymentArchive(directory, 8);
+        List<PostPaymentResponseDto> first = payments(100);
+        List<PostPaymentResponseDto> second = payments(37);
+
+        archive.append(first);
+        archive.append(second);
+
+        assertThat(archive.size()).isEqualTo(137);
+        assertThat(archive.segmentCount()).isEqualTo(2);
+        for (PostPaymentResponseDto payment : first) {
+            assertThat(archive.get(payment.id())).contains(payment);
+        }
+        for (PostPaymentResponseDto payment : second) {
+            assertThat(archive.get(payment.id())).contains(payment);
+        }
+        assertThat(archive.get(idGenerator.generate())).isEmpty();
+        assertThat(archive.get("cko_missing")).isEmpty();
+    }
+
+    @Test
+    void shouldReopenSegmentsAndDiscardUnfinishedOnes() throws Exception {
+        List<PostPaymentResponseDto> payments = payments(50);
+        new PaymentArchive(directory, 16).append(payments);
+        Files.write(directory.resolve("00000000000000000001.seg.tmp"), new byte[]{1, 2, 3});
+
+        PaymentArchive reopened = new PaymentArchive(directory, 16);
+        reopened.append(payments(1));
+
+        assertThat(reopened.size()).isEqualTo(51);
+        assertThat(reopened.get(payments.get(17).id())).contains(payments.get(17));
+        assertThat(directory.resolve("00000000000000000001.seg.tmp")).doesNotExist();
+        assertThat(directory.resolve("00000000000000000001.seg")).exists();
+    }
+
+    @Test
+    void shouldCompressPayments() throws Exception {
+        PaymentArchive archive = new PaymentArchive(directory, 64);
+
+        archive.append(payments(10_000));
+
+        // Encoded uncompressed, a payment takes about 60 bytes
+        assertThat(Files.size(directory.resolve("00000000000000000000.seg"))).isLessThan(10_000 * 40L);
+    }
+
+    private List<PostPaymentResponseDto> payments(int count) {
+        List<PostPaymentResponseDto> payments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            payments.add(new PostPaymentResponseDto(idGenerator.generate(), i % 4 == 0 ? "DECLINED" : "APPROVED",
+                    "4242", 12, 2030, "GBP", 100L + i));
+        }
+        return payments;
+    }
+}
@@ -0,0 +1,86 @@
+package org.checkout.archive;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredPaymentsRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void shouldMoveFullSegmentsOfAgedPaymentsToTheArchive() throws Exception {
+        TieredPaymentsRepository repository = new TieredPaymentsRepository(new PaymentArchive(directory, 4), Duration.ofHours(1), 10, clock);
+        for (int i = 0; i < 25; i++) {
+            repository.add(payment(i));
+        }
+        clock.advance(Duration.ofMinutes(30));
+        repository.add(payment(25));
+
+        assertThat(repository.archiveAged()).isZero();
+
+        clock.advance(Duration.ofMinutes(45));
+
+        // 25 payments have aged out, but only two full segments are written; the rest wait for the next check
+        assertThat(repository.archiveAged()).isEqualTo(20);
+        assertThat(repository.hotSize()).isEqualTo(6);
+        assertThat(repository.archive().segmentCount()).isEqualTo(2);
+        assertThat(repository.size()).isEqualTo(26);
+    }
+
+    @Test
+    void shouldReadArchivedPaymentsById() throws Exception {
+        TieredPaymentsRepository repository = new TieredPaymentsRepository(new PaymentArchive(directory, 4), Duration.ofHours(1), 10, clock);
+        for (int i = 0; i < 12; i++) {
+            repository.add(payment(i));
+        }
+        clock.advance(Duration.ofHours(2));
+        repository.archiveAged();
+
+        assertThat(repository.get("cko_00000003")).contains(payment(3));
+        assertThat(repository.get("cko_00000011")).contains(payment(11));
+        assertThat(repository.get("cko_99999999")).isEmpty();
+
+        TieredPaymentsRepository restarted = new TieredPaymentsRepository(new PaymentArchive(directory, 4), Duration.ofHours(1), 10, clock);
+        assertThat(restarted.get("cko_00000007")).contains(payment(7));
+    }
+
+    private static PostPaymentResponseDto payment(int number) {
+        return new PostPaymentResponseDto(String.format("cko_%08d", number), "APPROVED", "4242", 12, 2030, "EUR", number);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.checkout.cluster;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedPaymentsRepositoryTest {
+
+    private static final int PAYMENTS = 1000;
+
+    private final List<PartitionedPaymentsRepository> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(PartitionedPaymentsRepository::close);
+    }
+
+    @Test
+    void shouldServeReadsFromAnyNode() throws IOException {
+        PartitionedPaymentsRepository first = startNode();
+        PartitionedPaymentsRepository second = startNode(first);
+        PartitionedPaymentsRepository third = startNode(first);
+
+        IntStream.range(0, PAYMENTS).forEach(i -> first.add(payment(i)));
+
+        IntStream.range(0, PAYMENTS).forEach(i ->
+                assertThat(third.get("cko_" + i)).contains(payment(i)));
+        assertThat(second.members()).containsExactlyInAnyOrder(first.self(), second.self(), third.self());
+        assertThat(first.size() + second.size() + third.size()).isEqualTo(PAYMENTS);
+        assertThat(third.size()).isPositive();
+    }
+
+    @Test
+    void shouldKeepEveryPaymentWhenNodesJoinAndLeave() throws IOException {
+        PartitionedPaymentsRepository first = startNode();
+        PartitionedPaymentsRepository second = startNode(first);
+        IntStream.range(0, PAYMENTS).forEach(i -> first.add(payment(i)));
+
+        PartitionedPaymentsRepository third = startNode(second);
+        first.awaitRebalance();
+        second.awaitRebalance();
+        assertThat(third.size()).isPositive();
+
+        second.leave();
+        assertThat(second.size()).isZero();
+        IntStream.range(0, PAYMENTS).forEach(i ->
+                assertThat(first.get("cko_" + i)).contains(payment(i)));
+        assertThat(first.size() + third.size()).isEqualTo(PAYMENTS);
+    }
+
+    @Test
+    void shouldStopFallingBackToThePreviousRingOnceEveryNodeHandedOver() throws IOException {
+        PartitionedPaymentsRepository first = startNode();
+        PartitionedPaymentsRepository second = startNode(first);
+        IntStream.range(0, PAYMENTS).forEach(i -> first.add(payment(i)));
+
+        PartitionedPaymentsRepository third = startNode(second);
+        List.of(first, second, third).forEach(PartitionedPaymentsRepository::awaitRebalance);
+
+        assertThat(first.handOverInFlight()).isFalse();
+        assertThat(second.handOverInFlight()).isFalse();
+        assertThat(third.handOverInFlight()).isFalse();
+        IntStream.range(0, PAYMENTS).forEach(i ->
+                assertThat(third.get("cko_" + i)).contains(payment(i)));
+    }
+
+    @Test
+    void shouldServeReadsWhileALeavingNodeIsStillHandingOver() throws IOException {
+        PartitionedPaymentsRepository first = startNode();
+        PartitionedPaymentsRepository second = startNode(first);
+        PartitionedPaymentsRepository third = startNode(first);
+        IntStream.range(0, PAYMENTS).forEach(i -> first.add(payment(i)));
+        List.of(first, second, third).forEach(PartitionedPaymentsRepository::awaitRebalance);
+
+        // The others have been told that the second node is leaving, but it has not handed anything over yet
+        first.onLeave(second.self());
+        third.onLeave(second.self());
+        List.of(first, third).forEach(PartitionedPaymentsRepository::awaitRebalance);
+
+        assertThat(second.size()).isPositive();
+        assertThat(first.handOverInFlight()).isTrue();
+        IntStream.range(0, PAYMENTS).forEach(i -> {
+            assertThat(first.get("cko_" + i)).contains(payment(i));
+            assertThat(third.get("cko_" + i)).contains(payment(i));
+        });
+
+        second.leave();
+
+        assertThat(first.handOverInFlight()).isFalse();
+        assertThat(third.handOverInFlight()).isFalse();
+        assertThat(first.size() + third.size()).isEqualTo(PAYMENTS);
+        IntStream.range(0, PAYMENTS).forEach(i ->
+                assertThat(first.get("cko_" + i)).contains(payment(i)));
+    }
+
+    private PartitionedPaymentsRepository startNode(PartitionedPaymentsRepository... seeds) throws IOException {
+        PartitionedPaymentsRepository node = new PartitionedPaymentsRepository("127.0.0.1", 0, 64);
+        node.join(Arrays.stream(seeds).map(PartitionedPaymentsRepository::self).toList());
+        nodes.add(node);
+        return node;
+    }
+
+    private static PostPaymentResponseDto payment(int i) {
+        return new PostPaymentResponseDto("cko_" + i, "Authorized", "4242", 12, 2030, "GBP", 100 + i);
+    }
+}
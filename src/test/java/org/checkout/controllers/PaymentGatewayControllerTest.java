@@ -3,24 +3,38 @@ package org.checkout.controllers;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import io.javalin.validation.BodyValidator;
+import io.javalin.validation.ValidationError;
+import org.checkout.metrics.PaymentMetrics;
 import org.checkout.services.IPaymentService;
+import org.checkout.services.PaymentResult;
 import org.checkout.models.*;
+import org.checkout.vault.CardVault;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PaymentGatewayControllerTest {
 
+    private static final int FUTURE_YEAR = Year.now().getValue() + 1;
+
     @Mock
     private IPaymentService paymentService;
     
@@ -39,7 +53,7 @@ class PaymentGatewayControllerTest {
         PostPaymentRequestDto requestDto = new PostPaymentRequestDto(
             "4242424242424242",
             12,
-            2025,
+            FUTURE_YEAR,
             "USD",
             100,
             "123"
@@ -57,14 +71,143 @@ class PaymentGatewayControllerTest {
 
         when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
         when(ctx.header("Cko-Idempotency-Key")).thenReturn("idem_key_123");
-        when(paymentService.processPayment(any(Payment.class), eq("idem_key_123"))).thenReturn(expectedResponse);
+        when(ctx.header("Cko-Caller-Id")).thenReturn("merchant_1");
+        when(paymentService.submitPaymentAsync(any(Payment.class), eq("idem_key_123"), eq("merchant_1")))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentResult.Processed(expectedResponse)));
 
         controller.postPayment(ctx);
 
-        verify(paymentService).processPayment(any(Payment.class), eq("idem_key_123"));
+        verify(paymentService).submitPaymentAsync(any(Payment.class), eq("idem_key_123"), eq("merchant_1"));
         verify(ctx).json(expectedResponse);
     }
 
+    @Test
+    void shouldRespondWithBadRequestWithoutCallingTheServiceWhenPaymentIsInvalid() {
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto(
+            "42",
+            12,
+            FUTURE_YEAR,
+            "USD",
+            100,
+            "123"
+        );
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+
+        controller.postPayment(ctx);
+
+        verify(ctx).status(HttpStatus.BAD_REQUEST);
+        verify(ctx).json(Map.of(
+            "message", "Payment rejected due to validation errors",
+            "errors", List.of("Card number must be between 14-19 digits")
+        ));
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void shouldRejectAnIdempotencyKeyAlreadyUsedForADifferentPayment() {
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto(
+            "4242424242424242",
+            12,
+            FUTURE_YEAR,
+            "USD",
+            100,
+            "123"
+        );
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+        when(ctx.header("Cko-Idempotency-Key")).thenReturn("idem_key_123");
+        when(ctx.header("Cko-Caller-Id")).thenReturn("merchant_1");
+        when(paymentService.submitPaymentAsync(any(Payment.class), eq("idem_key_123"), eq("merchant_1")))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentResult.IdempotencyKeyMismatch("idem_key_123")));
+
+        controller.postPayment(ctx);
+
+        verify(ctx).status(HttpStatus.UNPROCESSABLE_CONTENT);
+        verify(ctx).json(Map.of("error", "Idempotency key already used for a different payment", "idempotency_key", "idem_key_123"));
+    }
+
+    @Test
+    void shouldReplayTheStoredResponseForARetriedPayment() {
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto(
+            "4242424242424242",
+            12,
+            FUTURE_YEAR,
+            "USD",
+            100,
+            "123"
+        );
+        PostPaymentResponseDto storedResponse = new PostPaymentResponseDto("cko_1", "APPROVED", "4242", 12, FUTURE_YEAR, "USD", 100);
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+        when(ctx.header("Cko-Idempotency-Key")).thenReturn("idem_key_123");
+        when(paymentService.submitPaymentAsync(any(Payment.class), eq("idem_key_123"), any()))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentResult.Replayed(storedResponse)));
+
+        controller.postPayment(ctx);
+
+        verify(ctx).header("Cko-Idempotent-Replayed", "true");
+        verify(ctx).json(storedResponse);
+        verify(ctx, never()).status(any(HttpStatus.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRespondOnceAPipelinedPaymentCompletes() {
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto("4242424242424242", 12, FUTURE_YEAR, "GBP", 100, "123");
+        PostPaymentResponseDto expectedResponse = new PostPaymentResponseDto("cko_123", "approved", "4242", 12, FUTURE_YEAR, "GBP", 100);
+        CompletableFuture<PaymentResult> pending = new CompletableFuture<>();
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+        when(paymentService.submitPaymentAsync(any(Payment.class), any(), any())).thenReturn(pending);
+
+        controller.postPayment(ctx);
+
+        ArgumentCaptor<Supplier<CompletableFuture<?>>> future = ArgumentCaptor.forClass(Supplier.class);
+        verify(ctx).future(future.capture());
+        CompletableFuture<?> response = future.getValue().get();
+        verify(ctx, never()).json(any());
+
+        pending.complete(new PaymentResult.Processed(expectedResponse));
+
+        assertThat(response).isDone();
+        verify(ctx).json(expectedResponse);
+    }
+
+    @Test
+    void shouldProcessPaymentForAVaultedCardToken() {
+        CardVault cardVault = CardVault.withRandomKey(10);
+        String token = cardVault.tokenize("4242424242424242", 12, FUTURE_YEAR);
+        controller = new PaymentGatewayController(paymentService, new PaymentMetrics(), cardVault);
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto(null, null, null, "GBP", 100, "123", token);
+        PostPaymentResponseDto expectedResponse = new PostPaymentResponseDto("cko_123", "approved", "4242", 12, FUTURE_YEAR, "GBP", 100);
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+        when(paymentService.submitPaymentAsync(argThat(payment -> payment.getCardNumber().equals("4242424242424242")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentResult.Processed(expectedResponse)));
+
+        controller.postPayment(ctx);
+
+        verify(ctx).json(expectedResponse);
+    }
+
+    @Test
+    void shouldRespondWithBadRequestForAnUnknownCardToken() {
+        controller = new PaymentGatewayController(paymentService, new PaymentMetrics(), CardVault.withRandomKey(10));
+        PostPaymentRequestDto requestDto = new PostPaymentRequestDto(null, null, null, "GBP", 100, "123", "tok_00000000ffffffffffffffff");
+
+        when(ctx.bodyValidator(PostPaymentRequestDto.class)).thenReturn(new TestBodyValidator(requestDto));
+
+        controller.postPayment(ctx);
+
+        verify(ctx).status(HttpStatus.BAD_REQUEST);
+        verify(ctx).json(Map.of(
+            "message", "Payment rejected due to validation errors",
+            "errors", List.of("Unknown card token")
+        ));
+        verifyNoInteractions(paymentService);
+    }
+
     @Test
     void shouldReturnPaymentWhenPaymentExists() {
 
@@ -114,5 +257,11 @@ class PaymentGatewayControllerTest {
         public PostPaymentRequestDto get() {
             return dto;
         }
+
+        @NotNull
+        @Override
+        public Map<String, List<ValidationError<PostPaymentRequestDto>>> errors() {
+            return Map.of();
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,56 @@
+package org.checkout.events;
+
+import org.checkout.events.PaymentUpdateBroadcaster.Subscription;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentUpdateBroadcasterTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    private final PaymentUpdateBroadcaster broadcaster = new PaymentUpdateBroadcaster(2);
+
+    @Test
+    void shouldDeliverEventsToPaymentAndCallerSubscribers() throws InterruptedException {
+        Subscription payment = broadcaster.subscribeToPayment("cko_1");
+        Subscription caller = broadcaster.subscribeToCaller("merchant_1");
+        Subscription otherCaller = broadcaster.subscribeToCaller("merchant_2");
+
+        broadcaster.publish(event("cko_1", "merchant_1"));
+
+        assertThat(payment.poll(NO_WAIT).paymentId()).isEqualTo("cko_1");
+        assertThat(caller.poll(NO_WAIT).paymentId()).isEqualTo("cko_1");
+        assertThat(otherCaller.poll(NO_WAIT)).isNull();
+    }
+
+    @Test
+    void shouldFlagSlowSubscribersInsteadOfBlocking() throws InterruptedException {
+        Subscription slow = broadcaster.subscribeToCaller("merchant_1");
+
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(event("cko_" + i, "merchant_1"));
+        }
+
+        assertThat(slow.overflowed()).isTrue();
+        assertThat(slow.poll(NO_WAIT).paymentId()).isEqualTo("cko_0");
+    }
+
+    @Test
+    void shouldStopDeliveringOnceClosed() throws InterruptedException {
+        Subscription subscription = broadcaster.subscribeToPayment("cko_1");
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+
+        subscription.close();
+        broadcaster.publish(event("cko_1", null));
+
+        assertThat(broadcaster.subscriberCount()).isZero();
+        assertThat(subscription.poll(NO_WAIT)).isNull();
+    }
+
+    private static PaymentEvent event(String paymentId, String callerId) {
+        return new PaymentEvent(PaymentEventType.APPROVED, paymentId, "GBP", 1000, System.currentTimeMillis(), callerId);
+    }
+}
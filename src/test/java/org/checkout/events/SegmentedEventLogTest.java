@@ -0,0 +1,83 @@
+package org.checkout.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentedEventLogTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+    private static final long NOW = System.currentTimeMillis();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadEventsByOffsetAcrossSegments() throws IOException {
+        try (SegmentedEventLog log = new SegmentedEventLog(directory, SEGMENT_BYTES, Duration.ofDays(1), 0)) {
+            IntStream.range(0, 1000).forEach(i -> log.append(event(i)));
+
+            List<LogEntry> entries = log.read(500, 300);
+
+            assertThat(segmentFiles()).hasSizeGreaterThan(1);
+            assertThat(entries).hasSize(300);
+            assertThat(entries.getFirst().offset()).isEqualTo(500);
+            assertThat(entries.getLast().offset()).isEqualTo(799);
+            assertThat(entries.getFirst().event()).isEqualTo(event(500));
+            assertThat(log.read(1000, 10)).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRecoverAfterRestartAndTruncateATornRecord() throws IOException {
+        try (SegmentedEventLog log = new SegmentedEventLog(directory, SEGMENT_BYTES, Duration.ofDays(1), 0)) {
+            IntStream.range(0, 200).forEach(i -> log.append(event(i)));
+        }
+        Path lastSegment = segmentFiles().getLast();
+        try (FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (SegmentedEventLog log = new SegmentedEventLog(directory, SEGMENT_BYTES, Duration.ofDays(1), 0)) {
+            assertThat(log.nextOffset()).isEqualTo(199);
+            assertThat(log.append(event(199))).isEqualTo(199);
+            assertThat(log.read(190, 100)).extracting(LogEntry::offset).containsExactlyElementsOf(
+                    IntStream.range(190, 200).mapToObj(Long::valueOf).toList());
+        }
+    }
+
+    @Test
+    void shouldDropTheOldestSegmentsWhenOverTheSizeLimit() throws IOException {
+        try (SegmentedEventLog log = new SegmentedEventLog(directory, SEGMENT_BYTES, Duration.ofDays(1), 3 * SEGMENT_BYTES)) {
+            IntStream.range(0, 1000).forEach(i -> log.append(event(i)));
+
+            log.enforceRetention();
+
+            assertThat(log.startOffset()).isPositive();
+            assertThat(segmentFiles()).hasSizeLessThanOrEqualTo(4);
+            assertThat(log.read(0, 1).getFirst().offset()).isEqualTo(log.startOffset());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted(Comparator.naturalOrder()).toList();
+        }
+    }
+
+    private static PaymentEvent event(int i) {
+        return new PaymentEvent(PaymentEventType.values()[i % 4], "cko_" + i, "GBP", 100 + i, NOW + i, i % 2 == 0 ? "merchant-" + i : null);
+    }
+}
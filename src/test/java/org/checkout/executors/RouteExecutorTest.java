@@ -0,0 +1,84 @@
+package org.checkout.executors;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import org.checkout.exceptions.ExecutorSaturatedException;
+import org.checkout.metrics.PaymentMetrics;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RouteExecutorTest {
+
+    @Test
+    void shouldRunTheHandlerOnThePoolAndCompleteTheRequestAsynchronously() throws Exception {
+        try (RouteExecutor executor = new RouteExecutor("reads", 1, 1)) {
+            Context ctx = mock(Context.class);
+            String[] threadName = new String[1];
+
+            executor.isolate(context -> threadName[0] = Thread.currentThread().getName()).handle(ctx);
+
+            awaitCompletion(ctx).get(5, TimeUnit.SECONDS);
+            assertThat(threadName[0]).startsWith("reads-");
+        }
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWhenTheHandlerThrows() throws Exception {
+        try (RouteExecutor executor = new RouteExecutor("writes", 1, 1)) {
+            Context ctx = mock(Context.class);
+
+            executor.isolate(context -> {
+                throw new IllegalStateException("boom");
+            }).handle(ctx);
+
+            assertThatThrownBy(() -> awaitCompletion(ctx).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void shouldRejectRequestsOnceThreadsAndQueueAreFull() throws Exception {
+        try (RouteExecutor executor = new RouteExecutor("writes", 1, 1)) {
+            CountDownLatch release = new CountDownLatch(1);
+            Handler blocking = executor.isolate(context -> release.await());
+
+            blocking.handle(mock(Context.class));
+            while (executor.activeCount() == 0) {
+                Thread.onSpinWait();
+            }
+            blocking.handle(mock(Context.class));
+
+            assertThatThrownBy(() -> blocking.handle(mock(Context.class)))
+                    .isInstanceOf(ExecutorSaturatedException.class);
+            assertThat(executor.rejectedCount()).isEqualTo(1);
+            assertThat(executor.queuedCount()).isEqualTo(1);
+
+            PaymentMetrics metrics = new PaymentMetrics();
+            executor.registerMetrics(metrics);
+            assertThat(metrics.scrape())
+                    .contains("writes_pool_rejected_requests 1")
+                    .contains("writes_pool_queued_requests 1")
+                    .contains("writes_pool_queue_capacity 1");
+            release.countDown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<?> awaitCompletion(Context ctx) {
+        ArgumentCaptor<Supplier<CompletableFuture<?>>> future = ArgumentCaptor.forClass(Supplier.class);
+        verify(ctx).future(future.capture());
+        return future.getValue().get();
+    }
+}
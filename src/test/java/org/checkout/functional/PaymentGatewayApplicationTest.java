@@ -6,9 +6,17 @@ import org.checkout.PaymentGatewayApplication;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -261,8 +269,10 @@ public class PaymentGatewayApplicationTest {
     }
 
     @Test
-    void shouldRejectDuplicateIdempotencyKey() {
+    void shouldReplayTheStoredResponseForARetriedIdempotencyKey() {
+        AtomicInteger bankCalls = new AtomicInteger();
         fakeBankApi.post("/payments", ctx -> {
+            bankCalls.incrementAndGet();
             ctx.contentType("application/json");
             ctx.result("""
                 {
@@ -290,17 +300,61 @@ public class PaymentGatewayApplicationTest {
             });
             assertThat(firstResponse.code()).isEqualTo(200);
             
+            // The retry is answered from the idempotency key store without another bank call
             var secondResponse = client.post("/api/payments", validPaymentJson, requestBuilder -> {
                 requestBuilder.header("Content-Type", "application/json")
                         .header("Cko-Idempotency-Key", "duplicate-key");
             });
 
-            assertThat(secondResponse.code()).isEqualTo(409);
+            assertThat(secondResponse.code()).isEqualTo(200);
+            assertThat(secondResponse.header("Cko-Idempotent-Replayed")).isEqualTo("true");
+            assertThat(bankCalls.get()).isEqualTo(1);
+
+            ObjectMapper mapper = new ObjectMapper();
+            assertThat(mapper.readTree(secondResponse.body().string())).isEqualTo(mapper.readTree(firstResponse.body().string()));
+        });
+    }
+
+    @Test
+    void shouldRejectIdempotencyKeyReusedForADifferentPayment() {
+        fakeBankApi.post("/payments", ctx -> {
+            ctx.contentType("application/json");
+            ctx.result("""
+                {
+                    "authorized": true,
+                    "authorization_code": "AUTH123"
+                }
+            """);
+        });
+
+        JavalinTest.test(app.javalinApp(), (server, client) -> {
+            String paymentJson = """
+                {
+                    "card_number": "4242424242424242",
+                    "expiry_month": 12,
+                    "expiry_year": %d,
+                    "currency": "GBP",
+                    "amount": %d,
+                    "cvv": "123"
+                }""";
+
+            var firstResponse = client.post("/api/payments", String.format(paymentJson, getFutureYear(), 1000), requestBuilder -> {
+                requestBuilder.header("Content-Type", "application/json")
+                        .header("Cko-Idempotency-Key", "duplicate-key");
+            });
+            assertThat(firstResponse.code()).isEqualTo(200);
+
+            var secondResponse = client.post("/api/payments", String.format(paymentJson, getFutureYear(), 2000), requestBuilder -> {
+                requestBuilder.header("Content-Type", "application/json")
+                        .header("Cko-Idempotency-Key", "duplicate-key");
+            });
+
+            assertThat(secondResponse.code()).isEqualTo(422);
             
             ObjectMapper mapper = new ObjectMapper();
             JsonNode actualJson = mapper.readTree(secondResponse.body().string());
             JsonNode expectedJson = mapper.readTree("""
-                {"idempotency_key":"duplicate-key","error":"Idempotency key already is use"}
+                {"idempotency_key":"duplicate-key","error":"Idempotency key already used for a different payment"}
                 """);
             
             assertThat(actualJson).isEqualTo(expectedJson);
@@ -308,6 +362,25 @@ public class PaymentGatewayApplicationTest {
         });
     }
 
+    @Test
+    void shouldServeTheApiOnAUnixDomainSocket(@TempDir Path directory) {
+        Path socketPath = directory.resolve("gateway.sock");
+
+        JavalinTest.test(app.javalinApp(), (server, client) -> {
+            app.listenOnUnixSocket(socketPath);
+
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+                channel.write(ByteBuffer.wrap("GET /api/payments/cko_missing HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII)));
+                String response = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.US_ASCII);
+
+                assertThat(response).startsWith("HTTP/1.1 404");
+            }
+            // The TCP port keeps serving alongside the socket
+            assertThat(client.get("/api/payments/cko_missing").code()).isEqualTo(404);
+        });
+    }
+
     @Test
     void shouldReturnErrorWhenBankIsUnavailable() {
 
@@ -340,4 +413,50 @@ public class PaymentGatewayApplicationTest {
             assertThat(actualJson).isEqualTo(expectedJson);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReportLiveButNotReadyUntilMarkedReady() {
+        JavalinTest.test(app.javalinApp(), (server, client) -> {
+            assertThat(client.get("/health").code()).isEqualTo(200);
+            assertThat(client.get("/ready").code()).isEqualTo(503);
+
+            app.markReady();
+
+            assertThat(client.get("/ready").code()).isEqualTo(200);
+        });
+    }
+
+    @Test
+    void shouldStreamTheStatusOfAStoredPaymentAndCloseTheStream() {
+        fakeBankApi.post("/payments", ctx -> {
+            ctx.contentType("application/json");
+            ctx.result("""
+                {
+                    "authorized": true,
+                    "authorization_code": "AUTH123"
+                }
+            """);
+        });
+
+        JavalinTest.test(app.javalinApp(), (server, client) -> {
+            String validPaymentJson = String.format("""
+                {
+                    "card_number": "4242424242424242",
+                    "expiry_month": 12,
+                    "expiry_year": %d,
+                    "currency": "GBP",
+                    "amount": 1000,
+                    "cvv": "123"
+                }""", getFutureYear());
+            assertThat(client.post("/api/payments", validPaymentJson).code()).isEqualTo(200);
+
+            var updates = client.get("/api/payments/cko_test123/updates");
+
+            assertThat(updates.header("Content-Type")).startsWith("text/event-stream");
+            assertThat(updates.body().string())
+                    .contains("event: payment")
+                    .contains("\"payment_id\":\"cko_test123\"")
+                    .contains("\"status\":\"APPROVED\"");
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package org.checkout.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.checkout.exceptions.RecordingStateException;
+import org.checkout.jfr.FlightRecordingManager.RecordingStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FlightRecordingManagerTest {
+
+    @TempDir
+    Path recordingDirectory;
+
+    @Test
+    void shouldWriteCustomEventsToTheRecordingFile() throws Exception {
+        FlightRecordingManager manager = new FlightRecordingManager(recordingDirectory, Duration.ofMinutes(1), 10_000_000);
+
+        manager.start(Duration.ofMinutes(5));
+        RepositoryOperationEvent.begin("payments", "get").finish("cko_123", true);
+        RecordingStatus stopped = manager.stop();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(Path.of(stopped.file())).stream()
+                .filter(event -> event.getEventType().getName().equals("org.checkout.RepositoryOperation"))
+                .toList();
+        assertThat(stopped.durationSeconds()).isEqualTo(60);
+        assertThat(events).hasSize(1);
+        assertThat(events.getFirst().getString("key")).isEqualTo("cko_123");
+        assertThat(events.getFirst().getBoolean("hit")).isTrue();
+    }
+
+    @Test
+    void shouldRejectConcurrentRecordings() {
+        FlightRecordingManager manager = new FlightRecordingManager(recordingDirectory, Duration.ofMinutes(1), 10_000_000);
+
+        manager.start(Duration.ofSeconds(30));
+
+        assertThrows(RecordingStateException.class, () -> manager.start(Duration.ofSeconds(30)));
+        manager.stop();
+    }
+
+    @Test
+    void shouldRejectStopWhenNothingIsRecording() {
+        FlightRecordingManager manager = new FlightRecordingManager(recordingDirectory, Duration.ofMinutes(1), 10_000_000);
+
+        assertThrows(RecordingStateException.class, manager::stop);
+        assertThat(manager.current()).isEmpty();
+    }
+}
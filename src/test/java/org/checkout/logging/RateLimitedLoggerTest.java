@@ -0,0 +1,66 @@
+package org.checkout.logging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitedLoggerTest {
+
+    private Logger logger;
+    private LoggingEventBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        logger = mock(Logger.class);
+        builder = mock(LoggingEventBuilder.class, RETURNS_SELF);
+        when(logger.isEnabledForLevel(any())).thenReturn(true);
+        when(logger.atLevel(any())).thenReturn(builder);
+    }
+
+    @Test
+    void shouldAllowABurstPerKeyAndDropTheRest() {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimitedLogger.atWarn("bank_rejected")).isSameAs(builder);
+        }
+        assertThat(rateLimitedLogger.atWarn("bank_rejected")).isSameAs(NOPLoggingEventBuilder.singleton());
+        assertThat(rateLimitedLogger.atWarn("bank_rejected")).isSameAs(NOPLoggingEventBuilder.singleton());
+
+        assertThat(rateLimitedLogger.suppressedCount("bank_rejected")).isEqualTo(2);
+        assertThat(rateLimitedLogger.atWarn("payment_rejected")).isSameAs(builder);
+    }
+
+    @Test
+    void shouldReportSuppressedLinesOnTheNextLineLogged() throws InterruptedException {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 20, 1);
+
+        rateLimitedLogger.atError("bank_io_error");
+        rateLimitedLogger.atError("bank_io_error");
+        rateLimitedLogger.atError("bank_io_error");
+        Thread.sleep(100);
+
+        assertThat(rateLimitedLogger.atError("bank_io_error")).isSameAs(builder);
+        verify(builder).addKeyValue("suppressed", 2L);
+        assertThat(rateLimitedLogger.suppressedCount("bank_io_error")).isZero();
+    }
+
+    @Test
+    void shouldNotConsumePermitsWhenTheLevelIsDisabled() {
+        when(logger.isEnabledForLevel(Level.INFO)).thenReturn(false);
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 1, 1);
+
+        assertThat(rateLimitedLogger.atInfo("payment_rejected")).isSameAs(NOPLoggingEventBuilder.singleton());
+        assertThat(rateLimitedLogger.suppressedCount("payment_rejected")).isZero();
+    }
+}
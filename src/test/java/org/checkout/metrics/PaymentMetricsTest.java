@@ -0,0 +1,71 @@
+package org.checkout.metrics;
+
+import org.checkout.metrics.PaymentMetrics.Outcome;
+import org.checkout.metrics.PaymentMetrics.Stage;
+import org.checkout.models.Currency;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentMetricsTest {
+
+    @Test
+    void shouldCountOutcomesByCurrency() {
+        PaymentMetrics metrics = new PaymentMetrics();
+
+        metrics.recordOutcome(Outcome.APPROVED, Currency.GBP);
+        metrics.recordOutcome(Outcome.APPROVED, Currency.GBP);
+        metrics.recordOutcome(Outcome.FAILED, Currency.USD);
+
+        assertThat(metrics.outcomeCount(Outcome.APPROVED, Currency.GBP)).isEqualTo(2);
+        assertThat(metrics.outcomeCount(Outcome.FAILED, Currency.USD)).isEqualTo(1);
+        assertThat(metrics.outcomeCount(Outcome.DECLINED, Currency.EUR)).isZero();
+        assertThat(metrics.scrape()).contains("payments_total{outcome=\"approved\",currency=\"GBP\"} 2");
+    }
+
+    @Test
+    void shouldAccumulateStageLatenciesAcrossScrapes() {
+        PaymentMetrics metrics = new PaymentMetrics();
+
+        metrics.recordStage(Stage.BANK_CALL, System.nanoTime());
+        metrics.scrape();
+        metrics.recordStage(Stage.BANK_CALL, System.nanoTime());
+
+        assertThat(metrics.scrape())
+                .contains("# TYPE payment_stage_latency_seconds summary")
+                .contains("payment_stage_latency_seconds_count{stage=\"bank_call\"} 2")
+                .contains("payment_stage_latency_seconds_count{stage=\"validation\"} 0");
+    }
+
+    @Test
+    void shouldSampleGaugesOnScrape() {
+        PaymentMetrics metrics = new PaymentMetrics();
+        long[] size = {3};
+        metrics.registerGauge("payments_repository_size", "Number of payments", () -> size[0]);
+
+        assertThat(metrics.scrape()).contains("payments_repository_size 3");
+        size[0] = 5;
+        assertThat(metrics.scrape()).contains("payments_repository_size 5");
+    }
+
+    @Test
+    void shouldRenderFractionalGauges() {
+        PaymentMetrics metrics = new PaymentMetrics();
+        metrics.registerDoubleGauge("payment_cache_hit_ratio", "Share of reads answered from the cache", () -> 0.75);
+
+        assertThat(metrics.scrape()).contains("payment_cache_hit_ratio 0.75");
+    }
+
+    @Test
+    void shouldLeaveOutGaugesThatCannotBeRead() {
+        PaymentMetrics metrics = new PaymentMetrics();
+        metrics.registerGauge("payments_repository_size", "Number of payments", () -> {
+            throw new IllegalStateException("Database unavailable");
+        });
+        metrics.registerGauge("payments_sql_pending_writes", "Payments waiting to be written", () -> 2);
+
+        assertThat(metrics.scrape())
+                .doesNotContain("payments_repository_size")
+                .contains("payments_sql_pending_writes 2");
+    }
+}
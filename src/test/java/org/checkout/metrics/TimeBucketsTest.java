@@ -0,0 +1,51 @@
+package org.checkout.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeBucketsTest {
+
+    @Test
+    void shouldResetASlotOnceWhenItMovesOnToANewEpoch() {
+        TimeBuckets timeBuckets = new TimeBuckets(4, 1_000);
+        List<Integer> resets = new ArrayList<>();
+
+        assertThat(timeBuckets.slotFor(timeBuckets.epoch(5_500), resets::add)).isEqualTo(1);
+        assertThat(timeBuckets.slotFor(timeBuckets.epoch(5_900), resets::add)).isEqualTo(1);
+        assertThat(timeBuckets.slotFor(timeBuckets.epoch(9_100), resets::add)).isEqualTo(1);
+
+        assertThat(resets).containsExactly(1, 1);
+    }
+
+    @Test
+    void shouldOnlyCountSlotsWithinTheWindow() {
+        TimeBuckets timeBuckets = new TimeBuckets(4, 1_000);
+        timeBuckets.slotFor(5, slot -> { });
+        timeBuckets.slotFor(6, slot -> { });
+
+        assertThat(timeBuckets.inWindow(1, 6)).isTrue();
+        assertThat(timeBuckets.inWindow(1, 8)).isTrue();
+        assertThat(timeBuckets.inWindow(1, 9)).isFalse();
+        assertThat(timeBuckets.inWindow(2, 5)).isFalse();
+        assertThat(timeBuckets.inWindow(0, 6)).isFalse();
+    }
+
+    @Test
+    void shouldNotCountASlotWhileItIsBeingReset() {
+        TimeBuckets timeBuckets = new TimeBuckets(4, 1_000);
+        timeBuckets.slotFor(1, slot -> { });
+        boolean[] countedDuringReset = new boolean[2];
+
+        timeBuckets.slotFor(5, slot -> {
+            countedDuringReset[0] = timeBuckets.inWindow(slot, 4);
+            countedDuringReset[1] = timeBuckets.inWindow(slot, 5);
+        });
+
+        assertThat(countedDuringReset).containsExactly(false, false);
+        assertThat(timeBuckets.inWindow(1, 5)).isTrue();
+    }
+}
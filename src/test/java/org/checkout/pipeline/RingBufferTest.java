@@ -0,0 +1,98 @@
+package org.checkout.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+
+    @Test
+    void shouldDrainElementsInOrderInBatches() {
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(i);
+        }
+        Integer[] batch = new Integer[3];
+
+        assertThat(ring.drainTo(batch)).isEqualTo(3);
+        assertThat(batch).containsExactly(0, 1, 2);
+        assertThat(ring.drainTo(batch)).isEqualTo(2);
+        assertThat(batch[0]).isEqualTo(3);
+        assertThat(batch[1]).isEqualTo(4);
+        assertThat(ring.drainTo(batch)).isZero();
+    }
+
+    @Test
+    void shouldNotOverwriteUnconsumedElementsOfTheSmallestRing() {
+        RingBuffer<Integer> ring = new RingBuffer<>(1);
+
+        assertThat(ring.capacity()).isEqualTo(2);
+        assertThat(ring.offer(1)).isTrue();
+        assertThat(ring.offer(2)).isTrue();
+        assertThat(ring.offer(3)).isFalse();
+    }
+
+    @Test
+    void shouldRejectOffersOnceFull() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+
+        assertThat(ring.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+
+        ring.drainTo(new Integer[1]);
+        assertThat(ring.offer(4)).isTrue();
+    }
+
+    @Test
+    void shouldHandEveryElementToExactlyOneConsumer() throws Exception {
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 50_000;
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 2);
+
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            executor.submit(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!ring.offer(i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executor.submit(() -> {
+                Integer[] batch = new Integer[16];
+                while (remaining.get() > 0) {
+                    int count = ring.drainTo(batch);
+                    for (int i = 0; i < count; i++) {
+                        if (!received.add(batch[i])) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                    remaining.addAndGet(-count);
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(producers * perProducer);
+        assertThat(duplicates).hasValue(0);
+        assertThat(ring.isEmpty()).isTrue();
+    }
+}
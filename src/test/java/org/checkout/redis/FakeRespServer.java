@@ -0,0 +1,170 @@
+package org.checkout.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for a Redis server that understands just the commands the idempotency store sends: {@code SET} with
+ * {@code NX} and {@code PX}, {@code GET}, {@code DEL}, {@code EXISTS} and {@code DBSIZE}.
+ */
+class FakeRespServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger commands = new AtomicInteger();
+    private final List<Socket> clients = new ArrayList<>();
+
+    FakeRespServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "fake-resp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    int commandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Drops every open connection, as a server restart or network failure would.
+     */
+    synchronized void disconnectClients() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        disconnectClients();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                Socket client = serverSocket.accept();
+                synchronized (this) {
+                    clients.add(client);
+                }
+                Thread handler = new Thread(() -> serve(client), "fake-resp-client");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            OutputStream out = new BufferedOutputStream(client.getOutputStream());
+            while (true) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commands.incrementAndGet();
+                out.write(execute(command).getBytes(StandardCharsets.UTF_8));
+                // Flush once the pipelined commands read so far are answered
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private String execute(List<String> command) {
+        long now = System.currentTimeMillis();
+        return switch (command.get(0).toUpperCase()) {
+            case "SET" -> {
+                String key = command.get(1);
+                boolean onlyIfAbsent = command.contains("NX");
+                int px = command.indexOf("PX");
+                Entry entry = new Entry(command.get(2), px > 0 ? now + Long.parseLong(command.get(px + 1)) : Long.MAX_VALUE);
+                if (onlyIfAbsent) {
+                    boolean[] created = {false};
+                    entries.compute(key, (k, current) -> {
+                        if (current != null && current.expiry() > now) {
+                            return current;
+                        }
+                        created[0] = true;
+                        return entry;
+                    });
+                    yield created[0] ? "+OK\r\n" : "$-1\r\n";
+                }
+                entries.put(key, entry);
+                yield "+OK\r\n";
+            }
+            case "GET" -> {
+                Entry entry = entries.get(command.get(1));
+                if (entry == null || entry.expiry() <= now) {
+                    yield "$-1\r\n";
+                }
+                yield "$" + entry.value().getBytes(StandardCharsets.UTF_8).length + "\r\n" + entry.value() + "\r\n";
+            }
+            case "DEL" -> {
+                Entry entry = entries.remove(command.get(1));
+                yield ":" + (entry != null && entry.expiry() > now ? 1 : 0) + "\r\n";
+            }
+            case "EXISTS" -> {
+                Entry entry = entries.get(command.get(1));
+                yield ":" + (entry != null && entry.expiry() > now ? 1 : 0) + "\r\n";
+            }
+            case "DBSIZE" -> ":" + entries.values().stream().filter(entry -> entry.expiry() > now).count() + "\r\n";
+            default -> "-ERR unknown command '" + command.get(0) + "'\r\n";
+        };
+    }
+
+    private static List<String> readCommand(DataInputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected an array");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<String> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            in.readByte();
+            byte[] bytes = new byte[Integer.parseInt(readLine(in))];
+            in.readFully(bytes);
+            in.readShort();
+            arguments.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return arguments;
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            line.append((char) b);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private record Entry(String value, long expiry) {}
+}
@@ -0,0 +1,227 @@
+package org.checkout.redis;
+
+import org.checkout.clients.BankSimulatorClient.BankPaymentResponse;
+import org.checkout.events.PaymentEventSink;
+import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotencyRecord;
+import org.checkout.repository.PaymentsRepository;
+import org.checkout.risk.CardFingerprinter;
+import org.checkout.risk.RiskCheck;
+import org.checkout.services.PaymentResult;
+import org.checkout.services.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisIdempotentKeyStoreTest {
+
+    private FakeRespServer server;
+    private final List<RedisIdempotentKeyStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeRespServer();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stores.forEach(RedisIdempotentKeyStore::close);
+        server.close();
+    }
+
+    @Test
+    void shouldShareKeysBetweenReplicas() {
+        RedisIdempotentKeyStore first = store(Duration.ofMinutes(5));
+        RedisIdempotentKeyStore second = store(Duration.ofMinutes(5));
+
+        first.add("key-1", record(-42L, "cko_1"));
+
+        assertThat(second.get("key-1")).contains(record(-42L, "cko_1"));
+        assertThat(second.contains("key-2")).isFalse();
+        assertThat(second.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepTheFirstRecordBoundToAKey() {
+        RedisIdempotentKeyStore first = store(Duration.ofMinutes(5));
+        RedisIdempotentKeyStore second = store(Duration.ofMinutes(5));
+
+        first.add("key-1", record(1L, "cko_1"));
+        second.add("key-1", record(2L, "cko_2"));
+
+        assertThat(second.get("key-1")).contains(record(1L, "cko_1"));
+    }
+
+    @Test
+    void shouldLetOnlyOneReplicaReserveAKeyUntilItIsReleased() {
+        RedisIdempotentKeyStore first = store(Duration.ofMinutes(5));
+        RedisIdempotentKeyStore second = store(Duration.ofMinutes(5));
+
+        assertThat(first.reserve("key-1", 7L)).isTrue();
+        assertThat(second.reserve("key-1", 7L)).isFalse();
+        assertThat(second.get("key-1")).contains(IdempotencyRecord.inFlight(7L));
+
+        first.release("key-1");
+
+        assertThat(second.reserve("key-1", 7L)).isTrue();
+        second.complete("key-1", record(7L, "cko_7"));
+        assertThat(first.get("key-1")).contains(record(7L, "cko_7"));
+        assertThat(first.reserve("key-1", 7L)).isFalse();
+    }
+
+    @Test
+    void shouldSendConcurrentRetriesOnDifferentReplicasToTheBankOnce() throws Exception {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        CountDownLatch bankEntered = new CountDownLatch(1);
+        CountDownLatch bankOpen = new CountDownLatch(1);
+        AtomicInteger bankCalls = new AtomicInteger();
+        AtomicInteger paymentIds = new AtomicInteger();
+        // Replicas share the fingerprint secret, as they must to recognise each other's keys
+        CardFingerprinter fingerprinter = CardFingerprinter.withSecret("shared-secret");
+        List<PaymentService> replicas = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            replicas.add(new PaymentService(new PaymentsRepository(), request -> {
+                bankCalls.incrementAndGet();
+                bankEntered.countDown();
+                try {
+                    bankOpen.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new BankPaymentFailedException("Interrupted");
+                }
+                return new BankPaymentResponse(true, "AUTH123");
+            }, store(Duration.ofMinutes(5)), () -> "cko_" + paymentIds.incrementAndGet(), new PaymentMetrics(),
+                    PaymentEventSink.discarding(), RiskCheck.allowAll(), fingerprinter));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PaymentResult> first = executor.submit(() -> replicas.get(0).submitPayment(payment, "key-1", null));
+            assertThat(bankEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(replicas.get(1).submitPayment(payment, "key-1", null))
+                    .isEqualTo(new PaymentResult.IdempotencyKeyInFlight("key-1"));
+
+            bankOpen.countDown();
+            PaymentResult processed = first.get(5, TimeUnit.SECONDS);
+            assertThat(processed).isInstanceOf(PaymentResult.Processed.class);
+            assertThat(replicas.get(1).submitPayment(payment, "key-1", null))
+                    .isEqualTo(new PaymentResult.Replayed(((PaymentResult.Processed) processed).response()));
+            assertThat(bankCalls).hasValue(1);
+        } finally {
+            bankOpen.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldFreeTheKeyForARetryWhenTheBankDidNotChargeThePayment() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        AtomicInteger bankCalls = new AtomicInteger();
+        PaymentService service = new PaymentService(new PaymentsRepository(), request -> {
+            if (bankCalls.incrementAndGet() == 1) {
+                throw new BankPaymentFailedException("Bank unavailable", false);
+            }
+            return new BankPaymentResponse(true, "AUTH123");
+        }, store(Duration.ofMinutes(5)), () -> "cko_" + bankCalls.get());
+
+        assertThat(service.submitPayment(payment, "key-1", null)).isEqualTo(new PaymentResult.BankFailure("Bank unavailable"));
+        assertThat(service.submitPayment(payment, "key-1", null)).isInstanceOf(PaymentResult.Processed.class);
+        assertThat(bankCalls).hasValue(2);
+    }
+
+    @Test
+    void shouldAnswerKeysStoredLocallyFromTheNearCache() {
+        RedisIdempotentKeyStore store = store(Duration.ofMinutes(5));
+        store.add("key-1", record(1L, "cko_1"));
+        int commandsBefore = server.commandCount();
+
+        assertThat(store.get("key-1")).contains(record(1L, "cko_1"));
+        assertThat(server.commandCount()).isEqualTo(commandsBefore);
+    }
+
+    @Test
+    void shouldExpireKeysAfterTheirTimeToLive() throws Exception {
+        RedisIdempotentKeyStore store = store(Duration.ofMillis(50));
+        store.add("key-1", record(1L, "cko_1"));
+
+        Thread.sleep(100);
+
+        assertThat(store.contains("key-1")).isFalse();
+    }
+
+    @Test
+    void shouldPipelineConcurrentCommands() throws Exception {
+        RedisIdempotentKeyStore store = store(Duration.ofMinutes(5));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread * 500;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        store.add("key-" + (offset + i), record(offset + i, "cko_" + (offset + i)));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(store.size()).isEqualTo(4000);
+        assertThat(store(Duration.ofMinutes(5)).contains("key-3999")).isTrue();
+    }
+
+    @Test
+    void shouldReconnectAfterTheConnectionDrops() throws Exception {
+        RedisIdempotentKeyStore store = store(Duration.ofMinutes(5));
+        store.add("key-1", record(1L, "cko_1"));
+
+        server.disconnectClients();
+
+        // The first command after the drop may fail; the next one opens a new connection
+        try {
+            store.size();
+        } catch (PaymentStoreUnavailableException expected) {
+            // Failed on the dropped connection
+        }
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReportAnUnreachableServerAsUnavailable() throws Exception {
+        RedisIdempotentKeyStore store = store(Duration.ofMinutes(5));
+        server.close();
+
+        assertThatThrownBy(() -> store.contains("key-1")).isInstanceOf(PaymentStoreUnavailableException.class);
+    }
+
+    private static IdempotencyRecord record(long fingerprint, String paymentId) {
+        return new IdempotencyRecord(fingerprint, new PostPaymentResponseDto(paymentId, "APPROVED", "4242", 12, 2030, "GBP", 1000));
+    }
+
+    private RedisIdempotentKeyStore store(Duration ttl) {
+        RedisIdempotentKeyStore store = new RedisIdempotentKeyStore("127.0.0.1", server.port(), ttl, 1000, Duration.ofSeconds(2));
+        stores.add(store);
+        return store;
+    }
+}
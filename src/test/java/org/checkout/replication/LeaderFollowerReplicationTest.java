@@ -0,0 +1,96 @@
+package org.checkout.replication;
+
+import org.checkout.cluster.ClusterNode;
+import org.checkout.exceptions.ReadOnlyReplicaException;
+import org.checkout.models.PostPaymentResponseDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeaderFollowerReplicationTest {
+
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofMillis(50);
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int LOG_CAPACITY = 1000;
+
+    private LeaderPaymentsRepository leader;
+    private FollowerPaymentsRepository follower;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        leader = new LeaderPaymentsRepository("127.0.0.1", 0, HEARTBEAT_INTERVAL, LOG_CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (follower != null) {
+            follower.close();
+        }
+        leader.close();
+    }
+
+    @Test
+    void shouldCatchUpOnExistingPaymentsAndThenFollowNewOnes() {
+        IntStream.range(0, 500).forEach(i -> leader.add(payment(i)));
+        follower = startFollower();
+
+        assertThat(follower.awaitPosition(leader.position(), TIMEOUT)).isTrue();
+        assertThat(follower.size()).isEqualTo(500);
+
+        leader.add(payment(500));
+
+        assertThat(follower.awaitPosition(leader.position(), TIMEOUT)).isTrue();
+        assertThat(follower.position()).isEqualTo(501);
+        assertThat(follower.get("cko_500")).contains(payment(500));
+    }
+
+    @Test
+    void shouldResyncFromASnapshotWhenBehindTheLog() {
+        IntStream.range(0, LOG_CAPACITY + 500).forEach(i -> leader.add(payment(i)));
+        follower = startFollower();
+
+        assertThat(follower.awaitPosition(leader.position(), TIMEOUT)).isTrue();
+        assertThat(follower.size()).isEqualTo(LOG_CAPACITY + 500);
+
+        leader.add(payment(LOG_CAPACITY + 500));
+
+        assertThat(follower.awaitPosition(leader.position(), TIMEOUT)).isTrue();
+        assertThat(follower.get("cko_" + (LOG_CAPACITY + 500))).contains(payment(LOG_CAPACITY + 500));
+    }
+
+    @Test
+    void shouldReportFollowersAndLag() {
+        follower = startFollower();
+        leader.add(payment(1));
+        assertThat(follower.awaitPosition(1, TIMEOUT)).isTrue();
+
+        ReplicationStatus.Replica replica = (ReplicationStatus.Replica) follower.status();
+        assertThat(replica.connected()).isTrue();
+        assertThat(replica.position()).isEqualTo(1);
+        assertThat(follower.lagMillis()).isLessThan(TIMEOUT.toMillis());
+        assertThat(((ReplicationStatus.Leader) leader.status()).followers()).hasSize(1);
+    }
+
+    @Test
+    void shouldRejectWritesOnFollowers() {
+        follower = startFollower();
+
+        assertThrows(ReadOnlyReplicaException.class, () -> follower.add(payment(1)));
+        assertThat(follower.awaitPosition(1, Duration.ofMillis(100))).isFalse();
+    }
+
+    private FollowerPaymentsRepository startFollower() {
+        return new FollowerPaymentsRepository(new ClusterNode("127.0.0.1", leader.port()), HEARTBEAT_INTERVAL, Duration.ofMillis(50));
+    }
+
+    private static PostPaymentResponseDto payment(int i) {
+        return new PostPaymentResponseDto("cko_" + i, "Authorized", "4242", 12, 2030, "GBP", 100 + i);
+    }
+}
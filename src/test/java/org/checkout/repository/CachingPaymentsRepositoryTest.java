@@ -0,0 +1,119 @@
+package org.checkout.repository;
+
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.models.PostPaymentResponseDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingPaymentsRepositoryTest {
+
+    @Test
+    void shouldReadFromTheDelegateOnlyOnFirstLookup() {
+        IPaymentsRepository delegate = mock(IPaymentsRepository.class);
+        when(delegate.get("cko_00000001")).thenReturn(Optional.of(payment(1)));
+        CachingPaymentsRepository repository = new CachingPaymentsRepository(delegate, 100);
+
+        assertThat(repository.get("cko_00000001")).contains(payment(1));
+        assertThat(repository.get("cko_00000001")).contains(payment(1));
+
+        verify(delegate, times(1)).get("cko_00000001");
+        assertThat(repository.stats().hitCount()).isEqualTo(1);
+        assertThat(repository.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheUnknownIds() {
+        IPaymentsRepository delegate = mock(IPaymentsRepository.class);
+        when(delegate.get("cko_00000002")).thenReturn(Optional.empty(), Optional.of(payment(2)));
+        CachingPaymentsRepository repository = new CachingPaymentsRepository(delegate, 100);
+
+        assertThat(repository.get("cko_00000002")).isEmpty();
+        assertThat(repository.get("cko_00000002")).contains(payment(2));
+    }
+
+    @Test
+    void shouldServeAddedPaymentsWithoutReadingTheDelegate() {
+        IPaymentsRepository delegate = mock(IPaymentsRepository.class);
+        CachingPaymentsRepository repository = new CachingPaymentsRepository(delegate, 100);
+
+        repository.add(payment(3));
+
+        verify(delegate).add(payment(3));
+        assertThat(repository.get("cko_00000003")).contains(payment(3));
+        verify(delegate, times(0)).get("cko_00000003");
+    }
+
+    @Test
+    void shouldCollapseConcurrentMissesIntoOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        IPaymentsRepository delegate = new PaymentsRepository() {
+            @Override
+            public Optional<PostPaymentResponseDto> get(String id) {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(payment(4));
+            }
+        };
+        CachingPaymentsRepository repository = new CachingPaymentsRepository(delegate, 100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<PostPaymentResponseDto>>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(executor.submit(() -> repository.get("cko_00000004")));
+            }
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+
+            for (Future<Optional<PostPaymentResponseDto>> read : reads) {
+                assertThat(read.get(5, TimeUnit.SECONDS)).contains(payment(4));
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldStayWithinTheMaximumSize() {
+        PaymentsRepository delegate = new PaymentsRepository();
+        CachingPaymentsRepository repository = new CachingPaymentsRepository(delegate, 10);
+
+        for (int i = 0; i < 100; i++) {
+            repository.add(payment(i));
+        }
+
+        PaymentMetrics metrics = new PaymentMetrics();
+        repository.registerMetrics(metrics);
+        assertThat(metrics.scrape()).contains("payment_cache_size ").contains("payment_cache_hit_ratio ");
+        assertThat(repository.stats().evictionCount()).isPositive();
+        assertThat(repository.size()).isEqualTo(100);
+        assertThat(repository.get("cko_00000000")).contains(payment(0));
+    }
+
+    private static PostPaymentResponseDto payment(int number) {
+        return new PostPaymentResponseDto(String.format("cko_%08d", number), "APPROVED", "4242", 12, 2030, "EUR", number);
+    }
+}
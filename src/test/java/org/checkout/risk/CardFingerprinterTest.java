@@ -0,0 +1,41 @@
+package org.checkout.risk;
+
+import org.checkout.models.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardFingerprinterTest {
+
+    private static final int FUTURE_YEAR = Year.now().getValue() + 1;
+
+    private final CardFingerprinter fingerprinter = CardFingerprinter.withSecret("test-secret");
+
+    @Test
+    void shouldGiveRetriesOfAPaymentTheSameFingerprintWhateverTheCvv() {
+        assertThat(fingerprinter.fingerprint(payment("4242424242424242", 1000, "123")))
+                .isEqualTo(fingerprinter.fingerprint(payment("4242424242424242", 1000, "456")))
+                .isEqualTo(CardFingerprinter.withSecret("test-secret").fingerprint(payment("4242424242424242", 1000, "123")));
+    }
+
+    @Test
+    void shouldGiveDifferentPaymentsDifferentFingerprints() {
+        long fingerprint = fingerprinter.fingerprint(payment("4242424242424242", 1000, "123"));
+
+        assertThat(fingerprinter.fingerprint(payment("4242424242424242", 1001, "123"))).isNotEqualTo(fingerprint);
+        assertThat(fingerprinter.fingerprint(payment("5555555555554444", 1000, "123"))).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void shouldNotMatchFingerprintsMadeWithAnotherSecret() {
+        Payment payment = payment("4242424242424242", 1000, "123");
+
+        assertThat(CardFingerprinter.withSecret("other-secret").fingerprint(payment)).isNotEqualTo(fingerprinter.fingerprint(payment));
+    }
+
+    private static Payment payment(String cardNumber, int amount, String cvv) {
+        return Payment.create(cardNumber, 12, FUTURE_YEAR, "GBP", amount, cvv).getValue();
+    }
+}
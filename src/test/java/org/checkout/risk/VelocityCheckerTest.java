@@ -0,0 +1,105 @@
+package org.checkout.risk;
+
+import org.checkout.models.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.Year;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityCheckerTest {
+
+    private static final int FUTURE_YEAR = Year.now().getValue() + 1;
+
+    private final MutableClock clock = new MutableClock();
+    private final CardFingerprinter fingerprinter = CardFingerprinter.withSecret("test-secret");
+
+    @Test
+    void shouldRejectACardOnceItGoesOverTheAttemptLimit() {
+        VelocityChecker checker = new VelocityChecker(fingerprinter,
+                List.of(new VelocityChecker.Limit("per_minute", Duration.ofMinutes(1), 6, 3, 0)), 4, 1024, clock);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(checker.assess(payment("4242424242424242", 1000))).isEmpty();
+        }
+
+        assertThat(checker.assess(payment("4242424242424242", 1000))).contains("per_minute_attempts");
+        assertThat(checker.assess(payment("5555555555554444", 1000))).isEmpty();
+        assertThat(checker.rejectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAllowTheCardAgainOnceTheWindowHasMoved() {
+        VelocityChecker checker = new VelocityChecker(fingerprinter,
+                List.of(new VelocityChecker.Limit("per_minute", Duration.ofMinutes(1), 6, 2, 0)), 4, 1024, clock);
+
+        checker.assess(payment("4242424242424242", 1000));
+        checker.assess(payment("4242424242424242", 1000));
+        assertThat(checker.assess(payment("4242424242424242", 1000))).isPresent();
+
+        clock.advance(Duration.ofSeconds(70));
+
+        assertThat(checker.assess(payment("4242424242424242", 1000))).isEmpty();
+    }
+
+    @Test
+    void shouldRejectACardOnceItGoesOverTheAmountLimit() {
+        VelocityChecker checker = new VelocityChecker(fingerprinter,
+                List.of(new VelocityChecker.Limit("per_hour", Duration.ofHours(1), 12, 0, 5000)), 4, 1024, clock);
+
+        assertThat(checker.assess(payment("4242424242424242", 3000))).isEmpty();
+        clock.advance(Duration.ofMinutes(30));
+
+        assertThat(checker.assess(payment("4242424242424242", 3000))).contains("per_hour_amount");
+    }
+
+    @Test
+    void shouldKeepEstimatesCloseWithManyDistinctCardsInFixedMemory() {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(Duration.ofMinutes(1), 6, 4, 16384);
+        long now = clock.millis();
+
+        for (long card = 0; card < 100_000; card++) {
+            sketch.addAndEstimate(fingerprinter.fingerprint(Long.toString(card)), 1, now);
+        }
+        long hotCard = fingerprinter.fingerprint("4242424242424242");
+        for (int i = 0; i < 50; i++) {
+            sketch.addAndEstimate(hotCard, 1, now);
+        }
+
+        assertThat(sketch.estimate(hotCard, now)).isBetween(50L, 70L);
+        assertThat(sketch.estimate(fingerprinter.fingerprint("unseen"), now)).isLessThan(20);
+    }
+
+    private static Payment payment(String cardNumber, int amount) {
+        return Payment.create(cardNumber, 12, FUTURE_YEAR, "GBP", amount, "123").getValue();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -3,26 +3,44 @@ package org.checkout.services;
 import org.checkout.IdGenerator;
 import org.checkout.clients.BankClient;
 import org.checkout.clients.BankSimulatorClient;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.PaymentEventSink;
+import org.checkout.events.PaymentEventType;
+import org.checkout.exceptions.BankPaymentFailedException;
 import org.checkout.exceptions.IdempotencyKeyException;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.metrics.PaymentMetrics;
 import org.checkout.models.Payment;
 import org.checkout.models.PostPaymentResponseDto;
 import org.checkout.repository.IPaymentsRepository;
+import org.checkout.repository.IdempotencyRecord;
 import org.checkout.repository.IdempotentKeyStore;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.risk.CardFingerprinter;
+import org.checkout.risk.RiskCheck;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PaymentServiceTest {
 
+    private static final CardFingerprinter FINGERPRINTER = CardFingerprinter.withSecret("test-secret");
+
     @Mock
     private IPaymentsRepository paymentsRepository;
     @Mock
@@ -36,7 +54,9 @@ class PaymentServiceTest {
 
     @BeforeEach
     void setUp() {
-        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator);
+        lenient().when(paymentsRepository.acceptsWrites()).thenReturn(true);
+        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator,
+                new PaymentMetrics(), PaymentEventSink.discarding(), RiskCheck.allowAll(), FINGERPRINTER);
     }
 
     @Test
@@ -55,14 +75,15 @@ class PaymentServiceTest {
         
         when(paymentIdGenerator.generate()).thenReturn(generatedPaymentId);
         when(bankClient.makePayment(any())).thenReturn(new BankSimulatorClient.BankPaymentResponse(true, "AUTH123"));
-        when(idempotencyKeys.contains(idempotencyKey)).thenReturn(false);
+        when(idempotencyKeys.get(idempotencyKey)).thenReturn(Optional.empty());
+        when(idempotencyKeys.reserve(idempotencyKey, FINGERPRINTER.fingerprint(payment))).thenReturn(true);
 
         PostPaymentResponseDto response = paymentService.processPayment(payment, idempotencyKey);
 
         assertEquals("APPROVED", response.status());
         assertEquals(generatedPaymentId, response.id());
         verify(paymentsRepository).add(any(PostPaymentResponseDto.class));
-        verify(idempotencyKeys).add(idempotencyKey);
+        verify(idempotencyKeys).complete(idempotencyKey, new IdempotencyRecord(FINGERPRINTER.fingerprint(payment), response));
     }
 
     @Test
@@ -80,7 +101,8 @@ class PaymentServiceTest {
         
         when(paymentIdGenerator.generate()).thenReturn(generatedPaymentId);
         when(bankClient.makePayment(any())).thenReturn(new BankSimulatorClient.BankPaymentResponse(false, null));
-        when(idempotencyKeys.contains(idempotencyKey)).thenReturn(false);
+        when(idempotencyKeys.get(idempotencyKey)).thenReturn(Optional.empty());
+        when(idempotencyKeys.reserve(idempotencyKey, FINGERPRINTER.fingerprint(payment))).thenReturn(true);
 
         PostPaymentResponseDto response = paymentService.processPayment(payment, idempotencyKey);
 
@@ -88,22 +110,17 @@ class PaymentServiceTest {
         assertEquals("DECLINED", response.status());
         assertEquals(generatedPaymentId, response.id());
         verify(paymentsRepository).add(any(PostPaymentResponseDto.class));
-        verify(idempotencyKeys).add(idempotencyKey);
+        verify(idempotencyKeys).complete(eq(idempotencyKey), any(IdempotencyRecord.class));
     }
 
     @Test
-    void processPaymentWithExistingIdempotencyKeyShouldThrowException() {
-        Payment payment = Payment.create(
-            "4242424242424242",
-            12,
-            2025,
-            "USD",
-            10000,
-            "123"
-        ).getValue();
+    void processPaymentWithIdempotencyKeyUsedForADifferentPaymentShouldThrowException() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "USD", 10000, "123").getValue();
+        Payment otherPayment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "USD", 20000, "123").getValue();
         String idempotencyKey = "test-key-3";
-        
-        when(idempotencyKeys.contains(idempotencyKey)).thenReturn(true);
+        PostPaymentResponseDto earlierResponse = PostPaymentResponseDto.fromPayment(otherPayment, "payment-100", "APPROVED");
+
+        when(idempotencyKeys.get(idempotencyKey)).thenReturn(Optional.of(new IdempotencyRecord(FINGERPRINTER.fingerprint(otherPayment), earlierResponse)));
 
         assertThrows(IdempotencyKeyException.class,
             () -> paymentService.processPayment(payment, idempotencyKey));
@@ -112,6 +129,23 @@ class PaymentServiceTest {
         verify(paymentsRepository, never()).add(any());
     }
 
+    @Test
+    void processPaymentWithIdempotencyKeyUsedForTheSamePaymentShouldReplayTheStoredResponse() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "USD", 10000, "123").getValue();
+        // A retry carries the same payment details, though the CVV is not part of the fingerprint
+        Payment retry = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "USD", 10000, "456").getValue();
+        PostPaymentResponseDto earlierResponse = PostPaymentResponseDto.fromPayment(payment, "payment-101", "DECLINED");
+
+        when(idempotencyKeys.get("test-key-4")).thenReturn(Optional.of(new IdempotencyRecord(FINGERPRINTER.fingerprint(payment), earlierResponse)));
+
+        assertEquals(new PaymentResult.Replayed(earlierResponse), paymentService.submitPayment(retry, "test-key-4", null));
+        assertSame(earlierResponse, paymentService.processPayment(retry, "test-key-4"));
+
+        verify(bankClient, never()).makePayment(any());
+        verify(paymentsRepository, never()).add(any());
+        verify(idempotencyKeys, never()).complete(any(), any());
+    }
+
     @Test
     void processPaymentWithNullIdempotencyKeyShouldProcessWithoutIdempotencyCheck() {
         Payment payment = Payment.create(
@@ -132,7 +166,7 @@ class PaymentServiceTest {
         assertEquals("APPROVED", response.status());
         assertEquals(generatedPaymentId, response.id());
         verify(paymentsRepository).add(any(PostPaymentResponseDto.class));
-        verify(idempotencyKeys, never()).add(any());
+        verify(idempotencyKeys, never()).complete(any(), any());
     }
 
     @Test
@@ -164,4 +198,136 @@ class PaymentServiceTest {
 
         assertTrue(result.isEmpty());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void processPaymentShouldPublishTheOutcomeEventAfterStoringThePayment() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        List<PaymentEvent> events = new ArrayList<>();
+        PaymentEventSink sink = event -> {
+            verify(paymentsRepository, times(event.type() == PaymentEventType.CREATED ? 0 : 1)).add(any());
+            events.add(event);
+        };
+        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator, new PaymentMetrics(), sink);
+        when(paymentIdGenerator.generate()).thenReturn("payment-789");
+        when(bankClient.makePayment(any())).thenReturn(new BankSimulatorClient.BankPaymentResponse(false, null));
+
+        paymentService.processPayment(payment, null);
+
+        assertEquals(List.of(PaymentEventType.CREATED, PaymentEventType.DECLINED), events.stream().map(PaymentEvent::type).toList());
+        assertEquals("payment-789", events.getLast().paymentId());
+        assertEquals(2500, events.getLast().amount());
+        verify(paymentsRepository).add(any(PostPaymentResponseDto.class));
+    }
+
+    @Test
+    void processPaymentShouldStoreThePaymentAndKeyWhenPublishingFails() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        PaymentMetrics metrics = new PaymentMetrics();
+        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator, metrics,
+                event -> { throw new UncheckedIOException(new IOException("No space left on device")); }, RiskCheck.allowAll(), FINGERPRINTER);
+        when(paymentIdGenerator.generate()).thenReturn("payment-792");
+        when(bankClient.makePayment(any())).thenReturn(new BankSimulatorClient.BankPaymentResponse(true, "AUTH123"));
+        when(idempotencyKeys.get("publish-key")).thenReturn(Optional.empty());
+        when(idempotencyKeys.reserve("publish-key", FINGERPRINTER.fingerprint(payment))).thenReturn(true);
+
+        PostPaymentResponseDto response = paymentService.processPayment(payment, "publish-key");
+
+        assertEquals("APPROVED", response.status());
+        verify(paymentsRepository).add(response);
+        verify(idempotencyKeys).complete("publish-key", new IdempotencyRecord(FINGERPRINTER.fingerprint(payment), response));
+        assertTrue(metrics.scrape().contains("payment_event_publish_failures 2"));
+    }
+
+    @Test
+    void processPaymentShouldPublishFailedEventWhenTheBankCallFails() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        List<PaymentEvent> events = new ArrayList<>();
+        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator, new PaymentMetrics(), events::add);
+        when(paymentIdGenerator.generate()).thenReturn("payment-790");
+        when(bankClient.makePayment(any())).thenThrow(new BankPaymentFailedException("Bank unavailable"));
+
+        assertThrows(BankPaymentFailedException.class, () -> paymentService.processPayment(payment, null));
+
+        assertEquals(List.of(PaymentEventType.CREATED, PaymentEventType.FAILED), events.stream().map(PaymentEvent::type).toList());
+        verify(paymentsRepository, never()).add(any());
+    }
+
+    @Test
+    void submitPaymentShouldReturnRejectionsAsResultsInsteadOfThrowing() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        PostPaymentResponseDto earlierResponse = new PostPaymentResponseDto("payment-100", "APPROVED", "4242", 12, 2030, "EUR", 100);
+        when(idempotencyKeys.get("used-key")).thenReturn(Optional.of(new IdempotencyRecord(FINGERPRINTER.fingerprint(payment) + 1, earlierResponse)));
+        when(idempotencyKeys.get("new-key")).thenReturn(Optional.empty());
+        when(idempotencyKeys.reserve("new-key", FINGERPRINTER.fingerprint(payment))).thenReturn(true);
+        when(paymentIdGenerator.generate()).thenReturn("payment-791");
+        when(bankClient.makePayment(any())).thenThrow(new BankPaymentFailedException("Bank unavailable", false));
+
+        assertEquals(new PaymentResult.IdempotencyKeyMismatch("used-key"), paymentService.submitPayment(payment, "used-key", null));
+        assertEquals(new PaymentResult.BankFailure("Bank unavailable"), paymentService.submitPayment(payment, "new-key", null));
+
+        verify(idempotencyKeys).release("new-key");
+        verify(idempotencyKeys, never()).complete(any(), any());
+        verify(paymentsRepository, never()).add(any());
+    }
+
+    @Test
+    void submitPaymentShouldNotCallTheBankWhenTheRiskCheckRejectsThePayment() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        paymentService = new PaymentService(paymentsRepository, bankClient, idempotencyKeys, paymentIdGenerator,
+                new PaymentMetrics(), PaymentEventSink.discarding(), rejected -> Optional.of("per_minute_attempts"));
+
+        assertEquals(new PaymentResult.RiskRejected("per_minute_attempts"), paymentService.submitPayment(payment, "risky-key", null));
+
+        verify(bankClient, never()).makePayment(any());
+        verify(paymentsRepository, never()).add(any());
+        verify(idempotencyKeys, never()).reserve(any(), anyLong());
+    }
+
+    @Test
+    void submitPaymentShouldNotCallTheBankWhileAnotherRequestHoldsTheKey() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        when(idempotencyKeys.get("busy-key"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(IdempotencyRecord.inFlight(FINGERPRINTER.fingerprint(payment))));
+        when(idempotencyKeys.reserve("busy-key", FINGERPRINTER.fingerprint(payment))).thenReturn(false);
+
+        // Loses the reservation to a concurrent request, then a retry finds the key still in flight
+        assertEquals(new PaymentResult.IdempotencyKeyInFlight("busy-key"), paymentService.submitPayment(payment, "busy-key", null));
+        assertEquals(new PaymentResult.IdempotencyKeyInFlight("busy-key"), paymentService.submitPayment(payment, "busy-key", null));
+
+        verify(bankClient, never()).makePayment(any());
+        verify(idempotencyKeys, never()).release(any());
+    }
+
+    @Test
+    void submitPaymentShouldAnswerARetryWhenStoringAnApprovedPaymentFails() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        paymentService = new PaymentService(paymentsRepository, bankClient, new IdempotentKeyStoreRepository(), paymentIdGenerator,
+                new PaymentMetrics(), PaymentEventSink.discarding(), RiskCheck.allowAll(), FINGERPRINTER);
+        when(paymentIdGenerator.generate()).thenReturn("payment-793");
+        when(bankClient.makePayment(any())).thenReturn(new BankSimulatorClient.BankPaymentResponse(true, "AUTH123"));
+        doThrow(new PaymentStoreUnavailableException("Payment store unavailable", null)).when(paymentsRepository).add(any());
+
+        assertThrows(PaymentStoreUnavailableException.class, () -> paymentService.submitPayment(payment, "store-key", null));
+
+        // The bank charged, so the retry gets that answer instead of a busy key or a second charge
+        assertEquals(new PaymentResult.Replayed(PostPaymentResponseDto.fromPayment(payment, "payment-793", "APPROVED")),
+                paymentService.submitPayment(payment, "store-key", null));
+        verify(bankClient, times(1)).makePayment(any());
+    }
+
+    @Test
+    void submitPaymentShouldNotSendARetryAgainWhenTheBankCallHadAnUnknownOutcome() {
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        paymentService = new PaymentService(paymentsRepository, bankClient, new IdempotentKeyStoreRepository(), paymentIdGenerator,
+                new PaymentMetrics(), PaymentEventSink.discarding(), RiskCheck.allowAll(), FINGERPRINTER);
+        when(paymentIdGenerator.generate()).thenReturn("payment-794");
+        when(bankClient.makePayment(any())).thenThrow(new BankPaymentFailedException("Connection lost"));
+
+        assertEquals(new PaymentResult.BankFailure("Connection lost"), paymentService.submitPayment(payment, "lost-key", null));
+
+        assertEquals(new PaymentResult.BankFailure(PaymentService.OUTCOME_UNKNOWN_MESSAGE), paymentService.submitPayment(payment, "lost-key", null));
+        verify(bankClient, times(1)).makePayment(any());
+        verify(paymentsRepository, never()).add(any());
+    }
+}
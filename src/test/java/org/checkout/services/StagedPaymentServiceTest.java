@@ -0,0 +1,136 @@
+package org.checkout.services;
+
+import org.checkout.clients.BankSimulatorClient;
+import org.checkout.exceptions.BankPaymentFailedException;
+import org.checkout.exceptions.ExecutorSaturatedException;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.models.Payment;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StagedPaymentServiceTest {
+
+    private static final int FUTURE_YEAR = Year.now().getValue() + 1;
+
+    private final PaymentsRepository paymentsRepository = new PaymentsRepository();
+    private final PaymentMetrics paymentMetrics = new PaymentMetrics();
+    private final AtomicInteger paymentIds = new AtomicInteger();
+    private final CountDownLatch bankOpen = new CountDownLatch(1);
+    private final StringBuilder bankThread = new StringBuilder();
+
+    private StagedPaymentService stagedPaymentService;
+
+    @AfterEach
+    void tearDown() {
+        bankOpen.countDown();
+        if (stagedPaymentService != null) {
+            stagedPaymentService.close();
+        }
+    }
+
+    @Test
+    void shouldProcessPaymentsThroughEveryStage() throws Exception {
+        stagedPaymentService = stagedService(1024);
+        bankOpen.countDown();
+
+        PaymentResult result = stagedPaymentService.submitPaymentAsync(payment(1000), "key-1", null).get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isInstanceOf(PaymentResult.Processed.class);
+        PaymentResult.Processed processed = (PaymentResult.Processed) result;
+        assertThat(processed.response().status()).isEqualTo("APPROVED");
+        assertThat(paymentsRepository.get(processed.response().id())).isPresent();
+        assertThat(bankThread.toString()).startsWith("pipeline-bank-");
+        assertThat(stagedPaymentService.submitPayment(payment(1000), "key-1", null))
+                .isEqualTo(new PaymentResult.Replayed(processed.response()));
+        assertThat(stagedPaymentService.submitPayment(payment(2000), "key-1", null))
+                .isEqualTo(new PaymentResult.IdempotencyKeyMismatch("key-1"));
+    }
+
+    @Test
+    void shouldReportBankFailuresAsResults() {
+        stagedPaymentService = stagedService(1024);
+        bankOpen.countDown();
+
+        assertThat(stagedPaymentService.submitPayment(payment(13), null, null))
+                .isEqualTo(new PaymentResult.BankFailure("Bank unavailable"));
+        assertThat(paymentsRepository.size()).isZero();
+    }
+
+    @Test
+    void shouldExposeQueueDepthAndRejectOnceTheFirstStageIsFull() throws Exception {
+        stagedPaymentService = stagedService(2);
+        stagedPaymentService.registerMetrics(paymentMetrics);
+        List<CompletableFuture<PaymentResult>> accepted = new ArrayList<>();
+
+        // One payment blocks in the bank stage and two wait in the bank queue; the next one holds up the screening
+        // thread, and two more fill the screening queue
+        accepted.add(submit());
+        awaitMetric("pipeline_bank_busy_threads 1");
+        accepted.add(submit());
+        accepted.add(submit());
+        awaitMetric("pipeline_bank_queue_depth 2");
+        accepted.add(submit());
+        awaitMetric("pipeline_screening_busy_threads 1");
+        accepted.add(submit());
+        accepted.add(submit());
+
+        assertThat(paymentMetrics.scrape())
+                .contains("pipeline_screening_queue_depth 2")
+                .contains("pipeline_storage_queue_depth 0");
+        assertThatThrownBy(this::submit).isInstanceOf(ExecutorSaturatedException.class);
+
+        bankOpen.countDown();
+        CompletableFuture.allOf(accepted.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(paymentsRepository.size()).isEqualTo(6);
+    }
+
+    private CompletableFuture<PaymentResult> submit() {
+        return stagedPaymentService.submitPaymentAsync(payment(1000), null, null);
+    }
+
+    private void awaitMetric(String metric) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!paymentMetrics.scrape().contains(metric) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(paymentMetrics.scrape()).contains(metric);
+    }
+
+    // The bank waits for bankOpen, approves every payment and fails any of amount 13
+    private StagedPaymentService stagedService(int queueCapacity) {
+        PaymentService paymentService = new PaymentService(paymentsRepository, request -> {
+            synchronized (bankThread) {
+                bankThread.setLength(0);
+                bankThread.append(Thread.currentThread().getName());
+            }
+            try {
+                bankOpen.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (request.amount() == 13) {
+                throw new BankPaymentFailedException("Bank unavailable");
+            }
+            return new BankSimulatorClient.BankPaymentResponse(true, "AUTH");
+        }, new IdempotentKeyStoreRepository(), () -> "cko_" + paymentIds.incrementAndGet(), paymentMetrics);
+        StagedPaymentService.StageSettings settings = new StagedPaymentService.StageSettings(1, queueCapacity);
+        return new StagedPaymentService(paymentService, settings, settings, settings);
+    }
+
+    private static Payment payment(int amount) {
+        return Payment.create("4242424242424242", 12, FUTURE_YEAR, "GBP", amount, "123").getValue();
+    }
+}
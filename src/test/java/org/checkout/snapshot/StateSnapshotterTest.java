@@ -0,0 +1,97 @@
+package org.checkout.snapshot;
+
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotencyRecord;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.repository.PaymentsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StateSnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRestorePaymentsAndKeysFromTheLatestSnapshot() throws Exception {
+        PaymentsRepository payments = new PaymentsRepository();
+        IdempotentKeyStoreRepository idempotencyKeys = new IdempotentKeyStoreRepository();
+        // Enough for several chunks, plus an id that is not plain ASCII
+        for (int i = 0; i < 40_000; i++) {
+            payments.add(payment("cko_" + i));
+            idempotencyKeys.add("key-" + i, new IdempotencyRecord(i, payment("cko_" + i)));
+        }
+        payments.add(payment("cko_é"));
+        StateSnapshotter snapshotter = new StateSnapshotter(directory, payments, idempotencyKeys);
+        snapshotter.snapshot();
+
+        StateSnapshotter restored = StateSnapshotter.restore(directory);
+
+        assertThat(restored.payments().size()).isEqualTo(40_001);
+        assertThat(restored.payments().get("cko_39999")).contains(payment("cko_39999"));
+        assertThat(restored.payments().get("cko_é")).contains(payment("cko_é"));
+        assertThat(restored.idempotencyKeys().size()).isEqualTo(40_000);
+        IdempotencyRecord record = restored.idempotencyKeys().get("key-7").orElseThrow();
+        assertThat(record.fingerprint()).isEqualTo(7);
+        // The key shares the restored payment's response instead of holding its own copy
+        assertThat(record.response()).isSameAs(restored.payments().get("cko_7").orElseThrow());
+    }
+
+    @Test
+    void shouldStartEmptyWithoutASnapshot() throws Exception {
+        StateSnapshotter restored = StateSnapshotter.restore(directory);
+
+        assertThat(restored.payments().size()).isZero();
+        assertThat(restored.idempotencyKeys().size()).isZero();
+    }
+
+    @Test
+    void shouldLeaveOutPaymentsStoredAfterTheSnapshotStarted() {
+        PaymentsRepository payments = new PaymentsRepository();
+        payments.add(payment("cko_1"));
+
+        List<PostPaymentResponseDto> first = payments.snapshot();
+        payments.add(payment("cko_2"));
+        // Replacing a payment keeps it in the epoch it was first stored in
+        payments.add(payment("cko_1"));
+        List<PostPaymentResponseDto> second = payments.snapshot();
+
+        assertThat(first).containsExactly(payment("cko_1"));
+        assertThat(second).containsExactlyInAnyOrder(payment("cko_1"), payment("cko_2"));
+    }
+
+    @Test
+    void shouldRefuseATruncatedSnapshot() throws Exception {
+        PaymentsRepository payments = new PaymentsRepository();
+        payments.add(payment("cko_1"));
+        new StateSnapshotter(directory, payments, new IdempotentKeyStoreRepository()).snapshot();
+        try (FileChannel channel = FileChannel.open(directory.resolve(StateSnapshotter.PAYMENTS_FILE), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThatThrownBy(() -> StateSnapshotter.restore(directory)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldRefuseToStartOverKeysSnapshottedInTheOldFormat() throws Exception {
+        Files.write(directory.resolve(StateSnapshotter.LEGACY_IDEMPOTENCY_KEYS_FILE), new byte[]{0x43, 0x4b, 0x53, 0x4b});
+
+        assertThatThrownBy(() -> StateSnapshotter.restore(directory))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining(StateSnapshotter.LEGACY_IDEMPOTENCY_KEYS_FILE);
+    }
+
+    private static PostPaymentResponseDto payment(String id) {
+        return new PostPaymentResponseDto(id, "APPROVED", "4242", 12, 2030, "GBP", 1050);
+    }
+}
@@ -0,0 +1,138 @@
+package org.checkout.sql;
+
+import org.checkout.clients.BankSimulatorClient;
+import org.checkout.exceptions.PaymentStoreUnavailableException;
+import org.checkout.metrics.PaymentMetrics;
+import org.checkout.models.Payment;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.IdempotentKeyStoreRepository;
+import org.checkout.services.PaymentResult;
+import org.checkout.services.PaymentService;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Year;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlPaymentsRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private String jdbcUrl;
+    private SqlPaymentsRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcUrl = "jdbc:h2:" + directory.resolve("payments");
+        repository = new SqlPaymentsRepository(jdbcUrl, 4, 64, 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void shouldReadPaymentsBeforeAndAfterTheyAreWritten() throws Exception {
+        repository.add(payment(1));
+
+        assertThat(repository.get("cko_00000001")).contains(payment(1));
+        awaitWritten();
+        assertThat(repository.get("cko_00000001")).contains(payment(1));
+        assertThat(repository.get("cko_99999999")).isEmpty();
+        assertThat(repository.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldWriteBurstsInBatches() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            repository.add(payment(i));
+        }
+        awaitWritten();
+
+        assertThat(repository.size()).isEqualTo(1000);
+        assertThat(repository.batchesWritten()).isBetween(16L, 999L);
+        assertThat(repository.get("cko_00000999")).contains(payment(999));
+    }
+
+    @Test
+    void shouldKeepPaymentsAcrossRestarts() throws Exception {
+        repository.add(payment(7));
+        repository.close();
+
+        repository = new SqlPaymentsRepository(jdbcUrl, 4, 64, 1024);
+
+        assertThat(repository.get("cko_00000007")).contains(payment(7));
+    }
+
+    @Test
+    void shouldKeepChargedPaymentsAndTurnNewOnesAwayWhileTheQueueStaysFull() throws Exception {
+        JdbcConnectionPool pool = JdbcConnectionPool.create(jdbcUrl + "-unavailable", "sa", "");
+        AtomicBoolean unavailable = new AtomicBoolean();
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if (unavailable.get() && method.getName().equals("getConnection")) {
+                throw new SQLException("Database unavailable");
+            }
+            try {
+                return method.invoke(pool, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        SqlPaymentsRepository stalled = new SqlPaymentsRepository(dataSource, 1, 1, 50);
+        AtomicInteger bankCalls = new AtomicInteger();
+        AtomicInteger paymentIds = new AtomicInteger();
+        PaymentService paymentService = new PaymentService(stalled, request -> {
+            bankCalls.incrementAndGet();
+            return new BankSimulatorClient.BankPaymentResponse(true, "AUTH123");
+        }, new IdempotentKeyStoreRepository(), () -> String.format("cko_%08d", paymentIds.incrementAndGet()), new PaymentMetrics());
+        Payment payment = Payment.create("4242424242424242", 12, Year.now().getValue() + 1, "GBP", 2500, "123").getValue();
+        try {
+            unavailable.set(true);
+
+            // One payment held by the retrying writer and one in the queue, so the third overflows but is still kept
+            for (int i = 0; i < 3; i++) {
+                assertThat(paymentService.submitPayment(payment, null, null)).isInstanceOf(PaymentResult.Processed.class);
+            }
+            assertThat(stalled.acceptsWrites()).isFalse();
+            assertThatThrownBy(() -> paymentService.submitPayment(payment, null, null))
+                    .isInstanceOf(PaymentStoreUnavailableException.class);
+            assertThat(bankCalls).hasValue(3);
+
+            unavailable.set(false);
+            while (stalled.pendingCount() > 0) {
+                Thread.sleep(5);
+            }
+            assertThat(stalled.acceptsWrites()).isTrue();
+            for (int i = 1; i <= 3; i++) {
+                assertThat(stalled.get(String.format("cko_%08d", i))).isPresent();
+            }
+        } finally {
+            stalled.close();
+            pool.dispose();
+        }
+    }
+
+    private void awaitWritten() throws InterruptedException {
+        while (repository.pendingCount() > 0) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static PostPaymentResponseDto payment(int number) {
+        return new PostPaymentResponseDto(String.format("cko_%08d", number), "APPROVED", "4242", 12, 2030, "EUR", number);
+    }
+}
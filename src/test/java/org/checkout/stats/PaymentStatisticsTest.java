@@ -0,0 +1,106 @@
+package org.checkout.stats;
+
+import org.checkout.models.PaymentStatisticsDto;
+import org.checkout.models.PostPaymentResponseDto;
+import org.checkout.repository.PaymentsRepository;
+import org.checkout.stats.PaymentStatistics.Window;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentStatisticsTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final PaymentStatistics statistics = new PaymentStatistics(clock);
+
+    @Test
+    void shouldRollUpCountsAmountsAndApprovalRatesByCurrency() {
+        statistics.record(payment("APPROVED", "GBP", 1000));
+        statistics.record(payment("APPROVED", "GBP", 500));
+        statistics.record(payment("DECLINED", "GBP", 200));
+        statistics.record(payment("DECLINED", "USD", 700));
+
+        PaymentStatisticsDto hour = statistics.snapshot(Window.HOUR);
+
+        assertThat(hour.approvedCount()).isEqualTo(2);
+        assertThat(hour.declinedCount()).isEqualTo(2);
+        assertThat(hour.approvalRate()).isEqualTo(0.5);
+        assertThat(hour.currencies()).contains(
+                new PaymentStatisticsDto.CurrencyStatistics("GBP", 2, 1500, 1, 200, 2.0 / 3),
+                new PaymentStatisticsDto.CurrencyStatistics("USD", 0, 0, 1, 700, 0.0),
+                new PaymentStatisticsDto.CurrencyStatistics("EUR", 0, 0, 0, 0, null));
+    }
+
+    @Test
+    void shouldDropPaymentsOnceTheyFallOutOfAWindow() {
+        statistics.record(payment("APPROVED", "EUR", 100));
+        clock.advance(Duration.ofMinutes(5));
+        statistics.record(payment("APPROVED", "EUR", 300));
+
+        assertThat(statistics.snapshot(Window.MINUTE).approvedCount()).isEqualTo(1);
+        assertThat(statistics.snapshot(Window.HOUR).approvedCount()).isEqualTo(2);
+
+        clock.advance(Duration.ofHours(1));
+
+        assertThat(statistics.snapshot(Window.HOUR).approvedCount()).isZero();
+        assertThat(statistics.snapshot(Window.DAY).approvedCount()).isEqualTo(2);
+        assertThat(statistics.snapshot(Window.DAY).currencies())
+                .contains(new PaymentStatisticsDto.CurrencyStatistics("EUR", 2, 400, 0, 0, 1.0));
+    }
+
+    @Test
+    void shouldReuseBucketsAfterAFullWindow() {
+        statistics.record(payment("APPROVED", "GBP", 100));
+        clock.advance(Duration.ofSeconds(60));
+        statistics.record(payment("DECLINED", "GBP", 100));
+
+        PaymentStatisticsDto minute = statistics.snapshot(Window.MINUTE);
+
+        assertThat(minute.approvedCount()).isZero();
+        assertThat(minute.declinedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountPaymentsAddedThroughTheRepository() {
+        PaymentsRepository payments = new PaymentsRepository();
+        StatisticsRecordingRepository repository = new StatisticsRecordingRepository(payments, statistics);
+
+        repository.add(payment("APPROVED", "USD", 2500));
+
+        assertThat(payments.get("cko_1")).isPresent();
+        assertThat(statistics.snapshot(Window.DAY).approvedCount()).isEqualTo(1);
+    }
+
+    private static PostPaymentResponseDto payment(String status, String currency, long amount) {
+        return new PostPaymentResponseDto("cko_1", status, "4242", 12, 2030, currency, amount);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.checkout.vault;
+
+import org.checkout.exceptions.CardVaultFullException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CardVaultTest {
+
+    private final CardVault vault = CardVault.withRandomKey(100);
+
+    @Test
+    void shouldReturnTheVaultedCardForItsToken() {
+        String token = vault.tokenize("4242424242424242", 4, 2031);
+        String longToken = vault.tokenize("5555555555554444123", 12, 2040);
+
+        assertThat(token).startsWith(CardVault.TOKEN_PREFIX).doesNotContain("4242424242424242");
+        assertThat(vault.detokenize(token)).contains(new VaultedCard("4242424242424242", 4, 2031));
+        assertThat(vault.detokenize(longToken)).contains(new VaultedCard("5555555555554444123", 12, 2040));
+        assertThat(vault.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepExpiryYearsPastTheFirstByte() {
+        String token = vault.tokenize("4242424242424242", 1, 2300);
+
+        assertThat(vault.detokenize(token)).contains(new VaultedCard("4242424242424242", 1, 2300));
+    }
+
+    @Test
+    void shouldNotResolveUnknownOrMalformedTokens() {
+        String token = vault.tokenize("4242424242424242", 4, 2031);
+        char last = token.charAt(token.length() - 1);
+        String guessed = token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0');
+
+        assertThat(vault.detokenize(guessed)).isEmpty();
+        assertThat(vault.detokenize(token.toUpperCase())).isEmpty();
+        assertThat(vault.detokenize("tok_00000063ffffffffffffffff")).isEmpty();
+        assertThat(vault.detokenize("tok_")).isEmpty();
+        assertThat(vault.detokenize(null)).isEmpty();
+    }
+
+    @Test
+    void shouldNotResolveTokensFromAnotherVault() {
+        String token = CardVault.withRandomKey(100).tokenize("4242424242424242", 4, 2031);
+
+        assertThat(vault.detokenize(token)).isEmpty();
+    }
+
+    @Test
+    void shouldRejectCardsOnceFull() {
+        CardVault full = CardVault.withRandomKey(1);
+        full.tokenize("4242424242424242", 4, 2031);
+
+        assertThatThrownBy(() -> full.tokenize("4242424242424242", 4, 2031))
+                .isInstanceOf(CardVaultFullException.class);
+        assertThat(full.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldHideTheCardNumberInToString() {
+        assertThat(new VaultedCard("4242424242424242", 4, 2031).toString())
+                .doesNotContain("424242424242")
+                .contains("4242");
+    }
+}
@@ -0,0 +1,179 @@
+package org.checkout.webhooks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.checkout.events.PaymentEvent;
+import org.checkout.events.PaymentEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookDispatcherTest {
+
+    private static final WebhookDispatcher.Settings SETTINGS = new WebhookDispatcher.Settings(
+            Duration.ofMillis(50), 100, 2, 10_000, 5,
+            Duration.ofMillis(50), Duration.ofMillis(200), Duration.ofSeconds(2), true, null);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> receivedBatches = new CopyOnWriteArrayList<>();
+    private final List<String> receivedBatchIds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    @TempDir
+    Path retryDirectory;
+
+    private HttpServer receiver;
+    private URI endpoint;
+
+    @BeforeEach
+    void startReceiver() throws IOException {
+        receiver = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        receiver.createContext("/webhook", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (failuresLeft.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                receivedBatchIds.add(exchange.getRequestHeaders().getFirst(WebhookDispatcher.BATCH_ID_HEADER));
+                receivedBatches.add(objectMapper.readTree(body));
+                exchange.sendResponseHeaders(204, -1);
+            }
+            exchange.close();
+        });
+        receiver.start();
+        endpoint = URI.create("http://127.0.0.1:" + receiver.getAddress().getPort() + "/webhook");
+    }
+
+    @AfterEach
+    void stopReceiver() {
+        receiver.stop(0);
+    }
+
+    @Test
+    void shouldDeliverFinalOutcomesInBatchesToTheCallersEndpoint() throws Exception {
+        try (WebhookDispatcher dispatcher = new WebhookDispatcher(registry(), retryDirectory, SETTINGS)) {
+            for (int i = 0; i < 250; i++) {
+                dispatcher.publish(event(PaymentEventType.APPROVED, i, "merchant_1"));
+            }
+            dispatcher.publish(event(PaymentEventType.CREATED, 999, "merchant_1"));
+            dispatcher.publish(event(PaymentEventType.APPROVED, 1000, "merchant_2"));
+            dispatcher.publish(event(PaymentEventType.APPROVED, 1001, null));
+
+            awaitCondition(() -> dispatcher.deliveredCount() == 250);
+
+            assertThat(receivedBatches).allSatisfy(batch ->
+                    assertThat(batch.get("notifications").size()).isLessThanOrEqualTo(100));
+            assertThat(receivedBatches.stream().mapToInt(batch -> batch.get("notifications").size()).sum())
+                    .isEqualTo(250);
+            JsonNode first = receivedBatches.getFirst().get("notifications").get(0);
+            assertThat(first.get("status").asText()).isEqualTo("APPROVED");
+            assertThat(first.has("payment_id")).isTrue();
+            assertThat(dispatcher.retryingCount()).isZero();
+        }
+    }
+
+    @Test
+    void shouldRetryAFailedBatchWithTheSameBatchId() throws Exception {
+        failuresLeft.set(2);
+        try (WebhookDispatcher dispatcher = new WebhookDispatcher(registry(), retryDirectory, SETTINGS)) {
+            dispatcher.publish(event(PaymentEventType.DECLINED, 1, "merchant_1"));
+
+            awaitCondition(() -> dispatcher.deliveredCount() == 1);
+
+            assertThat(receivedBatches).hasSize(1);
+            assertThat(receivedBatchIds.getFirst()).isNotBlank();
+            assertThat(dispatcher.retryingCount()).isZero();
+            assertThat(retryFiles()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldResumePersistedRetriesAfterRestart() throws Exception {
+        failuresLeft.set(Integer.MAX_VALUE);
+        try (WebhookDispatcher dispatcher = new WebhookDispatcher(registry(), retryDirectory, SETTINGS)) {
+            dispatcher.publish(event(PaymentEventType.APPROVED, 1, "merchant_1"));
+            awaitCondition(() -> dispatcher.retryingCount() == 1);
+        }
+        assertThat(retryFiles()).hasSize(1);
+
+        failuresLeft.set(0);
+        try (WebhookDispatcher restarted = new WebhookDispatcher(new WebhookRegistry(), retryDirectory, SETTINGS)) {
+            awaitCondition(() -> restarted.deliveredCount() == 1);
+
+            assertThat(receivedBatches).hasSize(1);
+            assertThat(retryFiles()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldDeadLetterABatchAfterTheLastAttempt() throws Exception {
+        failuresLeft.set(Integer.MAX_VALUE);
+        try (WebhookDispatcher dispatcher = new WebhookDispatcher(registry(), retryDirectory, SETTINGS)) {
+            dispatcher.publish(event(PaymentEventType.FAILED, 1, "merchant_1"));
+
+            awaitCondition(() -> dispatcher.deadLetteredCount() == 1);
+
+            assertThat(dispatcher.retryingCount()).isZero();
+            assertThat(retryFiles()).isEmpty();
+            assertThat(retryDirectory.resolve("dead")).isNotEmptyDirectory();
+        }
+    }
+
+    @Test
+    void shouldRefuseEndpointsOnPrivateAddresses() throws Exception {
+        WebhookDispatcher.Settings publicOnly = new WebhookDispatcher.Settings(
+                Duration.ofMillis(50), 100, 2, 10_000, 2,
+                Duration.ofMillis(50), Duration.ofMillis(200), Duration.ofSeconds(2), false, null);
+        try (WebhookDispatcher dispatcher = new WebhookDispatcher(registry(), retryDirectory, publicOnly)) {
+            assertThat(dispatcher.accepts(endpoint)).isFalse();
+            assertThat(dispatcher.accepts(URI.create("http://169.254.169.254/latest/meta-data"))).isFalse();
+            assertThat(dispatcher.accepts(URI.create("http://10.0.0.1/webhook"))).isFalse();
+            assertThat(dispatcher.accepts(URI.create("http://[::1]:9070/"))).isFalse();
+            assertThat(dispatcher.accepts(URI.create("https://93.184.216.34/webhook"))).isTrue();
+
+            dispatcher.publish(event(PaymentEventType.APPROVED, 1, "merchant_1"));
+            awaitCondition(() -> dispatcher.deadLetteredCount() == 1);
+
+            assertThat(receivedBatches).isEmpty();
+        }
+    }
+
+    private WebhookRegistry registry() {
+        WebhookRegistry registry = new WebhookRegistry();
+        registry.register("merchant_1", endpoint);
+        return registry;
+    }
+
+    private List<Path> retryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(retryDirectory)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static PaymentEvent event(PaymentEventType type, int index, String callerId) {
+        return new PaymentEvent(type, "cko_" + index, "GBP", 1000 + index, System.currentTimeMillis(), callerId);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}